@@ -0,0 +1,21 @@
+package com.example.demo.config;
+
+import com.example.demo.service.AccessPolicyEngine;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Access Policy Configuration
+ *
+ * Compiles the access-policy.* rules into the AccessPolicyEngine used by AccessDecisionService.
+ */
+@Configuration
+@EnableConfigurationProperties(AccessPolicyProperties.class)
+public class AccessPolicyConfig {
+
+    @Bean
+    public AccessPolicyEngine accessPolicyEngine(AccessPolicyProperties accessPolicyProperties) {
+        return new AccessPolicyEngine(accessPolicyProperties);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Access Policy Properties
+ *
+ * Rules of the access decision (access-policy.*), compiled by AccessPolicyEngine.
+ * Defaults are the rules the decision has always applied.
+ */
+@Data
+@ConfigurationProperties(prefix = "access-policy")
+public class AccessPolicyProperties {
+
+    /**
+     * Personas a relationship needs (all of them) for the supported member to be viewable
+     * (digital account access)
+     */
+    private List<String> eligiblePersonas = new ArrayList<>(List.of("RRP", "DAA"));
+
+    /**
+     * Personas an eligible relationship needs (all of them) for sensitive data access
+     */
+    private List<String> sensitivePersonas = new ArrayList<>(List.of("RRP", "DAA", "ROI"));
+
+    /**
+     * web-cl: members supporting others view only the supported members
+     */
+    private Application webCl = new Application(false);
+
+    /**
+     * web-hs: members supporting others view their own data and the supported members
+     */
+    private Application webHs = new Application(true);
+
+    @Data
+    public static class Application {
+
+        /**
+         * Whether a member with eligible supported members can still view their own data
+         * (SELF_AND_OTHERS instead of SUPPORTING_OTHERS)
+         */
+        private boolean ownDataWithOthers;
+
+        public Application() {
+        }
+
+        public Application(boolean ownDataWithOthers) {
+            this.ownDataWithOthers = ownDataWithOthers;
+        }
+    }
+}
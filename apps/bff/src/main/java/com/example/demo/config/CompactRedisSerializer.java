@@ -0,0 +1,206 @@
+package com.example.demo.config;
+
+import com.example.demo.model.AccessDecision;
+import com.example.demo.model.AccessLevelResponse;
+import com.example.demo.model.BiometricInfo;
+import com.example.demo.model.CacheEntry;
+import com.example.demo.model.UserInfo;
+import com.example.demo.model.UserSession;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Compact Redis Serializer
+ *
+ * Binary value format for session and cache entries. Instead of embedding
+ * "@class" metadata in every nested object, the top-level type is written
+ * once as a one-byte tag and the body is encoded with Smile (binary JSON).
+ * Bodies larger than the compression threshold are LZ4 compressed.
+ *
+ * Layout:
+ *   [magic 0xC5][version][flags][type tag]([raw length])[body]
+ *
+ * - flags bit 0: body is LZ4 compressed, raw length (int) precedes the body;
+ *   raw lengths above the configured maximum are rejected before allocating
+ * - type tag: index into the registered types; unknown tags are rejected, so
+ *   a value in Redis can never name the class it is read as
+ *
+ * Values of unregistered types are written with the legacy JSON serializer.
+ * Values that do not start with the magic byte are read with it as well, so
+ * entries written by older instances stay readable during a rolling deploy.
+ * Polymorphic values inside registered types (CacheEntry) are limited to the
+ * application's model classes.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xC5;
+    static final byte VERSION = 1;
+
+    private static final int FLAG_LZ4 = 0x01;
+    private static final int HEADER_LENGTH = 4;
+
+    /**
+     * Default upper bound for the raw length of a compressed body
+     */
+    public static final int DEFAULT_MAX_DECOMPRESSED_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * Registered types, indexed by tag. Tags are persisted in Redis:
+     * only append to this list, never reorder or remove entries.
+     */
+    private static final List<Class<?>> TYPES = List.of(
+            Object.class, // 0: reserved, rejected on read
+            UserSession.class,
+            UserInfo.class,
+            AccessDecision.class,
+            BiometricInfo.class,
+            AccessLevelResponse.class,
+            String.class,
+            Long.class,
+            Integer.class,
+            Boolean.class,
+            CacheEntry.class
+    );
+
+    private final ObjectMapper objectMapper;
+    private final RedisSerializer<Object> legacySerializer;
+    private final int compressionThreshold;
+    private final int maxDecompressedBytes;
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;
+
+    /**
+     * @param legacySerializer serializer for values written before the compact format was enabled
+     * @param compressionThreshold minimum body size in bytes before LZ4 is applied, -1 disables compression
+     */
+    public CompactRedisSerializer(RedisSerializer<Object> legacySerializer, int compressionThreshold) {
+        this(legacySerializer, compressionThreshold, DEFAULT_MAX_DECOMPRESSED_BYTES);
+    }
+
+    /**
+     * @param legacySerializer serializer for values written before the compact format was enabled
+     * @param compressionThreshold minimum body size in bytes before LZ4 is applied, -1 disables compression
+     * @param maxDecompressedBytes largest raw length accepted for a compressed body
+     */
+    public CompactRedisSerializer(RedisSerializer<Object> legacySerializer, int compressionThreshold, int maxDecompressedBytes) {
+        this.objectMapper = new ObjectMapper(new SmileFactory())
+                .setPolymorphicTypeValidator(BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType("com.example.demo.model.")
+                        .build())
+                .registerModule(new JavaTimeModule())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, true);
+        this.legacySerializer = legacySerializer;
+        this.compressionThreshold = compressionThreshold;
+        this.maxDecompressedBytes = maxDecompressedBytes;
+
+        LZ4Factory lz4 = LZ4Factory.fastestInstance();
+        this.compressor = lz4.fastCompressor();
+        this.decompressor = lz4.safeDecompressor();
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+
+        int tag = TYPES.indexOf(value.getClass());
+        if (tag <= 0) {
+            return legacySerializer.serialize(value);
+        }
+
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(value);
+
+            int rawLength = body.length;
+            boolean compress = compressionThreshold >= 0 && rawLength >= compressionThreshold;
+            if (compress) {
+                byte[] compressed = compressor.compress(body);
+                // Only keep the compressed form when it actually saves space
+                compress = compressed.length + Integer.BYTES < rawLength;
+                if (compress) {
+                    body = compressed;
+                }
+            }
+
+            int length = HEADER_LENGTH + body.length + (compress ? Integer.BYTES : 0);
+
+            ByteBuffer buffer = ByteBuffer.allocate(length)
+                    .put(MAGIC)
+                    .put(VERSION)
+                    .put((byte) (compress ? FLAG_LZ4 : 0))
+                    .put((byte) tag);
+            if (compress) {
+                buffer.putInt(rawLength);
+            }
+            return buffer.put(body).array();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write compact value: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return legacySerializer.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Truncated compact value");
+        }
+        if (bytes[1] > VERSION) {
+            throw new SerializationException("Unsupported compact value version: " + bytes[1]);
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            int flags = bytes[2];
+            int tag = bytes[3] & 0xFF;
+
+            if (tag == 0 || tag >= TYPES.size()) {
+                throw new SerializationException("Unknown compact value type tag: " + tag);
+            }
+            Class<?> type = TYPES.get(tag);
+
+            if ((flags & FLAG_LZ4) != 0) {
+                if (buffer.remaining() < Integer.BYTES) {
+                    throw new SerializationException("Truncated compact value");
+                }
+                // The length comes from the stored value - check it before allocating
+                int rawLength = buffer.getInt();
+                if (rawLength < 0 || rawLength > maxDecompressedBytes) {
+                    throw new SerializationException("Invalid compact value raw length: " + rawLength);
+                }
+                byte[] raw = new byte[rawLength];
+                int decompressed = decompressor.decompress(bytes, buffer.position(), buffer.remaining(), raw, 0);
+                if (decompressed != rawLength) {
+                    throw new SerializationException(
+                            "Compact value raw length mismatch: expected " + rawLength + ", got " + decompressed);
+                }
+                return objectMapper.readValue(raw, type);
+            }
+            return objectMapper.readValue(bytes, buffer.position(), buffer.remaining(), type);
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof SerializationException serializationException) {
+                throw serializationException;
+            }
+            throw new SerializationException("Could not read compact value: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * HTTP Client Properties
+ *
+ * Connection pool and timeout settings per downstream (http-client.idp, .us, .psn).
+ * Each downstream gets its own connection pool, so a slow upstream can only
+ * exhaust its own connections.
+ */
+@Data
+@ConfigurationProperties(prefix = "http-client")
+public class HttpClientProperties {
+
+    /**
+     * Identity Provider (token exchange, refresh, userinfo, revocation)
+     */
+    private Client idp = new Client();
+
+    /**
+     * US (biometric lookups and US client credentials tokens)
+     */
+    private Client us = new Client();
+
+    /**
+     * PSN (access level lookups and PSN client credentials tokens)
+     */
+    private Client psn = new Client();
+
+    @Data
+    public static class Client {
+
+        /**
+         * Maximum open connections (HTTP/2: maximum connections, each multiplexing streams)
+         */
+        private int maxConnections = 50;
+
+        /**
+         * Maximum requests waiting for a connection; further requests fail immediately
+         */
+        private int pendingAcquireMaxCount = 100;
+
+        /**
+         * Maximum time a request waits for a connection
+         */
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Idle connections are closed after this time
+         */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+
+        /**
+         * Connections are closed after this age (picks up DNS changes)
+         */
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        /**
+         * Interval of the background eviction of idle and expired connections
+         */
+        private Duration evictionInterval = Duration.ofSeconds(30);
+
+        /**
+         * TCP connect timeout
+         */
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        /**
+         * Maximum time to wait for the response after the request was sent
+         */
+        private Duration responseTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Offer HTTP/2 (negotiated via ALPN on TLS connections, HTTP/1.1 otherwise)
+         */
+        private boolean http2 = true;
+    }
+}
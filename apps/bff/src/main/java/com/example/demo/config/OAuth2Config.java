@@ -8,7 +8,6 @@ import org.springframework.security.oauth2.client.registration.ClientRegistratio
 import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
 import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import org.springframework.security.oauth2.core.ClientAuthenticationMethod;
-import org.springframework.web.reactive.function.client.WebClient;
 
 /**
  * OAuth2 Client Configuration
@@ -17,7 +16,7 @@ import org.springframework.web.reactive.function.client.WebClient;
  * - Client registration with IDP
  * - Authorization endpoints
  * - Token exchange configuration
- * - WebClient for OAuth2 API calls
+ * (the IDP WebClient is configured in WebClientConfig)
  */
 @Configuration
 public class OAuth2Config {
@@ -31,9 +30,6 @@ public class OAuth2Config {
     @Value("${spring.security.oauth2.client.registration.idp.scope:openid,profile,email}")
     private String scope;
 
-    @Value("${spring.security.oauth2.client.provider.idp.issuer-uri}")
-    private String issuerUri;
-
     @Value("${spring.security.oauth2.client.provider.idp.authorization-uri}")
     private String authorizationUri;
 
@@ -80,15 +76,4 @@ public class OAuth2Config {
 
         return builder.build();
     }
-
-    /**
-     * WebClient for OAuth2 API calls
-     * Used for token exchange, refresh, and revocation
-     */
-    @Bean
-    public WebClient webClient() {
-        return WebClient.builder()
-                .baseUrl(issuerUri)
-                .build();
-    }
 }
@@ -1,5 +1,12 @@
 package com.example.demo.config;
 
+import com.example.demo.service.NearCacheSessionStore;
+import com.example.demo.service.RedisHashSessionStore;
+import com.example.demo.service.RedisValueSessionStore;
+import com.example.demo.service.SessionStore;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,9 +17,12 @@ import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactor
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.session.data.redis.config.annotation.web.server.EnableRedisWebSession;
 
+import java.time.Duration;
+
 /**
  * Reactive Redis Configuration for Session Management
  *
@@ -20,7 +30,8 @@ import org.springframework.session.data.redis.config.annotation.web.server.Enabl
  * - Server-side session storage in Redis (reactive)
  * - Distributed session support across multiple BFF instances
  * - Configurable session timeout
- * - JSON serialization for session data
+ * - JSON or compact binary serialization for session and cache data
+ * - Pluggable session layout (single value or Redis hash)
  */
 @Configuration
 @EnableRedisWebSession(maxInactiveIntervalInSeconds = 1800) // 30 minutes default
@@ -38,6 +49,30 @@ public class RedisConfig {
     @Value("${session.timeout.minutes:30}")
     private int sessionTimeoutMinutes;
 
+    @Value("${session.store.layout:value}")
+    private String sessionStoreLayout;
+
+    @Value("${session.near-cache.enabled:false}")
+    private boolean nearCacheEnabled;
+
+    @Value("${session.near-cache.maximum-size:10000}")
+    private long nearCacheMaximumSize;
+
+    @Value("${session.near-cache.ttl.seconds:30}")
+    private int nearCacheTtlSeconds;
+
+    @Value("${session.near-cache.touch-interval.seconds:60}")
+    private int nearCacheTouchIntervalSeconds;
+
+    @Value("${redis.serializer.format:json}")
+    private String serializerFormat;
+
+    @Value("${redis.serializer.compression-threshold-bytes:1024}")
+    private int compressionThresholdBytes;
+
+    @Value("${redis.serializer.max-decompressed-bytes:" + CompactRedisSerializer.DEFAULT_MAX_DECOMPRESSED_BYTES + "}")
+    private int maxDecompressedBytes;
+
     /**
      * Reactive Redis connection factory configuration
      */
@@ -58,7 +93,7 @@ public class RedisConfig {
     }
 
     /**
-     * ReactiveRedisTemplate with JSON serialization
+     * ReactiveRedisTemplate with the configured value serialization
      * Used for storing custom session and cache data
      */
     @Bean
@@ -68,8 +103,8 @@ public class RedisConfig {
         // Use String serializer for keys
         StringRedisSerializer keySerializer = new StringRedisSerializer();
 
-        // Use JSON serializer for values
-        GenericJackson2JsonRedisSerializer valueSerializer = new GenericJackson2JsonRedisSerializer();
+        // Use the configured serializer for values
+        RedisSerializer<Object> valueSerializer = valueSerializer();
 
         // Build serialization context
         RedisSerializationContext<String, Object> serializationContext = RedisSerializationContext
@@ -82,4 +117,75 @@ public class RedisConfig {
 
         return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
     }
+
+    /**
+     * Value serializer for the configured format
+     * - json: GenericJackson2JsonRedisSerializer with embedded type metadata
+     * - compact: Smile body with a type tag and optional LZ4 compression;
+     *   still reads JSON values, so switch only once every instance can read compact
+     */
+    private RedisSerializer<Object> valueSerializer() {
+        GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+        // Sessions carry java.time.Instant fields and derived getters (isExpired) that are written but not read back
+        jsonSerializer.configure(objectMapper -> objectMapper
+                .registerModule(new JavaTimeModule())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+
+        if ("compact".equalsIgnoreCase(serializerFormat)) {
+            return new CompactRedisSerializer(jsonSerializer, compressionThresholdBytes, maxDecompressedBytes);
+        }
+        return jsonSerializer;
+    }
+
+    /**
+     * ReactiveRedisTemplate with raw byte values
+     * Used where callers serialize values themselves (e.g. to meter payload sizes)
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate(
+            ReactiveRedisConnectionFactory connectionFactory) {
+
+        StringRedisSerializer keySerializer = new StringRedisSerializer();
+
+        RedisSerializationContext<String, byte[]> serializationContext = RedisSerializationContext
+                .<String, byte[]>newSerializationContext(keySerializer)
+                .key(keySerializer)
+                .value(RedisSerializer.byteArray())
+                .hashKey(keySerializer)
+                .hashValue(RedisSerializer.byteArray())
+                .build();
+
+        return new ReactiveRedisTemplate<>(connectionFactory, serializationContext);
+    }
+
+    /**
+     * Session store for the configured layout
+     * - value: whole session serialized under session:{id}
+     * - hash: one Redis hash per session with field-level reads and updates
+     * Optionally fronted by an in-process near-cache invalidated via Redis pub/sub
+     */
+    @Bean
+    public SessionStore sessionStore(
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            MeterRegistry meterRegistry) {
+
+        RedisSerializationContext.SerializationPair<Object> valueSerializer =
+                reactiveRedisTemplate.getSerializationContext().getValueSerializationPair();
+
+        SessionStore redisStore = "hash".equalsIgnoreCase(sessionStoreLayout)
+                ? new RedisHashSessionStore(reactiveRedisBytesTemplate, valueSerializer, meterRegistry)
+                : new RedisValueSessionStore(reactiveRedisBytesTemplate, valueSerializer, meterRegistry);
+
+        if (!nearCacheEnabled) {
+            return redisStore;
+        }
+        return new NearCacheSessionStore(
+                redisStore,
+                reactiveRedisBytesTemplate,
+                meterRegistry,
+                nearCacheMaximumSize,
+                Duration.ofSeconds(nearCacheTtlSeconds),
+                Duration.ofSeconds(nearCacheTouchIntervalSeconds));
+    }
 }
@@ -50,7 +50,8 @@ public class SecurityConfig {
                                 "/api/health",               // Health check
                                 "/actuator/health",          // Actuator health
                                 "/actuator/prometheus",      // Prometheus metrics
-                                "/api/documents/av-callback" // AV callback from Lambda
+                                "/api/documents/av-callback", // AV callback from Lambda
+                                "/api/events/member-changes"  // US/PSN change events (HMAC signed)
                         ).permitAll()
 
                         // All other endpoints require authentication
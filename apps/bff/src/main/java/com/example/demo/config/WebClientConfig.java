@@ -0,0 +1,84 @@
+package com.example.demo.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * WebClient Configuration
+ *
+ * One WebClient per downstream (idpWebClient, usWebClient, psnWebClient), each with
+ * its own Reactor Netty connection pool, limits and timeouts (see HttpClientProperties).
+ *
+ * Pool metrics are published per pool name (idp, us, psn) as
+ * reactor.netty.connection.provider.* (active, idle, pending connections, ...).
+ */
+@Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class WebClientConfig {
+
+    private final WebClient.Builder webClientBuilder;
+    private final HttpClientProperties httpClientProperties;
+
+    public WebClientConfig(WebClient.Builder webClientBuilder, HttpClientProperties httpClientProperties) {
+        this.webClientBuilder = webClientBuilder;
+        this.httpClientProperties = httpClientProperties;
+    }
+
+    /**
+     * WebClient for OAuth2 API calls to the IDP
+     * Used for token exchange, refresh, revocation and userinfo
+     */
+    @Bean
+    public WebClient idpWebClient(@Value("${spring.security.oauth2.client.provider.idp.issuer-uri}") String issuerUri) {
+        return create("idp", httpClientProperties.getIdp())
+                .baseUrl(issuerUri)
+                .build();
+    }
+
+    /**
+     * WebClient for US API calls
+     */
+    @Bean
+    public WebClient usWebClient() {
+        return create("us", httpClientProperties.getUs()).build();
+    }
+
+    /**
+     * WebClient for PSN API calls
+     */
+    @Bean
+    public WebClient psnWebClient() {
+        return create("psn", httpClientProperties.getPsn()).build();
+    }
+
+    private WebClient.Builder create(String name, HttpClientProperties.Client settings) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(settings.getMaxConnections())
+                .pendingAcquireMaxCount(settings.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(settings.getPendingAcquireTimeout())
+                .maxIdleTime(settings.getMaxIdleTime())
+                .maxLifeTime(settings.getMaxLifeTime())
+                .evictInBackground(settings.getEvictionInterval())
+                .metrics(true)
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout().toMillis())
+                .responseTimeout(settings.getResponseTimeout());
+        if (settings.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+
+        // Clone: the Boot-provided builder (codecs, observation) is shared
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient));
+    }
+}
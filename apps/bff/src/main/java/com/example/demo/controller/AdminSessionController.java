@@ -0,0 +1,92 @@
+package com.example.demo.controller;
+
+import com.example.demo.exception.AccessDeniedException;
+import com.example.demo.exception.UnauthorizedException;
+import com.example.demo.model.SessionSummary;
+import com.example.demo.model.UserSession;
+import com.example.demo.service.SessionService;
+import com.example.demo.service.TokenRevocationQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin Session Controller
+ *
+ * Session management for administrators (requires the admin role, see admin.role):
+ * - GET /api/admin/users/{userId}/sessions - List a user's live sessions
+ * - DELETE /api/admin/users/{userId}/sessions - Log a user out everywhere
+ *   (the sessions' tokens are queued for revocation at the IDP)
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/users/{userId}/sessions")
+public class AdminSessionController {
+
+    private final SessionService sessionService;
+    private final TokenRevocationQueue tokenRevocationQueue;
+    private final String adminRole;
+
+    public AdminSessionController(
+            SessionService sessionService,
+            TokenRevocationQueue tokenRevocationQueue,
+            @Value("${admin.role:ADMIN}") String adminRole
+    ) {
+        this.sessionService = sessionService;
+        this.tokenRevocationQueue = tokenRevocationQueue;
+        this.adminRole = adminRole;
+    }
+
+    /**
+     * List a user's live sessions, least recently active first
+     */
+    @GetMapping
+    public Mono<ResponseEntity<List<SessionSummary>>> listSessions(
+            ServerWebExchange exchange,
+            @PathVariable String userId
+    ) {
+        return requireAdmin(exchange)
+                .flatMap(admin -> sessionService.getUserSessions(userId)
+                        .map(SessionSummary::from)
+                        .collectList())
+                .map(ResponseEntity::ok);
+    }
+
+    /**
+     * Delete all of a user's sessions
+     */
+    @DeleteMapping
+    public Mono<ResponseEntity<Map<String, Object>>> deleteSessions(
+            ServerWebExchange exchange,
+            @PathVariable String userId
+    ) {
+        return requireAdmin(exchange)
+                .flatMap(admin -> {
+                    log.info("Admin {} ending all sessions of user: {}", admin.getUserInfo().getId(), userId);
+                    return sessionService.deleteUserSessions(userId, tokenRevocationQueue::enqueueTokens);
+                })
+                .map(count -> ResponseEntity.ok(Map.<String, Object>of("sessionsEnded", count)));
+    }
+
+    /**
+     * Get the caller's session, requiring the admin role
+     */
+    private Mono<UserSession> requireAdmin(ServerWebExchange exchange) {
+        return sessionService.getSessionFromExchange(exchange)
+                .switchIfEmpty(Mono.error(new UnauthorizedException("No valid session")))
+                .flatMap(sessionService::withUserInfo)
+                .flatMap(session -> {
+                    List<String> roles = session.getUserInfo().getRoles();
+                    if (roles == null || !roles.contains(adminRole)) {
+                        return Mono.error(new AccessDeniedException("Admin role required"));
+                    }
+                    return Mono.just(session);
+                });
+    }
+}
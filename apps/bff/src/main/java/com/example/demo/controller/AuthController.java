@@ -2,22 +2,28 @@ package com.example.demo.controller;
 
 import com.example.demo.model.*;
 import com.example.demo.service.AccessDecisionService;
+import com.example.demo.service.IdTokenVerifier;
 import com.example.demo.service.OAuth2Service;
 import com.example.demo.service.SessionService;
+import com.example.demo.service.TokenRefreshCoordinator;
+import com.example.demo.service.TokenRevocationQueue;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Authentication Controller
@@ -27,6 +33,7 @@ import java.util.Map;
  * - GET /api/auth/user - Get current user
  * - POST /api/auth/refresh - Refresh session
  * - POST /api/auth/logout - Logout
+ * - POST /api/auth/logout-all - Logout from all sessions of the user
  * - GET /api/auth/session - Get session info
  */
 @Slf4j
@@ -35,24 +42,35 @@ import java.util.Map;
 public class AuthController {
 
     private static final String SESSION_COOKIE_NAME = "SESSION_ID";
-    private static final int COOKIE_MAX_AGE = 30 * 60; // 30 minutes
 
     private final OAuth2Service oauth2Service;
+    private final IdTokenVerifier idTokenVerifier;
     private final AccessDecisionService accessDecisionService;
     private final SessionService sessionService;
+    private final TokenRefreshCoordinator tokenRefreshCoordinator;
+    private final TokenRevocationQueue tokenRevocationQueue;
+    private final MeterRegistry meterRegistry;
     private final int sessionRefreshThreshold;
     private final String redirectUri;
 
     public AuthController(
             OAuth2Service oauth2Service,
+            IdTokenVerifier idTokenVerifier,
             AccessDecisionService accessDecisionService,
             SessionService sessionService,
+            TokenRefreshCoordinator tokenRefreshCoordinator,
+            TokenRevocationQueue tokenRevocationQueue,
+            MeterRegistry meterRegistry,
             @Value("${session.refresh.threshold.seconds:300}") int sessionRefreshThreshold,
             @Value("${spring.security.oauth2.client.registration.idp.redirect-uri:http://localhost:4202/auth/callback}") String redirectUri
     ) {
         this.oauth2Service = oauth2Service;
+        this.idTokenVerifier = idTokenVerifier;
         this.accessDecisionService = accessDecisionService;
         this.sessionService = sessionService;
+        this.tokenRefreshCoordinator = tokenRefreshCoordinator;
+        this.tokenRevocationQueue = tokenRevocationQueue;
+        this.meterRegistry = meterRegistry;
         this.sessionRefreshThreshold = sessionRefreshThreshold;
         this.redirectUri = redirectUri;
     }
@@ -65,10 +83,15 @@ public class AuthController {
      * 1. Frontend receives code from IDP callback
      * 2. Frontend sends code + code_verifier to this endpoint
      * 3. BFF exchanges code for tokens with IDP (PKCE validation)
-     * 4. BFF fetches user info from IDP
-     * 5. BFF creates session in Redis
-     * 6. BFF sets HTTP-only cookie with session ID
-     * 7. BFF returns user info to frontend
+     * 4. BFF starts the access decision (US + PSN) for the HSID from the ID token claims
+     * 5. BFF builds user info from the locally verified ID token, or fetches it from IDP
+     *    (local validation disabled, token not verifiable or required claims missing)
+     * 6. BFF creates session in Redis (cookie value and response built during the write)
+     * 7. BFF sets HTTP-only cookie with session ID
+     * 8. BFF returns user info to frontend
+     *
+     * Stage latencies: auth.login.stage{stage=token-exchange|user-info|access-decision|session-write},
+     * end to end: auth.login{outcome}
      */
     @PostMapping("/token")
     public Mono<ResponseEntity<TokenExchangeResponse>> exchangeToken(
@@ -81,89 +104,149 @@ public class AuthController {
                 ? request.getRedirectUri()
                 : redirectUri;
 
+        Timer.Sample loginSample = Timer.start(meterRegistry);
+
         // 1. Exchange authorization code for tokens
-        return oauth2Service.exchangeAuthorizationCode(
+        return timed("token-exchange", oauth2Service.exchangeAuthorizationCode(
                         request.getCode(),
                         request.getCodeVerifier(),
                         effectiveRedirectUri
-                )
-                // 2. Get user info from IDP
-                .flatMap(tokenResponse -> oauth2Service.getUserInfo(tokenResponse.access_token)
-                        .map(userInfo -> Map.entry(tokenResponse, userInfo)))
-                // 3. Determine access for web-cl using US + PSN flow
-                .flatMap(entry -> {
-                    OAuth2Service.TokenResponse tokenResponse = entry.getKey();
-                    UserInfo userInfo = entry.getValue();
-
-                    // Extract HSID from userInfo custom claims
-                    String hsid = extractHSID(userInfo);
-
-                    if (hsid != null && !hsid.isEmpty()) {
-                        return accessDecisionService.determineAccess(hsid, AccessDecision.ApplicationType.WEB_CL)
-                                .doOnNext(accessDecision -> log.info("Access decision: {} - {}",
-                                        accessDecision.getAccessMode(),
-                                        accessDecision.getDecisionReason()))
-                                .onErrorResume(e -> {
-                                    log.error("Failed to determine access (continuing with login): {}", e.getMessage());
-                                    return Mono.just((AccessDecision) null);
-                                })
-                                .map(accessDecision -> Map.of("tokenResponse", tokenResponse, "userInfo", userInfo, "accessDecision", accessDecision));
-                    } else {
-                        log.warn("No HSID found in userInfo, skipping access decision");
-                        return Mono.just(Map.of("tokenResponse", tokenResponse, "userInfo", userInfo, "accessDecision", (AccessDecision) null));
-                    }
-                })
-                // 4. Create session in Redis
-                .flatMap(data -> {
-                    OAuth2Service.TokenResponse tokenResponse = (OAuth2Service.TokenResponse) data.get("tokenResponse");
-                    UserInfo userInfo = (UserInfo) data.get("userInfo");
-                    AccessDecision accessDecision = (AccessDecision) data.get("accessDecision");
-
-                    long accessTokenExpiresAt = System.currentTimeMillis() + (tokenResponse.expires_in * 1000);
-
-                    UserSession session = UserSession.builder()
-                            .userInfo(userInfo)
-                            .accessToken(tokenResponse.access_token)
-                            .idToken(tokenResponse.id_token)
-                            .refreshToken(tokenResponse.refresh_token)
-                            .tokenType(tokenResponse.token_type)
-                            .accessTokenExpiresAt(accessTokenExpiresAt)
-                            .accessDecision(accessDecision)
-                            .build();
-
-                    return sessionService.createSession(session)
-                            .map(sessionId -> {
-                                // 5. Set HTTP-only cookie
-                                setSessionCookie(response, sessionId);
-
-                                // 6. Return user info and session expiration
-                                TokenExchangeResponse exchangeResponse = TokenExchangeResponse.builder()
-                                        .user(userInfo)
-                                        .expiresAt(session.getExpiresAt().toEpochMilli())
-                                        .sessionId(sessionId)
-                                        .build();
-
-                                log.info("Token exchange successful for user: {}", userInfo.getId());
-                                return ResponseEntity.ok(exchangeResponse);
-                            });
+                ))
+                .flatMap(tokenResponse -> {
+                    // 2. Start the access decision as soon as the HSID is known from the ID token claims.
+                    // The token came straight from the IDP token endpoint; the claims are still only a hint,
+                    // the decision is used only if user info yields the same HSID.
+                    String hsidHint = extractHSID(idTokenVerifier.unverifiedClaims(tokenResponse.id_token));
+                    Mono<AccessDecision> earlyAccessDecision = hsidHint != null ? startAccessDecision(hsidHint) : null;
+
+                    // 3. Get user info from the ID token, falling back to the IDP userinfo endpoint
+                    return timed("user-info", idTokenVerifier.userInfoFrom(tokenResponse.id_token)
+                                    .switchIfEmpty(Mono.defer(() -> oauth2Service.getUserInfo(tokenResponse.access_token))))
+                            .flatMap(userInfo -> accessDecisionFor(userInfo, hsidHint, earlyAccessDecision)
+                                    .map(Optional::of)
+                                    .defaultIfEmpty(Optional.empty())
+                                    // 4. Create session in Redis
+                                    .flatMap(accessDecision -> createSession(tokenResponse, userInfo,
+                                            accessDecision.orElse(null), response)));
                 })
+                .doOnSuccess(result -> loginSample.stop(meterRegistry.timer("auth.login", "outcome", "success")))
                 .onErrorResume(e -> {
                     log.error("Token exchange failed", e);
+                    loginSample.stop(meterRegistry.timer("auth.login", "outcome", "failure"));
                     return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(null));
                 });
     }
 
+    /**
+     * Access decision for web-cl during login
+     * Reuses the decision started from the ID token HSID hint if the HSID matches
+     *
+     * @return Mono of AccessDecision, or empty if no HSID is known or the decision failed
+     */
+    private Mono<AccessDecision> accessDecisionFor(UserInfo userInfo, String hsidHint,
+                                                   Mono<AccessDecision> earlyAccessDecision) {
+        String hsid = extractHSID(userInfo);
+        if (hsid == null || hsid.isEmpty()) {
+            log.warn("No HSID found in userInfo, skipping access decision");
+            return Mono.empty();
+        }
+
+        Mono<AccessDecision> accessDecision;
+        if (earlyAccessDecision != null && hsid.equals(hsidHint)) {
+            accessDecision = earlyAccessDecision;
+        } else {
+            if (earlyAccessDecision != null) {
+                log.info("HSID from user info differs from ID token claims, determining access again");
+            }
+            accessDecision = timed("access-decision",
+                    accessDecisionService.determineAccess(hsid, AccessDecision.ApplicationType.WEB_CL));
+        }
+
+        return accessDecision
+                .doOnNext(decision -> log.info("Access decision: {} - {}",
+                        decision.getAccessMode(),
+                        decision.getDecisionReason()))
+                .onErrorResume(e -> {
+                    log.error("Failed to determine access (continuing with login): {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Start the web-cl access decision for an HSID
+     * The returned Mono replays the result (or error) of the already running decision
+     */
+    private Mono<AccessDecision> startAccessDecision(String hsid) {
+        Mono<AccessDecision> accessDecision = timed("access-decision",
+                accessDecisionService.determineAccess(hsid, AccessDecision.ApplicationType.WEB_CL)).cache();
+        // Errors are handled by whoever consumes the result; an unused result still warms the US/PSN caches
+        accessDecision.subscribe(decision -> { }, e -> log.debug("Early access decision failed for HSID: {}", hsid, e));
+        return accessDecision;
+    }
+
+    /**
+     * Create the session and build the login response
+     * Session ID and expiry are assigned when the write is started, so the cookie value
+     * (stateless mode: encrypted envelope) and the response body are built while the write is in flight.
+     */
+    private Mono<ResponseEntity<TokenExchangeResponse>> createSession(OAuth2Service.TokenResponse tokenResponse,
+                                                                      UserInfo userInfo,
+                                                                      AccessDecision accessDecision,
+                                                                      ServerHttpResponse response) {
+        long accessTokenExpiresAt = System.currentTimeMillis() + (tokenResponse.expires_in * 1000);
+
+        UserSession session = UserSession.builder()
+                .userInfo(userInfo)
+                .accessToken(tokenResponse.access_token)
+                .idToken(tokenResponse.id_token)
+                .refreshToken(tokenResponse.refresh_token)
+                .tokenType(tokenResponse.token_type)
+                .accessTokenExpiresAt(accessTokenExpiresAt)
+                .accessDecision(accessDecision)
+                .build();
+
+        Mono<String> sessionWrite = timed("session-write", sessionService.createSession(session));
+
+        return Mono.zip(sessionWrite, Mono.fromCallable(() -> sessionService.sessionCookieValue(session)))
+                .map(written -> {
+                    // 5. Set HTTP-only cookie (session ID, or envelope in stateless mode)
+                    setSessionCookie(response, written.getT2());
+
+                    // 6. Return user info and session expiration
+                    TokenExchangeResponse exchangeResponse = TokenExchangeResponse.builder()
+                            .user(userInfo)
+                            .expiresAt(session.getExpiresAt().toEpochMilli())
+                            .sessionId(written.getT1())
+                            .build();
+
+                    log.info("Token exchange successful for user: {}", userInfo.getId());
+                    return ResponseEntity.ok(exchangeResponse);
+                });
+    }
+
+    /**
+     * Record the duration of a login stage (auth.login.stage{stage})
+     * Stages overlap, so their sum exceeds the auth.login total when the pipeline helps.
+     */
+    private <T> Mono<T> timed(String stage, Mono<T> stageMono) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return stageMono.doFinally(signal -> sample.stop(meterRegistry.timer("auth.login.stage", "stage", stage)));
+        });
+    }
+
     /**
      * GET /api/auth/user
      * Get current authenticated user
      */
     @GetMapping("/user")
-    public Mono<ResponseEntity<UserInfo>> getCurrentUser(ServerHttpRequest request) {
-        return getSessionFromRequest(request)
+    public Mono<ResponseEntity<UserInfo>> getCurrentUser(ServerWebExchange exchange) {
+        return getSession(exchange)
                 .flatMap(session -> {
                     // Check if token needs refresh
                     if (session.shouldRefreshToken(sessionRefreshThreshold)) {
-                        return refreshSessionTokens(session)
+                        return sessionService.withTokens(session)
+                                .flatMap(tokenRefreshCoordinator::refresh)
                                 .onErrorResume(e -> {
                                     log.error("Failed to refresh tokens", e);
                                     // Continue with existing token
@@ -173,6 +256,7 @@ public class AuthController {
                     }
                     return Mono.just(session);
                 })
+                .flatMap(sessionService::withUserInfo)
                 .map(session -> ResponseEntity.ok(session.getUserInfo()))
                 .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
     }
@@ -182,30 +266,19 @@ public class AuthController {
      * Refresh session and tokens
      */
     @PostMapping("/refresh")
-    public Mono<ResponseEntity<Map<String, Object>>> refreshSession(ServerHttpRequest request) {
-        return getSessionFromRequest(request)
-                .flatMap(session -> oauth2Service.refreshAccessToken(session.getRefreshToken())
-                        .flatMap(tokenResponse -> {
-                            long expiresIn = tokenResponse.expires_in != null ? tokenResponse.expires_in : 3600;
-
-                            return sessionService.updateTokens(
-                                            session.getSessionId(),
-                                            tokenResponse.access_token,
-                                            tokenResponse.id_token,
-                                            tokenResponse.refresh_token,
-                                            expiresIn
-                                    )
-                                    .then(sessionService.extendSession(session.getSessionId()))
-                                    .then(sessionService.getSession(session.getSessionId()))
-                                    .map(updatedSession -> {
-                                        Map<String, Object> response = new HashMap<>();
-                                        response.put("expiresAt", updatedSession.getExpiresAt().toEpochMilli());
-                                        response.put("success", true);
-
-                                        log.info("Session refreshed successfully: {}", session.getSessionId());
-                                        return ResponseEntity.ok(response);
-                                    });
-                        }))
+    public Mono<ResponseEntity<Map<String, Object>>> refreshSession(ServerWebExchange exchange) {
+        return getSession(exchange)
+                .flatMap(sessionService::withTokens)
+                .flatMap(tokenRefreshCoordinator::refresh)
+                // Session expiration was already slid when the session was resolved
+                .map(session -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("expiresAt", session.getExpiresAt().toEpochMilli());
+                    response.put("success", true);
+
+                    log.info("Session refreshed successfully: {}", session.getSessionId());
+                    return ResponseEntity.ok(response);
+                })
                 .onErrorResume(e -> {
                     log.error("Session refresh failed", e);
                     return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
@@ -218,31 +291,14 @@ public class AuthController {
      * Logout user and cleanup session
      */
     @PostMapping("/logout")
-    public Mono<ResponseEntity<Map<String, String>>> logout(
-            ServerHttpRequest request,
-            ServerHttpResponse response
-    ) {
-        return getSessionFromRequest(request)
+    public Mono<ResponseEntity<Map<String, String>>> logout(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        return getSession(exchange)
+                .flatMap(sessionService::withTokens)
                 .flatMap(session -> {
-                    // Revoke tokens at IDP (best effort)
-                    Mono<Void> revokeAccessToken = session.getAccessToken() != null
-                            ? oauth2Service.revokeToken(session.getAccessToken(), "access_token")
-                            .onErrorResume(e -> {
-                                log.warn("Access token revocation failed (continuing with logout): {}", e.getMessage());
-                                return Mono.empty();
-                            })
-                            : Mono.empty();
-
-                    Mono<Void> revokeRefreshToken = session.getRefreshToken() != null
-                            ? oauth2Service.revokeToken(session.getRefreshToken(), "refresh_token")
-                            .onErrorResume(e -> {
-                                log.warn("Refresh token revocation failed (continuing with logout): {}", e.getMessage());
-                                return Mono.empty();
-                            })
-                            : Mono.empty();
-
-                    return Mono.when(revokeAccessToken, revokeRefreshToken)
-                            .then(sessionService.deleteSession(session.getSessionId()))
+                    // Queue tokens for revocation at IDP (TokenRevocationScheduler)
+                    return Mono.when(tokenRevocationQueue.enqueueTokens(session),
+                                    sessionService.deleteSession(session.getSessionId(), session.getUserInfo().getId()))
                             .doOnSuccess(v -> log.info("User logged out: {}", session.getUserInfo().getId()));
                 })
                 .then(Mono.fromRunnable(() -> clearSessionCookie(response)))
@@ -250,6 +306,36 @@ public class AuthController {
                 .defaultIfEmpty(ResponseEntity.ok(Map.of("message", "Logged out successfully")));
     }
 
+    /**
+     * POST /api/auth/logout-all
+     * Logout user from every session ("log out everywhere")
+     * Access and refresh tokens of every session are queued for revocation at the IDP
+     */
+    @PostMapping("/logout-all")
+    public Mono<ResponseEntity<Map<String, Object>>> logoutAll(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        return getSession(exchange)
+                .flatMap(sessionService::withTokens)
+                .flatMap(session -> {
+                    String userId = session.getUserInfo().getId();
+                    String currentSessionId = session.getSessionId();
+                    return tokenRevocationQueue.enqueueTokens(session)
+                            .then(sessionService.deleteUserSessions(userId, ended ->
+                                    currentSessionId.equals(ended.getSessionId())
+                                            ? Mono.empty() // Already queued
+                                            : tokenRevocationQueue.enqueueTokens(ended)))
+                            // Current session may predate the index - make sure it is gone too
+                            .flatMap(count -> sessionService.deleteSession(session.getSessionId(), userId)
+                                    .thenReturn(count))
+                            .doOnNext(count -> log.info("User logged out everywhere: {} ({} sessions)", userId, count));
+                })
+                .doOnNext(count -> clearSessionCookie(response))
+                .map(count -> ResponseEntity.ok(Map.<String, Object>of(
+                        "message", "Logged out from all sessions",
+                        "sessionsEnded", count)))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+    }
+
     /**
      * GET /api/auth/access-decision
      * Get access decision with optional application type
@@ -258,7 +344,7 @@ public class AuthController {
      */
     @GetMapping("/access-decision")
     public Mono<ResponseEntity<AccessDecision>> getAccessDecision(
-            ServerHttpRequest request,
+            ServerWebExchange exchange,
             @RequestParam(value = "app", defaultValue = "web-cl") String appType
     ) {
         // Parse application type
@@ -266,26 +352,36 @@ public class AuthController {
                 ? AccessDecision.ApplicationType.WEB_HS
                 : AccessDecision.ApplicationType.WEB_CL;
 
-        return getSessionFromRequest(request)
+        return getSession(exchange)
+                .flatMap(sessionService::withAccessDecision)
+                .flatMap(sessionService::withUserInfo)
                 .flatMap(session -> {
                     AccessDecision accessDecision = session.getAccessDecision();
 
                     // Check if cached decision matches requested app type
                     if (accessDecision != null && accessDecision.getApplicationType() != applicationType) {
-                        log.info("Cached decision is for different app type, recalculating");
-                        accessDecision = null; // Force recalculation
+                        log.info("Cached decision is for different app type, switching");
+                        accessDecision = null; // Force lookup
                     }
 
                     if (accessDecision == null) {
-                        // Try to determine access if not already cached
-                        String hsid = extractHSID(session.getUserInfo());
-
-                        if (hsid == null || hsid.isEmpty()) {
-                            log.error("No HSID found in session userInfo");
-                            return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).<AccessDecision>body(null));
+                        Mono<AccessDecision> decisionMono;
+                        if (session.getAccessDecisionRef() != null) {
+                            // Both app types are cached together - no US/PSN lookup needed
+                            decisionMono = accessDecisionService.resolve(session.getAccessDecisionRef(), applicationType);
+                        } else {
+                            // Try to determine access if not already cached
+                            String hsid = extractHSID(session.getUserInfo());
+
+                            if (hsid == null || hsid.isEmpty()) {
+                                log.error("No HSID found in session userInfo");
+                                return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).<AccessDecision>body(null));
+                            }
+
+                            decisionMono = accessDecisionService.determineAccess(hsid, applicationType);
                         }
 
-                        return accessDecisionService.determineAccess(hsid, applicationType)
+                        return decisionMono
                                 .flatMap(decision -> sessionService.updateAccessDecision(session.getSessionId(), decision)
                                         .thenReturn(decision))
                                 .doOnSuccess(decision -> log.info("Access decision determined and cached for session: {} (app: {})",
@@ -307,8 +403,9 @@ public class AuthController {
      * Get session information
      */
     @GetMapping("/session")
-    public Mono<ResponseEntity<SessionInfoResponse>> getSessionInfo(ServerHttpRequest request) {
-        return getSessionFromRequest(request)
+    public Mono<ResponseEntity<SessionInfoResponse>> getSessionInfo(ServerWebExchange exchange) {
+        return getSession(exchange)
+                .flatMap(sessionService::withUserInfo)
                 .map(session -> {
                     // Calculate time until token refresh needed
                     long now = System.currentTimeMillis();
@@ -334,24 +431,17 @@ public class AuthController {
     // ========== Helper Methods ==========
 
     /**
-     * Get session from HTTP request cookie
+     * Get session resolved by SessionValidationFilter for this exchange
      */
-    private Mono<UserSession> getSessionFromRequest(ServerHttpRequest request) {
-        return sessionService.getSessionFromRequest(request);
+    private Mono<UserSession> getSession(ServerWebExchange exchange) {
+        return sessionService.getSessionFromExchange(exchange);
     }
 
     /**
      * Set session cookie in response
      */
-    private void setSessionCookie(ServerHttpResponse response, String sessionId) {
-        ResponseCookie cookie = ResponseCookie.from(SESSION_COOKIE_NAME, sessionId)
-                .httpOnly(true)
-                .secure(true) // HTTPS only in production
-                .path("/")
-                .maxAge(Duration.ofSeconds(COOKIE_MAX_AGE))
-                .sameSite("Lax") // CSRF protection
-                .build();
-        response.addCookie(cookie);
+    private void setSessionCookie(ServerHttpResponse response, String cookieValue) {
+        response.addCookie(sessionService.sessionCookie(cookieValue));
     }
 
     /**
@@ -367,40 +457,15 @@ public class AuthController {
         response.addCookie(cookie);
     }
 
-    /**
-     * Refresh session tokens
-     */
-    private Mono<Void> refreshSessionTokens(UserSession session) {
-        return oauth2Service.refreshAccessToken(session.getRefreshToken())
-                .flatMap(tokenResponse -> {
-                    long expiresIn = tokenResponse.expires_in != null ? tokenResponse.expires_in : 3600;
-                    return sessionService.updateTokens(
-                                    session.getSessionId(),
-                                    tokenResponse.access_token,
-                                    tokenResponse.id_token,
-                                    tokenResponse.refresh_token,
-                                    expiresIn
-                            )
-                            .doOnSuccess(v -> log.info("Tokens refreshed for session: {}", session.getSessionId()));
-                });
-    }
-
     /**
      * Extract HSID from UserInfo
      * Required for US and PSN calls
      */
     private String extractHSID(UserInfo userInfo) {
         if (userInfo.getCustomClaims() != null) {
-            // Check for hsid claim
-            Object hsid = userInfo.getCustomClaims().get("hsid");
-            if (hsid != null && !hsid.toString().isEmpty()) {
-                return hsid.toString();
-            }
-
-            // Check for member_id if it's actually HSID
-            Object memberId = userInfo.getCustomClaims().get("member_id");
-            if (memberId != null && !memberId.toString().isEmpty()) {
-                return memberId.toString();
+            String hsid = hsidClaim(userInfo.getCustomClaims());
+            if (hsid != null) {
+                return hsid;
             }
         }
 
@@ -408,4 +473,31 @@ public class AuthController {
         log.warn("No HSID found in userInfo custom claims, using sub claim as fallback");
         return userInfo.getId();
     }
+
+    /**
+     * Extract HSID from (unverified) ID token claims, same rules as for UserInfo
+     */
+    private String extractHSID(Map<String, Object> claims) {
+        String hsid = hsidClaim(claims);
+        if (hsid != null) {
+            return hsid;
+        }
+        Object sub = claims.get("sub");
+        return sub != null && !sub.toString().isEmpty() ? sub.toString() : null;
+    }
+
+    private String hsidClaim(Map<String, Object> claims) {
+        // Check for hsid claim
+        Object hsid = claims.get("hsid");
+        if (hsid != null && !hsid.toString().isEmpty()) {
+            return hsid.toString();
+        }
+
+        // Check for member_id if it's actually HSID
+        Object memberId = claims.get("member_id");
+        if (memberId != null && !memberId.toString().isEmpty()) {
+            return memberId.toString();
+        }
+        return null;
+    }
 }
@@ -8,8 +8,8 @@ import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
@@ -37,12 +37,12 @@ public class DocumentController {
      */
     @PostMapping("/upload/initiate")
     public Mono<ResponseEntity<DocumentUploadResponse>> initiateUpload(
-            ServerHttpRequest request,
+            ServerWebExchange exchange,
             @Valid @RequestBody DocumentUploadRequest uploadRequest
     ) {
         log.info("Initiating document upload for {} files", uploadRequest.getFiles().size());
 
-        return sessionService.getSessionFromRequest(request)
+        return sessionService.getSessionFromExchange(exchange)
                 .switchIfEmpty(Mono.error(new UnauthorizedException("No valid session")))
                 .flatMap(session -> documentService.initiateUpload(uploadRequest, session)
                         .map(ResponseEntity::ok));
@@ -53,12 +53,12 @@ public class DocumentController {
      */
     @PostMapping("/upload/finalize")
     public Mono<ResponseEntity<List<UserDocument>>> finalizeUpload(
-            ServerHttpRequest request,
+            ServerWebExchange exchange,
             @Valid @RequestBody DocumentFinalizeRequest finalizeRequest
     ) {
         log.info("Finalizing upload for {} documents", finalizeRequest.getTempDocumentIds().size());
 
-        return sessionService.getSessionFromRequest(request)
+        return sessionService.getSessionFromExchange(exchange)
                 .switchIfEmpty(Mono.error(new UnauthorizedException("No valid session")))
                 .flatMap(session -> documentService.finalizeUpload(finalizeRequest, session)
                         .map(ResponseEntity::ok));
@@ -69,13 +69,13 @@ public class DocumentController {
      */
     @PostMapping("/search")
     public Mono<ResponseEntity<Page<UserDocument>>> searchDocuments(
-            ServerHttpRequest request,
+            ServerWebExchange exchange,
             @Valid @RequestBody DocumentSearchRequest searchRequest
     ) {
         log.info("Searching documents for owner: {}={}",
                 searchRequest.getOwnerIdType(), searchRequest.getOwnerIdValue());
 
-        return sessionService.getSessionFromRequest(request)
+        return sessionService.getSessionFromExchange(exchange)
                 .switchIfEmpty(Mono.error(new UnauthorizedException("No valid session")))
                 .flatMap(session -> documentService.searchDocuments(searchRequest, session)
                         .map(ResponseEntity::ok));
@@ -86,12 +86,12 @@ public class DocumentController {
      */
     @GetMapping("/{documentId}/download")
     public Mono<ResponseEntity<Map<String, Object>>> getDownloadUrl(
-            ServerHttpRequest request,
+            ServerWebExchange exchange,
             @PathVariable String documentId
     ) {
         log.info("Generating download URL for document: {}", documentId);
 
-        return sessionService.getSessionFromRequest(request)
+        return sessionService.getSessionFromExchange(exchange)
                 .switchIfEmpty(Mono.error(new UnauthorizedException("No valid session")))
                 .flatMap(session -> documentService.getDownloadUrl(documentId, session)
                         .map(downloadUrl -> ResponseEntity.ok(Map.of(
@@ -105,12 +105,12 @@ public class DocumentController {
      */
     @DeleteMapping("/{documentId}")
     public Mono<ResponseEntity<Void>> deleteDocument(
-            ServerHttpRequest request,
+            ServerWebExchange exchange,
             @PathVariable String documentId
     ) {
         log.info("Deleting document: {}", documentId);
 
-        return sessionService.getSessionFromRequest(request)
+        return sessionService.getSessionFromExchange(exchange)
                 .switchIfEmpty(Mono.error(new UnauthorizedException("No valid session")))
                 .flatMap(session -> documentService.deleteDocument(documentId, session)
                         .thenReturn(ResponseEntity.noContent().<Void>build()));
@@ -0,0 +1,184 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.AccessDecisionService;
+import com.example.demo.service.PSNService;
+import com.example.demo.service.SessionService;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Webhook for member relationship / persona change events (US, PSN)
+ * Evicts cached US/PSN data so changes take effect before the cache TTLs expire
+ *
+ * POST /api/events/member-changes
+ * X-Timestamp: 1700000000
+ * X-Signature: hex(HMAC-SHA256(secret, "{X-Timestamp}.{body}"))
+ * {
+ *   "events": [
+ *     {"memberIdType": "HSID", "memberIdValue": "abc123"},
+ *     {"memberIdType": "EID", "memberIdValue": "987"}
+ *   ]
+ * }
+ *
+ * HSID events evict the member's US and PSN entries and access decisions (sessions
+ * rebuild their decision on the next read). EID events evict the member's PSN entry and
+ * do the same for every caregiver whose decision lists the member; other ID types evict
+ * the PSN entry only. Sessions of the affected HSIDs holding a decision copy (not
+ * cached, e.g. after a PSN failure) are rebuilt right away.
+ * Disabled (404) while member-change-events.webhook.secret is empty.
+ *
+ * Signed requests are accepted within max-skew of their timestamp, so a captured request
+ * can be replayed during that window. That is acceptable because events only evict:
+ * eviction is idempotent, and a replay costs at most one extra US/PSN lookup per member.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/events/member-changes")
+public class MemberChangeEventController {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final AccessDecisionService accessDecisionService;
+    private final PSNService psnService;
+    private final SessionService sessionService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final byte[] secret;
+    private final Duration maxSkew;
+    private final int concurrency;
+
+    public MemberChangeEventController(
+            AccessDecisionService accessDecisionService,
+            PSNService psnService,
+            SessionService sessionService,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${member-change-events.webhook.secret:}") String secret,
+            @Value("${member-change-events.webhook.max-skew.seconds:300}") int maxSkewSeconds,
+            @Value("${member-change-events.concurrency:8}") int concurrency
+    ) {
+        this.accessDecisionService = accessDecisionService;
+        this.psnService = psnService;
+        this.sessionService = sessionService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.maxSkew = Duration.ofSeconds(maxSkewSeconds);
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Member change events request
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record MemberChangeEvents(List<MemberChangeEvent> events) {
+    }
+
+    /**
+     * Changed member (HSID, or another PSN member ID type)
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record MemberChangeEvent(String memberIdType, String memberIdValue) {
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<Map<String, Object>>> handleMemberChanges(
+            @RequestHeader(value = "X-Timestamp", required = false) String timestamp,
+            @RequestHeader(value = "X-Signature", required = false) String signature,
+            @RequestBody String body
+    ) {
+        if (secret.length == 0) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        if (!isAuthentic(timestamp, signature, body)) {
+            log.warn("Rejected member change events: invalid or expired signature");
+            count("unauthorized");
+            return Mono.just(ResponseEntity.status(HttpStatus.UNAUTHORIZED).build());
+        }
+
+        MemberChangeEvents request;
+        try {
+            request = objectMapper.readValue(body, MemberChangeEvents.class);
+        } catch (Exception e) {
+            log.warn("Rejected member change events: {}", e.getMessage());
+            count("invalid");
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        List<MemberChangeEvent> events = request.events() != null ? request.events() : List.of();
+
+        log.info("Received {} member change events", events.size());
+        return Flux.fromIterable(events)
+                .filter(event -> event.memberIdType() != null && event.memberIdValue() != null)
+                .flatMap(event -> invalidate(event).thenReturn(event), concurrency)
+                .count()
+                .map(processed -> {
+                    count("accepted");
+                    return ResponseEntity.ok(Map.<String, Object>of("processed", processed));
+                });
+    }
+
+    private Mono<Void> invalidate(MemberChangeEvent event) {
+        if ("HSID".equalsIgnoreCase(event.memberIdType())) {
+            return accessDecisionService.invalidate(event.memberIdValue())
+                    .then(sessionService.refreshAccessDecisionCopies(event.memberIdValue()))
+                    .then();
+        }
+        if ("EID".equalsIgnoreCase(event.memberIdType())) {
+            return accessDecisionService.invalidateCaregivers(event.memberIdValue())
+                    .concatMap(sessionService::refreshAccessDecisionCopies)
+                    .then();
+        }
+        log.info("Evicting cached PSN access level for member: {}={}", event.memberIdType(), event.memberIdValue());
+        return psnService.evict(event.memberIdType(), event.memberIdValue());
+    }
+
+    /**
+     * Signature matches and the timestamp is within the allowed skew (limits replays)
+     */
+    private boolean isAuthentic(String timestamp, String signature, String body) {
+        if (timestamp == null || signature == null) {
+            return false;
+        }
+        try {
+            Instant signedAt = Instant.ofEpochSecond(Long.parseLong(timestamp));
+            if (Duration.between(signedAt, Instant.now()).abs().compareTo(maxSkew) > 0) {
+                return false;
+            }
+
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            byte[] expected = mac.doFinal((timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+            return MessageDigest.isEqual(expected, HexFormat.of().parseHex(signature.toLowerCase()));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            // Malformed timestamp or signature
+            return false;
+        } catch (GeneralSecurityException e) {
+            log.error("HMAC verification unavailable", e);
+            return false;
+        }
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("member-change-events.requests", "outcome", outcome).increment();
+    }
+}
@@ -12,17 +12,22 @@ import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
 
 /**
  * Reactive Session Validation Filter
  *
  * Validates session on every request to protected endpoints:
- * - Extracts session ID from HTTP-only cookie
- * - Validates session exists in Redis
+ * - Extracts session ID (or stateless envelope) from HTTP-only cookie
+ * - Validates session exists in Redis, or verifies the envelope locally
  * - Checks session expiration
- * - Extends session TTL on activity
+ * - Extends session TTL on activity (re-issues the envelope in stateless mode)
+ * - Publishes the resolved session as an exchange attribute
+ *   (SessionService.SESSION_ATTRIBUTE) so controllers don't re-read Redis
  *
  * Skips validation for public endpoints.
  */
@@ -38,7 +43,8 @@ public class SessionValidationFilter implements WebFilter {
             "/api/health",
             "/actuator/health",
             "/actuator/prometheus",
-            "/api/documents/av-callback"
+            "/api/documents/av-callback",
+            "/api/events/member-changes"
     );
 
     private final SessionService sessionService;
@@ -61,37 +67,51 @@ public class SessionValidationFilter implements WebFilter {
             return chain.filter(exchange);
         }
 
-        // Extract session ID from cookie
-        String sessionId = getSessionIdFromCookie(exchange);
+        // Session already resolved earlier in the chain (filter is registered both
+        // in the security chain and as a plain WebFilter)
+        if (exchange.getAttribute(SessionService.SESSION_ATTRIBUTE) != null) {
+            return chain.filter(exchange);
+        }
+
+        // Extract session ID (or envelope) from cookie
+        String cookieValue = getSessionIdFromCookie(exchange);
 
-        if (sessionId == null) {
+        if (cookieValue == null) {
             log.debug("No session cookie found for path: {}", requestPath);
             return sendUnauthorized(exchange, "No session found");
         }
 
-        // Validate session
-        return sessionService.getSession(sessionId)
+        // Validate session - slides the session TTL in redis mode (single read + write)
+        return sessionService.getSessionFromCookie(cookieValue)
                 .flatMap(session -> {
                     // Check if token needs refresh (automatic token refresh)
                     if (session.shouldRefreshToken(sessionRefreshThreshold)) {
-                        log.info("Token close to expiration for session: {} (will be refreshed by client)", sessionId);
+                        log.info("Token close to expiration for session: {} (will be refreshed by client)",
+                                session.getSessionId());
                         // Note: In reactive pattern, we don't block here for refresh
                         // The client should handle token refresh via /api/auth/refresh endpoint
                     }
 
-                    // Session is valid - extend session TTL
-                    return sessionService.extendSession(sessionId)
-                            .doOnSuccess(v -> log.debug("Extended session TTL: {}", sessionId))
+                    // Session is valid - publish it for downstream controllers and services
+                    exchange.getAttributes().put(SessionService.SESSION_ATTRIBUTE, session);
+
+                    // Stateless mode: refresh the envelope cookie when it needs to change.
+                    // Failures (e.g. Redis unavailable) keep the current cookie.
+                    return sessionService.reissueCookieValue(session)
+                            .doOnNext(value -> exchange.getResponse().addCookie(sessionService.sessionCookie(value)))
                             .onErrorResume(e -> {
-                                log.warn("Failed to extend session TTL (continuing): {}", e.getMessage());
+                                log.warn("Failed to re-issue session envelope: {}", e.getMessage());
                                 return Mono.empty();
                             })
-                            .then(chain.filter(exchange));
+                            .then(chain.filter(exchange))
+                            .thenReturn(true);
                 })
                 .switchIfEmpty(Mono.defer(() -> {
-                    log.warn("Invalid or expired session: {}", sessionId);
-                    return sendUnauthorized(exchange, "Session expired");
-                }));
+                    // The cookie is a bearer credential (the envelope in stateless mode) - log a fingerprint only
+                    log.warn("Invalid or expired session: cookie {}", fingerprint(cookieValue));
+                    return sendUnauthorized(exchange, "Session expired").thenReturn(false);
+                }))
+                .then();
     }
 
     /**
@@ -109,6 +129,18 @@ public class SessionValidationFilter implements WebFilter {
         return cookie != null ? cookie.getValue() : null;
     }
 
+    /**
+     * Short, non-reversible identifier of a cookie value for logs
+     */
+    private static String fingerprint(String cookieValue) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(cookieValue.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Send 401 Unauthorized response
      */
@@ -1,6 +1,7 @@
 package com.example.demo.health;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
@@ -21,7 +22,7 @@ public class OAuth2HealthIndicator implements HealthIndicator {
     private final String issuerUri;
 
     public OAuth2HealthIndicator(
-            WebClient webClient,
+            @Qualifier("idpWebClient") WebClient webClient,
             @Value("${spring.security.oauth2.client.provider.idp.issuer-uri}") String issuerUri
     ) {
         this.webClient = webClient;
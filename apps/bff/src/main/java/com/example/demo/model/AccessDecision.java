@@ -1,16 +1,26 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Final access decision for web-cl
  * Determines what data the member can view
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class AccessDecision {
@@ -106,7 +116,7 @@ public class AccessDecision {
      * For SELF_ONLY: Contains only self
      * For SUPPORTING_OTHERS: Contains supported members (not self)
      */
-    private java.util.List<SupportedMember> viewableMembers;
+    private List<SupportedMember> viewableMembers;
 
     /**
      * Explanation of access decision (for debugging)
@@ -117,4 +127,49 @@ public class AccessDecision {
      * Timestamp when this decision was made
      */
     private String decidedAt;
+
+    /**
+     * Digest of the US/PSN inputs this decision was built from
+     * Null for decisions that are not cached (degraded by a US or PSN failure)
+     */
+    private String inputVersion;
+
+    /**
+     * Capability index of viewableMembers, not serialized: it is derived data, and
+     * storing it would duplicate viewableMembers in every cached decision and session copy
+     * Set by AccessPolicyEngine when the decision is made, and by setViewableMembers
+     * when a stored decision is read back
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient MemberCapabilities capabilities;
+
+    public void setViewableMembers(List<SupportedMember> viewableMembers) {
+        this.viewableMembers = viewableMembers;
+        this.capabilities = MemberCapabilities.of(viewableMembers);
+    }
+
+    /**
+     * Deep copy (US, PSN and viewable member data included); the capability index is immutable and shared
+     */
+    public AccessDecision copy() {
+        return toBuilder()
+                .biometricInfo(biometricInfo != null ? biometricInfo.copy() : null)
+                .accessLevel(accessLevel != null ? accessLevel.copy() : null)
+                .viewableMembers(viewableMembers != null
+                        ? viewableMembers.stream().map(SupportedMember::copy).collect(Collectors.toCollection(ArrayList::new))
+                        : null)
+                .build();
+    }
+
+    /**
+     * Capabilities per viewable member (see MemberCapabilities)
+     * A decision built without an index grants nothing
+     */
+    public MemberCapabilities capabilities() {
+        return capabilities != null ? capabilities : MemberCapabilities.none();
+    }
 }
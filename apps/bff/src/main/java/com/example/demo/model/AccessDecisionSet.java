@@ -0,0 +1,46 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Access decisions for all application types
+ *
+ * Built in one pass from the same US/PSN inputs and cached per (hsid, input version)
+ * by AccessDecisionService. Sessions reference an entry instead of holding a copy.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccessDecisionSet {
+
+    /**
+     * Member's HSID
+     */
+    private String hsid;
+
+    /**
+     * Digest of the US/PSN inputs the decisions were built from
+     */
+    private String inputVersion;
+
+    /**
+     * Decision for web-cl
+     */
+    private AccessDecision webCl;
+
+    /**
+     * Decision for web-hs
+     */
+    private AccessDecision webHs;
+
+    /**
+     * Decision for the given application type
+     */
+    public AccessDecision forApplication(AccessDecision.ApplicationType applicationType) {
+        return applicationType == AccessDecision.ApplicationType.WEB_HS ? webHs : webCl;
+    }
+}
@@ -5,14 +5,16 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Response containing access level information for the logged-in member.
  * Includes the member's own access and list of people they can support.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class AccessLevelResponse {
@@ -50,4 +52,15 @@ public class AccessLevelResponse {
      * Cache expiration time in seconds (how long this data is valid)
      */
     private Long expiresIn;
+
+    /**
+     * Deep copy (supported members included)
+     */
+    public AccessLevelResponse copy() {
+        return toBuilder()
+                .supportedMembers(supportedMembers != null
+                        ? supportedMembers.stream().map(SupportedMember::copy).collect(Collectors.toCollection(ArrayList::new))
+                        : null)
+                .build();
+    }
 }
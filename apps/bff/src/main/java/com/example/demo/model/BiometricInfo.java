@@ -10,7 +10,7 @@ import lombok.NoArgsConstructor;
  * Used to determine age-based access and persona attributes
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class BiometricInfo {
@@ -64,4 +64,11 @@ public class BiometricInfo {
      * Cache expiration time in seconds
      */
     private Long expiresIn;
+
+    /**
+     * Copy (all attributes are immutable values)
+     */
+    public BiometricInfo copy() {
+        return toBuilder().build();
+    }
 }
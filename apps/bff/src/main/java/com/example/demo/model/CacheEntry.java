@@ -0,0 +1,32 @@
+package com.example.demo.model;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Cache Entry
+ *
+ * Redis cache value for downstream lookups (see CoalescingCache): the value plus
+ * the time it was fetched, so soft and hard TTLs can be applied on read.
+ * The value carries its own type metadata, as it is declared generically.
+ *
+ * @param <V> Value type
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheEntry<V> {
+
+    /**
+     * Cached value
+     */
+    @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class")
+    private V value;
+
+    /**
+     * Time the value was fetched from the origin (epoch milliseconds)
+     */
+    private long fetchedAt;
+}
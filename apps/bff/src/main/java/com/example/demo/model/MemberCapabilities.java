@@ -0,0 +1,120 @@
+package com.example.demo.model;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Capability index of an access decision's viewable members
+ * Maps each member's (ID type, ID value) to a bitmask of what the logged-in user
+ * may do with that member's data, so document authorization is a single lookup
+ * instead of a scan of the viewable members. Supported members are indexed under
+ * their EID, the member's own entry ("self") under its HSID. ID types are matched
+ * case-insensitively; PSN only reports EIDs for supported members, so an ID value
+ * under any ID type other than HSID (EID, OHID, MSID, ...) is looked up by value
+ * among the supported members, as documents stored for dependents may use any of them.
+ */
+public final class MemberCapabilities {
+
+    /**
+     * Member is viewable
+     */
+    public static final int VIEW = 1;
+
+    /**
+     * Digital account access (upload, delete)
+     */
+    public static final int DAA = 1 << 1;
+
+    /**
+     * Sensitive data access (ROI)
+     */
+    public static final int ROI = 1 << 2;
+
+    /**
+     * ID type of supported members
+     */
+    public static final String EID = "EID";
+
+    /**
+     * ID type of the member's own entry
+     */
+    public static final String HSID = "HSID";
+
+    private static final MemberCapabilities EMPTY = new MemberCapabilities(Collections.emptyMap(), Collections.emptyMap());
+
+    // HSID -> capabilities of the member's own entry
+    private final Map<String, Integer> selfCapabilities;
+    // EID -> capabilities of a supported member
+    private final Map<String, Integer> supportedCapabilities;
+
+    private MemberCapabilities(Map<String, Integer> selfCapabilities, Map<String, Integer> supportedCapabilities) {
+        this.selfCapabilities = selfCapabilities;
+        this.supportedCapabilities = supportedCapabilities;
+    }
+
+    /**
+     * Index without viewable members
+     */
+    public static MemberCapabilities none() {
+        return EMPTY;
+    }
+
+    /**
+     * Build the index
+     *
+     * @param viewableMembers Viewable members of a decision (may be null)
+     * @return Index; a member listed more than once gets the union of its capabilities
+     */
+    public static MemberCapabilities of(List<SupportedMember> viewableMembers) {
+        if (viewableMembers == null || viewableMembers.isEmpty()) {
+            return EMPTY;
+        }
+
+        Map<String, Integer> selfCapabilities = new HashMap<>(2);
+        Map<String, Integer> supportedCapabilities = new HashMap<>(viewableMembers.size() * 2);
+        for (SupportedMember member : viewableMembers) {
+            if (member.getEid() == null) {
+                continue;
+            }
+            int capabilities = VIEW;
+            if (Boolean.TRUE.equals(member.getHasDigitalAccountAccess())) {
+                capabilities |= DAA;
+            }
+            if (Boolean.TRUE.equals(member.getHasSensitiveDataAccess())) {
+                capabilities |= ROI;
+            }
+            Map<String, Integer> index = "self".equalsIgnoreCase(member.getRelationship())
+                    ? selfCapabilities
+                    : supportedCapabilities;
+            index.merge(member.getEid(), capabilities, (a, b) -> a | b);
+        }
+        return new MemberCapabilities(selfCapabilities, supportedCapabilities);
+    }
+
+    /**
+     * Capabilities for a member, 0 if the member is not viewable
+     *
+     * @param idType ID type (any case); HSID for the member's own entry, any other for supported members
+     * @param idValue ID value
+     */
+    public int get(String idType, String idValue) {
+        if (idType == null || idValue == null) {
+            return 0;
+        }
+        Map<String, Integer> index = HSID.equals(idType.toUpperCase(Locale.ROOT))
+                ? selfCapabilities
+                : supportedCapabilities;
+        Integer capabilities = index.get(idValue);
+        return capabilities != null ? capabilities : 0;
+    }
+
+    /**
+     * Whether all the given capabilities are granted for a member
+     */
+    public boolean has(String idType, String idValue, int capabilities) {
+        return (get(idType, idValue) & capabilities) == capabilities;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Session Envelope
+ *
+ * Identity snapshot carried in the session cookie in stateless session mode.
+ * Encrypted and authenticated (JWE) by SessionEnvelopeCodec, so it can be
+ * trusted without a Redis read. Tokens are never part of the envelope.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionEnvelope {
+
+    /**
+     * Session ID (key of the full session in Redis)
+     */
+    private String sessionId;
+
+    /**
+     * User ID (IDP sub claim)
+     */
+    private String userId;
+
+    /**
+     * Logged-in member's ID type and value
+     */
+    private String idType;
+    private String idValue;
+
+    /**
+     * Display attributes needed on the request path
+     */
+    private String preferredUsername;
+    private String firstName;
+    private String lastName;
+
+    /**
+     * Access token expiration time (epoch milliseconds) when the envelope was issued
+     */
+    private Long accessTokenExpiresAt;
+
+    /**
+     * Envelope issue and expiration time
+     */
+    private Instant issuedAt;
+    private Instant expiresAt;
+
+    /**
+     * Check if envelope is expired
+     */
+    public boolean isExpired() {
+        return expiresAt == null || Instant.now().isAfter(expiresAt);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.model;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Session field groups
+ *
+ * Groups of UserSession attributes that are read and written together.
+ * With the hash session layout each attribute is stored as its own hash field,
+ * so callers can read (HMGET) or update (HSET) only the groups they need.
+ */
+public enum SessionField {
+
+    /**
+     * Identity: user info and token type
+     */
+    CORE("userInfo", "tokenType"),
+
+    /**
+     * OAuth2 tokens from IDP
+     */
+    TOKENS("accessToken", "idToken", "refreshToken", "refreshTokenExpiresAt"),
+
+    /**
+     * Access token expiration (needed to decide on token refresh)
+     */
+    TOKEN_EXPIRY("accessTokenExpiresAt"),
+
+    /**
+     * Session lifecycle timestamps
+     */
+    TIMESTAMPS("createdAt", "lastAccessedAt", "expiresAt"),
+
+    /**
+     * Access decision from AccessDecisionService (reference to the cached decision, or a copy)
+     * Written as a whole: storing the copy clears the reference and vice versa
+     */
+    ACCESS_DECISION(true, "accessDecision", "accessDecisionRef");
+
+    /**
+     * All field groups (the complete session)
+     */
+    public static final Set<SessionField> ALL = EnumSet.allOf(SessionField.class);
+
+    /**
+     * Hot fields read on every request: identity, expiry and token expiry.
+     * Tokens and access decision are cold and loaded on demand.
+     */
+    public static final Set<SessionField> HOT = EnumSet.of(CORE, TOKEN_EXPIRY, TIMESTAMPS);
+
+    private final boolean replacedAsWhole;
+    private final List<String> attributes;
+
+    SessionField(String... attributes) {
+        this(false, attributes);
+    }
+
+    SessionField(boolean replacedAsWhole, String... attributes) {
+        this.replacedAsWhole = replacedAsWhole;
+        this.attributes = List.of(attributes);
+    }
+
+    /**
+     * UserSession attribute names in this group (also used as hash field names)
+     */
+    public List<String> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Whether an update replaces the whole group, i.e. null attributes of a patch clear
+     * the stored values (otherwise they are left unchanged)
+     */
+    public boolean isReplacedAsWhole() {
+        return replacedAsWhole;
+    }
+
+    /**
+     * Short label for a set of field groups (used as a metric tag)
+     */
+    public static String describe(Set<SessionField> fields) {
+        if (fields.containsAll(ALL)) {
+            return "all";
+        }
+        if (fields.equals(HOT)) {
+            return "hot";
+        }
+        return fields.stream()
+                .map(field -> field.name().toLowerCase())
+                .sorted()
+                .collect(Collectors.joining("+"));
+    }
+}
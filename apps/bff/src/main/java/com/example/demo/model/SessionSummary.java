@@ -0,0 +1,48 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Session Summary DTO
+ *
+ * One entry of GET /api/admin/users/{userId}/sessions
+ * Session metadata only - never tokens or user attributes
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionSummary {
+
+    /**
+     * Session ID
+     */
+    private String sessionId;
+
+    /**
+     * Session creation time (epoch milliseconds)
+     */
+    private Long createdAt;
+
+    /**
+     * Last recorded activity (epoch milliseconds)
+     */
+    private Long lastAccessedAt;
+
+    /**
+     * Session expiration time (epoch milliseconds)
+     */
+    private Long expiresAt;
+
+    public static SessionSummary from(UserSession session) {
+        return SessionSummary.builder()
+                .sessionId(session.getSessionId())
+                .createdAt(session.getCreatedAt() != null ? session.getCreatedAt().toEpochMilli() : null)
+                .lastAccessedAt(session.getLastAccessedAt() != null ? session.getLastAccessedAt().toEpochMilli() : null)
+                .expiresAt(session.getExpiresAt() != null ? session.getExpiresAt().toEpochMilli() : null)
+                .build();
+    }
+}
@@ -10,7 +10,7 @@ import lombok.NoArgsConstructor;
  * Contains member identification and basic info from PSN.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class SupportedMember {
@@ -58,4 +58,13 @@ public class SupportedMember {
      * Whether this relationship grants sensitive data access (RRP + DAA + ROI)
      */
     private Boolean hasSensitiveDataAccess;
+
+    /**
+     * Deep copy (personas list included)
+     */
+    public SupportedMember copy() {
+        return toBuilder()
+                .personas(personas != null ? new java.util.ArrayList<>(personas) : null)
+                .build();
+    }
 }
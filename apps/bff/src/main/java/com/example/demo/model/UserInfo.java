@@ -6,6 +6,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -15,7 +17,7 @@ import java.util.List;
  * Stored in Redis session and returned to frontend.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class UserInfo implements Serializable {
@@ -101,4 +103,16 @@ public class UserInfo implements Serializable {
      * Additional custom claims from ID token
      */
     private java.util.Map<String, Object> customClaims;
+
+    /**
+     * Copy with its own roles, permissions and custom claims collections
+     * (claim values themselves are shared)
+     */
+    public UserInfo copy() {
+        return toBuilder()
+                .roles(roles != null ? new ArrayList<>(roles) : null)
+                .permissions(permissions != null ? new ArrayList<>(permissions) : null)
+                .customClaims(customClaims != null ? new HashMap<>(customClaims) : null)
+                .build();
+    }
 }
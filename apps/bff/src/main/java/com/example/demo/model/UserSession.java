@@ -1,5 +1,6 @@
 package com.example.demo.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 
 import java.io.Serializable;
 import java.time.Instant;
+import java.util.Set;
 
 /**
  * User Session Model
@@ -16,7 +18,7 @@ import java.time.Instant;
  * Never exposed to frontend - only session ID in HTTP-only cookie.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class UserSession implements Serializable {
@@ -84,6 +86,28 @@ public class UserSession implements Serializable {
      */
     private AccessDecision accessDecision;
 
+    /**
+     * Reference to the cached access decision ({applicationType}:{inputVersion}:{hsid})
+     * Stored instead of a copy of cached decisions and takes precedence over accessDecision;
+     * resolved into accessDecision by SessionService.withAccessDecision
+     */
+    private String accessDecisionRef;
+
+    /**
+     * Field groups loaded from the session store (null = complete session).
+     * The hash layout loads only the hot fields per request; cold fields
+     * (tokens, access decision) are loaded on demand via SessionService.
+     */
+    @JsonIgnore
+    private transient Set<SessionField> loadedFields;
+
+    /**
+     * Envelope the session was resolved from (stateless session mode only).
+     * userInfo then only holds the identity attributes carried in the envelope.
+     */
+    @JsonIgnore
+    private transient SessionEnvelope envelope;
+
     /**
      * Check if access token is expired or about to expire
      *
@@ -113,4 +137,48 @@ public class UserSession implements Serializable {
     public void updateLastAccessed() {
         this.lastAccessedAt = Instant.now();
     }
+
+    /**
+     * Check whether the given field groups are available in this instance
+     */
+    public boolean hasFields(Set<SessionField> fields) {
+        return loadedFields == null || loadedFields.containsAll(fields);
+    }
+
+    /**
+     * Copy the given field groups from another session
+     * Null attributes in the patch are left unchanged, except in groups replaced as a whole
+     * (see SessionField.isReplacedAsWhole)
+     *
+     * @param patch Session holding the new values
+     * @param fields Field groups to copy
+     */
+    public void mergeFrom(UserSession patch, Set<SessionField> fields) {
+        for (SessionField field : fields) {
+            switch (field) {
+                case CORE -> {
+                    if (patch.userInfo != null) userInfo = patch.userInfo;
+                    if (patch.tokenType != null) tokenType = patch.tokenType;
+                }
+                case TOKENS -> {
+                    if (patch.accessToken != null) accessToken = patch.accessToken;
+                    if (patch.idToken != null) idToken = patch.idToken;
+                    if (patch.refreshToken != null) refreshToken = patch.refreshToken;
+                    if (patch.refreshTokenExpiresAt != null) refreshTokenExpiresAt = patch.refreshTokenExpiresAt;
+                }
+                case TOKEN_EXPIRY -> {
+                    if (patch.accessTokenExpiresAt != null) accessTokenExpiresAt = patch.accessTokenExpiresAt;
+                }
+                case TIMESTAMPS -> {
+                    if (patch.createdAt != null) createdAt = patch.createdAt;
+                    if (patch.lastAccessedAt != null) lastAccessedAt = patch.lastAccessedAt;
+                    if (patch.expiresAt != null) expiresAt = patch.expiresAt;
+                }
+                case ACCESS_DECISION -> {
+                    accessDecision = patch.accessDecision;
+                    accessDecisionRef = patch.accessDecisionRef;
+                }
+            }
+        }
+    }
 }
@@ -27,6 +27,17 @@ public interface DocumentRepository extends ReactiveMongoRepository<UserDocument
             Pageable pageable
     );
 
+    /**
+     * Find documents by owner, leaving out sensitive ones (isSensitive = true)
+     */
+    Flux<UserDocument> findByOwnerIdTypeAndOwnerIdValueAndStatusAndIsSensitiveNot(
+            String ownerIdType,
+            String ownerIdValue,
+            UserDocument.DocumentStatus status,
+            Boolean isSensitive,
+            Pageable pageable
+    );
+
     /**
      * Find all documents uploaded by a user
      */
@@ -86,6 +97,29 @@ public interface DocumentRepository extends ReactiveMongoRepository<UserDocument
             Pageable pageable
     );
 
+    /**
+     * Search documents by filename or description, leaving out sensitive ones
+     */
+    @Query("{ " +
+            "'ownerIdType': ?0, " +
+            "'ownerIdValue': ?1, " +
+            "'status': ?2, " +
+            "'isSensitive': {$ne: true}, " +
+            "$or: [" +
+            "  {'fileName': {$regex: ?3, $options: 'i'}}, " +
+            "  {'originalFileName': {$regex: ?3, $options: 'i'}}, " +
+            "  {'description': {$regex: ?3, $options: 'i'}}, " +
+            "  {'extractedText': {$regex: ?3, $options: 'i'}}" +
+            "]" +
+            "}")
+    Flux<UserDocument> searchNonSensitiveDocuments(
+            String ownerIdType,
+            String ownerIdValue,
+            UserDocument.DocumentStatus status,
+            String searchQuery,
+            Pageable pageable
+    );
+
     /**
      * Find documents by tags
      */
@@ -106,6 +140,16 @@ public interface DocumentRepository extends ReactiveMongoRepository<UserDocument
             UserDocument.DocumentStatus status
     );
 
+    /**
+     * Count documents by owner, leaving out sensitive ones
+     */
+    Mono<Long> countByOwnerIdTypeAndOwnerIdValueAndStatusAndIsSensitiveNot(
+            String ownerIdType,
+            String ownerIdValue,
+            UserDocument.DocumentStatus status,
+            Boolean isSensitive
+    );
+
     /**
      * Find document by temporary S3 key (for AV callback)
      */
@@ -0,0 +1,42 @@
+package com.example.demo.scheduler;
+
+import com.example.demo.service.SessionRevocationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job to sync revoked sessions from Redis (stateless session mode only)
+ * Runs every 5 seconds by default
+ */
+@Slf4j
+@Component
+public class SessionRevocationSyncScheduler {
+
+    private final SessionRevocationService sessionRevocationService;
+    private final boolean stateless;
+
+    public SessionRevocationSyncScheduler(
+            SessionRevocationService sessionRevocationService,
+            @Value("${session.mode:redis}") String sessionMode
+    ) {
+        this.sessionRevocationService = sessionRevocationService;
+        this.stateless = "stateless".equalsIgnoreCase(sessionMode);
+    }
+
+    @Scheduled(fixedDelayString = "${session.stateless.revocation.sync-interval.millis:5000}")
+    public void syncRevocations() {
+        if (!stateless) {
+            return;
+        }
+
+        try {
+            Integer revoked = sessionRevocationService.sync().block();
+            log.debug("Synced session revocations ({} active)", revoked);
+        } catch (Exception e) {
+            // Keep serving with the last synced list
+            log.warn("Failed to sync session revocations: {}", e.getMessage());
+        }
+    }
+}
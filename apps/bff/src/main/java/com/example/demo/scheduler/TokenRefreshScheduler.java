@@ -0,0 +1,156 @@
+package com.example.demo.scheduler;
+
+import com.example.demo.model.UserSession;
+import com.example.demo.service.SessionService;
+import com.example.demo.service.TokenRefreshCoordinator;
+import com.example.demo.service.TokenRefreshSchedule;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Scheduled job to refresh access tokens before requests need them
+ *
+ * Each run claims sessions from the refresh schedule whose access token expires
+ * within the refresh threshold plus a lead time, and refreshes them with bounded
+ * concurrency through TokenRefreshCoordinator (so a concurrent request-path refresh
+ * is reused, not repeated). Sessions idle for longer than the active window are
+ * dropped from the schedule; they refresh on the request path if the user returns.
+ * Sessions whose tokens were refreshed since they became due (e.g. on the request
+ * path) are skipped and stay scheduled at their new expiry, so a just-issued
+ * (possibly rotated) refresh token is not spent again.
+ *
+ * Metrics: session.token.proactive-refresh tagged outcome=refreshed|current|idle|missing|failed,
+ * and session.token.proactive-refresh.batch (run duration)
+ */
+@Slf4j
+@Component
+public class TokenRefreshScheduler {
+
+    private final TokenRefreshSchedule tokenRefreshSchedule;
+    private final TokenRefreshCoordinator tokenRefreshCoordinator;
+    private final SessionService sessionService;
+    private final Duration dueWindow;
+    private final int dueWindowSeconds;
+    private final Duration activeWindow;
+    private final Duration claimTtl;
+    private final int batchSize;
+    private final int concurrency;
+    private final Timer batchTimer;
+    private final Counter refreshed;
+    private final Counter current;
+    private final Counter idle;
+    private final Counter missing;
+    private final Counter failed;
+
+    public TokenRefreshScheduler(
+            TokenRefreshSchedule tokenRefreshSchedule,
+            TokenRefreshCoordinator tokenRefreshCoordinator,
+            SessionService sessionService,
+            MeterRegistry meterRegistry,
+            @Value("${session.refresh.threshold.seconds:300}") int refreshThresholdSeconds,
+            @Value("${session.refresh.proactive.lead.seconds:60}") int leadSeconds,
+            @Value("${session.refresh.proactive.active-window.minutes:10}") int activeWindowMinutes,
+            @Value("${session.refresh.proactive.claim.seconds:30}") int claimSeconds,
+            @Value("${session.refresh.proactive.batch-size:100}") int batchSize,
+            @Value("${session.refresh.proactive.concurrency:8}") int concurrency
+    ) {
+        this.tokenRefreshSchedule = tokenRefreshSchedule;
+        this.tokenRefreshCoordinator = tokenRefreshCoordinator;
+        this.sessionService = sessionService;
+        this.dueWindowSeconds = refreshThresholdSeconds + leadSeconds;
+        this.dueWindow = Duration.ofSeconds(dueWindowSeconds);
+        this.activeWindow = Duration.ofMinutes(activeWindowMinutes);
+        this.claimTtl = Duration.ofSeconds(claimSeconds);
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.batchTimer = Timer.builder("session.token.proactive-refresh.batch")
+                .description("Duration of a proactive token refresh run")
+                .register(meterRegistry);
+        this.refreshed = outcomeCounter(meterRegistry, "refreshed");
+        this.current = outcomeCounter(meterRegistry, "current");
+        this.idle = outcomeCounter(meterRegistry, "idle");
+        this.missing = outcomeCounter(meterRegistry, "missing");
+        this.failed = outcomeCounter(meterRegistry, "failed");
+    }
+
+    /**
+     * Refresh tokens that expire before the request path would refresh them
+     * Runs every 15 seconds by default
+     */
+    @Scheduled(fixedDelayString = "${session.refresh.proactive.interval.millis:15000}", initialDelay = 30000)
+    public void refreshExpiringTokens() {
+        if (!tokenRefreshSchedule.isEnabled()) {
+            return;
+        }
+
+        try {
+            Long processed = batchTimer.record(() -> tokenRefreshSchedule
+                    .claimDue(System.currentTimeMillis() + dueWindow.toMillis(), batchSize, claimTtl)
+                    .flatMap(this::refreshSession, concurrency)
+                    .count()
+                    .block());
+
+            if (processed != null && processed > 0) {
+                log.info("Proactive token refresh processed {} sessions", processed);
+            }
+        } catch (Exception e) {
+            log.error("Error during proactive token refresh", e);
+        }
+    }
+
+    private Mono<Boolean> refreshSession(String sessionId) {
+        return sessionService.peekSession(sessionId)
+                .flatMap(session -> {
+                    if (!isActive(session)) {
+                        log.debug("Session idle, dropping from refresh schedule: {}", sessionId);
+                        idle.increment();
+                        return tokenRefreshSchedule.unschedule(sessionId).thenReturn(false);
+                    }
+
+                    // Coordinator re-schedules the session with its new expiry via updateTokens
+                    return sessionService.withTokens(session)
+                            .flatMap(withTokens -> {
+                                // Refreshed since it was claimed: updateTokens already re-scheduled it
+                                if (!withTokens.shouldRefreshToken(dueWindowSeconds)) {
+                                    log.debug("Tokens no longer due, skipping session: {}", sessionId);
+                                    current.increment();
+                                    return Mono.empty();
+                                }
+                                return tokenRefreshCoordinator.refresh(withTokens)
+                                        .doOnNext(s -> refreshed.increment());
+                            })
+                            .hasElement()
+                            .onErrorResume(e -> {
+                                log.warn("Proactive token refresh failed for session {}: {}", sessionId, e.getMessage());
+                                failed.increment();
+                                // Leave it to the request path rather than retrying every run
+                                return tokenRefreshSchedule.unschedule(sessionId).thenReturn(false);
+                            });
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    missing.increment();
+                    return tokenRefreshSchedule.unschedule(sessionId).thenReturn(false);
+                }));
+    }
+
+    private boolean isActive(UserSession session) {
+        Instant lastAccessedAt = session.getLastAccessedAt();
+        return lastAccessedAt != null && lastAccessedAt.plus(activeWindow).isAfter(Instant.now());
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("session.token.proactive-refresh")
+                .description("Proactive token refreshes by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.demo.scheduler;
+
+import com.example.demo.service.OAuth2Service;
+import com.example.demo.service.TokenRevocationQueue;
+import com.example.demo.service.TokenRevocationQueue.RevocationJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scheduled job to revoke queued tokens at the IDP
+ *
+ * Each run claims due jobs from the revocation queue and revokes them with bounded
+ * concurrency. Failed revocations are retried with exponential backoff up to the
+ * maximum number of attempts; 4xx responses other than 429 are not retried, since the
+ * IDP will reject the token again.
+ *
+ * Metrics: oauth2.revocation tagged outcome=revoked|retried|rejected|dropped,
+ * and oauth2.revocation.queue.depth (queued jobs, sampled every run)
+ */
+@Slf4j
+@Component
+public class TokenRevocationScheduler {
+
+    private final TokenRevocationQueue tokenRevocationQueue;
+    private final OAuth2Service oauth2Service;
+    private final Duration claimTtl;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int maxAttempts;
+    private final int batchSize;
+    private final int concurrency;
+    private final AtomicLong depth = new AtomicLong();
+    private final Counter revoked;
+    private final Counter retried;
+    private final Counter rejected;
+    private final Counter dropped;
+
+    public TokenRevocationScheduler(
+            TokenRevocationQueue tokenRevocationQueue,
+            OAuth2Service oauth2Service,
+            MeterRegistry meterRegistry,
+            @Value("${auth.revocation.claim.seconds:30}") int claimSeconds,
+            @Value("${auth.revocation.backoff.initial.seconds:5}") int initialBackoffSeconds,
+            @Value("${auth.revocation.backoff.max.seconds:600}") int maxBackoffSeconds,
+            @Value("${auth.revocation.max-attempts:10}") int maxAttempts,
+            @Value("${auth.revocation.batch-size:100}") int batchSize,
+            @Value("${auth.revocation.concurrency:8}") int concurrency
+    ) {
+        this.tokenRevocationQueue = tokenRevocationQueue;
+        this.oauth2Service = oauth2Service;
+        this.claimTtl = Duration.ofSeconds(claimSeconds);
+        this.initialBackoff = Duration.ofSeconds(initialBackoffSeconds);
+        this.maxBackoff = Duration.ofSeconds(maxBackoffSeconds);
+        this.maxAttempts = maxAttempts;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        Gauge.builder("oauth2.revocation.queue.depth", depth, AtomicLong::get)
+                .description("Token revocations waiting in the queue")
+                .register(meterRegistry);
+        this.revoked = outcomeCounter(meterRegistry, "revoked");
+        this.retried = outcomeCounter(meterRegistry, "retried");
+        this.rejected = outcomeCounter(meterRegistry, "rejected");
+        this.dropped = outcomeCounter(meterRegistry, "dropped");
+    }
+
+    /**
+     * Revoke due tokens
+     * Runs every second by default
+     */
+    @Scheduled(fixedDelayString = "${auth.revocation.interval.millis:1000}", initialDelay = 10000)
+    public void revokeQueuedTokens() {
+        try {
+            Long processed = tokenRevocationQueue
+                    .claimDue(System.currentTimeMillis(), batchSize, claimTtl)
+                    .flatMap(this::revoke, concurrency)
+                    .count()
+                    .block();
+
+            if (processed != null && processed > 0) {
+                log.info("Token revocation processed {} jobs", processed);
+            }
+
+            Long queued = tokenRevocationQueue.depth().block();
+            depth.set(queued != null ? queued : 0);
+        } catch (Exception e) {
+            log.error("Error during token revocation", e);
+        }
+    }
+
+    private Mono<Void> revoke(RevocationJob job) {
+        return oauth2Service.revokeToken(job.token(), job.tokenTypeHint())
+                .then(Mono.defer(() -> {
+                    revoked.increment();
+                    return tokenRevocationQueue.remove(job);
+                }))
+                .onErrorResume(e -> {
+                    if (isRejected(e)) {
+                        log.warn("IDP rejected {} revocation, dropping job {}: {}", job.tokenTypeHint(), job.id(), e.getMessage());
+                        rejected.increment();
+                        return tokenRevocationQueue.remove(job);
+                    }
+                    if (job.attempts() + 1 >= maxAttempts) {
+                        log.error("Giving up {} revocation after {} attempts, dropping job {}: {}",
+                                job.tokenTypeHint(), job.attempts() + 1, job.id(), e.getMessage());
+                        dropped.increment();
+                        return tokenRevocationQueue.remove(job);
+                    }
+                    Duration backoff = backoff(job.attempts());
+                    log.warn("Token revocation failed (attempt {}), retrying job {} in {}: {}",
+                            job.attempts() + 1, job.id(), backoff, e.getMessage());
+                    retried.increment();
+                    return tokenRevocationQueue.retry(job, System.currentTimeMillis() + backoff.toMillis());
+                })
+                // Queue update failed: the claim expires and the job is attempted again
+                .onErrorResume(e -> {
+                    log.warn("Failed to update revocation job {}: {}", job.id(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * initialBackoff * 2^attempts, capped at maxBackoff
+     */
+    private Duration backoff(int attempts) {
+        long millis = initialBackoff.toMillis() << Math.min(attempts, 30);
+        return Duration.ofMillis(Math.min(millis, maxBackoff.toMillis()));
+    }
+
+    private static boolean isRejected(Throwable e) {
+        return e instanceof WebClientResponseException response
+                && response.getStatusCode().is4xxClientError()
+                && response.getStatusCode().value() != HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("oauth2.revocation")
+                .description("Token revocations by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -1,14 +1,24 @@
 package com.example.demo.service;
 
 import com.example.demo.model.*;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Access Decision Service
@@ -27,17 +37,94 @@ import java.util.stream.Collectors;
  * 4. If member is 18+ but NO "PR" persona:
  *    - RESULT: SELF_ONLY_ADULT (can only view own data)
  *    - Do NOT call PSN
+ * The decisions themselves are built by AccessPolicyEngine (rules in access-policy.*).
+ *
+ * Speculative PSN (access-decision.speculative-psn.mode):
+ * - off: PSN is called only after US reports an adult PR member
+ * - history: PSN is started in parallel with US when the last decision for the HSID
+ *   on this instance found an adult PR member
+ * - always: PSN is started in parallel with US for every member
+ * A speculative PSN result is discarded when the member turns out to be a minor or
+ * non-PR (it still warms the PSN cache). Metric: access-decision.psn.speculative
+ * tagged outcome (useful, wasted).
+ *
+ * Decision cache: the web-cl and web-hs decisions are built together from the same
+ * US/PSN inputs and cached under access-decision:{hsid}:{inputVersion}, where the input
+ * version is a digest of those inputs and the access policy rules (so decisions built under
+ * other rules, e.g. before a deployment changed access-policy.*, are not reused).
+ * Switching application types or re-checking an unchanged member reuses the entry;
+ * sessions store a reference (referenceOf / resolve).
+ * Decisions degraded by a US or PSN failure are not cached.
+ *
+ * Invalidation (invalidate): a change event evicts the member's US and PSN entries and
+ * every decision entry built for the HSID (versions are tracked in
+ * access-decision-versions:{hsid}), so sessions referencing them rebuild on the next read.
+ * A change to a supported member (invalidateCaregivers) does that for every caregiver whose
+ * decision was built from a PSN response listing the member's EID (tracked in
+ * access-decision-caregivers:{eid} for as long as that response or the decision may be cached).
+ * Sessions holding a copy of an uncached decision rebuild it once it is older than the
+ * decision TTL (see staleAt); SessionService refreshes them early on change events.
  */
 @Slf4j
 @Service
 public class AccessDecisionService {
 
+    private static final String DECISION_CACHE_KEY_PREFIX = "access-decision:";
+    private static final String VERSIONS_KEY_PREFIX = "access-decision-versions:";
+    private static final String CAREGIVERS_KEY_PREFIX = "access-decision-caregivers:";
+
+    private enum SpeculativeMode { OFF, HISTORY, ALWAYS }
+
     private final USService usService;
     private final PSNService psnService;
+    private final AccessPolicyEngine accessPolicyEngine;
+    private final SpeculativeMode speculativeMode;
+    // HSID -> whether the last decision found an adult PR member
+    private final Cache<String, Boolean> prHistory;
+    private final Counter speculativeUseful;
+    private final Counter speculativeWasted;
+    private final CoalescingCache<AccessDecisionSet> decisionCache;
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+    private final Duration decisionTtl;
+    private final Duration caregiversTtl;
 
-    public AccessDecisionService(USService usService, PSNService psnService) {
+    public AccessDecisionService(
+            USService usService,
+            PSNService psnService,
+            AccessPolicyEngine accessPolicyEngine,
+            MeterRegistry meterRegistry,
+            CoalescingCacheFactory coalescingCacheFactory,
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            @Value("${access-decision.cache.ttl.minutes:30}") int decisionTtlMinutes,
+            @Value("${cache.psn.ttl.minutes:30}") int psnTtlMinutes,
+            @Value("${access-decision.speculative-psn.mode:history}") String speculativeMode,
+            @Value("${access-decision.speculative-psn.history.maximum-size:100000}") long historyMaximumSize,
+            @Value("${access-decision.speculative-psn.history.ttl.hours:24}") int historyTtlHours
+    ) {
         this.usService = usService;
         this.psnService = psnService;
+        this.accessPolicyEngine = accessPolicyEngine;
+        this.speculativeMode = SpeculativeMode.valueOf(speculativeMode.toUpperCase());
+        this.prHistory = Caffeine.newBuilder()
+                .maximumSize(historyMaximumSize)
+                .expireAfterWrite(Duration.ofHours(historyTtlHours))
+                .build();
+        this.speculativeUseful = Counter.builder("access-decision.psn.speculative")
+                .description("Speculative PSN calls started in parallel with US")
+                .tag("outcome", "useful")
+                .register(meterRegistry);
+        this.speculativeWasted = Counter.builder("access-decision.psn.speculative")
+                .description("Speculative PSN calls started in parallel with US")
+                .tag("outcome", "wasted")
+                .register(meterRegistry);
+
+        // Entries are immutable (keyed by input version): no soft TTL, stale-if-error or negative caching
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+        this.decisionTtl = Duration.ofMinutes(decisionTtlMinutes);
+        // A caregiver's decision is rebuilt from their cached PSN response until that expires too
+        this.caregiversTtl = Duration.ofMinutes(Math.max(decisionTtlMinutes, psnTtlMinutes));
+        this.decisionCache = coalescingCacheFactory.create("access-decision", DECISION_CACHE_KEY_PREFIX,
+                AccessDecisionSet.class, new CoalescingCache.CacheTtl(decisionTtl, decisionTtl, Duration.ZERO, Duration.ZERO));
     }
 
     /**
@@ -50,237 +137,285 @@ public class AccessDecisionService {
     public Mono<AccessDecision> determineAccess(String hsid, AccessDecision.ApplicationType applicationType) {
         log.info("Determining access for HSID: {} in application: {}", hsid, applicationType);
 
-        // Step 1: Call US to get biometric info
-        return usService.getBiometricInfo(hsid)
-                .flatMap(biometricInfo -> {
-                    // Step 2: Check if member is under 18
-                    if (Boolean.TRUE.equals(biometricInfo.getIsMinor())) {
-                        log.info("Member is under 18. Access: SELF_ONLY_MINOR");
-                        return Mono.just(createSelfOnlyMinorDecision(biometricInfo, applicationType));
-                    }
-
-                    // Step 3: Check if member has PR persona
-                    if (!Boolean.TRUE.equals(biometricInfo.getHasPersonaRepresentative())) {
-                        log.info("Member is 18+ but has no PR persona. Access: SELF_ONLY_ADULT");
-                        return Mono.just(createSelfOnlyAdultDecision(biometricInfo, applicationType));
-                    }
-
-                    // Step 4: Member is 18+ with PR - call PSN for supported members
-                    log.info("Member is 18+ with PR persona. Checking PSN for supported members.");
-
-                    return psnService.getAccessLevel("HSID", hsid)
-                            .map(accessLevel -> {
-                                // Step 5: Filter supported members by persona (must have RRP + DAA)
-                                List<SupportedMember> eligibleMembers = filterByPersona(accessLevel.getSupportedMembers());
-
-                                if (eligibleMembers.isEmpty()) {
-                                    log.info("Member has PR but no eligible supported members (RRP+DAA). Access: SELF_ONLY_ADULT");
-                                    return createSelfOnlyAdultDecision(biometricInfo, applicationType, "No supported members with RRP+DAA");
-                                }
-
-                                // Step 6: Decision based on application type
-                                if (applicationType == AccessDecision.ApplicationType.WEB_CL) {
-                                    // web-cl: Member can support others - CANNOT view own data
-                                    log.info("web-cl: Member has PR and {} eligible supported members. Access: SUPPORTING_OTHERS", eligibleMembers.size());
-                                    return createSupportingOthersDecision(biometricInfo, accessLevel, eligibleMembers);
-                                } else {
-                                    // web-hs: Member can view BOTH own data AND supported members
-                                    log.info("web-hs: Member has PR and {} eligible supported members. Access: SELF_AND_OTHERS", eligibleMembers.size());
-                                    return createSelfAndOthersDecision(biometricInfo, accessLevel, eligibleMembers);
-                                }
-                            })
-                            .onErrorResume(e -> {
-                                log.error("Failed to fetch access level from PSN", e);
-                                // If PSN fails for PR member, default to SELF_ONLY_ADULT
-                                return Mono.just(createSelfOnlyAdultDecision(biometricInfo, applicationType, "PSN fetch failed: " + e.getMessage()));
-                            });
-                })
+        return Mono.defer(() -> {
+            // Start PSN in parallel with US if the member is likely an adult PR
+            Mono<AccessLevelResponse> speculativeAccessLevel = shouldSpeculate(hsid) ? startAccessLevel(hsid) : null;
+
+            // Step 1: Call US to get biometric info
+            return usService.getBiometricInfo(hsid)
+                    .doOnError(e -> discardSpeculation(speculativeAccessLevel))
+                    .flatMap(biometricInfo -> {
+                        boolean adultPr = !Boolean.TRUE.equals(biometricInfo.getIsMinor())
+                                && Boolean.TRUE.equals(biometricInfo.getHasPersonaRepresentative());
+                        prHistory.put(hsid, adultPr);
+
+                        // Steps 2-3: minors and members without PR persona never need PSN
+                        if (!adultPr) {
+                            discardSpeculation(speculativeAccessLevel);
+                            return getDecisions(hsid, biometricInfo, null);
+                        }
+
+                        // Step 4: Member is 18+ with PR - call PSN for supported members (unless already started)
+                        log.info("Member is 18+ with PR persona. Checking PSN for supported members.");
+                        Mono<AccessLevelResponse> accessLevelMono;
+                        if (speculativeAccessLevel != null) {
+                            speculativeUseful.increment();
+                            accessLevelMono = speculativeAccessLevel;
+                        } else {
+                            accessLevelMono = psnService.getAccessLevel("HSID", hsid);
+                        }
+
+                        return accessLevelMono
+                                .flatMap(accessLevel -> getDecisions(hsid, biometricInfo, accessLevel))
+                                .onErrorResume(e -> {
+                                    log.error("Failed to fetch access level from PSN", e);
+                                    // If PSN fails for PR member, default to SELF_ONLY_ADULT (not cached)
+                                    String reason = "PSN fetch failed: " + e.getMessage();
+                                    return Mono.just(AccessDecisionSet.builder()
+                                            .hsid(hsid)
+                                            .webCl(accessPolicyEngine.selfOnlyAdult(biometricInfo, AccessDecision.ApplicationType.WEB_CL, reason))
+                                            .webHs(accessPolicyEngine.selfOnlyAdult(biometricInfo, AccessDecision.ApplicationType.WEB_HS, reason))
+                                            .build());
+                                });
+                    })
+                    .map(decisions -> decisions.forApplication(applicationType))
+                    .doOnNext(decision -> log.info("Access decision for HSID: {} in application: {}: {} - {}",
+                            hsid, applicationType, decision.getAccessMode(), decision.getDecisionReason()));
+        })
                 .onErrorResume(e -> {
                     log.error("Failed to fetch biometric info from US", e);
-                    return Mono.just(createNoAccessDecision("US biometric fetch failed: " + e.getMessage()));
+                    return Mono.just(accessPolicyEngine.noAccess("US biometric fetch failed: " + e.getMessage()));
                 });
     }
 
     /**
-     * Filter supported members to only those with RRP + DAA
-     * RRP or DAA alone has no effect on web-cl
+     * Reference to a cached decision, to be stored in the session instead of a copy
+     *
+     * @param decision Decision returned by determineAccess
+     * @return Reference ({applicationType}:{inputVersion}:{hsid}), null if the decision is not cached
      */
-    private List<SupportedMember> filterByPersona(List<SupportedMember> supportedMembers) {
-        if (supportedMembers == null) {
-            return new ArrayList<>();
+    public String referenceOf(AccessDecision decision) {
+        if (decision == null || decision.getInputVersion() == null || decision.getBiometricInfo() == null) {
+            return null;
         }
+        return decision.getApplicationType() + ":" + decision.getInputVersion() + ":" + decision.getBiometricInfo().getHsid();
+    }
 
-        return supportedMembers.stream()
-                .filter(member -> {
-                    List<String> personas = member.getPersonas();
-                    if (personas == null || personas.isEmpty()) {
-                        return false;
-                    }
+    /**
+     * Resolve a decision reference
+     * Rebuilds the decision from current US/PSN data if the referenced entry has expired,
+     * in which case the returned decision carries a different input version
+     *
+     * @param reference Reference from referenceOf
+     * @return Mono of the referenced decision
+     */
+    public Mono<AccessDecision> resolve(String reference) {
+        return resolve(reference, AccessDecision.ApplicationType.valueOf(reference.substring(0, reference.indexOf(':'))));
+    }
 
-                    boolean hasRRP = personas.stream().anyMatch(p -> "RRP".equalsIgnoreCase(p));
-                    boolean hasDAA = personas.stream().anyMatch(p -> "DAA".equalsIgnoreCase(p));
-                    boolean hasROI = personas.stream().anyMatch(p -> "ROI".equalsIgnoreCase(p));
+    /**
+     * Resolve a decision reference for another application type
+     * Both views are cached together, so this needs no US/PSN lookup while the entry exists
+     *
+     * @param reference Reference from referenceOf
+     * @param applicationType Application type of the decision to return
+     * @return Mono of the decision built from the same inputs as the referenced one
+     */
+    public Mono<AccessDecision> resolve(String reference, AccessDecision.ApplicationType applicationType) {
+        String[] parts = reference.split(":", 3);
+        String inputVersion = parts[1];
+        String hsid = parts[2];
 
-                    // Must have both RRP and DAA
-                    boolean eligible = hasRRP && hasDAA;
+        return decisionCache.getIfPresent(hsid + ":" + inputVersion)
+                .map(decisions -> decisions.forApplication(applicationType))
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.debug("Referenced access decision expired, rebuilding for HSID: {}", hsid);
+                    return determineAccess(hsid, applicationType);
+                }));
+    }
 
-                    // Set access flags
-                    member.setHasDigitalAccountAccess(eligible);
-                    member.setHasSensitiveDataAccess(eligible && hasROI);
+    /**
+     * Invalidate everything derived from a member's US/PSN data
+     * Evicts the cached US and PSN responses and all cached decisions for the HSID;
+     * sessions referencing those decisions rebuild them on the next read
+     *
+     * @param hsid Member's HSID
+     * @return Mono of Void
+     */
+    public Mono<Void> invalidate(String hsid) {
+        String versionsKey = VERSIONS_KEY_PREFIX + hsid;
+        log.info("Invalidating cached US/PSN data and access decisions for HSID: {}", hsid);
 
-                    log.debug("Member {}: RRP={}, DAA={}, ROI={}, Eligible={}",
-                            member.getEid(), hasRRP, hasDAA, hasROI, eligible);
+        // Inputs first, so decisions rebuilt from here on see the new data
+        return Mono.when(usService.evict(hsid), psnService.evict("HSID", hsid))
+                .thenMany(reactiveRedisBytesTemplate.opsForSet().members(versionsKey))
+                .map(version -> new String(version, StandardCharsets.UTF_8))
+                .concatMap(version -> decisionCache.evict(hsid + ":" + version))
+                .then(reactiveRedisBytesTemplate.delete(versionsKey))
+                .then();
+    }
 
-                    return eligible;
-                })
-                .collect(Collectors.toList());
+    /**
+     * Invalidate the decisions of every caregiver supporting a member
+     * Evicts the member's PSN entry, then invalidates each caregiver whose decision was
+     * built from a PSN response listing the member (see invalidate)
+     *
+     * @param eid Supported member's EID
+     * @return Flux of the caregivers' HSIDs
+     */
+    public Flux<String> invalidateCaregivers(String eid) {
+        log.info("Invalidating cached PSN data and caregivers' access decisions for EID: {}", eid);
+
+        return psnService.evict("EID", eid)
+                .thenMany(reactiveRedisBytesTemplate.opsForSet().members(CAREGIVERS_KEY_PREFIX + eid))
+                .map(hsid -> new String(hsid, StandardCharsets.UTF_8))
+                .concatMap(hsid -> invalidate(hsid).thenReturn(hsid));
     }
 
     /**
-     * Create SELF_ONLY_MINOR decision
+     * When a decision stored as a copy (referenceOf returned null) should be rebuilt
+     * Copies go stale after the decision TTL, like cached decisions
+     *
+     * @param decision Decision returned by determineAccess
+     * @return Time the copy goes stale, null if it can't be rebuilt (no HSID, e.g. a US failure)
      */
-    private AccessDecision createSelfOnlyMinorDecision(BiometricInfo biometricInfo, AccessDecision.ApplicationType applicationType) {
-        // Create self member entry
-        SupportedMember selfMember = SupportedMember.builder()
-                .eid(biometricInfo.getHsid()) // Use HSID as EID for self
-                .firstName(biometricInfo.getFirstName())
-                .lastName(biometricInfo.getLastName())
-                .dateOfBirth(biometricInfo.getDateOfBirth())
-                .relationship("self")
-                .accessLevel("full")
-                .personas(new ArrayList<>())
-                .hasDigitalAccountAccess(false)
-                .hasSensitiveDataAccess(false)
-                .build();
+    public Instant staleAt(AccessDecision decision) {
+        if (decision == null || decision.getBiometricInfo() == null || decision.getDecidedAt() == null) {
+            return null;
+        }
+        return Instant.parse(decision.getDecidedAt()).plus(decisionTtl);
+    }
 
-        return AccessDecision.builder()
-                .applicationType(applicationType)
-                .accessMode(AccessDecision.AccessMode.SELF_ONLY_MINOR)
-                .biometricInfo(biometricInfo)
-                .accessLevel(null) // No PSN call for minors
-                .canViewOwnData(true)
-                .canViewOthersData(false)
-                .viewableMembers(List.of(selfMember))
-                .decisionReason("Member is under 18 years old")
-                .decidedAt(Instant.now().toString())
-                .build();
+    /**
+     * Whether a decision is the one a reference points to
+     */
+    public boolean matches(AccessDecision decision, String reference) {
+        return decision != null && reference != null && reference.equals(referenceOf(decision));
     }
 
     /**
-     * Create SELF_ONLY_ADULT decision
+     * Get the decisions for both application types from the cache, or build them
+     * Entries are keyed by HSID and input version, so they never need invalidation:
+     * changed US/PSN data yields a new version
      */
-    private AccessDecision createSelfOnlyAdultDecision(BiometricInfo biometricInfo, AccessDecision.ApplicationType applicationType) {
-        return createSelfOnlyAdultDecision(biometricInfo, applicationType, "Member is 18+ but has no PR persona");
+    private Mono<AccessDecisionSet> getDecisions(String hsid, BiometricInfo biometricInfo, AccessLevelResponse accessLevel) {
+        String inputVersion = inputVersion(biometricInfo, accessLevel);
+        return decisionCache.get(hsid + ":" + inputVersion,
+                () -> Mono.fromSupplier(() -> buildDecisions(hsid, inputVersion, biometricInfo, accessLevel))
+                        .flatMap(decisions -> trackVersion(hsid, inputVersion, accessLevel).thenReturn(decisions)));
     }
 
-    private AccessDecision createSelfOnlyAdultDecision(BiometricInfo biometricInfo, AccessDecision.ApplicationType applicationType, String reason) {
-        // Create self member entry
-        SupportedMember selfMember = SupportedMember.builder()
-                .eid(biometricInfo.getHsid())
-                .firstName(biometricInfo.getFirstName())
-                .lastName(biometricInfo.getLastName())
-                .dateOfBirth(biometricInfo.getDateOfBirth())
-                .relationship("self")
-                .accessLevel("full")
-                .personas(new ArrayList<>())
-                .hasDigitalAccountAccess(false)
-                .hasSensitiveDataAccess(false)
-                .build();
+    /**
+     * Remember which decision entries exist for an HSID, for invalidate, and which
+     * supported members they were built from, for invalidateCaregivers
+     * Failures only mean the entry can't be invalidated early; it still expires
+     */
+    private Mono<Void> trackVersion(String hsid, String inputVersion, AccessLevelResponse accessLevel) {
+        String versionsKey = VERSIONS_KEY_PREFIX + hsid;
+        byte[] caregiver = hsid.getBytes(StandardCharsets.UTF_8);
+        List<SupportedMember> supportedMembers = accessLevel != null && accessLevel.getSupportedMembers() != null
+                ? accessLevel.getSupportedMembers()
+                : List.of();
 
-        return AccessDecision.builder()
-                .applicationType(applicationType)
-                .accessMode(AccessDecision.AccessMode.SELF_ONLY_ADULT)
-                .biometricInfo(biometricInfo)
-                .accessLevel(null) // PSN may or may not have been called
-                .canViewOwnData(true)
-                .canViewOthersData(false)
-                .viewableMembers(List.of(selfMember))
-                .decisionReason(reason)
-                .decidedAt(Instant.now().toString())
-                .build();
+        return reactiveRedisBytesTemplate.opsForSet().add(versionsKey, inputVersion.getBytes(StandardCharsets.UTF_8))
+                .then(reactiveRedisBytesTemplate.expire(versionsKey, decisionTtl))
+                .thenMany(Flux.fromIterable(supportedMembers))
+                .filter(member -> member.getEid() != null)
+                .concatMap(member -> {
+                    String caregiversKey = CAREGIVERS_KEY_PREFIX + member.getEid();
+                    return reactiveRedisBytesTemplate.opsForSet().add(caregiversKey, caregiver)
+                            .then(reactiveRedisBytesTemplate.expire(caregiversKey, caregiversTtl));
+                })
+                .doOnError(e -> log.warn("Failed to track access decision version for HSID {}: {}", hsid, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
     }
 
     /**
-     * Create SUPPORTING_OTHERS decision (web-cl only)
-     * Member can view others' data but NOT their own
+     * Build the web-cl and web-hs decisions in one pass over the same inputs
+     *
+     * @param accessLevel PSN access level, null for minors and members without PR persona
      */
-    private AccessDecision createSupportingOthersDecision(
+    private AccessDecisionSet buildDecisions(
+            String hsid,
+            String inputVersion,
             BiometricInfo biometricInfo,
-            AccessLevelResponse accessLevel,
-            List<SupportedMember> eligibleMembers
+            AccessLevelResponse accessLevel
     ) {
-        return AccessDecision.builder()
-                .applicationType(AccessDecision.ApplicationType.WEB_CL)
-                .accessMode(AccessDecision.AccessMode.SUPPORTING_OTHERS)
-                .biometricInfo(biometricInfo)
-                .accessLevel(accessLevel)
-                .canViewOwnData(false) // CANNOT view own data in web-cl
-                .canViewOthersData(true)
-                .viewableMembers(eligibleMembers) // Only eligible supported members
-                .decisionReason(String.format(
-                        "web-cl: Member has PR persona and %d supported members with RRP+DAA",
-                        eligibleMembers.size()
-                ))
-                .decidedAt(Instant.now().toString())
-                .build();
+        AccessDecisionSet decisions = accessPolicyEngine.decide(biometricInfo, accessLevel);
+        decisions.setHsid(hsid);
+        decisions.setInputVersion(inputVersion);
+        decisions.getWebCl().setInputVersion(inputVersion);
+        decisions.getWebHs().setInputVersion(inputVersion);
+        return decisions;
     }
 
     /**
-     * Create SELF_AND_OTHERS decision (web-hs only)
-     * Member can view BOTH their own data AND others' data
+     * Digest of the policy rules and the US/PSN attributes a decision depends on (fetch metadata excluded)
      */
-    private AccessDecision createSelfAndOthersDecision(
-            BiometricInfo biometricInfo,
-            AccessLevelResponse accessLevel,
-            List<SupportedMember> eligibleMembers
-    ) {
-        // Create self member entry
-        SupportedMember selfMember = SupportedMember.builder()
-                .eid(biometricInfo.getHsid())
-                .firstName(biometricInfo.getFirstName())
-                .lastName(biometricInfo.getLastName())
-                .dateOfBirth(biometricInfo.getDateOfBirth())
-                .relationship("self")
-                .accessLevel("full")
-                .personas(new ArrayList<>())
-                .hasDigitalAccountAccess(false)
-                .hasSensitiveDataAccess(false)
-                .build();
+    private String inputVersion(BiometricInfo biometricInfo, AccessLevelResponse accessLevel) {
+        StringBuilder canonical = new StringBuilder()
+                .append(accessPolicyEngine.policyFingerprint()).append("|us|")
+                .append(biometricInfo.getHsid()).append('|')
+                .append(biometricInfo.getFirstName()).append('|')
+                .append(biometricInfo.getLastName()).append('|')
+                .append(biometricInfo.getDateOfBirth()).append('|')
+                .append(biometricInfo.getIsMinor()).append('|')
+                .append(biometricInfo.getHasPersonaRepresentative());
+        if (accessLevel != null) {
+            canonical.append("|psn|").append(accessLevel.getMemberEid())
+                    .append('|').append(accessLevel.getCanViewOwnData());
+            if (accessLevel.getSupportedMembers() != null) {
+                for (SupportedMember member : accessLevel.getSupportedMembers()) {
+                    canonical.append('|').append(member.getEid())
+                            .append(':').append(member.getFirstName())
+                            .append(':').append(member.getLastName())
+                            .append(':').append(member.getDateOfBirth())
+                            .append(':').append(member.getRelationship())
+                            .append(':').append(member.getAccessLevel())
+                            .append(':').append(member.getPersonas());
+                }
+            }
+        }
 
-        // Combine self + eligible supported members
-        List<SupportedMember> allViewableMembers = new ArrayList<>();
-        allViewableMembers.add(selfMember); // Self is FIRST
-        allViewableMembers.addAll(eligibleMembers); // Then supported members
-
-        return AccessDecision.builder()
-                .applicationType(AccessDecision.ApplicationType.WEB_HS)
-                .accessMode(AccessDecision.AccessMode.SELF_AND_OTHERS)
-                .biometricInfo(biometricInfo)
-                .accessLevel(accessLevel)
-                .canViewOwnData(true) // CAN view own data in web-hs
-                .canViewOthersData(true)
-                .viewableMembers(allViewableMembers) // Self + supported members
-                .decisionReason(String.format(
-                        "web-hs: Member has PR persona and %d supported members with RRP+DAA",
-                        eligibleMembers.size()
-                ))
-                .decidedAt(Instant.now().toString())
-                .build();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash).substring(0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     /**
-     * Create NO_ACCESS decision (fallback for errors)
+     * Whether to start the PSN call before US has answered
      */
-    private AccessDecision createNoAccessDecision(String reason) {
-        return AccessDecision.builder()
-                .accessMode(AccessDecision.AccessMode.NO_ACCESS)
-                .biometricInfo(null)
-                .accessLevel(null)
-                .canViewOwnData(false)
-                .canViewOthersData(false)
-                .viewableMembers(new ArrayList<>())
-                .decisionReason(reason)
-                .decidedAt(Instant.now().toString())
-                .build();
+    private boolean shouldSpeculate(String hsid) {
+        return switch (speculativeMode) {
+            case OFF -> false;
+            case HISTORY -> Boolean.TRUE.equals(prHistory.getIfPresent(hsid));
+            case ALWAYS -> true;
+        };
+    }
+
+    /**
+     * Start the PSN access level call for an HSID
+     * The returned Mono replays the result (or error) of the already running call
+     */
+    private Mono<AccessLevelResponse> startAccessLevel(String hsid) {
+        log.debug("Starting speculative PSN call for HSID: {}", hsid);
+        Mono<AccessLevelResponse> accessLevel = psnService.getAccessLevel("HSID", hsid).cache();
+        // Errors are handled by whoever consumes the result; a discarded result is just dropped
+        accessLevel.subscribe(response -> { }, e -> log.debug("Speculative PSN call failed for HSID: {}", hsid, e));
+        return accessLevel;
+    }
+
+    /**
+     * Record a speculative PSN call whose result is not needed
+     * The call is left to complete, so it still warms the PSN cache
+     */
+    private void discardSpeculation(Mono<AccessLevelResponse> speculativeAccessLevel) {
+        if (speculativeAccessLevel != null) {
+            speculativeWasted.increment();
+        }
     }
 }
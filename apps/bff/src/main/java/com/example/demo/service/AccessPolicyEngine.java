@@ -0,0 +1,304 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AccessPolicyProperties;
+import com.example.demo.model.*;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Access Policy Engine
+ *
+ * Builds the web-cl and web-hs access decisions from US/PSN data according to the
+ * rules in AccessPolicyProperties (access-policy.*):
+ * - Minor: SELF_ONLY_MINOR
+ * - Adult without PR persona (no PSN data): SELF_ONLY_ADULT
+ * - Adult PR: supported members whose relationship has all eligible personas are viewable;
+ *   none -> SELF_ONLY_ADULT, otherwise SELF_AND_OTHERS or SUPPORTING_OTHERS depending on
+ *   whether the application shows the member's own data alongside others'
+ *
+ * Persona sets are compiled into bitmasks once; a relationship is evaluated by OR-ing the
+ * bits of its personas (case-insensitive, unknown personas ignored) and comparing masks.
+ *
+ * Inputs are never modified: they may be instances shared through the US/PSN caches.
+ * Eligibility is first evaluated on the masks alone, so a PR member without eligible
+ * relationships costs no copies. Otherwise the supported members are copied once, the
+ * access flags are set on those copies, and both decisions reference one copy of the
+ * access level response holding them.
+ *
+ * Each decision gets its capability index (MemberCapabilities) here, once.
+ */
+@Slf4j
+public class AccessPolicyEngine {
+
+    private final String[] personaNames;
+    private final long eligibleMask;
+    private final long sensitiveMask;
+    private final boolean webClOwnDataWithOthers;
+    private final boolean webHsOwnDataWithOthers;
+    private final String eligibleLabel;
+    private final String policyFingerprint;
+
+    public AccessPolicyEngine(AccessPolicyProperties properties) {
+        Set<String> names = new LinkedHashSet<>();
+        properties.getEligiblePersonas().forEach(persona -> names.add(persona.toUpperCase()));
+        properties.getSensitivePersonas().forEach(persona -> names.add(persona.toUpperCase()));
+        if (names.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " distinct personas are supported");
+        }
+
+        this.personaNames = names.toArray(new String[0]);
+        this.eligibleMask = personaMask(properties.getEligiblePersonas());
+        this.sensitiveMask = personaMask(properties.getSensitivePersonas());
+        this.webClOwnDataWithOthers = properties.getWebCl().isOwnDataWithOthers();
+        this.webHsOwnDataWithOthers = properties.getWebHs().isOwnDataWithOthers();
+        this.eligibleLabel = String.join("+", properties.getEligiblePersonas());
+        // Eligible personas as configured: their order and case show in decision reasons
+        this.policyFingerprint = "eligible=" + eligibleLabel
+                + ";sensitive=" + canonicalPersonas(properties.getSensitivePersonas())
+                + ";web-cl.own-data-with-others=" + webClOwnDataWithOthers
+                + ";web-hs.own-data-with-others=" + webHsOwnDataWithOthers;
+    }
+
+    /**
+     * Canonical form of the rules this engine applies
+     * Equal for rule sets that build the same decisions, so decisions cached under it
+     * are only reused by engines with the same rules
+     *
+     * @return Policy fingerprint
+     */
+    public String policyFingerprint() {
+        return policyFingerprint;
+    }
+
+    /**
+     * Decide access for both application types
+     * The result carries neither HSID nor input version; the caller sets them
+     *
+     * @param biometricInfo US biometric info
+     * @param accessLevel PSN access level, null for minors and members without PR persona
+     * @return Decisions for web-cl and web-hs
+     */
+    public AccessDecisionSet decide(BiometricInfo biometricInfo, AccessLevelResponse accessLevel) {
+        AccessDecision webCl;
+        AccessDecision webHs;
+
+        if (Boolean.TRUE.equals(biometricInfo.getIsMinor())) {
+            // Member is under 18
+            log.info("Member is under 18. Access: SELF_ONLY_MINOR");
+            webCl = selfOnly(biometricInfo, AccessDecision.ApplicationType.WEB_CL,
+                    AccessDecision.AccessMode.SELF_ONLY_MINOR, "Member is under 18 years old");
+            webHs = selfOnly(biometricInfo, AccessDecision.ApplicationType.WEB_HS,
+                    AccessDecision.AccessMode.SELF_ONLY_MINOR, "Member is under 18 years old");
+        } else if (accessLevel == null) {
+            // Member has no PR persona
+            log.info("Member is 18+ but has no PR persona. Access: SELF_ONLY_ADULT");
+            webCl = selfOnlyAdult(biometricInfo, AccessDecision.ApplicationType.WEB_CL, "Member is 18+ but has no PR persona");
+            webHs = selfOnlyAdult(biometricInfo, AccessDecision.ApplicationType.WEB_HS, "Member is 18+ but has no PR persona");
+        } else if (!hasEligibleMember(accessLevel.getSupportedMembers())) {
+            // Decided on the masks alone: the decision carries no PSN data, so nothing is copied
+            log.info("Member has PR but no eligible supported members ({}). Access: SELF_ONLY_ADULT", eligibleLabel);
+            String reason = "No supported members with " + eligibleLabel;
+            webCl = selfOnlyAdult(biometricInfo, AccessDecision.ApplicationType.WEB_CL, reason);
+            webHs = selfOnlyAdult(biometricInfo, AccessDecision.ApplicationType.WEB_HS, reason);
+        } else {
+            List<SupportedMember> eligibleMembers = new ArrayList<>(accessLevel.getSupportedMembers().size());
+            accessLevel = withAccessFlags(accessLevel, eligibleMembers);
+
+            log.info("Member has PR and {} eligible supported members. Access: {} (web-cl), {} (web-hs)",
+                    eligibleMembers.size(), othersMode(webClOwnDataWithOthers), othersMode(webHsOwnDataWithOthers));
+            webCl = withOthers(biometricInfo, accessLevel, eligibleMembers,
+                    AccessDecision.ApplicationType.WEB_CL, webClOwnDataWithOthers, "web-cl");
+            webHs = withOthers(biometricInfo, accessLevel, eligibleMembers,
+                    AccessDecision.ApplicationType.WEB_HS, webHsOwnDataWithOthers, "web-hs");
+        }
+
+        return AccessDecisionSet.builder()
+                .webCl(webCl)
+                .webHs(webHs)
+                .build();
+    }
+
+    /**
+     * SELF_ONLY_ADULT decision, also used when PSN could not be asked
+     */
+    public AccessDecision selfOnlyAdult(BiometricInfo biometricInfo, AccessDecision.ApplicationType applicationType, String reason) {
+        return selfOnly(biometricInfo, applicationType, AccessDecision.AccessMode.SELF_ONLY_ADULT, reason);
+    }
+
+    /**
+     * NO_ACCESS decision (fallback for errors)
+     */
+    public AccessDecision noAccess(String reason) {
+        return AccessDecision.builder()
+                .accessMode(AccessDecision.AccessMode.NO_ACCESS)
+                .biometricInfo(null)
+                .accessLevel(null)
+                .canViewOwnData(false)
+                .canViewOthersData(false)
+                .viewableMembers(new ArrayList<>())
+                .capabilities(MemberCapabilities.none())
+                .decisionReason(reason)
+                .decidedAt(Instant.now().toString())
+                .build();
+    }
+
+    private static String canonicalPersonas(List<String> personas) {
+        return String.join("+", new TreeSet<>(personas.stream().map(String::toUpperCase).toList()));
+    }
+
+    /**
+     * Bitmask of the known personas in the list
+     */
+    private long personaMask(List<String> personas) {
+        long mask = 0;
+        for (int i = 0; i < personas.size(); i++) {
+            String persona = personas.get(i);
+            if (persona == null) {
+                continue;
+            }
+            for (int bit = 0; bit < personaNames.length; bit++) {
+                if (personaNames[bit].equalsIgnoreCase(persona)) {
+                    mask |= 1L << bit;
+                    break;
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Whether a relationship has all eligible personas (members without personas never do)
+     */
+    private boolean isEligible(SupportedMember member) {
+        List<String> personas = member.getPersonas();
+        return personas != null && !personas.isEmpty() && (personaMask(personas) & eligibleMask) == eligibleMask;
+    }
+
+    /**
+     * Whether any supported member is eligible, evaluated on the persona masks without copying
+     */
+    private boolean hasEligibleMember(List<SupportedMember> supportedMembers) {
+        if (supportedMembers == null) {
+            return false;
+        }
+        for (int i = 0; i < supportedMembers.size(); i++) {
+            if (isEligible(supportedMembers.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The decision's own copy of the access level response: every supported member is copied
+     * once and the digital account / sensitive data access flags are set on that copy
+     * (members without personas are copied unflagged)
+     *
+     * @param accessLevel PSN access level with at least one eligible supported member
+     * @param eligibleMembers Receives the eligible copies, in PSN order
+     */
+    private AccessLevelResponse withAccessFlags(AccessLevelResponse accessLevel, List<SupportedMember> eligibleMembers) {
+        List<SupportedMember> supportedMembers = accessLevel.getSupportedMembers();
+        List<SupportedMember> flagged = new ArrayList<>(supportedMembers.size());
+        for (int i = 0; i < supportedMembers.size(); i++) {
+            SupportedMember member = supportedMembers.get(i).toBuilder().build();
+            flagged.add(member);
+
+            List<String> personas = member.getPersonas();
+            if (personas == null || personas.isEmpty()) {
+                continue;
+            }
+
+            long mask = personaMask(personas);
+            boolean eligible = (mask & eligibleMask) == eligibleMask;
+            member.setHasDigitalAccountAccess(eligible);
+            member.setHasSensitiveDataAccess(eligible && (mask & sensitiveMask) == sensitiveMask);
+            if (eligible) {
+                eligibleMembers.add(member);
+            }
+        }
+
+        return accessLevel.toBuilder().supportedMembers(flagged).build();
+    }
+
+    private AccessDecision selfOnly(
+            BiometricInfo biometricInfo,
+            AccessDecision.ApplicationType applicationType,
+            AccessDecision.AccessMode accessMode,
+            String reason
+    ) {
+        List<SupportedMember> viewableMembers = List.of(selfMember(biometricInfo));
+        return AccessDecision.builder()
+                .applicationType(applicationType)
+                .accessMode(accessMode)
+                .biometricInfo(biometricInfo)
+                .accessLevel(null) // PSN not called, or not relevant
+                .canViewOwnData(true)
+                .canViewOthersData(false)
+                .viewableMembers(viewableMembers)
+                .capabilities(MemberCapabilities.of(viewableMembers))
+                .decisionReason(reason)
+                .decidedAt(Instant.now().toString())
+                .build();
+    }
+
+    /**
+     * SELF_AND_OTHERS (self first, then supported members) or SUPPORTING_OTHERS (supported members only)
+     */
+    private AccessDecision withOthers(
+            BiometricInfo biometricInfo,
+            AccessLevelResponse accessLevel,
+            List<SupportedMember> eligibleMembers,
+            AccessDecision.ApplicationType applicationType,
+            boolean ownDataWithOthers,
+            String label
+    ) {
+        List<SupportedMember> viewableMembers = eligibleMembers;
+        if (ownDataWithOthers) {
+            viewableMembers = new ArrayList<>(eligibleMembers.size() + 1);
+            viewableMembers.add(selfMember(biometricInfo));
+            viewableMembers.addAll(eligibleMembers);
+        }
+
+        return AccessDecision.builder()
+                .applicationType(applicationType)
+                .accessMode(othersMode(ownDataWithOthers))
+                .biometricInfo(biometricInfo)
+                .accessLevel(accessLevel)
+                .canViewOwnData(ownDataWithOthers)
+                .canViewOthersData(true)
+                .viewableMembers(viewableMembers)
+                .capabilities(MemberCapabilities.of(viewableMembers))
+                .decisionReason(String.format("%s: Member has PR persona and %d supported members with %s",
+                        label, eligibleMembers.size(), eligibleLabel))
+                .decidedAt(Instant.now().toString())
+                .build();
+    }
+
+    private static AccessDecision.AccessMode othersMode(boolean ownDataWithOthers) {
+        return ownDataWithOthers ? AccessDecision.AccessMode.SELF_AND_OTHERS : AccessDecision.AccessMode.SUPPORTING_OTHERS;
+    }
+
+    /**
+     * The member as a viewable member (HSID as EID)
+     */
+    private static SupportedMember selfMember(BiometricInfo biometricInfo) {
+        return SupportedMember.builder()
+                .eid(biometricInfo.getHsid())
+                .firstName(biometricInfo.getFirstName())
+                .lastName(biometricInfo.getLastName())
+                .dateOfBirth(biometricInfo.getDateOfBirth())
+                .relationship("self")
+                .accessLevel("full")
+                .personas(new ArrayList<>())
+                .hasDigitalAccountAccess(false)
+                .hasSensitiveDataAccess(false)
+                .build();
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.demo.service;
+
+import com.example.demo.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client Credentials Token Manager
+ *
+ * Obtains and caches OAuth2 client credentials tokens for downstream APIs (US, PSN):
+ * - One cached token per (token URI, client ID, scope), valid for the server's expires_in
+ *   minus a safety margin
+ * - Refresh-ahead: once a token is past the refresh point (a fraction of its usable lifetime),
+ *   callers still get the cached token while a new one is fetched in the background
+ * - Concurrent fetches for the same client are coalesced into one token request
+ *
+ * Metric: client-credentials.token.fetch tagged client and outcome=success|failure
+ * (token fetches per minute = rate of this counter)
+ */
+@Slf4j
+@Service
+public class ClientCredentialsTokenManager {
+
+    private final MeterRegistry meterRegistry;
+    private final Duration expirySkew;
+    private final double refreshRatio;
+    private final Duration defaultExpiresIn;
+    private final Map<ClientKey, CachedToken> tokens = new ConcurrentHashMap<>();
+    private final SingleFlight<ClientKey, CachedToken> inFlightFetches = new SingleFlight<>();
+
+    public ClientCredentialsTokenManager(
+            MeterRegistry meterRegistry,
+            @Value("${client-credentials.expiry-skew.seconds:30}") int expirySkewSeconds,
+            @Value("${client-credentials.refresh-ratio:0.8}") double refreshRatio,
+            @Value("${client-credentials.default-expires-in.seconds:300}") int defaultExpiresInSeconds
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.expirySkew = Duration.ofSeconds(expirySkewSeconds);
+        this.refreshRatio = refreshRatio;
+        this.defaultExpiresIn = Duration.ofSeconds(defaultExpiresInSeconds);
+    }
+
+    /**
+     * Client registration for the client credentials grant
+     *
+     * @param name Short client name used in logs and metrics (e.g. "us", "psn")
+     * @param tokenUri Token endpoint
+     * @param clientId Client ID
+     * @param clientSecret Client secret
+     * @param scope Requested scope
+     * @param webClient WebClient of the downstream the token is for (its connection pool)
+     */
+    public record ClientRegistration(
+            String name,
+            String tokenUri,
+            String clientId,
+            String clientSecret,
+            String scope,
+            WebClient webClient
+    ) {
+
+        @Override
+        public String toString() {
+            // Keep the secret out of logs
+            return "ClientRegistration[" + name + ", " + tokenUri + ", " + clientId + ", " + scope + "]";
+        }
+    }
+
+    /**
+     * Get an access token for the client
+     * Only goes to the token endpoint if there is no usable cached token
+     *
+     * @param registration Client registration
+     * @return Mono of the access token
+     */
+    public Mono<String> getToken(ClientRegistration registration) {
+        ClientKey key = new ClientKey(registration.tokenUri(), registration.clientId(), registration.scope());
+        return Mono.defer(() -> {
+            Instant now = Instant.now();
+            CachedToken cached = tokens.get(key);
+
+            if (cached != null && now.isBefore(cached.expiresAt())) {
+                if (!now.isBefore(cached.refreshAt()) && !inFlightFetches.isInFlight(key)) {
+                    log.debug("Refreshing {} client credentials token ahead of expiry", registration.name());
+                    fetch(key, registration).subscribe(
+                            token -> { },
+                            e -> log.warn("Background refresh of {} client credentials token failed: {}",
+                                    registration.name(), e.getMessage()));
+                }
+                return Mono.just(cached.accessToken());
+            }
+
+            return fetch(key, registration).map(CachedToken::accessToken);
+        });
+    }
+
+    /**
+     * Drop a cached token after the downstream API rejected it (401)
+     * Only drops the given token, so concurrent rejections of the same token lead to
+     * one new token rather than evicting each other's replacements
+     *
+     * @param registration Client registration
+     * @param rejectedToken Token the downstream API rejected
+     */
+    public void invalidate(ClientRegistration registration, String rejectedToken) {
+        ClientKey key = new ClientKey(registration.tokenUri(), registration.clientId(), registration.scope());
+        tokens.computeIfPresent(key, (k, cached) -> cached.accessToken().equals(rejectedToken) ? null : cached);
+    }
+
+    private Mono<CachedToken> fetch(ClientKey key, ClientRegistration registration) {
+        return inFlightFetches.execute(key, () -> requestToken(registration)
+                .doOnNext(token -> tokens.put(key, token)));
+    }
+
+    private Mono<CachedToken> requestToken(ClientRegistration registration) {
+        log.info("Fetching {} client credentials token", registration.name());
+
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add("grant_type", "client_credentials");
+        formData.add("client_id", registration.clientId());
+        formData.add("client_secret", registration.clientSecret());
+        formData.add("scope", registration.scope());
+
+        Instant requestedAt = Instant.now();
+        return registration.webClient().post()
+                .uri(registration.tokenUri())
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                .body(BodyInserters.fromFormData(formData))
+                .retrieve()
+                .bodyToMono(ClientCredentialsTokenResponse.class)
+                .flatMap(tokenResponse -> {
+                    if (tokenResponse == null || tokenResponse.access_token == null) {
+                        return Mono.error(new RuntimeException("Invalid token response from " + registration.name()));
+                    }
+
+                    // Lifetime counts from the request, not the response, to stay on the safe side
+                    Duration lifetime = tokenResponse.expires_in != null && tokenResponse.expires_in > 0
+                            ? Duration.ofSeconds(tokenResponse.expires_in)
+                            : defaultExpiresIn;
+                    Duration usable = lifetime.minus(expirySkew);
+                    if (usable.isNegative() || usable.isZero()) {
+                        usable = lifetime;
+                    }
+                    // Refresh point within the usable lifetime: for short-lived tokens the skew
+                    // would otherwise put it after expiry and every expiry would block a caller
+                    Duration refreshAfter = Duration.ofMillis((long) (usable.toMillis() * refreshRatio));
+                    CachedToken token = new CachedToken(
+                            tokenResponse.access_token,
+                            requestedAt.plus(refreshAfter),
+                            requestedAt.plus(usable));
+
+                    log.info("Obtained {} client credentials token (expires in {}s)", registration.name(), lifetime.toSeconds());
+                    fetchCounter(registration, "success").increment();
+                    return Mono.just(token);
+                })
+                .doOnError(e -> {
+                    log.error("Failed to get {} client credentials token", registration.name(), e);
+                    fetchCounter(registration, "failure").increment();
+                })
+                .onErrorMap(e -> new RuntimeException(
+                        registration.name().toUpperCase() + " token fetch failed: " + e.getMessage(), e));
+    }
+
+    private Counter fetchCounter(ClientRegistration registration, String outcome) {
+        return Counter.builder("client-credentials.token.fetch")
+                .description("Client credentials token requests by outcome")
+                .tag("client", registration.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record ClientKey(String tokenUri, String clientId, String scope) {
+    }
+
+    private record CachedToken(String accessToken, Instant refreshAt, Instant expiresAt) {
+    }
+
+    /**
+     * Client Credentials Token Response DTO
+     */
+    private static class ClientCredentialsTokenResponse {
+        public String access_token;
+        public String token_type;
+        public Long expires_in;
+        public String scope;
+    }
+}
@@ -0,0 +1,452 @@
+package com.example.demo.service;
+
+import com.example.demo.model.CacheEntry;
+import com.example.demo.util.SingleFlight;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing Cache
+ *
+ * Two-tier read-through cache for downstream lookups (US biometric, PSN access level):
+ * L1 is a bounded in-process Caffeine cache with a short TTL, L2 is Redis.
+ * At most one origin call per key runs at a time:
+ * 1. In-process: concurrent lookups of the same key share one Redis read / origin call
+ * 2. Across instances (optional): the origin call runs under a short Redis lease
+ *    (lock:{prefix}{key}); instances that lose the lease poll the cache until the
+ *    winner's value appears, and only call the origin themselves if it doesn't in time
+ *
+ * Stale-while-revalidate (see CacheTtl):
+ * - Younger than the soft TTL: served from cache (L1, else L2)
+ * - Between soft and hard TTL: served from L2, refreshed in the background
+ * - Past the hard TTL: loaded from the origin; the old value stays in Redis for the
+ *   stale-if-error period and is only handed out through readStale (circuit breaker fallback)
+ *
+ * Negative caching: an origin call that completes empty ("not found") is cached as an
+ * empty CacheEntry for the negative TTL, and lookups complete empty until it expires.
+ * A zero negative TTL turns negative caching off: nothing is written, so any stale copy
+ * of an earlier value stays available to readStale.
+ *
+ * L1 entries are only invalidated across instances by evict (via CoalescingCacheFactory's
+ * pub/sub channel); otherwise the L1 TTL bounds how long an instance can serve a value
+ * another instance has already replaced. Cached values are shared between callers and
+ * must be treated as read-only.
+ *
+ * Evictions bump a per-key eviction epoch (striped, so keys sharing a stripe are affected
+ * too). An origin load or refresh that was started before an eviction still returns its
+ * value to its callers but does not cache it, so it can't undo the eviction in Redis or L1.
+ * Loads on other instances see the eviction through the L1 broadcast.
+ *
+ * Values are stored as CacheEntry (value + fetch time). Plain values written before
+ * entries were wrapped are read as due for a background refresh.
+ *
+ * Metrics:
+ * - cache.lookup tagged cache and outcome=local|hit|stale|negative|origin|coalesced|waited
+ *   (local = L1 hit, hit = L2 hit, coalesced = joined an in-process lookup,
+ *   waited = served by another instance's origin call)
+ * - cache.origin.load tagged cache and result=value|empty|error (origin call duration)
+ * - cache.gets / cache.evictions / cache.size tagged cache={name}.l1 (Caffeine)
+ *
+ * Created through CoalescingCacheFactory.
+ *
+ * @param <V> Cached value type
+ */
+@Slf4j
+public class CoalescingCache<V> {
+
+    private static final int EVICTION_STRIPES = 256;
+
+    /**
+     * Cache TTLs
+     *
+     * @param soft Age after which a value is refreshed in the background
+     * @param hard Age after which a value is no longer served on the normal path
+     * @param staleIfError How long past the hard TTL a value is kept for readStale
+     * @param negative How long a "not found" result is cached, zero to not cache it
+     */
+    public record CacheTtl(Duration soft, Duration hard, Duration staleIfError, Duration negative) {
+
+        public CacheTtl {
+            if (soft.isNegative() || hard.isNegative() || staleIfError.isNegative() || negative.isNegative()) {
+                throw new IllegalArgumentException("Cache TTLs must not be negative: soft=" + soft + ", hard=" + hard
+                        + ", staleIfError=" + staleIfError + ", negative=" + negative);
+            }
+            if (soft.compareTo(hard) > 0) {
+                soft = hard;
+            }
+        }
+
+        /**
+         * Redis TTL of an entry
+         */
+        Duration retention() {
+            return hard.plus(staleIfError);
+        }
+    }
+
+    private final String name;
+    private final String keyPrefix;
+    private final Class<V> type;
+    private final CacheTtl ttl;
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final RedisLockService redisLockService;
+    private final Cache<String, CacheEntry<V>> local;
+    private final boolean distributedLock;
+    private final Duration leaseTime;
+    private final Duration pollInterval;
+    private final Function<String, Mono<Void>> remoteEviction;
+    private final SingleFlight<String, CacheEntry<V>> inFlight = new SingleFlight<>();
+    private final SingleFlight<String, CacheEntry<V>> refreshes = new SingleFlight<>();
+    private final AtomicLongArray evictionEpochs = new AtomicLongArray(EVICTION_STRIPES);
+    private final MeterRegistry meterRegistry;
+    private final Counter localHits;
+    private final Counter hits;
+    private final Counter stale;
+    private final Counter negative;
+    private final Counter origin;
+    private final Counter coalesced;
+    private final Counter waited;
+
+    CoalescingCache(
+            String name,
+            String keyPrefix,
+            Class<V> type,
+            CacheTtl ttl,
+            ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            RedisLockService redisLockService,
+            MeterRegistry meterRegistry,
+            long localMaximumSize,
+            Duration localTtl,
+            boolean distributedLock,
+            Duration leaseTime,
+            Duration pollInterval,
+            Function<String, Mono<Void>> remoteEviction
+    ) {
+        this.name = name;
+        this.keyPrefix = keyPrefix;
+        this.type = type;
+        this.ttl = ttl;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.redisLockService = redisLockService;
+        this.distributedLock = distributedLock;
+        this.leaseTime = leaseTime;
+        this.pollInterval = pollInterval;
+        this.remoteEviction = remoteEviction;
+
+        if (localMaximumSize > 0) {
+            this.local = Caffeine.newBuilder()
+                    .maximumSize(localMaximumSize)
+                    .expireAfterWrite(localTtl)
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, local, name + ".l1");
+        } else {
+            this.local = null;
+        }
+
+        this.meterRegistry = meterRegistry;
+        this.localHits = lookupCounter("local");
+        this.hits = lookupCounter("hit");
+        this.stale = lookupCounter("stale");
+        this.negative = lookupCounter("negative");
+        this.origin = lookupCounter("origin");
+        this.coalesced = lookupCounter("coalesced");
+        this.waited = lookupCounter("waited");
+    }
+
+    /**
+     * Get the cached value, or load it from the origin and cache it
+     *
+     * @param key Cache key (without prefix)
+     * @param originCall Supplier of the origin call, used on a miss and for background refreshes;
+     *                   completing empty means "not found" and is cached for the negative TTL
+     * @return Mono of the value, empty if the origin reported "not found"
+     */
+    public Mono<V> get(String key, Supplier<Mono<V>> originCall) {
+        return Mono.defer(() -> {
+            CacheEntry<V> cached = local != null ? local.getIfPresent(key) : null;
+            if (cached != null && isUsable(cached) && !isPastSoft(cached)) {
+                localHits.increment();
+                return Mono.justOrEmpty(cached.getValue());
+            }
+
+            long epoch = evictionEpoch(key);
+            return inFlight.execute(key,
+                            () -> readEntry(key)
+                                    .filter(this::isUsable)
+                                    .doOnNext(entry -> {
+                                        cacheLocally(key, entry, epoch);
+                                        if (entry.getValue() == null) {
+                                            log.debug("{} negative cache hit: {}", name, key);
+                                            negative.increment();
+                                        } else if (!isPastSoft(entry)) {
+                                            log.debug("{} cache hit: {}", name, key);
+                                            hits.increment();
+                                        } else {
+                                            log.debug("{} cache hit past soft TTL, refreshing: {}", name, key);
+                                            stale.increment();
+                                            refreshInBackground(key, originCall);
+                                        }
+                                    })
+                                    .switchIfEmpty(Mono.defer(() -> load(key, originCall))),
+                            coalesced::increment)
+                    .mapNotNull(CacheEntry::getValue);
+        });
+    }
+
+    /**
+     * Get the cached value without calling the origin
+     * For entries that can't be rebuilt from the key alone
+     *
+     * @param key Cache key (without prefix)
+     * @return Mono of the value, empty if not cached (or cached as "not found")
+     */
+    public Mono<V> getIfPresent(String key) {
+        return Mono.defer(() -> {
+            CacheEntry<V> cached = local != null ? local.getIfPresent(key) : null;
+            if (cached != null && isUsable(cached)) {
+                localHits.increment();
+                return Mono.justOrEmpty(cached.getValue());
+            }
+
+            long epoch = evictionEpoch(key);
+            return readEntry(key)
+                    .filter(this::isUsable)
+                    .doOnNext(entry -> {
+                        cacheLocally(key, entry, epoch);
+                        hits.increment();
+                    })
+                    .mapNotNull(CacheEntry::getValue);
+        });
+    }
+
+    /**
+     * Read the cached value regardless of its age (up to the stale-if-error period)
+     * For circuit breaker fallbacks only
+     *
+     * @param key Cache key (without prefix)
+     * @return Mono of the cached value, empty if nothing is retained
+     */
+    public Mono<V> readStale(String key) {
+        return readEntry(key)
+                .mapNotNull(CacheEntry::getValue);
+    }
+
+    /**
+     * Remove a key from Redis (including its stale-if-error copy) and from L1 on every instance
+     * The next lookup calls the origin
+     *
+     * @param key Cache key (without prefix)
+     * @return Mono of Void
+     */
+    public Mono<Void> evict(String key) {
+        return Mono.defer(() -> {
+                    // Before the delete, so a load finishing in between doesn't write the value back
+                    evictionEpochs.incrementAndGet(stripe(key));
+                    return reactiveRedisTemplate.delete(keyPrefix + key);
+                })
+                .doOnSuccess(deleted -> evictLocally(key))
+                .then(local != null ? remoteEviction.apply(key) : Mono.empty());
+    }
+
+    /**
+     * Remove a key from L1 only (eviction broadcast by another instance)
+     */
+    void evictLocally(String key) {
+        evictionEpochs.incrementAndGet(stripe(key));
+        if (local != null) {
+            local.invalidate(key);
+        }
+    }
+
+    /**
+     * Read the cached entry under the key from Redis
+     */
+    private Mono<CacheEntry<V>> readEntry(String key) {
+        return reactiveRedisTemplate.opsForValue().get(keyPrefix + key)
+                .flatMap(cached -> {
+                    if (cached instanceof CacheEntry<?> entry
+                            && (entry.getValue() == null || type.isInstance(entry.getValue()))) {
+                        return Mono.just(new CacheEntry<>(type.cast(entry.getValue()), entry.getFetchedAt()));
+                    }
+                    if (type.isInstance(cached)) {
+                        // Written before entries were wrapped - treat as due for refresh
+                        long fetchedAt = System.currentTimeMillis() - ttl.soft().toMillis();
+                        return Mono.just(new CacheEntry<>(type.cast(cached), fetchedAt));
+                    }
+                    log.warn("Ignoring unexpected {} cache value under {}: {}", name, key, cached.getClass().getName());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Read the cached entry if it is younger than the given age
+     */
+    private Mono<CacheEntry<V>> readYoungerThan(String key, Duration maxAge) {
+        return readEntry(key)
+                .filter(entry -> isUsable(entry) && age(entry).compareTo(maxAge) < 0);
+    }
+
+    private Mono<CacheEntry<V>> load(String key, Supplier<Mono<V>> originCall) {
+        if (!distributedLock) {
+            return callOrigin(key, originCall);
+        }
+
+        String lockKey = "lock:" + keyPrefix + key;
+        return redisLockService.tryAcquire(lockKey, leaseTime)
+                // Another instance may have filled the cache between our miss and the lease
+                .flatMap(token -> readYoungerThan(key, ttl.hard())
+                        .switchIfEmpty(Mono.defer(() -> callOrigin(key, originCall)))
+                        .flatMap(entry -> redisLockService.release(lockKey, token).thenReturn(entry))
+                        .onErrorResume(e -> redisLockService.release(lockKey, token).then(Mono.error(e))))
+                .switchIfEmpty(Mono.defer(() -> awaitOtherInstance(key, originCall)));
+    }
+
+    /**
+     * Refresh a soft-expired value without holding up the caller
+     * At most one refresh per key per instance; with the distributed lock, instances
+     * that don't get the lease leave the refresh to the one that did
+     */
+    private void refreshInBackground(String key, Supplier<Mono<V>> originCall) {
+        if (refreshes.isInFlight(key)) {
+            return;
+        }
+
+        refreshes.execute(key, () -> {
+                    if (!distributedLock) {
+                        return callOrigin(key, originCall);
+                    }
+                    String lockKey = "lock:" + keyPrefix + key;
+                    return redisLockService.tryAcquire(lockKey, leaseTime)
+                            .flatMap(token -> readYoungerThan(key, ttl.soft())
+                                    .switchIfEmpty(Mono.defer(() -> callOrigin(key, originCall)))
+                                    .flatMap(entry -> redisLockService.release(lockKey, token).thenReturn(entry))
+                                    .onErrorResume(e -> redisLockService.release(lockKey, token).then(Mono.error(e))));
+                })
+                .subscribe(
+                        entry -> log.debug("{} cache refreshed in background: {}", name, key),
+                        e -> log.warn("{} background refresh failed for {}: {}", name, key, e.getMessage()));
+    }
+
+    /**
+     * Poll the cache while another instance holds the lease
+     * Falls back to our own origin call if the value doesn't appear within the lease time
+     */
+    private Mono<CacheEntry<V>> awaitOtherInstance(String key, Supplier<Mono<V>> originCall) {
+        long maxPolls = Math.max(1, leaseTime.toMillis() / Math.max(1, pollInterval.toMillis()));
+        long epoch = evictionEpoch(key);
+        return readYoungerThan(key, ttl.hard())
+                .repeatWhenEmpty(attempts -> attempts.take(maxPolls).delayElements(pollInterval))
+                .doOnNext(entry -> {
+                    log.debug("{} value loaded by another instance: {}", name, key);
+                    waited.increment();
+                    cacheLocally(key, entry, epoch);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.warn("{} lookup lease held too long, calling origin: {}", name, key);
+                    return callOrigin(key, originCall);
+                }));
+    }
+
+    /**
+     * Call the origin and cache the result in both tiers
+     * An empty result is cached as a negative entry, unless the negative TTL is zero.
+     * Nothing is cached if the key was evicted while the origin call was running.
+     */
+    private Mono<CacheEntry<V>> callOrigin(String key, Supplier<Mono<V>> originCall) {
+        return Mono.defer(() -> {
+            long epoch = evictionEpoch(key);
+            origin.increment();
+            Timer.Sample sample = Timer.start(meterRegistry);
+            String[] result = {"error"};
+
+            return Mono.defer(originCall)
+                    .map(value -> new CacheEntry<>(value, System.currentTimeMillis()))
+                    .defaultIfEmpty(new CacheEntry<>(null, System.currentTimeMillis()))
+                    .doOnNext(entry -> result[0] = entry.getValue() != null ? "value" : "empty")
+                    .doFinally(signal -> {
+                        if (signal != SignalType.CANCEL) {
+                            sample.stop(loadTimer(result[0]));
+                        }
+                    })
+                    .flatMap(entry -> {
+                        Duration retention = entry.getValue() != null ? ttl.retention() : ttl.negative();
+                        if (retention.isZero()) {
+                            // A zero TTL would store the entry without expiry
+                            return Mono.just(entry);
+                        }
+                        if (evictionEpoch(key) != epoch) {
+                            log.debug("{} key evicted during origin call, not caching: {}", name, key);
+                            return Mono.just(entry);
+                        }
+                        return reactiveRedisTemplate.opsForValue()
+                                .set(keyPrefix + key, entry, retention)
+                                .doOnSuccess(stored -> cacheLocally(key, entry, epoch))
+                                .thenReturn(entry);
+                    });
+        });
+    }
+
+    /**
+     * Put an entry read or loaded since the given eviction epoch into L1
+     * Skipped if the key was evicted in the meantime
+     */
+    private void cacheLocally(String key, CacheEntry<V> entry, long epoch) {
+        if (local != null && evictionEpoch(key) == epoch) {
+            local.put(key, entry);
+        }
+    }
+
+    private long evictionEpoch(String key) {
+        return evictionEpochs.get(stripe(key));
+    }
+
+    private static int stripe(String key) {
+        return Math.floorMod(key.hashCode(), EVICTION_STRIPES);
+    }
+
+    /**
+     * Usable on the normal path: values younger than the hard TTL, negatives younger than the negative TTL
+     */
+    private boolean isUsable(CacheEntry<V> entry) {
+        Duration maxAge = entry.getValue() != null ? ttl.hard() : ttl.negative();
+        return age(entry).compareTo(maxAge) < 0;
+    }
+
+    private boolean isPastSoft(CacheEntry<V> entry) {
+        return entry.getValue() != null && age(entry).compareTo(ttl.soft()) >= 0;
+    }
+
+    private static Duration age(CacheEntry<?> entry) {
+        return Duration.ofMillis(System.currentTimeMillis() - entry.getFetchedAt());
+    }
+
+    private Counter lookupCounter(String outcome) {
+        return Counter.builder("cache.lookup")
+                .description("Cache lookups by outcome")
+                .tag("cache", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private Timer loadTimer(String result) {
+        return Timer.builder("cache.origin.load")
+                .description("Origin load time of cache misses and refreshes")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalescing Cache Factory
+ *
+ * Creates CoalescingCache instances with the shared Redis template, lock service,
+ * meter registry, in-process tier settings (cache.local.*, maximum-size 0 disables it)
+ * and coalescing settings (cache.coalescing.*).
+ *
+ * Evictions are broadcast on the Redis pub/sub channel cache:evict ({cache name}|{key}),
+ * so every instance drops the key from the cache's in-process tier. The subscription starts
+ * with the application context and connects lazily, so an unreachable Redis delays
+ * evictions (retried with backoff; L1 entries still expire with the L1 TTL) but not startup.
+ */
+@Slf4j
+@Service
+public class CoalescingCacheFactory implements SmartLifecycle {
+
+    static final String EVICTION_CHANNEL = "cache:evict";
+
+    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+    private final RedisLockService redisLockService;
+    private final MeterRegistry meterRegistry;
+    private final long localMaximumSize;
+    private final Duration localTtl;
+    private final boolean distributedLock;
+    private final Duration leaseTime;
+    private final Duration pollInterval;
+    private final Map<String, CoalescingCache<?>> caches = new ConcurrentHashMap<>();
+
+    private volatile Disposable subscription;
+
+    public CoalescingCacheFactory(
+            ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            RedisLockService redisLockService,
+            MeterRegistry meterRegistry,
+            @Value("${cache.local.maximum-size:10000}") long localMaximumSize,
+            @Value("${cache.local.ttl.seconds:30}") int localTtlSeconds,
+            @Value("${cache.coalescing.distributed-lock.enabled:false}") boolean distributedLock,
+            @Value("${cache.coalescing.distributed-lock.lease.millis:5000}") int leaseMillis,
+            @Value("${cache.coalescing.distributed-lock.poll-interval.millis:50}") int pollIntervalMillis
+    ) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+        this.redisLockService = redisLockService;
+        this.meterRegistry = meterRegistry;
+        this.localMaximumSize = localMaximumSize;
+        this.localTtl = Duration.ofSeconds(localTtlSeconds);
+        this.distributedLock = distributedLock;
+        this.leaseTime = Duration.ofMillis(leaseMillis);
+        this.pollInterval = Duration.ofMillis(pollIntervalMillis);
+    }
+
+    @Override
+    public void start() {
+        if (localMaximumSize <= 0) {
+            return;
+        }
+        // Deferred: the listener container connects on creation, which must happen inside the retry
+        subscription = Flux.defer(() -> reactiveRedisBytesTemplate.listenToChannel(EVICTION_CHANNEL))
+                .map(message -> new String(message.getMessage(), StandardCharsets.UTF_8))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Cache eviction subscription lost, resubscribing: {}",
+                                signal.failure().getMessage())))
+                .subscribe(this::evictLocally);
+    }
+
+    @Override
+    public void stop() {
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+            subscription = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null;
+    }
+
+    /**
+     * Create a cache
+     *
+     * @param name Cache name (metric tag and log label, unique)
+     * @param keyPrefix Redis key prefix
+     * @param type Value type
+     * @param ttl Soft, hard, stale-if-error and negative TTLs
+     * @return New cache
+     */
+    public <V> CoalescingCache<V> create(String name, String keyPrefix, Class<V> type, CoalescingCache.CacheTtl ttl) {
+        CoalescingCache<V> cache = new CoalescingCache<>(name, keyPrefix, type, ttl, reactiveRedisTemplate,
+                redisLockService, meterRegistry, localMaximumSize, localTtl, distributedLock, leaseTime, pollInterval,
+                key -> broadcastEviction(name, key));
+        caches.put(name, cache);
+        return cache;
+    }
+
+    private Mono<Void> broadcastEviction(String cacheName, String key) {
+        return reactiveRedisBytesTemplate.convertAndSend(EVICTION_CHANNEL,
+                        (cacheName + "|" + key).getBytes(StandardCharsets.UTF_8))
+                .doOnError(e -> log.warn("Failed to broadcast {} eviction of {} (expires with L1 TTL): {}",
+                        cacheName, key, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private void evictLocally(String message) {
+        int separator = message.indexOf('|');
+        if (separator < 0) {
+            return;
+        }
+        CoalescingCache<?> cache = caches.get(message.substring(0, separator));
+        if (cache != null) {
+            cache.evictLocally(message.substring(separator + 1));
+        }
+    }
+}
@@ -20,6 +20,7 @@ import reactor.core.scheduler.Schedulers;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -38,6 +39,7 @@ public class DocumentService {
     private final DocumentRepository documentRepository;
     private final S3Service s3Service;
     private final AccessDecisionService accessDecisionService;
+    private final SessionService sessionService;
 
     private static final long MAX_FILE_SIZE = 25 * 1024 * 1024; // 25 MB
     private static final int MAX_FILES_PER_UPLOAD = 5;
@@ -55,11 +57,13 @@ public class DocumentService {
     public DocumentService(
             DocumentRepository documentRepository,
             S3Service s3Service,
-            AccessDecisionService accessDecisionService
+            AccessDecisionService accessDecisionService,
+            SessionService sessionService
     ) {
         this.documentRepository = documentRepository;
         this.s3Service = s3Service;
         this.accessDecisionService = accessDecisionService;
+        this.sessionService = sessionService;
     }
 
     /**
@@ -70,8 +74,9 @@ public class DocumentService {
             DocumentUploadRequest request,
             UserSession session
     ) {
-        return Mono.fromCallable(() -> initiateUploadBlocking(request, session))
-                .subscribeOn(Schedulers.boundedElastic());
+        return withAccessDecisionIfNeeded(session, request.getOwnerIdType(), request.getOwnerIdValue())
+                .flatMap(resolved -> Mono.fromCallable(() -> initiateUploadBlocking(request, resolved))
+                        .subscribeOn(Schedulers.boundedElastic()));
     }
 
     /**
@@ -218,14 +223,16 @@ public class DocumentService {
     public Mono<String> getDownloadUrl(String documentId, UserSession session) {
         return documentRepository.findById(documentId)
                 .switchIfEmpty(Mono.error(new ResourceNotFoundException("Document not found: " + documentId)))
-                .flatMap(userDocument -> {
-                    // Verify access
-                    validateDocumentAccess(userDocument, session, false);
-
-                    // Update last accessed timestamp
-                    userDocument.setLastAccessedAt(Instant.now());
-                    return documentRepository.save(userDocument);
-                })
+                .flatMap(userDocument -> withAccessDecisionIfNeeded(
+                        session, userDocument.getOwnerIdType(), userDocument.getOwnerIdValue())
+                        .flatMap(resolved -> {
+                            // Verify access
+                            validateDocumentAccess(userDocument, resolved, false);
+
+                            // Update last accessed timestamp
+                            userDocument.setLastAccessedAt(Instant.now());
+                            return documentRepository.save(userDocument);
+                        }))
                 .map(userDocument -> {
                     // Generate presigned download URL (blocking S3 call - TODO: Make S3Service reactive)
                     return s3Service.generatePresignedDownloadUrl(userDocument.getS3Key());
@@ -235,13 +242,21 @@ public class DocumentService {
 
     /**
      * Search documents with filters (Reactive)
+     * Another member's sensitive documents are left out by the query without ROI, so pages
+     * and totals are consistent. The page is still authorized in one pass (see checkAccess)
      */
     public Mono<Page<UserDocument>> searchDocuments(
             DocumentSearchRequest request,
             UserSession session
     ) {
-        return Mono.fromCallable(() -> searchDocumentsBlocking(request, session))
-                .subscribeOn(Schedulers.boundedElastic());
+        return withAccessDecisionIfNeeded(session, request.getOwnerIdType(), request.getOwnerIdValue())
+                .flatMap(resolved -> Mono.fromCallable(() -> searchDocumentsBlocking(request, resolved))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(page -> checkAccess(page.getContent(), resolved)
+                                .map(viewable -> viewable.size() == page.getNumberOfElements()
+                                        ? page
+                                        : new PageImpl<>(viewable, page.getPageable(),
+                                                page.getTotalElements() - (page.getNumberOfElements() - viewable.size())))));
     }
 
     /**
@@ -253,8 +268,10 @@ public class DocumentService {
     ) {
         log.info("Searching documents for owner: {}={}", request.getOwnerIdType(), request.getOwnerIdValue());
 
-        // Verify access to owner's documents
-        validateSearchAccess(request.getOwnerIdType(), request.getOwnerIdValue(), session, request.getIncludeSensitive());
+        // Verify access to owner's documents; without ROI, sensitive documents are left out by
+        // the queries so that pages are full and the total only counts viewable documents
+        boolean excludeSensitive = !validateSearchAccess(
+                request.getOwnerIdType(), request.getOwnerIdValue(), session, request.getIncludeSensitive());
 
         // Build pageable
         Sort.Direction direction = "ASC".equalsIgnoreCase(request.getSortDirection())
@@ -274,60 +291,134 @@ public class DocumentService {
                 MongoQueryUtil.validateQueryLength(request.getSearchQuery(), 200)
             );
 
-            documents = documentRepository.searchDocuments(
-                    request.getOwnerIdType(),
-                    request.getOwnerIdValue(),
-                    UserDocument.DocumentStatus.ACTIVE,
-                    sanitizedQuery,
-                    pageable
-            ).collectList().block();
-        } else if (request.getCategories() != null && !request.getCategories().isEmpty()) {
-            // TODO: Implement category filter
-            // For now, return all active documents
-            documents = documentRepository.findByOwnerIdTypeAndOwnerIdValueAndStatus(
-                    request.getOwnerIdType(),
-                    request.getOwnerIdValue(),
-                    UserDocument.DocumentStatus.ACTIVE,
-                    pageable
+            documents = (excludeSensitive
+                    ? documentRepository.searchNonSensitiveDocuments(
+                            request.getOwnerIdType(),
+                            request.getOwnerIdValue(),
+                            UserDocument.DocumentStatus.ACTIVE,
+                            sanitizedQuery,
+                            pageable)
+                    : documentRepository.searchDocuments(
+                            request.getOwnerIdType(),
+                            request.getOwnerIdValue(),
+                            UserDocument.DocumentStatus.ACTIVE,
+                            sanitizedQuery,
+                            pageable)
             ).collectList().block();
         } else {
-            documents = documentRepository.findByOwnerIdTypeAndOwnerIdValueAndStatus(
-                    request.getOwnerIdType(),
-                    request.getOwnerIdValue(),
-                    UserDocument.DocumentStatus.ACTIVE,
-                    pageable
-            ).collectList().block();
+            // TODO: Implement category filter (request.getCategories())
+            // For now, return all active documents
+            documents = findByOwner(request, excludeSensitive, pageable).collectList().block();
         }
 
         // Get total count for pagination
-        Long totalCount = documentRepository.countByOwnerIdTypeAndOwnerIdValueAndStatus(
-                request.getOwnerIdType(),
-                request.getOwnerIdValue(),
-                UserDocument.DocumentStatus.ACTIVE
+        Long totalCount = (excludeSensitive
+                ? documentRepository.countByOwnerIdTypeAndOwnerIdValueAndStatusAndIsSensitiveNot(
+                        request.getOwnerIdType(),
+                        request.getOwnerIdValue(),
+                        UserDocument.DocumentStatus.ACTIVE,
+                        true)
+                : documentRepository.countByOwnerIdTypeAndOwnerIdValueAndStatus(
+                        request.getOwnerIdType(),
+                        request.getOwnerIdValue(),
+                        UserDocument.DocumentStatus.ACTIVE)
         ).block();
 
         return new PageImpl<>(documents, pageable, totalCount != null ? totalCount : 0);
     }
 
+    /**
+     * Active documents of the searched owner, optionally without sensitive ones
+     */
+    private Flux<UserDocument> findByOwner(DocumentSearchRequest request, boolean excludeSensitive, Pageable pageable) {
+        if (excludeSensitive) {
+            return documentRepository.findByOwnerIdTypeAndOwnerIdValueAndStatusAndIsSensitiveNot(
+                    request.getOwnerIdType(),
+                    request.getOwnerIdValue(),
+                    UserDocument.DocumentStatus.ACTIVE,
+                    true,
+                    pageable);
+        }
+        return documentRepository.findByOwnerIdTypeAndOwnerIdValueAndStatus(
+                request.getOwnerIdType(),
+                request.getOwnerIdValue(),
+                UserDocument.DocumentStatus.ACTIVE,
+                pageable);
+    }
+
     /**
      * Delete a document (soft delete) - Reactive
      */
     public Mono<Void> deleteDocument(String documentId, UserSession session) {
         return documentRepository.findById(documentId)
                 .switchIfEmpty(Mono.error(new ResourceNotFoundException("Document not found: " + documentId)))
-                .flatMap(userDocument -> {
-                    // Verify access (must be owner or have DAA)
-                    validateDocumentAccess(userDocument, session, true);
-
-                    // Soft delete
-                    userDocument.setStatus(UserDocument.DocumentStatus.DELETED);
-                    userDocument.setDeletedAt(Instant.now());
-                    return documentRepository.save(userDocument);
-                })
+                .flatMap(userDocument -> withAccessDecisionIfNeeded(
+                        session, userDocument.getOwnerIdType(), userDocument.getOwnerIdValue())
+                        .flatMap(resolved -> {
+                            // Verify access (must be owner or have DAA)
+                            validateDocumentAccess(userDocument, resolved, true);
+
+                            // Soft delete
+                            userDocument.setStatus(UserDocument.DocumentStatus.DELETED);
+                            userDocument.setDeletedAt(Instant.now());
+                            return documentRepository.save(userDocument);
+                        }))
                 .doOnSuccess(doc -> log.info("Deleted document: {}", documentId))
                 .then();
     }
 
+    /**
+     * Authorize a list of documents in one pass (Reactive)
+     * Keeps the documents the session may view: its own, and other members' documents
+     * the access decision grants (sensitive ones only with ROI). The access decision is
+     * loaded only if some document belongs to another member.
+     *
+     * @param documents Documents to authorize
+     * @param session User session
+     * @return Viewable documents, in the original order
+     */
+    public Mono<List<UserDocument>> checkAccess(List<UserDocument> documents, UserSession session) {
+        String loggedInIdType = session.getUserInfo().getIdType();
+        String loggedInIdValue = session.getUserInfo().getIdValue();
+        boolean allOwn = documents.stream()
+                .allMatch(document -> isOwnedBy(document, loggedInIdType, loggedInIdValue));
+        if (allOwn) {
+            return Mono.just(documents);
+        }
+
+        return sessionService.withAccessDecision(session)
+                .map(resolved -> {
+                    AccessDecision decision = resolved.getAccessDecision();
+                    MemberCapabilities capabilities = decision != null
+                            ? decision.capabilities()
+                            : MemberCapabilities.none();
+
+                    List<UserDocument> viewable = new ArrayList<>(documents.size());
+                    for (UserDocument document : documents) {
+                        if (isOwnedBy(document, loggedInIdType, loggedInIdValue)) {
+                            viewable.add(document);
+                            continue;
+                        }
+                        int required = Boolean.TRUE.equals(document.getIsSensitive())
+                                ? MemberCapabilities.VIEW | MemberCapabilities.ROI
+                                : MemberCapabilities.VIEW;
+                        if (capabilities.has(document.getOwnerIdType(), document.getOwnerIdValue(), required)) {
+                            viewable.add(document);
+                        }
+                    }
+                    if (viewable.size() < documents.size()) {
+                        log.info("Filtered {} of {} documents not viewable by user {}",
+                                documents.size() - viewable.size(), documents.size(), loggedInIdValue);
+                    }
+                    return viewable;
+                });
+    }
+
+    private static boolean isOwnedBy(UserDocument document, String idType, String idValue) {
+        return Objects.equals(document.getOwnerIdType(), idType)
+                && Objects.equals(document.getOwnerIdValue(), idValue);
+    }
+
     /**
      * Clean up abandoned temporary files
      * Called by scheduled job
@@ -445,6 +536,16 @@ public class DocumentService {
         }
     }
 
+    /**
+     * Load the session's access decision only when acting on another member's data
+     * Own data never needs the decision, so the common case skips the Redis read
+     */
+    private Mono<UserSession> withAccessDecisionIfNeeded(UserSession session, String ownerIdType, String ownerIdValue) {
+        boolean isSelf = Objects.equals(ownerIdType, session.getUserInfo().getIdType())
+                && Objects.equals(ownerIdValue, session.getUserInfo().getIdValue());
+        return isSelf ? Mono.just(session) : sessionService.withAccessDecision(session);
+    }
+
     /**
      * Validate upload request
      */
@@ -482,16 +583,8 @@ public class DocumentService {
 
         if (!uploadingForSelf) {
             // Check if user has DAA access for this owner
-            AccessDecision decision = session.getAccessDecision();
-            if (decision == null) {
-                throw new AccessDeniedException("Access decision not available");
-            }
-
-            boolean hasDAA = decision.getViewableMembers().stream()
-                    .anyMatch(member ->
-                            member.getEid().equals(request.getOwnerIdValue()) &&
-                                    Boolean.TRUE.equals(member.getHasDigitalAccountAccess())
-                    );
+            boolean hasDAA = capabilitiesOf(session)
+                    .has(request.getOwnerIdType(), request.getOwnerIdValue(), MemberCapabilities.DAA);
 
             if (!hasDAA) {
                 throw new AccessDeniedException("No DAA access to upload documents for this member");
@@ -515,33 +608,29 @@ public class DocumentService {
         }
 
         // Viewing someone else's document
-        AccessDecision decision = session.getAccessDecision();
-        if (decision == null) {
-            throw new AccessDeniedException("Access decision not available");
+        int capabilities = capabilitiesOf(session)
+                .get(userDocument.getOwnerIdType(), userDocument.getOwnerIdValue());
+        if ((capabilities & MemberCapabilities.VIEW) == 0) {
+            throw new AccessDeniedException("No access to this member's documents");
         }
 
-        // Find member in viewable list
-        SupportedMember member = decision.getViewableMembers().stream()
-                .filter(m -> m.getEid().equals(userDocument.getOwnerIdValue()))
-                .findFirst()
-                .orElseThrow(() -> new AccessDeniedException("No access to this member's documents"));
-
         // Check if has DAA (for write operations)
-        if (requireDAA && !Boolean.TRUE.equals(member.getHasDigitalAccountAccess())) {
+        if (requireDAA && (capabilities & MemberCapabilities.DAA) == 0) {
             throw new AccessDeniedException("No DAA access for this member");
         }
 
         // Check if document is sensitive (requires ROI)
-        if (Boolean.TRUE.equals(userDocument.getIsSensitive())
-                && !Boolean.TRUE.equals(member.getHasSensitiveDataAccess())) {
+        if (Boolean.TRUE.equals(userDocument.getIsSensitive()) && (capabilities & MemberCapabilities.ROI) == 0) {
             throw new AccessDeniedException("No ROI access for sensitive documents");
         }
     }
 
     /**
      * Validate access for document search
+     *
+     * @return Whether sensitive documents may be returned (own documents or ROI)
      */
-    private void validateSearchAccess(String ownerIdType, String ownerIdValue, UserSession session, boolean includeSensitive) {
+    private boolean validateSearchAccess(String ownerIdType, String ownerIdValue, UserSession session, boolean includeSensitive) {
         String loggedInIdType = session.getUserInfo().getIdType();
         String loggedInIdValue = session.getUserInfo().getIdValue();
 
@@ -549,24 +638,31 @@ public class DocumentService {
         boolean isOwnDocuments = ownerIdType.equals(loggedInIdType) && ownerIdValue.equals(loggedInIdValue);
 
         if (isOwnDocuments) {
-            return; // Can always search own documents
+            return true; // Can always search own documents
         }
 
         // Searching someone else's documents
-        AccessDecision decision = session.getAccessDecision();
-        if (decision == null) {
-            throw new AccessDeniedException("Access decision not available");
+        int capabilities = capabilitiesOf(session).get(ownerIdType, ownerIdValue);
+        if ((capabilities & MemberCapabilities.VIEW) == 0) {
+            throw new AccessDeniedException("No access to this member's documents");
         }
 
-        // Find member in viewable list
-        SupportedMember member = decision.getViewableMembers().stream()
-                .filter(m -> m.getEid().equals(ownerIdValue))
-                .findFirst()
-                .orElseThrow(() -> new AccessDeniedException("No access to this member's documents"));
-
         // If requesting sensitive documents, must have ROI
-        if (includeSensitive && !Boolean.TRUE.equals(member.getHasSensitiveDataAccess())) {
+        boolean roi = (capabilities & MemberCapabilities.ROI) != 0;
+        if (includeSensitive && !roi) {
             throw new AccessDeniedException("No ROI access for sensitive documents");
         }
+        return roi;
+    }
+
+    /**
+     * Capability index of the session's access decision
+     */
+    private MemberCapabilities capabilitiesOf(UserSession session) {
+        AccessDecision decision = session.getAccessDecision();
+        if (decision == null) {
+            throw new AccessDeniedException("Access decision not available");
+        }
+        return decision.capabilities();
     }
 }
@@ -0,0 +1,259 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserInfo;
+import com.example.demo.util.SingleFlight;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimNames;
+import org.springframework.security.oauth2.jwt.JwtClaimValidator;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * ID Token Verifier
+ *
+ * Verifies the id_token returned by the token exchange locally (signature, issuer,
+ * audience, expiry) against the IDP's JWKS, so login can build UserInfo from its
+ * claims instead of calling the userinfo endpoint.
+ *
+ * The JWKS is cached and refreshed in the background. A token signed with a key that
+ * is not in the cached set (key rotation) triggers a refetch, at most once per
+ * min-refetch-interval. Concurrent fetches are coalesced.
+ *
+ * Returns empty (caller falls back to userinfo) when local validation is disabled,
+ * the token cannot be verified, or a required claim is missing.
+ * The nonce is not checked: the authorization request is started by the frontend.
+ */
+@Slf4j
+@Service
+public class IdTokenVerifier implements InitializingBean, DisposableBean {
+
+    private static final String SINGLE_FLIGHT_KEY = "jwks";
+
+    /**
+     * Claims describing the token rather than the user
+     */
+    private static final Set<String> TOKEN_CLAIMS = Set.of(
+            JwtClaimNames.ISS, JwtClaimNames.AUD, JwtClaimNames.EXP, JwtClaimNames.IAT, JwtClaimNames.NBF,
+            JwtClaimNames.JTI, "auth_time", "nonce", "azp", "at_hash", "c_hash", "sid");
+
+    private static final ObjectMapper CLAIMS_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final WebClient webClient;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final String jwkSetUri;
+    private final List<String> requiredClaims;
+    private final Duration refreshInterval;
+    private final Duration minRefetchInterval;
+    private final NimbusReactiveJwtDecoder decoder;
+
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>();
+    private final AtomicReference<Instant> lastFetch = new AtomicReference<>(Instant.EPOCH);
+    private final SingleFlight<String, JWKSet> inFlightFetches = new SingleFlight<>();
+    private Disposable refreshSubscription;
+
+    public IdTokenVerifier(
+            @Qualifier("idpWebClient") WebClient webClient,
+            ClientRegistrationRepository clientRegistrationRepository,
+            MeterRegistry meterRegistry,
+            @Value("${spring.security.oauth2.client.provider.idp.issuer-uri}") String issuerUri,
+            @Value("${auth.id-token.local-validation.enabled:false}") boolean enabled,
+            @Value("${auth.id-token.required-claims:hsid,given_name,family_name}") List<String> requiredClaims,
+            @Value("${auth.id-token.jws-algorithm:RS256}") String jwsAlgorithm,
+            @Value("${auth.id-token.jwks.refresh.minutes:15}") long refreshMinutes,
+            @Value("${auth.id-token.jwks.min-refetch-interval.seconds:30}") long minRefetchSeconds
+    ) {
+        ClientRegistration registration = clientRegistrationRepository.findByRegistrationId("idp");
+        this.webClient = webClient;
+        this.meterRegistry = meterRegistry;
+        this.jwkSetUri = registration.getProviderDetails().getJwkSetUri();
+        this.enabled = enabled && jwkSetUri != null && !jwkSetUri.isEmpty();
+        this.requiredClaims = requiredClaims;
+        this.refreshInterval = Duration.ofMinutes(refreshMinutes);
+        this.minRefetchInterval = Duration.ofSeconds(minRefetchSeconds);
+
+        if (enabled && !this.enabled) {
+            log.warn("ID token local validation enabled but no jwk-set-uri configured, using userinfo endpoint");
+        }
+
+        String clientId = registration.getClientId();
+        this.decoder = NimbusReactiveJwtDecoder.withJwkSource(this::keysFor)
+                .jwsAlgorithm(SignatureAlgorithm.from(jwsAlgorithm))
+                .build();
+        this.decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                JwtValidators.createDefaultWithIssuer(issuerUri),
+                new JwtClaimValidator<List<String>>(JwtClaimNames.AUD, aud -> aud != null && aud.contains(clientId))));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        refreshSubscription = Flux.interval(Duration.ZERO, refreshInterval)
+                .concatMap(tick -> fetchKeys()
+                        .onErrorResume(e -> {
+                            // Keep the previous key set; the next refresh or a kid miss retries
+                            log.warn("Failed to refresh JWKS from {}: {}", jwkSetUri, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+        log.info("ID token local validation enabled (JWKS: {}, refresh every {})", jwkSetUri, refreshInterval);
+    }
+
+    @Override
+    public void destroy() {
+        if (refreshSubscription != null) {
+            refreshSubscription.dispose();
+        }
+    }
+
+    /**
+     * Build UserInfo from a locally verified ID token
+     *
+     * @param idToken ID token from the token response (may be null)
+     * @return Mono of UserInfo, or empty if the userinfo endpoint has to be called instead
+     */
+    public Mono<UserInfo> userInfoFrom(String idToken) {
+        if (!enabled || idToken == null || idToken.isEmpty()) {
+            return Mono.empty();
+        }
+
+        return decoder.decode(idToken)
+                .flatMap(jwt -> {
+                    List<String> missing = missingClaims(jwt);
+                    if (!missing.isEmpty()) {
+                        log.info("ID token lacks required claims {}, using userinfo endpoint", missing);
+                        count("missing-claims");
+                        return Mono.empty();
+                    }
+                    count("verified");
+                    return Mono.just(toUserInfo(jwt));
+                })
+                .onErrorResume(e -> {
+                    log.warn("ID token could not be verified locally, using userinfo endpoint: {}", e.getMessage());
+                    count("invalid");
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Claims of an ID token without verifying it
+     * Only for hints (e.g. starting work early), never for decisions
+     *
+     * @param idToken ID token from the token response (may be null)
+     * @return Claims, or an empty map if the token cannot be parsed
+     */
+    public Map<String, Object> unverifiedClaims(String idToken) {
+        if (idToken == null || idToken.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return JWTParser.parse(idToken).getJWTClaimsSet().getClaims();
+        } catch (ParseException e) {
+            log.debug("ID token could not be parsed: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Candidate keys for a token: from the cached set, refetched once on a miss (key rotation)
+     */
+    private Flux<JWK> keysFor(SignedJWT signedJWT) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(signedJWT.getHeader());
+        if (matcher == null) {
+            return Flux.empty();
+        }
+        JWKSelector selector = new JWKSelector(matcher);
+
+        JWKSet cached = jwkSet.get();
+        Mono<List<JWK>> keys = cached != null
+                ? Mono.just(selector.select(cached))
+                : fetchKeys().map(selector::select);
+
+        return keys
+                .flatMap(selected -> selected.isEmpty() && refetchAllowed()
+                        ? fetchKeys().map(selector::select)
+                        : Mono.just(selected))
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    private boolean refetchAllowed() {
+        return lastFetch.get().plus(minRefetchInterval).isBefore(Instant.now());
+    }
+
+    private Mono<JWKSet> fetchKeys() {
+        return inFlightFetches.execute(SINGLE_FLIGHT_KEY, () -> webClient.get()
+                .uri(jwkSetUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(body -> {
+                    try {
+                        return JWKSet.parse(body);
+                    } catch (ParseException e) {
+                        throw new IllegalStateException("Invalid JWKS: " + e.getMessage(), e);
+                    }
+                })
+                .doOnNext(keys -> {
+                    jwkSet.set(keys);
+                    lastFetch.set(Instant.now());
+                    log.debug("Fetched JWKS with {} keys", keys.getKeys().size());
+                })
+                .doOnError(e -> lastFetch.set(Instant.now())));
+    }
+
+    private List<String> missingClaims(Jwt jwt) {
+        List<String> missing = new ArrayList<>();
+        for (String claim : requiredClaims) {
+            Object value = jwt.getClaims().get(claim);
+            if (value == null || value.toString().isBlank()) {
+                missing.add(claim);
+            }
+        }
+        return missing;
+    }
+
+    private UserInfo toUserInfo(Jwt jwt) {
+        Map<String, Object> userClaims = new LinkedHashMap<>(jwt.getClaims());
+        userClaims.keySet().removeAll(TOKEN_CLAIMS);
+        return OAuth2Service.mapToUserInfo(CLAIMS_MAPPER.convertValue(userClaims, OAuth2Service.UserInfoResponse.class));
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("auth.id-token.local-validation", "outcome", outcome).increment();
+    }
+}
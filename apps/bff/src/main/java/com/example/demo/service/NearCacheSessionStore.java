@@ -0,0 +1,284 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserSession;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Near-Cache Session Store
+ *
+ * Bounded in-process (L1) cache in front of a Redis session store:
+ * - Reads are served from memory when the requested field groups are cached
+ * - The Redis TTL is still slid on L1 hits, at most once per touch interval
+ * - Saves, deletes and token / access decision updates invalidate the entry on
+ *   every BFF instance via Redis pub/sub (channel session:invalidate)
+ * - Timestamp write-backs only update the local entry (no broadcast)
+ *
+ * Staleness is bounded by the L1 TTL: if an invalidation is missed (e.g. pub/sub
+ * reconnect), the entry still expires. The cache is cleared on every (re)subscribe.
+ * The subscription starts with the application context and connects lazily, so an
+ * unreachable Redis delays invalidations (retried with backoff) but not startup.
+ * Metrics: cache.* tagged cache=session.near-cache, plus session.near-cache.invalidations.
+ */
+@Slf4j
+public class NearCacheSessionStore implements SessionStore, SmartLifecycle {
+
+    static final String INVALIDATION_CHANNEL = "session:invalidate";
+
+    private static final Set<SessionField> LOCAL_ONLY_FIELDS = EnumSet.of(SessionField.TIMESTAMPS);
+
+    private final SessionStore delegate;
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+    private final Cache<String, CachedSession> cache;
+    private final long touchIntervalMillis;
+    private final Counter localInvalidations;
+    private final Counter remoteInvalidations;
+
+    // Bumped on every invalidation, so a load racing with an invalidation is not cached
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private volatile Disposable subscription;
+
+    public NearCacheSessionStore(
+            SessionStore delegate,
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            MeterRegistry meterRegistry,
+            long maximumSize,
+            Duration ttl,
+            Duration touchInterval
+    ) {
+        this.delegate = delegate;
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+        this.touchIntervalMillis = touchInterval.toMillis();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "session.near-cache");
+        this.localInvalidations = Counter.builder("session.near-cache.invalidations")
+                .description("Session near-cache invalidations")
+                .tag("source", "local")
+                .register(meterRegistry);
+        this.remoteInvalidations = Counter.builder("session.near-cache.invalidations")
+                .description("Session near-cache invalidations")
+                .tag("source", "pubsub")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void start() {
+        // Deferred: the listener container connects on creation, which must happen inside the retry
+        subscription = Flux.defer(() -> reactiveRedisBytesTemplate.listenToChannel(INVALIDATION_CHANNEL))
+                // Invalidations may have been missed while not subscribed
+                .doOnSubscribe(s -> invalidateAll())
+                .map(message -> new String(message.getMessage(), StandardCharsets.UTF_8))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.warn("Session invalidation subscription lost, resubscribing: {}",
+                                signal.failure().getMessage())))
+                .subscribe(sessionId -> {
+                    invalidate(sessionId);
+                    remoteInvalidations.increment();
+                });
+        log.info("Session near-cache enabled (channel: {})", INVALIDATION_CHANNEL);
+    }
+
+    @Override
+    public void stop() {
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+            subscription = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return subscription != null;
+    }
+
+    @Override
+    public Mono<Void> save(UserSession session, Duration ttl) {
+        return delegate.save(session, ttl)
+                .then(invalidateEverywhere(session.getSessionId()));
+    }
+
+    @Override
+    public Mono<UserSession> load(String sessionId, Set<SessionField> fields) {
+        CachedSession cached = cache.getIfPresent(sessionId);
+        if (cached != null && cached.session.hasFields(fields)) {
+            return Mono.just(copyOf(cached.session));
+        }
+
+        long epoch = invalidationEpoch.get();
+        return delegate.load(sessionId, fields)
+                .doOnNext(session -> remember(sessionId, session, epoch, cached != null ? cached.touchedAt : 0));
+    }
+
+    @Override
+    public Mono<UserSession> loadAndTouch(String sessionId, Set<SessionField> fields, Duration ttl) {
+        CachedSession cached = cache.getIfPresent(sessionId);
+        if (cached != null && cached.session.hasFields(fields)) {
+            if (System.currentTimeMillis() - cached.touchedAt < touchIntervalMillis) {
+                return Mono.just(copyOf(cached.session));
+            }
+            // Keep the Redis TTL sliding; a missing key means the session expired or was deleted
+            return touch(sessionId, ttl)
+                    .flatMap(exists -> exists ? Mono.just(copyOf(cached.session)) : Mono.empty());
+        }
+
+        long epoch = invalidationEpoch.get();
+        return delegate.loadAndTouch(sessionId, fields, ttl)
+                .doOnNext(session -> remember(sessionId, session, epoch, System.currentTimeMillis()));
+    }
+
+    @Override
+    public Mono<Boolean> update(String sessionId, UserSession patch, Set<SessionField> fields, Duration ttl) {
+        if (LOCAL_ONLY_FIELDS.containsAll(fields)) {
+            // Timestamp write-back: other instances keep their slightly older timestamps
+            return delegate.update(sessionId, patch, fields, ttl)
+                    .doOnNext(updated -> {
+                        if (updated) {
+                            patchLocal(sessionId, patch, fields);
+                        } else {
+                            invalidate(sessionId);
+                        }
+                    });
+        }
+
+        return delegate.update(sessionId, patch, fields, ttl)
+                .flatMap(updated -> updated
+                        ? invalidateEverywhere(sessionId).thenReturn(true)
+                        : Mono.fromRunnable(() -> invalidate(sessionId)).thenReturn(false));
+    }
+
+    @Override
+    public Mono<Boolean> touch(String sessionId, Duration ttl) {
+        return delegate.touch(sessionId, ttl)
+                .doOnNext(exists -> {
+                    if (!exists) {
+                        invalidate(sessionId);
+                        return;
+                    }
+                    CachedSession cached = cache.getIfPresent(sessionId);
+                    if (cached != null) {
+                        cached.touchedAt = System.currentTimeMillis();
+                    }
+                });
+    }
+
+    @Override
+    public Mono<Void> delete(String sessionId) {
+        return delegate.delete(sessionId)
+                .then(invalidateEverywhere(sessionId));
+    }
+
+    /**
+     * Drop the entry locally and publish the invalidation to the other instances
+     * Publish failures are logged, not propagated - the entry expires with the L1 TTL
+     */
+    private Mono<Void> invalidateEverywhere(String sessionId) {
+        return Mono.fromRunnable(() -> {
+                    invalidate(sessionId);
+                    localInvalidations.increment();
+                })
+                .then(reactiveRedisBytesTemplate.convertAndSend(INVALIDATION_CHANNEL,
+                        sessionId.getBytes(StandardCharsets.UTF_8)))
+                .doOnError(e -> log.warn("Failed to publish session invalidation for {}: {}", sessionId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private void invalidate(String sessionId) {
+        invalidationEpoch.incrementAndGet();
+        cache.invalidate(sessionId);
+    }
+
+    private void invalidateAll() {
+        invalidationEpoch.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /**
+     * Cache a session read from the delegate, merging into any partially cached entry
+     * Skipped if an invalidation happened since the read started
+     */
+    private void remember(String sessionId, UserSession loaded, long epoch, long touchedAt) {
+        if (invalidationEpoch.get() != epoch) {
+            return;
+        }
+        // The loaded session is also handed to the caller - cache a copy
+        UserSession snapshot = copyOf(loaded);
+        cache.asMap().compute(sessionId, (id, existing) -> {
+            if (existing == null || snapshot.getLoadedFields() == null) {
+                return new CachedSession(snapshot, touchedAt);
+            }
+            UserSession merged = copyOf(existing.session);
+            merged.mergeFrom(snapshot, snapshot.getLoadedFields());
+            if (merged.getLoadedFields() != null) {
+                merged.getLoadedFields().addAll(snapshot.getLoadedFields());
+            }
+            return new CachedSession(merged, Math.max(existing.touchedAt, touchedAt));
+        });
+    }
+
+    private void patchLocal(String sessionId, UserSession patch, Set<SessionField> fields) {
+        cache.asMap().computeIfPresent(sessionId, (id, existing) -> {
+            UserSession patched = copyOf(existing.session);
+            patched.mergeFrom(patch, fields);
+            return new CachedSession(patched, System.currentTimeMillis());
+        });
+    }
+
+    /**
+     * Callers mutate the sessions they get (timestamps, lazily loaded fields, and
+     * through the Lombok setters user info and access decision too), so the cache
+     * only ever hands out and stores deep copies
+     */
+    private static UserSession copyOf(UserSession session) {
+        UserSession copy = new UserSession();
+        copy.setSessionId(session.getSessionId());
+        copy.mergeFrom(session, SessionField.ALL);
+        if (session.getUserInfo() != null) {
+            copy.setUserInfo(session.getUserInfo().copy());
+        }
+        if (session.getAccessDecision() != null) {
+            copy.setAccessDecision(session.getAccessDecision().copy());
+        }
+        if (session.getLoadedFields() != null) {
+            Set<SessionField> loadedFields = EnumSet.noneOf(SessionField.class);
+            loadedFields.addAll(session.getLoadedFields());
+            copy.setLoadedFields(loadedFields);
+        }
+        return copy;
+    }
+
+    private static final class CachedSession {
+        private final UserSession session;
+        private volatile long touchedAt;
+
+        private CachedSession(UserSession session, long touchedAt) {
+            this.session = session;
+            this.touchedAt = touchedAt;
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.demo.service;
 
 import com.example.demo.model.UserInfo;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -39,7 +41,7 @@ public class OAuth2Service {
     private final String clientSecret;
 
     public OAuth2Service(
-            WebClient webClient,
+            @Qualifier("idpWebClient") WebClient webClient,
             ClientRegistrationRepository clientRegistrationRepository,
             @Value("${spring.security.oauth2.client.provider.idp.token-uri}") String tokenUri,
             @Value("${spring.security.oauth2.client.provider.idp.user-info-uri}") String userInfoUri,
@@ -129,27 +131,23 @@ public class OAuth2Service {
                 .uri(userInfoUri)
                 .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
                 .retrieve()
-                .bodyToMono(Map.class)
-                .flatMap(userInfoMap -> {
-                    if (userInfoMap == null) {
-                        return Mono.error(new RuntimeException("UserInfo response is null"));
-                    }
-                    return Mono.just(mapToUserInfo(userInfoMap));
-                })
+                .bodyToMono(UserInfoResponse.class)
+                .map(OAuth2Service::mapToUserInfo)
                 .doOnSuccess(userInfo -> log.info("Successfully fetched user info from IDP"))
                 .doOnError(e -> log.error("Failed to fetch user info", e))
                 .onErrorMap(e -> new RuntimeException("UserInfo fetch failed: " + e.getMessage(), e));
     }
 
     /**
-     * Revoke token at IDP (best effort)
+     * Revoke token at IDP
+     * Errors are propagated so TokenRevocationScheduler can retry
      *
      * @param token Token to revoke
      * @param tokenTypeHint Type of token (access_token or refresh_token)
      * @return Mono of Void
      */
     public Mono<Void> revokeToken(String token, String tokenTypeHint) {
-        log.info("Revoking token at IDP");
+        log.debug("Revoking {} at IDP", tokenTypeHint);
 
         String revokeUri = tokenUri.replace("/token", "/revoke");
 
@@ -165,45 +163,35 @@ public class OAuth2Service {
                 .body(BodyInserters.fromFormData(formData))
                 .retrieve()
                 .bodyToMono(Void.class)
-                .doOnSuccess(v -> log.info("Successfully revoked token"))
-                .doOnError(e -> log.warn("Failed to revoke token (continuing anyway): {}", e.getMessage()))
-                .onErrorResume(e -> Mono.empty()); // Revocation is best effort - don't fail logout if it fails
+                .doOnSuccess(v -> log.debug("Successfully revoked {}", tokenTypeHint));
     }
 
     /**
-     * Map IDP userinfo response to UserInfo model
+     * Map IDP userinfo response (or verified ID token claims) to UserInfo model
      */
-    private UserInfo mapToUserInfo(Map<String, Object> userInfoMap) {
+    static UserInfo mapToUserInfo(UserInfoResponse userInfoResponse) {
         UserInfo.UserInfoBuilder builder = UserInfo.builder()
-                .id((String) userInfoMap.get("sub"))
-                .email((String) userInfoMap.get("email"))
-                .name((String) userInfoMap.get("name"))
-                .givenName((String) userInfoMap.get("given_name"))
-                .familyName((String) userInfoMap.get("family_name"))
-                .picture((String) userInfoMap.get("picture"))
-                .locale((String) userInfoMap.get("locale"));
+                .id(userInfoResponse.sub)
+                .email(userInfoResponse.email)
+                .name(userInfoResponse.name)
+                .givenName(userInfoResponse.given_name)
+                .familyName(userInfoResponse.family_name)
+                .picture(userInfoResponse.picture)
+                .locale(userInfoResponse.locale);
 
         // Email verified
-        Object emailVerified = userInfoMap.get("email_verified");
-        if (emailVerified instanceof Boolean) {
-            builder.emailVerified((Boolean) emailVerified);
+        if (userInfoResponse.email_verified instanceof Boolean emailVerified) {
+            builder.emailVerified(emailVerified);
         }
 
         // Roles (can be in different claims depending on IDP)
-        List<String> roles = extractRoles(userInfoMap);
-        builder.roles(roles);
+        builder.roles(extractRoles(userInfoResponse));
 
         // Permissions (optional)
-        List<String> permissions = extractPermissions(userInfoMap);
-        builder.permissions(permissions);
+        builder.permissions(toList(userInfoResponse.permissions));
 
-        // Custom claims
-        Map<String, Object> customClaims = new HashMap<>(userInfoMap);
-        customClaims.keySet().removeAll(Arrays.asList(
-                "sub", "email", "name", "given_name", "family_name",
-                "picture", "locale", "email_verified", "roles", "groups", "permissions"
-        ));
-        builder.customClaims(customClaims);
+        // Custom claims (all claims without a field in UserInfoResponse)
+        builder.customClaims(userInfoResponse.customClaims);
 
         return builder.build();
     }
@@ -212,30 +200,26 @@ public class OAuth2Service {
      * Extract roles from userinfo response
      * Checks multiple possible claim names
      */
-    @SuppressWarnings("unchecked")
-    private List<String> extractRoles(Map<String, Object> userInfoMap) {
+    private static List<String> extractRoles(UserInfoResponse userInfoResponse) {
         // Try common claim names
-        for (String claimName : Arrays.asList("roles", "groups", "authorities")) {
-            Object claim = userInfoMap.get(claimName);
-            if (claim instanceof List) {
-                return (List<String>) claim;
-            } else if (claim instanceof String) {
-                return Arrays.asList(((String) claim).split(","));
+        for (Object claim : Arrays.asList(userInfoResponse.roles, userInfoResponse.groups,
+                userInfoResponse.customClaims.get("authorities"))) {
+            if (claim instanceof List || claim instanceof String) {
+                return toList(claim);
             }
         }
         return new ArrayList<>();
     }
 
     /**
-     * Extract permissions from userinfo response
+     * Claim value as a list: JSON arrays as is, strings split on commas
      */
     @SuppressWarnings("unchecked")
-    private List<String> extractPermissions(Map<String, Object> userInfoMap) {
-        Object permissions = userInfoMap.get("permissions");
-        if (permissions instanceof List) {
-            return (List<String>) permissions;
-        } else if (permissions instanceof String) {
-            return Arrays.asList(((String) permissions).split(","));
+    private static List<String> toList(Object claim) {
+        if (claim instanceof List) {
+            return (List<String>) claim;
+        } else if (claim instanceof String) {
+            return Arrays.asList(((String) claim).split(","));
         }
         return new ArrayList<>();
     }
@@ -258,6 +242,31 @@ public class OAuth2Service {
         return Mono.error(new RuntimeException("OAuth2 IDP unavailable - user info fetch failed", e));
     }
 
+    /**
+     * UserInfo Response DTO
+     * Standard claims are bound to fields; all other claims are collected as custom claims.
+     * Claims whose type varies between IDPs are bound as Object.
+     */
+    static class UserInfoResponse {
+        public String sub;
+        public String email;
+        public String name;
+        public String given_name;
+        public String family_name;
+        public String picture;
+        public String locale;
+        public Object email_verified;
+        public Object roles;
+        public Object groups;
+        public Object permissions;
+        final Map<String, Object> customClaims = new HashMap<>();
+
+        @JsonAnySetter
+        void setCustomClaim(String claimName, Object value) {
+            customClaims.put(claimName, value);
+        }
+    }
+
     /**
      * Token Response DTO
      */
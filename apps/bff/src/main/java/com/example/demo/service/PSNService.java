@@ -1,26 +1,34 @@
 package com.example.demo.service;
 
+import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.model.AccessLevelResponse;
 import com.example.demo.model.SupportedMember;
+import com.example.demo.util.MicroBatcher;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * PSN (Provider Service Network) Service
@@ -33,46 +41,117 @@ import java.util.Map;
  * 1. Get OAuth2 token using client credentials
  * 2. Call PSN access level API with member's ID
  * 3. Parse response containing supported members and access levels
+ *
+ * When psn.oauth2.access-level-bulk-uri is set, cache misses are micro-batched (psn.batch.*):
+ * misses arriving within one window are resolved with one bulk call. Otherwise each
+ * miss is one single call.
  */
 @Slf4j
 @Service
-public class PSNService {
+public class PSNService implements DisposableBean {
 
     private static final String CACHE_KEY_PREFIX = "psn:access-level:";
-    private static final Duration CACHE_TTL = Duration.ofMinutes(30);
+
+    private record MemberId(String type, String value) {
+    }
+
+    /**
+     * PSN access level API response (unknown fields ignored)
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record AccessLevelApiResponse(
+            String memberEid,
+            String memberIdType,
+            String memberIdValue,
+            Boolean canViewOwnData,
+            List<SupportedMemberApiResponse> supportedMembers,
+            Long expiresIn
+    ) {
+    }
+
+    /**
+     * Supported member entry of a PSN access level API response
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record SupportedMemberApiResponse(
+            String eid,
+            String firstName,
+            String lastName,
+            String dateOfBirth,
+            String relationship,
+            String accessLevel
+    ) {
+    }
+
+    /**
+     * PSN bulk access level API response: one AccessLevelApiResponse per known member
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record AccessLevelBulkApiResponse(List<AccessLevelApiResponse> results) {
+    }
 
     private final WebClient webClient;
-    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
-    private final String psnTokenUri;
+    private final CoalescingCache<AccessLevelResponse> accessLevelCache;
+    private final ClientCredentialsTokenManager tokenManager;
+    private final ClientCredentialsTokenManager.ClientRegistration clientRegistration;
     private final String psnAccessLevelUri;
-    private final String clientId;
-    private final String clientSecret;
-    private final String scope;
-
-    // Cache for client credentials token - using Mono for reactive caching
-    private Mono<String> cachedAccessTokenMono = Mono.empty();
+    private final String psnAccessLevelBulkUri;
+    private final MicroBatcher<MemberId, AccessLevelResponse> accessLevelBatcher;
 
     public PSNService(
-            WebClient webClient,
-            ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            @Qualifier("psnWebClient") WebClient webClient,
+            CoalescingCacheFactory coalescingCacheFactory,
+            ClientCredentialsTokenManager tokenManager,
+            MeterRegistry meterRegistry,
             @Value("${psn.oauth2.token-uri}") String psnTokenUri,
             @Value("${psn.oauth2.access-level-uri}") String psnAccessLevelUri,
+            @Value("${psn.oauth2.access-level-bulk-uri:}") String psnAccessLevelBulkUri,
             @Value("${psn.oauth2.client-id}") String clientId,
             @Value("${psn.oauth2.client-secret}") String clientSecret,
-            @Value("${psn.oauth2.scope:psn.access_level.read}") String scope
+            @Value("${psn.oauth2.scope:psn.access_level.read}") String scope,
+            @Value("${cache.psn.ttl.soft.minutes:20}") int softTtlMinutes,
+            @Value("${cache.psn.ttl.minutes:30}") int hardTtlMinutes,
+            @Value("${cache.psn.stale-if-error.minutes:240}") int staleIfErrorMinutes,
+            @Value("${cache.psn.negative-ttl.minutes:5}") int negativeTtlMinutes,
+            @Value("${psn.batch.window.millis:5}") int batchWindowMillis,
+            @Value("${psn.batch.max-size:50}") int batchMaxSize,
+            @Value("${psn.batch.concurrency:8}") int batchConcurrency
     ) {
         this.webClient = webClient;
-        this.reactiveRedisTemplate = reactiveRedisTemplate;
-        this.psnTokenUri = psnTokenUri;
+        this.accessLevelCache = coalescingCacheFactory.create("psn", CACHE_KEY_PREFIX, AccessLevelResponse.class,
+                new CoalescingCache.CacheTtl(
+                        Duration.ofMinutes(softTtlMinutes),
+                        Duration.ofMinutes(hardTtlMinutes),
+                        Duration.ofMinutes(staleIfErrorMinutes),
+                        Duration.ofMinutes(negativeTtlMinutes)));
+        this.tokenManager = tokenManager;
+        this.clientRegistration = new ClientCredentialsTokenManager.ClientRegistration(
+                "psn", psnTokenUri, clientId, clientSecret, scope, webClient);
         this.psnAccessLevelUri = psnAccessLevelUri;
-        this.clientId = clientId;
-        this.clientSecret = clientSecret;
-        this.scope = scope;
+        this.psnAccessLevelBulkUri = psnAccessLevelBulkUri;
+
+        // Without a bulk endpoint batching only adds latency: misses go straight to single calls
+        this.accessLevelBatcher = psnAccessLevelBulkUri.isBlank() ? null
+                : new MicroBatcher<>("psn", this::fetchAccessLevelBulk, batchMaxSize,
+                        Duration.ofMillis(batchWindowMillis), batchConcurrency, meterRegistry);
+    }
+
+    /**
+     * Stop the batcher's subscription on shutdown or context refresh
+     */
+    @Override
+    public void destroy() {
+        if (accessLevelBatcher != null) {
+            accessLevelBatcher.dispose();
+        }
     }
 
     /**
      * Get access level information for a member from PSN
-     * Cached in Redis for 30 minutes
+     * Cached in Redis: served from cache up to the soft TTL, refreshed in the background
+     * between soft and hard TTL (stale-while-revalidate), reloaded past the hard TTL
+     * Unknown members (404) are cached as negative results and reported as ResourceNotFoundException
+     * Concurrent lookups for the same member are coalesced (see CoalescingCache)
      * Circuit breaker protects against PSN service failures
      *
      * @param memberIdType Type of member ID (HSID, OHID, MSID, EID)
@@ -84,110 +163,140 @@ public class PSNService {
     public Mono<AccessLevelResponse> getAccessLevel(String memberIdType, String memberIdValue) {
         log.debug("Fetching access level for member: {}={}", memberIdType, memberIdValue);
 
-        String cacheKey = CACHE_KEY_PREFIX + memberIdType + ":" + memberIdValue;
-
-        // Check cache first, then fetch from PSN if not found
-        return reactiveRedisTemplate.opsForValue().get(cacheKey)
-                .cast(AccessLevelResponse.class)
-                .doOnNext(cached -> log.info("Access level found in cache for member: {}={}", memberIdType, memberIdValue))
-                .switchIfEmpty(Mono.defer(() -> {
+        // Cache first; concurrent misses for the same member share one PSN call,
+        // misses for different members within one batch window share one bulk call
+        return accessLevelCache.get(memberIdType + ":" + memberIdValue, () -> {
                     log.info("Access level not in cache, fetching from PSN for member: {}={}", memberIdType, memberIdValue);
-
-                    return getClientCredentialsToken()
-                            .flatMap(accessToken -> webClient.get()
-                                    .uri(uriBuilder -> uriBuilder
-                                            .path(psnAccessLevelUri)
-                                            .queryParam("memberIdType", memberIdType)
-                                            .queryParam("memberIdValue", memberIdValue)
-                                            .build())
-                                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
-                                    .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                                    .retrieve()
-                                    .bodyToMono(Map.class))
-                            .flatMap(psnResponse -> {
-                                if (psnResponse == null) {
-                                    return Mono.error(new RuntimeException("PSN access level response is null"));
-                                }
-                                AccessLevelResponse response = parsePSNResponse(psnResponse);
-
-                                // Cache the result for 30 minutes
-                                return reactiveRedisTemplate.opsForValue()
-                                        .set(cacheKey, response, CACHE_TTL)
-                                        .thenReturn(response);
-                            })
-                            .doOnSuccess(response -> log.info("Successfully fetched and cached access level from PSN. Supported members: {}",
+                    MemberId memberId = new MemberId(memberIdType, memberIdValue);
+                    return (accessLevelBatcher != null ? accessLevelBatcher.load(memberId) : fetchAccessLevel(memberId))
+                            .doOnNext(response -> log.info("Successfully fetched access level from PSN. Supported members: {}",
                                     response.getSupportedMembers() != null ? response.getSupportedMembers().size() : 0));
-                }))
-                .doOnError(e -> log.error("Failed to fetch access level from PSN", e))
-                .onErrorMap(e -> new RuntimeException("PSN access level fetch failed: " + e.getMessage(), e));
+                })
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException(
+                        "No access level in PSN for member: " + memberIdType + "=" + memberIdValue)))
+                .doOnError(e -> !(e instanceof ResourceNotFoundException), e -> log.error("Failed to fetch access level from PSN", e))
+                .onErrorMap(e -> !(e instanceof ResourceNotFoundException),
+                        e -> new RuntimeException("PSN access level fetch failed: " + e.getMessage(), e));
+    }
+
+    /**
+     * Evict cached access level for a member (e.g. on a relationship or persona change)
+     * The next lookup calls PSN
+     *
+     * @param memberIdType Type of member ID (HSID, OHID, MSID, EID)
+     * @param memberIdValue The member's ID value
+     * @return Mono of Void
+     */
+    public Mono<Void> evict(String memberIdType, String memberIdValue) {
+        return accessLevelCache.evict(memberIdType + ":" + memberIdValue);
+    }
+
+    /**
+     * Fetch access level for one member from the PSN access level API
+     * Empty if PSN does not know the member (404)
+     */
+    private Mono<AccessLevelResponse> fetchAccessLevel(MemberId memberId) {
+        return withClientCredentialsToken(accessToken -> webClient.get()
+                        .uri(UriComponentsBuilder.fromUriString(psnAccessLevelUri)
+                                .queryParam("memberIdType", "{memberIdType}")
+                                .queryParam("memberIdValue", "{memberIdValue}")
+                                .encode()
+                                .buildAndExpand(memberId.type(), memberId.value())
+                                .toUri())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                        .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                        .retrieve()
+                        .bodyToMono(AccessLevelApiResponse.class)
+                        // Unknown member - cached as a negative result
+                        .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty()))
+                .map(PSNService::parsePSNResponse);
+    }
+
+    /**
+     * Fetch access levels for many members with one call to the PSN bulk access level API
+     * Request: {"members": [{"memberIdType", "memberIdValue"}, ...]}; response: {"results": [...]}
+     * with one single-lookup response per known member. Members missing from the results are unknown.
+     */
+    private Mono<Map<MemberId, AccessLevelResponse>> fetchAccessLevelBulk(Collection<MemberId> memberIds) {
+        List<Map<String, String>> members = memberIds.stream()
+                .map(memberId -> Map.of("memberIdType", memberId.type(), "memberIdValue", memberId.value()))
+                .toList();
+
+        return withClientCredentialsToken(accessToken -> webClient.post()
+                        .uri(psnAccessLevelBulkUri)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("members", members))
+                        .retrieve()
+                        .bodyToMono(AccessLevelBulkApiResponse.class))
+                .map(psnResponse -> {
+                    Map<MemberId, AccessLevelResponse> accessLevels = new HashMap<>();
+                    if (psnResponse.results() != null) {
+                        for (AccessLevelApiResponse result : psnResponse.results()) {
+                            AccessLevelResponse response = parsePSNResponse(result);
+                            if (response.getMemberIdType() != null && response.getMemberIdValue() != null) {
+                                accessLevels.putIfAbsent(new MemberId(response.getMemberIdType(), response.getMemberIdValue()), response);
+                            }
+                        }
+                    }
+                    return accessLevels;
+                });
+    }
+
+    /**
+     * Call PSN with the client credentials token
+     * A 401 means PSN no longer accepts the cached token (e.g. revoked or keys rotated):
+     * the token is dropped and the call retried once with a new one
+     */
+    private <T> Mono<T> withClientCredentialsToken(Function<String, Mono<T>> call) {
+        return getClientCredentialsToken()
+                .flatMap(accessToken -> call.apply(accessToken)
+                        .onErrorResume(WebClientResponseException.Unauthorized.class, e -> {
+                            log.warn("PSN rejected the client credentials token, retrying with a new token");
+                            tokenManager.invalidate(clientRegistration, accessToken);
+                            return getClientCredentialsToken().flatMap(call);
+                        }));
     }
 
     /**
      * Get OAuth2 token using client credentials flow
-     * Caches token until it expires
+     * Cached and refreshed by ClientCredentialsTokenManager
      * Circuit breaker protects against token service failures
      */
     @CircuitBreaker(name = "psnTokenService", fallbackMethod = "getClientCredentialsTokenFallback")
     @Retry(name = "psnTokenService")
     private Mono<String> getClientCredentialsToken() {
-        log.info("Fetching PSN client credentials token");
-
-        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
-        formData.add("grant_type", "client_credentials");
-        formData.add("client_id", clientId);
-        formData.add("client_secret", clientSecret);
-        formData.add("scope", scope);
-
-        // Use cached Mono or create new one
-        return Mono.defer(() -> webClient.post()
-                .uri(psnTokenUri)
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
-                .body(BodyInserters.fromFormData(formData))
-                .retrieve()
-                .bodyToMono(ClientCredentialsTokenResponse.class)
-                .flatMap(tokenResponse -> {
-                    if (tokenResponse == null || tokenResponse.access_token == null) {
-                        return Mono.error(new RuntimeException("Invalid token response from PSN"));
-                    }
-                    log.info("Successfully obtained PSN client credentials token");
-                    return Mono.just(tokenResponse.access_token);
-                })
-                .doOnError(e -> log.error("Failed to get PSN client credentials token", e))
-                .onErrorMap(e -> new RuntimeException("PSN token fetch failed: " + e.getMessage(), e))
-                .cache(Duration.ofMinutes(55))); // Cache for 55 minutes (assuming 1 hour token expiry)
+        return tokenManager.getToken(clientRegistration);
     }
 
     /**
      * Parse PSN API response into AccessLevelResponse
+     * Package-private for PSNResponseDecodingBenchmark
      */
-    @SuppressWarnings("unchecked")
-    private AccessLevelResponse parsePSNResponse(Map<String, Object> psnResponse) {
+    static AccessLevelResponse parsePSNResponse(AccessLevelApiResponse psnResponse) {
         AccessLevelResponse.AccessLevelResponseBuilder builder = AccessLevelResponse.builder();
 
         // Member info
-        builder.memberEid((String) psnResponse.get("memberEid"));
-        builder.memberIdType((String) psnResponse.get("memberIdType"));
-        builder.memberIdValue((String) psnResponse.get("memberIdValue"));
+        builder.memberEid(psnResponse.memberEid());
+        builder.memberIdType(psnResponse.memberIdType());
+        builder.memberIdValue(psnResponse.memberIdValue());
 
         // Access flags
-        Object canViewOwn = psnResponse.get("canViewOwnData");
-        builder.canViewOwnData(canViewOwn instanceof Boolean ? (Boolean) canViewOwn : true);
+        builder.canViewOwnData(psnResponse.canViewOwnData() != null ? psnResponse.canViewOwnData() : true);
 
         // Supported members list
         List<SupportedMember> supportedMembers = new ArrayList<>();
-        Object supportedMembersObj = psnResponse.get("supportedMembers");
-
-        if (supportedMembersObj instanceof List) {
-            List<Map<String, Object>> membersList = (List<Map<String, Object>>) supportedMembersObj;
 
-            for (Map<String, Object> memberMap : membersList) {
+        if (psnResponse.supportedMembers() != null) {
+            for (SupportedMemberApiResponse memberResponse : psnResponse.supportedMembers()) {
                 SupportedMember member = SupportedMember.builder()
-                        .eid((String) memberMap.get("eid"))
-                        .firstName((String) memberMap.get("firstName"))
-                        .lastName((String) memberMap.get("lastName"))
-                        .dateOfBirth((String) memberMap.get("dateOfBirth"))
-                        .relationship((String) memberMap.get("relationship"))
-                        .accessLevel((String) memberMap.get("accessLevel"))
+                        .eid(memberResponse.eid())
+                        .firstName(memberResponse.firstName())
+                        .lastName(memberResponse.lastName())
+                        .dateOfBirth(memberResponse.dateOfBirth())
+                        .relationship(memberResponse.relationship())
+                        .accessLevel(memberResponse.accessLevel())
                         .build();
                 supportedMembers.add(member);
             }
@@ -197,29 +306,20 @@ public class PSNService {
 
         // Metadata
         builder.retrievedAt(Instant.now().toString());
-
-        Object expiresIn = psnResponse.get("expiresIn");
-        if (expiresIn instanceof Number) {
-            builder.expiresIn(((Number) expiresIn).longValue());
-        } else {
-            builder.expiresIn(3600L); // Default 1 hour
-        }
+        builder.expiresIn(psnResponse.expiresIn() != null ? psnResponse.expiresIn() : 3600L); // Default 1 hour
 
         return builder.build();
     }
 
     /**
-     * Fallback method for getAccessLevel
-     * Returns cached data if available, otherwise throws exception
+     * Fallback method for getAccessLevel while the circuit breaker is open
+     * Serves the cached value even past its hard TTL (within the stale-if-error period)
      */
-    private Mono<AccessLevelResponse> getAccessLevelFallback(String memberIdType, String memberIdValue, Exception e) {
-        log.warn("Circuit breaker activated for PSN service. Attempting to serve stale cache for member: {}={}",
-                memberIdType, memberIdValue, e);
+    private Mono<AccessLevelResponse> getAccessLevelFallback(String memberIdType, String memberIdValue, CallNotPermittedException e) {
+        log.warn("Circuit breaker open for PSN service. Attempting to serve stale cache for member: {}={}",
+                memberIdType, memberIdValue);
 
-        // Try to return stale cached data
-        String cacheKey = CACHE_KEY_PREFIX + memberIdType + ":" + memberIdValue;
-        return reactiveRedisTemplate.opsForValue().get(cacheKey)
-                .cast(AccessLevelResponse.class)
+        return accessLevelCache.readStale(memberIdType + ":" + memberIdValue)
                 .doOnNext(cached -> log.info("Serving stale cached access level for member: {}={}", memberIdType, memberIdValue))
                 .switchIfEmpty(Mono.defer(() -> {
                     log.error("No cached data available for member: {}={}. Circuit breaker fallback failed.", memberIdType, memberIdValue);
@@ -227,6 +327,14 @@ public class PSNService {
                 }));
     }
 
+    /**
+     * Fallback method for getAccessLevel on other failures
+     * Values past their hard TTL are only served while the circuit breaker is open
+     */
+    private Mono<AccessLevelResponse> getAccessLevelFallback(String memberIdType, String memberIdValue, Exception e) {
+        return Mono.error(e);
+    }
+
     /**
      * Fallback method for getClientCredentialsToken
      * Fails immediately as token is required
@@ -235,14 +343,4 @@ public class PSNService {
         log.error("Circuit breaker activated for PSN token service. No fallback available.", e);
         return Mono.error(new RuntimeException("PSN token service unavailable", e));
     }
-
-    /**
-     * Client Credentials Token Response DTO
-     */
-    private static class ClientCredentialsTokenResponse {
-        public String access_token;
-        public String token_type;
-        public Long expires_in;
-        public String scope;
-    }
 }
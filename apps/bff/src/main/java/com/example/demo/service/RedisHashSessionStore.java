@@ -0,0 +1,296 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AccessDecision;
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserInfo;
+import com.example.demo.model.UserSession;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.core.ReactiveHashOperations;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.util.ByteUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hash Session Store
+ *
+ * Stores each session as a Redis hash under session:h:{sessionId}, one hash field
+ * per UserSession attribute (see SessionField for the groups):
+ * - Reads use HMGET for only the requested field groups
+ * - Updates use HSET for only the changed fields, so concurrent updates of
+ *   different groups (e.g. tokens vs. access decision) don't overwrite each other;
+ *   null attributes of groups replaced as a whole are removed with HDEL
+ *
+ * Attribute values use the same serializer as ReactiveRedisTemplate;
+ * timestamps are stored as epoch milliseconds.
+ *
+ * Loaded sessions are marked with the field groups they contain, so SessionService
+ * can load cold groups (tokens, access decision) only when a caller needs them.
+ * Bytes read per load are published as session.store.read.bytes, tagged by field groups.
+ */
+public class RedisHashSessionStore implements SessionStore {
+
+    private static final String SESSION_KEY_PREFIX = "session:h:";
+
+    // Replace the hash and set its TTL atomically. ARGV[1] = TTL millis, ARGV[2..] = field/value pairs
+    private static final RedisScript<Long> SAVE_SCRIPT = RedisScript.of("""
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], unpack(ARGV, 2))
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    // Patch fields only if the session still exists, so a concurrent logout can't resurrect it.
+    // ARGV[1] = TTL millis, ARGV[2] = number n of fields to delete, ARGV[3..2+n] = fields to delete,
+    // ARGV[3+n..] = field/value pairs
+    private static final RedisScript<Long> UPDATE_SCRIPT = RedisScript.of("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return 0
+            end
+            local deletes = tonumber(ARGV[2])
+            if deletes > 0 then
+                redis.call('HDEL', KEYS[1], unpack(ARGV, 3, 2 + deletes))
+            end
+            if #ARGV > 2 + deletes then
+                redis.call('HSET', KEYS[1], unpack(ARGV, 3 + deletes))
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    // Slide the TTL and read fields in one round trip. ARGV[1] = TTL millis, ARGV[2..] = attributes.
+    // Empty reply if the session is gone; missing fields come back as empty strings, since not
+    // every driver carries nil entries of a multi-bulk reply through
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LOAD_AND_TOUCH_SCRIPT = RedisScript.of("""
+            if redis.call('PEXPIRE', KEYS[1], ARGV[1]) == 0 then
+                return {}
+            end
+            local values = redis.call('HMGET', KEYS[1], unpack(ARGV, 2))
+            for i = 1, #values do
+                if not values[i] then
+                    values[i] = ''
+                end
+            end
+            return values
+            """, List.class);
+
+    private final ReactiveRedisTemplate<String, byte[]> rawRedisTemplate;
+    private final ReactiveHashOperations<String, String, byte[]> hashOperations;
+    private final RedisSerializationContext.SerializationPair<Object> valueSerializer;
+    private final MeterRegistry meterRegistry;
+
+    public RedisHashSessionStore(
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            RedisSerializationContext.SerializationPair<Object> valueSerializer,
+            MeterRegistry meterRegistry
+    ) {
+        this.rawRedisTemplate = reactiveRedisBytesTemplate;
+        this.hashOperations = reactiveRedisBytesTemplate.opsForHash();
+        this.valueSerializer = valueSerializer;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<Void> save(UserSession session, Duration ttl) {
+        List<byte[]> args = encode(session, SessionField.ALL, ttl);
+        return rawRedisTemplate.execute(SAVE_SCRIPT, List.of(key(session.getSessionId())), args)
+                .then();
+    }
+
+    @Override
+    public Mono<UserSession> load(String sessionId, Set<SessionField> fields) {
+        List<String> attributes = attributesOf(fields);
+        return hashOperations.multiGet(key(sessionId), attributes)
+                .flatMap(values -> decode(sessionId, fields, attributes, values));
+    }
+
+    @Override
+    public Mono<UserSession> loadAndTouch(String sessionId, Set<SessionField> fields, Duration ttl) {
+        String key = key(sessionId);
+        List<String> attributes = attributesOf(fields);
+
+        List<byte[]> args = new ArrayList<>(attributes.size() + 1);
+        args.add(String.valueOf(ttl.toMillis()).getBytes(StandardCharsets.UTF_8));
+        attributes.forEach(attribute -> args.add(attribute.getBytes(StandardCharsets.UTF_8)));
+
+        return rawRedisTemplate.execute(LOAD_AND_TOUCH_SCRIPT, List.of(key), args)
+                .cast(Object.class)
+                // Depending on the driver, multi-bulk replies arrive as one list or element by element
+                .flatMapIterable(result -> result instanceof List<?> list ? list : List.of(result))
+                .collectList()
+                .flatMap(reply -> reply.isEmpty()
+                        ? Mono.empty()
+                        : decode(sessionId, fields, attributes, presentValues(reply)));
+    }
+
+    @Override
+    public Mono<Boolean> update(String sessionId, UserSession patch, Set<SessionField> fields, Duration ttl) {
+        List<byte[]> deletes = new ArrayList<>();
+        for (SessionField field : fields) {
+            if (field.isReplacedAsWhole()) {
+                field.getAttributes().stream()
+                        .filter(attribute -> readAttribute(patch, attribute) == null)
+                        .forEach(attribute -> deletes.add(attribute.getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        List<byte[]> pairs = encode(patch, fields, ttl);
+        if (pairs.size() == 1 && deletes.isEmpty()) {
+            return Mono.just(false); // Nothing to write
+        }
+
+        List<byte[]> args = new ArrayList<>(pairs.size() + deletes.size() + 1);
+        args.add(pairs.get(0));
+        args.add(String.valueOf(deletes.size()).getBytes(StandardCharsets.UTF_8));
+        args.addAll(deletes);
+        args.addAll(pairs.subList(1, pairs.size()));
+        return rawRedisTemplate.execute(UPDATE_SCRIPT, List.of(key(sessionId)), args)
+                .next()
+                .map(updated -> updated == 1L)
+                .defaultIfEmpty(false);
+    }
+
+    @Override
+    public Mono<Boolean> touch(String sessionId, Duration ttl) {
+        return rawRedisTemplate.expire(key(sessionId), ttl);
+    }
+
+    @Override
+    public Mono<Void> delete(String sessionId) {
+        return rawRedisTemplate.delete(key(sessionId)).then();
+    }
+
+    private String key(String sessionId) {
+        return SESSION_KEY_PREFIX + sessionId;
+    }
+
+    private List<String> attributesOf(Set<SessionField> fields) {
+        List<String> attributes = new ArrayList<>();
+        for (SessionField field : fields) {
+            attributes.addAll(field.getAttributes());
+        }
+        return attributes;
+    }
+
+    /**
+     * Encode script arguments: TTL millis followed by field/value pairs (null attributes skipped)
+     */
+    private List<byte[]> encode(UserSession session, Set<SessionField> fields, Duration ttl) {
+        List<byte[]> args = new ArrayList<>();
+        args.add(String.valueOf(ttl.toMillis()).getBytes(StandardCharsets.UTF_8));
+
+        for (String attribute : attributesOf(fields)) {
+            Object value = readAttribute(session, attribute);
+            if (value != null) {
+                args.add(attribute.getBytes(StandardCharsets.UTF_8));
+                args.add(ByteUtils.getBytes(valueSerializer.write(value)));
+            }
+        }
+        return args;
+    }
+
+    /**
+     * Script reply values with empty strings (missing fields) mapped back to null
+     */
+    private static List<byte[]> presentValues(List<Object> reply) {
+        List<byte[]> values = new ArrayList<>(reply.size());
+        for (Object value : reply) {
+            values.add(value instanceof byte[] raw && raw.length > 0 ? raw : null);
+        }
+        return values;
+    }
+
+    private Mono<UserSession> decode(String sessionId, Set<SessionField> fields, List<String> attributes, List<byte[]> values) {
+        UserSession session = new UserSession();
+        session.setSessionId(sessionId);
+
+        boolean found = false;
+        long bytesRead = 0;
+        for (int i = 0; i < attributes.size(); i++) {
+            byte[] raw = values.get(i);
+            if (raw != null) {
+                writeAttribute(session, attributes.get(i), valueSerializer.read(ByteBuffer.wrap(raw)));
+                bytesRead += raw.length;
+                found = true;
+            }
+        }
+        if (!found) {
+            return Mono.empty();
+        }
+
+        Set<SessionField> loadedFields = EnumSet.noneOf(SessionField.class);
+        loadedFields.addAll(fields);
+        session.setLoadedFields(loadedFields);
+
+        readBytes(fields).record(bytesRead);
+        return Mono.just(session);
+    }
+
+    private DistributionSummary readBytes(Set<SessionField> fields) {
+        return DistributionSummary.builder("session.store.read.bytes")
+                .description("Bytes read from Redis per session load")
+                .baseUnit("bytes")
+                .tag("layout", "hash")
+                .tag("fields", SessionField.describe(fields))
+                .register(meterRegistry);
+    }
+
+    private static Object readAttribute(UserSession session, String attribute) {
+        return switch (attribute) {
+            case "userInfo" -> session.getUserInfo();
+            case "tokenType" -> session.getTokenType();
+            case "accessToken" -> session.getAccessToken();
+            case "idToken" -> session.getIdToken();
+            case "refreshToken" -> session.getRefreshToken();
+            case "refreshTokenExpiresAt" -> session.getRefreshTokenExpiresAt();
+            case "accessTokenExpiresAt" -> session.getAccessTokenExpiresAt();
+            case "createdAt" -> toEpochMilli(session.getCreatedAt());
+            case "lastAccessedAt" -> toEpochMilli(session.getLastAccessedAt());
+            case "expiresAt" -> toEpochMilli(session.getExpiresAt());
+            case "accessDecision" -> session.getAccessDecision();
+            case "accessDecisionRef" -> session.getAccessDecisionRef();
+            default -> throw new IllegalArgumentException("Unknown session attribute: " + attribute);
+        };
+    }
+
+    private static void writeAttribute(UserSession session, String attribute, Object value) {
+        switch (attribute) {
+            case "userInfo" -> session.setUserInfo((UserInfo) value);
+            case "tokenType" -> session.setTokenType((String) value);
+            case "accessToken" -> session.setAccessToken((String) value);
+            case "idToken" -> session.setIdToken((String) value);
+            case "refreshToken" -> session.setRefreshToken((String) value);
+            case "refreshTokenExpiresAt" -> session.setRefreshTokenExpiresAt(toLong(value));
+            case "accessTokenExpiresAt" -> session.setAccessTokenExpiresAt(toLong(value));
+            case "createdAt" -> session.setCreatedAt(toInstant(value));
+            case "lastAccessedAt" -> session.setLastAccessedAt(toInstant(value));
+            case "expiresAt" -> session.setExpiresAt(toInstant(value));
+            case "accessDecision" -> session.setAccessDecision((AccessDecision) value);
+            case "accessDecisionRef" -> session.setAccessDecisionRef((String) value);
+            default -> throw new IllegalArgumentException("Unknown session attribute: " + attribute);
+        }
+    }
+
+    private static Long toEpochMilli(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : null;
+    }
+
+    private static Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static Instant toInstant(Object value) {
+        return value instanceof Number number ? Instant.ofEpochMilli(number.longValue()) : null;
+    }
+}
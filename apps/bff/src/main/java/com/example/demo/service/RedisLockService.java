@@ -0,0 +1,76 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Redis Lock Service
+ *
+ * Short-lived leases across BFF instances:
+ * - Acquire with SET NX PX and a random owner token
+ * - Release only if the caller still owns the lease (compare-and-delete in Lua)
+ *
+ * Leases expire on their own, so a crashed owner blocks others for at most the lease TTL.
+ * Not a fencing lock - use only to avoid duplicate work, not for correctness.
+ */
+@Slf4j
+@Service
+public class RedisLockService {
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+
+    public RedisLockService(ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate) {
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+    }
+
+    /**
+     * Try to acquire a lease
+     *
+     * @param key Lock key
+     * @param leaseTime Lease TTL
+     * @return Mono of the owner token if acquired, empty if someone else holds the lease
+     */
+    public Mono<String> tryAcquire(String key, Duration leaseTime) {
+        String token = UUID.randomUUID().toString();
+        return reactiveRedisBytesTemplate.opsForValue()
+                .setIfAbsent(key, token.getBytes(StandardCharsets.UTF_8), leaseTime)
+                .filter(Boolean::booleanValue)
+                .map(acquired -> token)
+                .doOnNext(t -> log.debug("Acquired lease: {}", key));
+    }
+
+    /**
+     * Release a lease if still owned
+     *
+     * @param key Lock key
+     * @param token Owner token returned by tryAcquire
+     * @return Mono of true if the lease was released, false if it had expired or changed owner
+     */
+    public Mono<Boolean> release(String key, String token) {
+        return reactiveRedisBytesTemplate.execute(RELEASE_SCRIPT, List.of(key),
+                        List.of(token.getBytes(StandardCharsets.UTF_8)))
+                .next()
+                .map(released -> released == 1L)
+                .defaultIfEmpty(false)
+                .doOnNext(released -> {
+                    if (!released) {
+                        log.warn("Lease expired before release: {}", key);
+                    }
+                });
+    }
+}
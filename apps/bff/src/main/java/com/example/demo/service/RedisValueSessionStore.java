@@ -0,0 +1,96 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserSession;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.util.ByteUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Value Session Store
+ *
+ * Stores the whole UserSession as one serialized value under session:{sessionId}.
+ * Reads always return the complete session; updates are GET + patch + SET.
+ * Bytes read per load are published as session.store.read.bytes.
+ */
+public class RedisValueSessionStore implements SessionStore {
+
+    private static final String SESSION_KEY_PREFIX = "session:";
+
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+    private final RedisSerializationContext.SerializationPair<Object> valueSerializer;
+    private final DistributionSummary readBytes;
+
+    public RedisValueSessionStore(
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            RedisSerializationContext.SerializationPair<Object> valueSerializer,
+            MeterRegistry meterRegistry
+    ) {
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+        this.valueSerializer = valueSerializer;
+        this.readBytes = DistributionSummary.builder("session.store.read.bytes")
+                .description("Bytes read from Redis per session load")
+                .baseUnit("bytes")
+                .tag("layout", "value")
+                .tag("fields", SessionField.describe(SessionField.ALL))
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> save(UserSession session, Duration ttl) {
+        return reactiveRedisBytesTemplate.opsForValue()
+                .set(SESSION_KEY_PREFIX + session.getSessionId(), encode(session), ttl)
+                .then();
+    }
+
+    @Override
+    public Mono<UserSession> load(String sessionId, Set<SessionField> fields) {
+        return reactiveRedisBytesTemplate.opsForValue().get(SESSION_KEY_PREFIX + sessionId)
+                .map(this::decode);
+    }
+
+    @Override
+    public Mono<UserSession> loadAndTouch(String sessionId, Set<SessionField> fields, Duration ttl) {
+        // GETEX - read and slide TTL atomically
+        return reactiveRedisBytesTemplate.opsForValue().getAndExpire(SESSION_KEY_PREFIX + sessionId, ttl)
+                .map(this::decode);
+    }
+
+    @Override
+    public Mono<Boolean> update(String sessionId, UserSession patch, Set<SessionField> fields, Duration ttl) {
+        String key = SESSION_KEY_PREFIX + sessionId;
+        return reactiveRedisBytesTemplate.opsForValue().get(key)
+                .map(this::decode)
+                .flatMap(session -> {
+                    session.mergeFrom(patch, fields);
+                    return reactiveRedisBytesTemplate.opsForValue().set(key, encode(session), ttl);
+                })
+                .defaultIfEmpty(false);
+    }
+
+    @Override
+    public Mono<Boolean> touch(String sessionId, Duration ttl) {
+        return reactiveRedisBytesTemplate.expire(SESSION_KEY_PREFIX + sessionId, ttl);
+    }
+
+    @Override
+    public Mono<Void> delete(String sessionId) {
+        return reactiveRedisBytesTemplate.delete(SESSION_KEY_PREFIX + sessionId).then();
+    }
+
+    private byte[] encode(UserSession session) {
+        return ByteUtils.getBytes(valueSerializer.write(session));
+    }
+
+    private UserSession decode(byte[] raw) {
+        readBytes.record(raw.length);
+        return (UserSession) valueSerializer.read(ByteBuffer.wrap(raw));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SessionEnvelope;
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.crypto.DirectDecrypter;
+import com.nimbusds.jose.crypto.DirectEncrypter;
+import com.nimbusds.jwt.EncryptedJWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Session Envelope Codec
+ *
+ * Encodes SessionEnvelope as a compact JWE (dir + A256GCM): encrypted and
+ * integrity protected with a shared 256-bit key, verified locally without Redis.
+ *
+ * Key rotation: envelopes are encrypted with session.stateless.key and decrypted
+ * with either that key or session.stateless.previous-key, selected by the kid header.
+ */
+@Slf4j
+@Service
+public class SessionEnvelopeCodec {
+
+    private final Map<String, byte[]> keys = new LinkedHashMap<>();
+    private final String currentKeyId;
+
+    public SessionEnvelopeCodec(
+            @Value("${session.stateless.key:}") String key,
+            @Value("${session.stateless.previous-key:}") String previousKey
+    ) {
+        this.currentKeyId = addKey(key);
+        addKey(previousKey);
+    }
+
+    public boolean isConfigured() {
+        return currentKeyId != null;
+    }
+
+    /**
+     * Encrypt an envelope for the session cookie
+     *
+     * @param envelope Session envelope
+     * @return Compact JWE serialization
+     */
+    public String encode(SessionEnvelope envelope) {
+        if (currentKeyId == null) {
+            throw new IllegalStateException("session.stateless.key is not configured");
+        }
+
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(envelope.getUserId())
+                .claim("sid", envelope.getSessionId())
+                .claim("idt", envelope.getIdType())
+                .claim("idv", envelope.getIdValue())
+                .claim("pun", envelope.getPreferredUsername())
+                .claim("fn", envelope.getFirstName())
+                .claim("ln", envelope.getLastName())
+                .claim("ate", envelope.getAccessTokenExpiresAt())
+                .issueTime(Date.from(envelope.getIssuedAt()))
+                .expirationTime(Date.from(envelope.getExpiresAt()))
+                .build();
+
+        JWEHeader header = new JWEHeader.Builder(JWEAlgorithm.DIR, EncryptionMethod.A256GCM)
+                .keyID(currentKeyId)
+                .build();
+
+        try {
+            EncryptedJWT jwt = new EncryptedJWT(header, claims);
+            jwt.encrypt(new DirectEncrypter(keys.get(currentKeyId)));
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Failed to encrypt session envelope", e);
+        }
+    }
+
+    /**
+     * Decrypt and verify a session cookie
+     *
+     * @param value Cookie value
+     * @return Envelope, or null if the value is malformed, tampered with or encrypted with an unknown key
+     */
+    public SessionEnvelope decode(String value) {
+        try {
+            EncryptedJWT jwt = EncryptedJWT.parse(value);
+            byte[] key = keys.get(jwt.getHeader().getKeyID());
+            if (key == null) {
+                log.debug("Session envelope encrypted with unknown key: {}", jwt.getHeader().getKeyID());
+                return null;
+            }
+            jwt.decrypt(new DirectDecrypter(key));
+
+            JWTClaimsSet claims = jwt.getJWTClaimsSet();
+            return SessionEnvelope.builder()
+                    .sessionId(claims.getStringClaim("sid"))
+                    .userId(claims.getSubject())
+                    .idType(claims.getStringClaim("idt"))
+                    .idValue(claims.getStringClaim("idv"))
+                    .preferredUsername(claims.getStringClaim("pun"))
+                    .firstName(claims.getStringClaim("fn"))
+                    .lastName(claims.getStringClaim("ln"))
+                    .accessTokenExpiresAt(claims.getLongClaim("ate"))
+                    .issuedAt(claims.getIssueTime() != null ? claims.getIssueTime().toInstant() : null)
+                    .expiresAt(claims.getExpirationTime() != null ? claims.getExpirationTime().toInstant() : null)
+                    .build();
+        } catch (ParseException | JOSEException | IllegalStateException e) {
+            log.debug("Invalid session envelope: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String addKey(String base64Key) {
+        if (base64Key == null || base64Key.isEmpty()) {
+            return null;
+        }
+
+        byte[] key = Base64.getDecoder().decode(base64Key);
+        if (key.length != 32) {
+            throw new IllegalArgumentException("Session envelope keys must be 256 bits (base64 of 32 bytes)");
+        }
+
+        String keyId = HexFormat.of().formatHex(sha256(key), 0, 4);
+        keys.put(keyId, key);
+        return keyId;
+    }
+
+    private static byte[] sha256(byte[] input) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(input);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Session Index
+ *
+ * Per-user index of session IDs: Redis sorted set session:user:{userId}, scored by
+ * the session's expiry (epoch milliseconds). Lets SessionService find a user's
+ * sessions without scanning session keys:
+ * - add() registers a new session, prunes expired entries and evicts the least
+ *   recently active sessions beyond the per-user cap, atomically (Lua)
+ * - touch() moves an entry's score along when the session's expiry slides
+ * - removeAll() takes the whole index for "log out everywhere"
+ *
+ * Sessions holding a copy of an access decision instead of a reference (decisions
+ * that are not cached, see AccessDecisionService.referenceOf) are also indexed by
+ * HSID: sorted set session:decision-copies:{hsid}, scored by the time the copy goes
+ * stale. A member change event takes that index to refresh the copies early.
+ *
+ * Every operation is O(sessions of that user). Scores lag the real Redis TTL by up
+ * to the touch write-back interval, so entries are only pruned (and the index key
+ * only expires) that grace period after their recorded expiry.
+ * All operations are no-ops when the index is disabled.
+ */
+@Slf4j
+@Service
+public class SessionIndex {
+
+    private static final String INDEX_KEY_PREFIX = "session:user:";
+    private static final String DECISION_COPIES_KEY_PREFIX = "session:decision-copies:";
+
+    // ARGV[1] = session ID, ARGV[2] = expiry, ARGV[3] = prune before, ARGV[4] = cap (0 = none), ARGV[5] = grace millis
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ADD_SCRIPT = RedisScript.of("""
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[3])
+            redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+            local evicted = {}
+            local cap = tonumber(ARGV[4])
+            if cap > 0 then
+                local excess = redis.call('ZCARD', KEYS[1]) - cap
+                if excess > 0 then
+                    evicted = redis.call('ZRANGE', KEYS[1], 0, excess - 1)
+                    redis.call('ZREMRANGEBYRANK', KEYS[1], 0, excess - 1)
+                end
+            end
+            local last = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')
+            redis.call('PEXPIREAT', KEYS[1], math.floor(tonumber(last[2]) + tonumber(ARGV[5])))
+            return evicted
+            """, List.class);
+
+    // Only moves existing entries, so a touch racing with a logout can't re-add the session
+    // ARGV[1] = session ID, ARGV[2] = expiry, ARGV[3] = grace millis
+    private static final RedisScript<Long> TOUCH_SCRIPT = RedisScript.of("""
+            if not redis.call('ZSCORE', KEYS[1], ARGV[1]) then
+                return 0
+            end
+            redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+            local last = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')
+            redis.call('PEXPIREAT', KEYS[1], math.floor(tonumber(last[2]) + tonumber(ARGV[3])))
+            return 1
+            """, Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> REMOVE_ALL_SCRIPT = RedisScript.of("""
+            local ids = redis.call('ZRANGE', KEYS[1], 0, -1)
+            redis.call('DEL', KEYS[1])
+            return ids
+            """, List.class);
+
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+    private final boolean enabled;
+    private final int maxSessionsPerUser;
+    private final Duration grace;
+
+    public SessionIndex(
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            @Value("${session.user-index.enabled:true}") boolean enabled,
+            @Value("${session.user-index.max-sessions:0}") int maxSessionsPerUser,
+            @Value("${session.touch.write-back-interval.seconds:60}") int touchWriteBackIntervalSeconds
+    ) {
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+        this.enabled = enabled;
+        this.maxSessionsPerUser = Math.max(maxSessionsPerUser, 0);
+        this.grace = Duration.ofSeconds(touchWriteBackIntervalSeconds);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Register a new session
+     *
+     * @param userId User ID
+     * @param sessionId Session ID
+     * @param expiresAt Session expiry
+     * @return Flux of session IDs evicted from the index because the user is over the cap
+     */
+    public Flux<String> add(String userId, String sessionId, Instant expiresAt) {
+        if (!enabled || userId == null) {
+            return Flux.empty();
+        }
+        return addEntry(key(userId), sessionId, expiresAt, maxSessionsPerUser, grace);
+    }
+
+    /**
+     * Register a session holding a copy of an access decision
+     *
+     * @param hsid HSID the decision was made for
+     * @param sessionId Session ID
+     * @param staleAt When the copy goes stale (and is rebuilt on the next read anyway)
+     * @return Mono of Void
+     */
+    public Mono<Void> addDecisionCopy(String hsid, String sessionId, Instant staleAt) {
+        if (!enabled || hsid == null || staleAt == null) {
+            return Mono.empty();
+        }
+        return addEntry(DECISION_COPIES_KEY_PREFIX + hsid, sessionId, staleAt, 0, Duration.ZERO)
+                .doOnError(e -> log.warn("Failed to index access decision copy for HSID {}: {}", hsid, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Remove an HSID's access decision copy index and return the sessions it held
+     *
+     * @param hsid HSID
+     * @return Flux of session IDs
+     */
+    public Flux<String> removeDecisionCopies(String hsid) {
+        if (!enabled || hsid == null) {
+            return Flux.empty();
+        }
+        return takeAll(DECISION_COPIES_KEY_PREFIX + hsid);
+    }
+
+    /**
+     * Record a slid session expiry
+     *
+     * @param userId User ID
+     * @param sessionId Session ID
+     * @param expiresAt New session expiry
+     * @return Mono of Void
+     */
+    public Mono<Void> touch(String userId, String sessionId, Instant expiresAt) {
+        if (!enabled || userId == null || expiresAt == null) {
+            return Mono.empty();
+        }
+        return reactiveRedisBytesTemplate.execute(TOUCH_SCRIPT, List.of(key(userId)), List.of(
+                        bytes(sessionId),
+                        bytes(String.valueOf(expiresAt.toEpochMilli())),
+                        bytes(String.valueOf(grace.toMillis()))))
+                .doOnError(e -> log.warn("Failed to touch session index for user {}: {}", userId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Remove a session from its user's index
+     *
+     * @param userId User ID
+     * @param sessionId Session ID
+     * @return Mono of Void
+     */
+    public Mono<Void> remove(String userId, String sessionId) {
+        if (!enabled || userId == null) {
+            return Mono.empty();
+        }
+        return reactiveRedisBytesTemplate.opsForZSet()
+                .remove(key(userId), (Object) bytes(sessionId))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * List a user's live sessions, least recently active first
+     *
+     * @param userId User ID
+     * @return Flux of session IDs
+     */
+    public Flux<String> list(String userId) {
+        if (!enabled || userId == null) {
+            return Flux.empty();
+        }
+        double liveAfter = System.currentTimeMillis() - grace.toMillis();
+        return reactiveRedisBytesTemplate.opsForZSet()
+                .rangeByScore(key(userId), Range.rightUnbounded(Range.Bound.inclusive(liveAfter)))
+                .map(SessionIndex::string);
+    }
+
+    /**
+     * Remove a user's index and return the sessions it held
+     *
+     * @param userId User ID
+     * @return Flux of session IDs
+     */
+    public Flux<String> removeAll(String userId) {
+        if (!enabled || userId == null) {
+            return Flux.empty();
+        }
+        return takeAll(key(userId));
+    }
+
+    private Flux<String> addEntry(String key, String sessionId, Instant expiresAt, int cap, Duration pruneGrace) {
+        long pruneBefore = System.currentTimeMillis() - pruneGrace.toMillis();
+        return reactiveRedisBytesTemplate.execute(ADD_SCRIPT, List.of(key), List.of(
+                        bytes(sessionId),
+                        bytes(String.valueOf(expiresAt.toEpochMilli())),
+                        bytes(String.valueOf(pruneBefore)),
+                        bytes(String.valueOf(cap)),
+                        bytes(String.valueOf(pruneGrace.toMillis()))))
+                .cast(Object.class)
+                // Depending on the driver, multi-bulk replies arrive as one list or element by element
+                .flatMapIterable(result -> result instanceof List<?> list ? list : List.of(result))
+                .map(SessionIndex::string);
+    }
+
+    private Flux<String> takeAll(String key) {
+        return reactiveRedisBytesTemplate.execute(REMOVE_ALL_SCRIPT, List.of(key), List.of())
+                .cast(Object.class)
+                .flatMapIterable(result -> result instanceof List<?> list ? list : List.of(result))
+                .map(SessionIndex::string);
+    }
+
+    private static String key(String userId) {
+        return INDEX_KEY_PREFIX + userId;
+    }
+
+    private static String string(Object id) {
+        return id instanceof byte[] raw ? new String(raw, StandardCharsets.UTF_8) : id.toString();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Session Revocation Service
+ *
+ * Revoked session IDs for stateless session mode. Redis holds the shared list
+ * (sorted set session:revoked, scored by the time until which the revocation
+ * matters, i.e. the longest possible envelope expiry). Each instance keeps a
+ * local copy that is checked on every request without a Redis call:
+ * - revoke() adds locally right away and writes through to Redis
+ * - sync() (scheduled) merges other instances' revocations and prunes expired ones
+ *
+ * Other instances see a logout within one sync interval. If Redis is unavailable,
+ * the last synced copy keeps being used.
+ */
+@Slf4j
+@Service
+public class SessionRevocationService {
+
+    static final String REVOKED_KEY = "session:revoked";
+
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+    private final Map<String, Long> revokedUntil = new ConcurrentHashMap<>();
+
+    public SessionRevocationService(ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate) {
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+    }
+
+    /**
+     * Revoke a session
+     *
+     * @param sessionId Session ID
+     * @param until Time after which any envelope for the session has expired anyway
+     * @return Mono of Void
+     */
+    public Mono<Void> revoke(String sessionId, Instant until) {
+        revokedUntil.put(sessionId, until.toEpochMilli());
+        return reactiveRedisBytesTemplate.opsForZSet()
+                .add(REVOKED_KEY, sessionId.getBytes(StandardCharsets.UTF_8), until.toEpochMilli())
+                .doOnError(e -> log.warn("Failed to publish session revocation for {}: {}", sessionId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Check the local revocation list
+     *
+     * @param sessionId Session ID
+     * @return true if the session was revoked
+     */
+    public boolean isRevoked(String sessionId) {
+        Long until = revokedUntil.get(sessionId);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * Merge revocations from Redis into the local list and prune expired entries
+     *
+     * @return Mono of the number of locally known revocations
+     */
+    public Mono<Integer> sync() {
+        long now = System.currentTimeMillis();
+        revokedUntil.values().removeIf(until -> until <= now);
+
+        return reactiveRedisBytesTemplate.opsForZSet()
+                .removeRangeByScore(REVOKED_KEY, Range.leftUnbounded(Range.Bound.inclusive((double) now)))
+                .thenMany(reactiveRedisBytesTemplate.opsForZSet()
+                        .rangeByScoreWithScores(REVOKED_KEY, Range.rightUnbounded(Range.Bound.exclusive((double) now))))
+                .doOnNext(entry -> revokedUntil.merge(
+                        new String(entry.getValue(), StandardCharsets.UTF_8),
+                        entry.getScore().longValue(),
+                        Math::max))
+                .then(Mono.fromSupplier(revokedUntil::size));
+    }
+}
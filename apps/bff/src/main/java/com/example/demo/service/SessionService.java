@@ -1,67 +1,156 @@
 package com.example.demo.service;
 
 import com.example.demo.model.AccessDecision;
+import com.example.demo.model.SessionEnvelope;
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserInfo;
 import com.example.demo.model.UserSession;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.http.HttpCookie;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * Session Service
  *
  * Manages user sessions in Redis with:
- * - Server-side session storage
+ * - Server-side session storage (value or hash layout, optional near-cache; see SessionStore)
  * - Automatic expiration
  * - Session validation
  * - Session refresh
+ * - Request-scoped session resolution (one Redis read per request)
+ * - Touch mode: sliding expiry via GETEX, with lastAccessedAt/expiresAt
+ *   written back lazily at most once per write-back interval
+ * - Field-level updates for tokens and access decision
+ * - Sessions tracked by access token expiry for proactive refresh (see TokenRefreshSchedule)
+ * - Tiered reads: only hot fields (identity, expiry) are read per request;
+ *   tokens and access decision are loaded on demand (withTokens / withAccessDecision)
+ * - Stateless mode (session.mode=stateless): the cookie carries an encrypted
+ *   SessionEnvelope verified locally; Redis is only read for cold fields, and
+ *   logouts are checked against a locally synced revocation list
+ * - Per-user session index (see SessionIndex): log out everywhere, per-user
+ *   session cap with least recently active sessions evicted first, session listing
  */
 @Slf4j
 @Service
 public class SessionService {
 
-    private static final String SESSION_KEY_PREFIX = "session:";
     private static final String SESSION_COOKIE_NAME = "SESSION_ID";
 
-    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
+    /**
+     * Exchange attribute holding the session resolved by SessionValidationFilter.
+     * Controllers read it instead of going back to Redis.
+     */
+    public static final String SESSION_ATTRIBUTE = SessionService.class.getName() + ".SESSION";
+
+    private final SessionStore sessionStore;
+    private final TokenRefreshSchedule tokenRefreshSchedule;
+    private final SessionIndex sessionIndex;
+    private final SessionEnvelopeCodec sessionEnvelopeCodec;
+    private final SessionRevocationService sessionRevocationService;
+    private final AccessDecisionService accessDecisionService;
+    private final boolean stateless;
     private final int sessionTimeoutMinutes;
+    private final int sessionRefreshThreshold;
+    private final boolean touchEnabled;
+    private final Duration touchWriteBackInterval;
 
     public SessionService(
-            ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
-            @Value("${session.timeout.minutes:30}") int sessionTimeoutMinutes
+            SessionStore sessionStore,
+            TokenRefreshSchedule tokenRefreshSchedule,
+            SessionIndex sessionIndex,
+            SessionEnvelopeCodec sessionEnvelopeCodec,
+            SessionRevocationService sessionRevocationService,
+            AccessDecisionService accessDecisionService,
+            @Value("${session.mode:redis}") String sessionMode,
+            @Value("${session.timeout.minutes:30}") int sessionTimeoutMinutes,
+            @Value("${session.refresh.threshold.seconds:300}") int sessionRefreshThreshold,
+            @Value("${session.touch.enabled:true}") boolean touchEnabled,
+            @Value("${session.touch.write-back-interval.seconds:60}") int touchWriteBackIntervalSeconds
     ) {
-        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.sessionStore = sessionStore;
+        this.tokenRefreshSchedule = tokenRefreshSchedule;
+        this.sessionIndex = sessionIndex;
+        this.sessionEnvelopeCodec = sessionEnvelopeCodec;
+        this.sessionRevocationService = sessionRevocationService;
+        this.accessDecisionService = accessDecisionService;
+        this.stateless = "stateless".equalsIgnoreCase(sessionMode);
+        if (stateless && !sessionEnvelopeCodec.isConfigured()) {
+            throw new IllegalStateException("session.mode=stateless requires session.stateless.key");
+        }
         this.sessionTimeoutMinutes = sessionTimeoutMinutes;
+        this.sessionRefreshThreshold = sessionRefreshThreshold;
+        this.touchEnabled = touchEnabled;
+        this.touchWriteBackInterval = Duration.ofSeconds(touchWriteBackIntervalSeconds);
     }
 
     /**
      * Create new session
+     * Registers the session in the user's index; if that puts the user over the
+     * per-user session cap, their least recently active sessions are deleted.
+     * A cached access decision is stored as a reference, not as a copy.
      *
      * @param userSession Session data
      * @return Mono of Session ID
      */
     public Mono<String> createSession(UserSession userSession) {
         String sessionId = UUID.randomUUID().toString();
+        String userId = userSession.getUserInfo().getId();
         userSession.setSessionId(sessionId);
         userSession.setCreatedAt(Instant.now());
         userSession.setLastAccessedAt(Instant.now());
         userSession.setExpiresAt(Instant.now().plusSeconds(sessionTimeoutMinutes * 60L));
 
-        String key = SESSION_KEY_PREFIX + sessionId;
-        return reactiveRedisTemplate.opsForValue()
-                .set(key, userSession, Duration.ofMinutes(sessionTimeoutMinutes))
-                .doOnSuccess(success -> log.info("Created session for user: {} (sessionId: {})",
-                        userSession.getUserInfo().getId(), sessionId))
+        String accessDecisionRef = accessDecisionService.referenceOf(userSession.getAccessDecision());
+        userSession.setAccessDecisionRef(accessDecisionRef);
+        UserSession stored = accessDecisionRef != null
+                ? userSession.toBuilder().accessDecision(null).build()
+                : userSession;
+
+        return sessionStore.save(stored, sessionTimeout())
+                .then(tokenRefreshSchedule.schedule(sessionId, userSession.getAccessTokenExpiresAt()))
+                .then(indexDecisionCopy(sessionId, stored.getAccessDecision()))
+                .thenMany(sessionIndex.add(userId, sessionId, userSession.getExpiresAt()))
+                .concatMap(evicted -> {
+                    log.info("Session cap reached for user: {}, evicting session: {}", userId, evicted);
+                    return deleteSession(evicted);
+                })
+                .then()
+                .doOnSuccess(success -> log.info("Created session for user: {} (sessionId: {})", userId, sessionId))
                 .thenReturn(sessionId);
     }
 
+    /**
+     * Get session for the current exchange
+     * Returns the session already resolved by SessionValidationFilter if present,
+     * otherwise falls back to a Redis lookup and caches the result on the exchange.
+     *
+     * @param exchange Current server exchange
+     * @return Mono of Session data if exists and valid
+     */
+    public Mono<UserSession> getSessionFromExchange(ServerWebExchange exchange) {
+        UserSession resolved = exchange.getAttribute(SESSION_ATTRIBUTE);
+        if (resolved != null) {
+            return Mono.just(resolved);
+        }
+        return getSessionFromRequest(exchange.getRequest())
+                .doOnNext(session -> exchange.getAttributes().put(SESSION_ATTRIBUTE, session));
+    }
+
     /**
      * Get session from HTTP request
      * Extracts session ID from cookie
@@ -70,27 +159,184 @@ public class SessionService {
      * @return Mono of Session data if exists and valid
      */
     public Mono<UserSession> getSessionFromRequest(ServerHttpRequest request) {
-        // Extract session ID from cookie
-        String sessionId = getSessionIdFromCookie(request);
-        if (sessionId == null) {
+        // Extract session cookie
+        String cookieValue = getSessionCookieValue(request);
+        if (cookieValue == null) {
             return Mono.empty();
         }
-        return getSession(sessionId);
+        return getSessionFromCookie(cookieValue);
     }
 
     /**
-     * Extract session ID from cookie
+     * Get session from the session cookie value
+     * - redis mode: the cookie holds the session ID, resolved via getSession
+     * - stateless mode: the cookie holds an envelope, verified locally (no Redis call)
+     *
+     * @param cookieValue Session cookie value
+     * @return Mono of Session data if exists and valid
+     */
+    public Mono<UserSession> getSessionFromCookie(String cookieValue) {
+        if (!stateless) {
+            return getSession(cookieValue);
+        }
+
+        SessionEnvelope envelope = sessionEnvelopeCodec.decode(cookieValue);
+        if (envelope == null || envelope.isExpired()) {
+            return Mono.empty();
+        }
+        if (sessionRevocationService.isRevoked(envelope.getSessionId())) {
+            log.debug("Session revoked: {}", envelope.getSessionId());
+            return Mono.empty();
+        }
+        return Mono.just(fromEnvelope(envelope));
+    }
+
+    /**
+     * Extract session cookie value
      *
      * @param request Reactive HTTP request
-     * @return Session ID or null
+     * @return Cookie value or null
      */
-    private String getSessionIdFromCookie(ServerHttpRequest request) {
+    private String getSessionCookieValue(ServerHttpRequest request) {
         HttpCookie cookie = request.getCookies().getFirst(SESSION_COOKIE_NAME);
         return cookie != null ? cookie.getValue() : null;
     }
 
+    /**
+     * Session cookie value for a newly created session
+     * The session ID in redis mode, an encrypted envelope in stateless mode
+     *
+     * @param session Session as passed to createSession
+     * @return Cookie value
+     */
+    public String sessionCookieValue(UserSession session) {
+        if (!stateless) {
+            return session.getSessionId();
+        }
+
+        Instant now = Instant.now();
+        UserInfo userInfo = session.getUserInfo();
+        SessionEnvelope envelope = SessionEnvelope.builder()
+                .sessionId(session.getSessionId())
+                .userId(userInfo.getId())
+                .idType(userInfo.getIdType())
+                .idValue(userInfo.getIdValue())
+                .preferredUsername(userInfo.getPreferredUsername())
+                .firstName(userInfo.getFirstName())
+                .lastName(userInfo.getLastName())
+                .accessTokenExpiresAt(session.getAccessTokenExpiresAt())
+                .issuedAt(now)
+                .expiresAt(now.plus(sessionTimeout()))
+                .build();
+        return sessionEnvelopeCodec.encode(envelope);
+    }
+
+    /**
+     * Re-issue the envelope cookie when it needs to change (stateless mode only)
+     * - Past half its lifetime: slide the Redis session and extend the envelope
+     * - Inside the token refresh window: pick up a refreshed access token expiry
+     * Redis is only read in those two cases.
+     *
+     * @param session Session resolved from an envelope
+     * @return Mono of the new cookie value, empty if the current cookie is still good
+     */
+    public Mono<String> reissueCookieValue(UserSession session) {
+        SessionEnvelope envelope = session.getEnvelope();
+        if (envelope == null) {
+            return Mono.empty();
+        }
+
+        String sessionId = envelope.getSessionId();
+        Instant now = Instant.now();
+        boolean halfLife = envelope.getExpiresAt().isBefore(now.plus(sessionTimeout().dividedBy(2)));
+        boolean tokenWindow = session.shouldRefreshToken(sessionRefreshThreshold);
+        if (!halfLife && !tokenWindow) {
+            return Mono.empty();
+        }
+
+        UserSession timestamps = UserSession.builder()
+                .lastAccessedAt(now)
+                .expiresAt(now.plus(sessionTimeout()))
+                .build();
+        Mono<Boolean> slide = halfLife
+                ? sessionStore.update(sessionId, timestamps, EnumSet.of(SessionField.TIMESTAMPS), sessionTimeout())
+                .flatMap(alive -> alive
+                        ? sessionIndex.touch(envelope.getUserId(), sessionId, timestamps.getExpiresAt()).thenReturn(true)
+                        : Mono.just(false))
+                : Mono.just(true);
+
+        // A missing Redis session means it expired or was deleted - let the envelope run out
+        return slide.filter(Boolean::booleanValue)
+                .flatMap(alive -> tokenWindow
+                        ? loadTokens(sessionId).map(tokens -> Optional.ofNullable(tokens.getAccessTokenExpiresAt()))
+                        : Mono.just(Optional.<Long>empty()))
+                .flatMap(currentTokenExpiry -> {
+                    Long accessTokenExpiresAt = currentTokenExpiry.orElse(envelope.getAccessTokenExpiresAt());
+                    if (!halfLife && Objects.equals(accessTokenExpiresAt, envelope.getAccessTokenExpiresAt())) {
+                        return Mono.empty();
+                    }
+
+                    SessionEnvelope reissued = envelope.toBuilder()
+                            .accessTokenExpiresAt(accessTokenExpiresAt)
+                            .issuedAt(now)
+                            .expiresAt(halfLife ? timestamps.getExpiresAt() : envelope.getExpiresAt())
+                            .build();
+                    session.setEnvelope(reissued);
+                    session.setAccessTokenExpiresAt(accessTokenExpiresAt);
+                    session.setExpiresAt(reissued.getExpiresAt());
+                    log.debug("Re-issued session envelope: {}", sessionId);
+                    return Mono.just(sessionEnvelopeCodec.encode(reissued));
+                });
+    }
+
+    /**
+     * Build the session cookie
+     *
+     * @param value Cookie value (see sessionCookieValue)
+     * @return HTTP-only session cookie
+     */
+    public ResponseCookie sessionCookie(String value) {
+        return ResponseCookie.from(SESSION_COOKIE_NAME, value)
+                .httpOnly(true)
+                .secure(true) // HTTPS only in production
+                .path("/")
+                .maxAge(sessionTimeout())
+                .sameSite("Lax") // CSRF protection
+                .build();
+    }
+
+    /**
+     * Partial session from a verified envelope
+     * Identity attributes and token expiry only; everything else is loaded on demand
+     */
+    private UserSession fromEnvelope(SessionEnvelope envelope) {
+        UserInfo userInfo = UserInfo.builder()
+                .id(envelope.getUserId())
+                .idType(envelope.getIdType())
+                .idValue(envelope.getIdValue())
+                .preferredUsername(envelope.getPreferredUsername())
+                .firstName(envelope.getFirstName())
+                .lastName(envelope.getLastName())
+                .build();
+
+        UserSession session = UserSession.builder()
+                .sessionId(envelope.getSessionId())
+                .userInfo(userInfo)
+                .accessTokenExpiresAt(envelope.getAccessTokenExpiresAt())
+                .expiresAt(envelope.getExpiresAt())
+                .build();
+        session.setLoadedFields(EnumSet.of(SessionField.TOKEN_EXPIRY));
+        session.setEnvelope(envelope);
+        return session;
+    }
+
     /**
      * Get session by ID
+     * Slides the session expiration (last accessed time, expiresAt and TTL).
+     * In touch mode the TTL is slid in the same round trip as the read and the
+     * timestamps are only written back once per write-back interval; otherwise
+     * they are written back on every read.
+     * Only the hot fields are read; use withTokens / withAccessDecision for cold fields.
      *
      * @param sessionId Session ID
      * @return Mono of Session data if exists and valid
@@ -100,23 +346,232 @@ public class SessionService {
             return Mono.empty();
         }
 
-        String key = SESSION_KEY_PREFIX + sessionId;
-        return reactiveRedisTemplate.opsForValue().get(key)
-                .cast(UserSession.class)
+        if (!touchEnabled) {
+            return findSession(sessionId, SessionField.HOT)
+                    .flatMap(session -> {
+                        // Update last accessed time and slide expiration
+                        session.updateLastAccessed();
+                        session.setExpiresAt(Instant.now().plusSeconds(sessionTimeoutMinutes * 60L));
+                        return writeTimestamps(sessionId, session)
+                                .thenReturn(session);
+                    });
+        }
+
+        Duration timeout = sessionTimeout();
+        return sessionStore.loadAndTouch(sessionId, SessionField.HOT, timeout)
+                .flatMap(session -> {
+                    // Redis TTL is authoritative in touch mode - derive expiry from the slid TTL
+                    Instant now = Instant.now();
+                    Instant lastWrittenAt = session.getLastAccessedAt();
+                    session.setLastAccessedAt(now);
+                    session.setExpiresAt(now.plus(timeout));
+
+                    if (lastWrittenAt == null || !lastWrittenAt.plus(touchWriteBackInterval).isAfter(now)) {
+                        return writeTimestamps(sessionId, session)
+                                .doOnSuccess(v -> log.debug("Wrote back session timestamps: {}", sessionId))
+                                .thenReturn(session);
+                    }
+                    return Mono.just(session);
+                });
+    }
+
+    /**
+     * Ensure the session's tokens are loaded
+     * Needed for token refresh and revocation only
+     *
+     * @param session Session resolved for the current request
+     * @return Mono of the same session with tokens loaded
+     */
+    public Mono<UserSession> withTokens(UserSession session) {
+        return loadFields(session, EnumSet.of(SessionField.TOKENS));
+    }
+
+    /**
+     * Ensure the session's full user info is loaded
+     * Only needed in stateless mode, where the envelope carries identity attributes only
+     *
+     * @param session Session resolved for the current request
+     * @return Mono of the same session with user info loaded
+     */
+    public Mono<UserSession> withUserInfo(UserSession session) {
+        return loadFields(session, EnumSet.of(SessionField.CORE));
+    }
+
+    /**
+     * Ensure the session's access decision is loaded
+     * Needed only when acting on other members' data
+     * A decision reference is resolved through the decision cache; if the referenced
+     * entry has expired, the rebuilt decision's reference is written back.
+     * A decision copy is rebuilt (and written back) once it is stale.
+     *
+     * @param session Session resolved for the current request
+     * @return Mono of the same session with access decision loaded
+     */
+    public Mono<UserSession> withAccessDecision(UserSession session) {
+        return loadFields(session, EnumSet.of(SessionField.ACCESS_DECISION))
+                .flatMap(loaded -> {
+                    String reference = loaded.getAccessDecisionRef();
+                    if (reference == null) {
+                        return refreshIfStale(loaded);
+                    }
+                    if (accessDecisionService.matches(loaded.getAccessDecision(), reference)) {
+                        return Mono.just(loaded);
+                    }
+                    return accessDecisionService.resolve(reference)
+                            .flatMap(decision -> {
+                                loaded.setAccessDecision(decision);
+                                String resolvedRef = accessDecisionService.referenceOf(decision);
+                                if (resolvedRef == null || resolvedRef.equals(reference)) {
+                                    return Mono.just(loaded);
+                                }
+                                return updateAccessDecision(loaded.getSessionId(), decision)
+                                        .doOnSuccess(done -> loaded.setAccessDecisionRef(resolvedRef))
+                                        .thenReturn(loaded);
+                            });
+                });
+    }
+
+    /**
+     * Rebuild the access decision copies of a member's sessions after a change event
+     * Sessions holding a reference need nothing here: the referenced entries are
+     * invalidated (AccessDecisionService.invalidate) and rebuilt on the next read
+     *
+     * @param hsid Member's HSID
+     * @return Mono of the number of sessions whose copy was rebuilt
+     */
+    public Mono<Long> refreshAccessDecisionCopies(String hsid) {
+        return sessionIndex.removeDecisionCopies(hsid)
+                .concatMap(sessionId -> sessionStore.load(sessionId, EnumSet.of(SessionField.ACCESS_DECISION))
+                        .filter(stored -> stored.getAccessDecisionRef() == null
+                                && accessDecisionService.staleAt(stored.getAccessDecision()) != null)
+                        .flatMap(stored -> refreshDecisionCopy(sessionId, stored.getAccessDecision())))
+                .count()
+                .doOnNext(count -> log.info("Refreshed access decision copies of {} sessions for HSID: {}", count, hsid));
+    }
+
+    /**
+     * Rebuild a loaded decision copy if it is stale
+     */
+    private Mono<UserSession> refreshIfStale(UserSession session) {
+        Instant staleAt = accessDecisionService.staleAt(session.getAccessDecision());
+        if (staleAt == null || staleAt.isAfter(Instant.now())) {
+            return Mono.just(session);
+        }
+        return refreshDecisionCopy(session.getSessionId(), session.getAccessDecision())
+                .map(decision -> {
+                    session.setAccessDecision(decision);
+                    session.setAccessDecisionRef(accessDecisionService.referenceOf(decision));
+                    return session;
+                })
+                .defaultIfEmpty(session);
+    }
+
+    /**
+     * Rebuild a session's decision copy from current US/PSN data and store the result
+     * A NO_ACCESS fallback (US failure) does not replace the copy
+     *
+     * @return Mono of the rebuilt decision, empty if the copy was kept
+     */
+    private Mono<AccessDecision> refreshDecisionCopy(String sessionId, AccessDecision copy) {
+        return accessDecisionService.determineAccess(copy.getBiometricInfo().getHsid(), copy.getApplicationType())
+                .filter(decision -> decision.getBiometricInfo() != null)
+                .flatMap(decision -> updateAccessDecision(sessionId, decision).thenReturn(decision));
+    }
+
+    /**
+     * Index a session holding a decision copy by HSID, so change events can refresh it
+     */
+    private Mono<Void> indexDecisionCopy(String sessionId, AccessDecision copy) {
+        Instant staleAt = accessDecisionService.staleAt(copy);
+        if (staleAt == null) {
+            return Mono.empty();
+        }
+        return sessionIndex.addDecisionCopy(copy.getBiometricInfo().getHsid(), sessionId, staleAt);
+    }
+
+    /**
+     * Read session by ID without sliding its expiration
+     * Only timestamps and token expiry are loaded - used by the proactive token refresh
+     *
+     * @param sessionId Session ID
+     * @return Mono of Session data if exists and not expired
+     */
+    public Mono<UserSession> peekSession(String sessionId) {
+        return findSession(sessionId, EnumSet.of(SessionField.TIMESTAMPS, SessionField.TOKEN_EXPIRY));
+    }
+
+    /**
+     * Read the session's current tokens from the store
+     * Unlike withTokens, always goes to the store - used to pick up tokens
+     * written by a concurrent refresh
+     *
+     * @param sessionId Session ID
+     * @return Mono of a partial session holding tokens and token expiry
+     */
+    public Mono<UserSession> loadTokens(String sessionId) {
+        return sessionStore.load(sessionId, EnumSet.of(SessionField.TOKENS, SessionField.TOKEN_EXPIRY));
+    }
+
+    /**
+     * Load missing field groups into a partially loaded session
+     * No Redis call if the fields are already present (always the case for the value layout)
+     */
+    private Mono<UserSession> loadFields(UserSession session, Set<SessionField> fields) {
+        if (session.hasFields(fields)) {
+            return Mono.just(session);
+        }
+
+        Set<SessionField> missing = EnumSet.copyOf(fields);
+        missing.removeAll(session.getLoadedFields());
+
+        return sessionStore.load(session.getSessionId(), missing)
+                .map(loaded -> {
+                    session.mergeFrom(loaded, missing);
+                    session.getLoadedFields().addAll(missing);
+                    return session;
+                })
+                .defaultIfEmpty(session);
+    }
+
+    /**
+     * Read session by ID without touching it
+     *
+     * @param sessionId Session ID
+     * @param fields Field groups the caller needs
+     * @return Mono of Session data if exists and not expired
+     */
+    private Mono<UserSession> findSession(String sessionId, Set<SessionField> fields) {
+        return sessionStore.load(sessionId, fields)
                 .flatMap(session -> {
                     // Check if session is expired
-                    if (session.isExpired()) {
+                    if (isExpired(session)) {
                         log.warn("Session expired: {}", sessionId);
-                        return deleteSession(sessionId).then(Mono.empty());
+                        return deleteSession(sessionId, userIdOf(session)).then(Mono.empty());
                     }
-
-                    // Update last accessed time
-                    session.updateLastAccessed();
-                    return updateSession(sessionId, session)
-                            .thenReturn(session);
+                    return Mono.just(session);
                 });
     }
 
+    /**
+     * Whether a session read from the store has expired
+     * In touch mode the stored expiresAt lags the Redis TTL by up to the write-back
+     * interval; the TTL is authoritative, so a session that could still be read is live
+     */
+    private boolean isExpired(UserSession session) {
+        return !touchEnabled && session.isExpired();
+    }
+
+    /**
+     * Write back lastAccessedAt/expiresAt and extend TTL
+     * Also moves the session along in the user's index
+     */
+    private Mono<Void> writeTimestamps(String sessionId, UserSession session) {
+        return sessionStore.update(sessionId, session, EnumSet.of(SessionField.TIMESTAMPS), sessionTimeout())
+                .filter(Boolean::booleanValue)
+                .flatMap(updated -> sessionIndex.touch(userIdOf(session), sessionId, session.getExpiresAt()))
+                .then();
+    }
+
     /**
      * Update existing session
      *
@@ -125,60 +580,121 @@ public class SessionService {
      * @return Mono of Void
      */
     public Mono<Void> updateSession(String sessionId, UserSession userSession) {
-        String key = SESSION_KEY_PREFIX + sessionId;
+        userSession.setSessionId(sessionId);
 
         // Extend TTL on update
-        return reactiveRedisTemplate.opsForValue()
-                .set(key, userSession, Duration.ofMinutes(sessionTimeoutMinutes))
-                .doOnSuccess(success -> log.debug("Updated session: {}", sessionId))
-                .then();
+        return sessionStore.save(userSession, sessionTimeout())
+                .doOnSuccess(success -> log.debug("Updated session: {}", sessionId));
     }
 
     /**
      * Refresh session expiration
+     * getSession already slides the expiration, so this is a read + at most one write
      *
      * @param sessionId Session ID
      * @return Mono of Void
      */
     public Mono<Void> extendSession(String sessionId) {
         return getSession(sessionId)
-                .flatMap(session -> {
-                    session.setExpiresAt(Instant.now().plusSeconds(sessionTimeoutMinutes * 60L));
-                    return updateSession(sessionId, session)
-                            .doOnSuccess(v -> log.debug("Extended session: {}", sessionId));
-                });
+                .doOnNext(session -> log.debug("Extended session: {}", sessionId))
+                .then();
     }
 
     /**
      * Delete session
+     * Without the user ID the session's index entry is left to be pruned once it expires
      *
      * @param sessionId Session ID
      * @return Mono of Void
      */
     public Mono<Void> deleteSession(String sessionId) {
+        return deleteSession(sessionId, null);
+    }
+
+    /**
+     * Delete session and remove it from the user's index
+     *
+     * @param sessionId Session ID
+     * @param userId Owner of the session (optional)
+     * @return Mono of Void
+     */
+    public Mono<Void> deleteSession(String sessionId, String userId) {
         if (sessionId == null || sessionId.isEmpty()) {
             return Mono.empty();
         }
 
-        String key = SESSION_KEY_PREFIX + sessionId;
-        return reactiveRedisTemplate.delete(key)
-                .doOnSuccess(count -> log.info("Deleted session: {}", sessionId))
-                .then();
+        // Revoke first so envelopes stop being accepted even if Redis is unavailable
+        Mono<Void> revoke = stateless
+                ? sessionRevocationService.revoke(sessionId, Instant.now().plus(sessionTimeout()))
+                : Mono.empty();
+
+        return revoke
+                .then(sessionStore.delete(sessionId))
+                .then(tokenRefreshSchedule.unschedule(sessionId))
+                .then(sessionIndex.remove(userId, sessionId))
+                .doOnSuccess(v -> log.info("Deleted session: {}", sessionId));
+    }
+
+    /**
+     * Delete all sessions of a user ("log out everywhere")
+     * Each session's tokens are read and handed to beforeDelete (e.g. to queue their
+     * revocation) before the session is deleted
+     *
+     * @param userId User ID
+     * @param beforeDelete Invoked with each session's tokens (session ID, tokens, token expiry)
+     * @return Mono of the number of sessions deleted
+     */
+    public Mono<Long> deleteUserSessions(String userId, Function<UserSession, Mono<Void>> beforeDelete) {
+        if (!sessionIndex.isEnabled()) {
+            return Mono.error(new IllegalStateException("Session index is disabled (session.user-index.enabled)"));
+        }
+        return sessionIndex.removeAll(userId)
+                .concatMap(sessionId -> loadTokens(sessionId)
+                        .flatMap(tokens -> {
+                            tokens.setSessionId(sessionId);
+                            return beforeDelete.apply(tokens);
+                        })
+                        .then(deleteSession(sessionId))
+                        .thenReturn(sessionId))
+                .count()
+                .doOnNext(count -> log.info("Deleted {} sessions for user: {}", count, userId));
+    }
+
+    /**
+     * List the live sessions of a user, least recently active first
+     * Only timestamps are loaded; tokens never leave the store
+     *
+     * @param userId User ID
+     * @return Flux of partial sessions (session ID and timestamps)
+     */
+    public Flux<UserSession> getUserSessions(String userId) {
+        if (!sessionIndex.isEnabled()) {
+            return Flux.error(new IllegalStateException("Session index is disabled (session.user-index.enabled)"));
+        }
+        return sessionIndex.list(userId)
+                .concatMap(sessionId -> sessionStore.load(sessionId, EnumSet.of(SessionField.TIMESTAMPS))
+                        .filter(session -> !isExpired(session))
+                        .doOnNext(session -> session.setSessionId(sessionId)));
     }
 
     /**
      * Validate session exists and is not expired
+     * Only reads the session timestamps
      *
      * @param sessionId Session ID
      * @return Mono of true if session is valid
      */
     public Mono<Boolean> isSessionValid(String sessionId) {
-        return getSession(sessionId)
+        if (sessionId == null || sessionId.isEmpty()) {
+            return Mono.just(false);
+        }
+        return findSession(sessionId, EnumSet.of(SessionField.TIMESTAMPS))
                 .hasElement();
     }
 
     /**
      * Update session tokens after refresh
+     * Only the token fields are written
      *
      * @param sessionId Session ID
      * @param accessToken New access token
@@ -188,47 +704,58 @@ public class SessionService {
      * @return Mono of Void
      */
     public Mono<Void> updateTokens(String sessionId, String accessToken, String idToken, String refreshToken, long expiresIn) {
-        return getSession(sessionId)
-                .flatMap(session -> {
-                    session.setAccessToken(accessToken);
+        UserSession patch = UserSession.builder()
+                .accessToken(accessToken)
+                .idToken(idToken) // null = keep existing
+                .refreshToken(refreshToken) // null = keep existing
+                .accessTokenExpiresAt(System.currentTimeMillis() + (expiresIn * 1000))
+                .build();
 
-                    if (idToken != null) {
-                        session.setIdToken(idToken);
+        return sessionStore.update(sessionId, patch, EnumSet.of(SessionField.TOKENS, SessionField.TOKEN_EXPIRY), sessionTimeout())
+                .flatMap(updated -> {
+                    if (updated) {
+                        log.info("Updated tokens for session: {}", sessionId);
+                        return tokenRefreshSchedule.schedule(sessionId, patch.getAccessTokenExpiresAt());
                     }
-
-                    if (refreshToken != null) {
-                        session.setRefreshToken(refreshToken);
-                    }
-
-                    long expiresAt = System.currentTimeMillis() + (expiresIn * 1000);
-                    session.setAccessTokenExpiresAt(expiresAt);
-
-                    return updateSession(sessionId, session)
-                            .doOnSuccess(v -> log.info("Updated tokens for session: {}", sessionId));
-                })
-                .switchIfEmpty(Mono.defer(() -> {
                     log.warn("Cannot update tokens - session not found: {}", sessionId);
                     return Mono.empty();
-                }));
+                })
+                .then();
     }
 
     /**
      * Update access decision information in session
+     * Only the access decision fields are written: a reference for cached decisions,
+     * otherwise a copy (a stored reference takes precedence over a copy), indexed by HSID
      *
      * @param sessionId Session ID
      * @param accessDecision Access decision from AccessDecisionService
      * @return Mono of Void
      */
     public Mono<Void> updateAccessDecision(String sessionId, AccessDecision accessDecision) {
-        return getSession(sessionId)
-                .flatMap(session -> {
-                    session.setAccessDecision(accessDecision);
-                    return updateSession(sessionId, session)
-                            .doOnSuccess(v -> log.info("Updated access decision for session: {}", sessionId));
+        String accessDecisionRef = accessDecisionService.referenceOf(accessDecision);
+        UserSession patch = UserSession.builder()
+                .accessDecision(accessDecisionRef == null ? accessDecision : null)
+                .accessDecisionRef(accessDecisionRef)
+                .build();
+
+        return sessionStore.update(sessionId, patch, EnumSet.of(SessionField.ACCESS_DECISION), sessionTimeout())
+                .flatMap(updated -> {
+                    if (!updated) {
+                        log.warn("Cannot update access decision - session not found: {}", sessionId);
+                        return Mono.empty();
+                    }
+                    log.info("Updated access decision for session: {}", sessionId);
+                    return indexDecisionCopy(sessionId, patch.getAccessDecision());
                 })
-                .switchIfEmpty(Mono.defer(() -> {
-                    log.warn("Cannot update access decision - session not found: {}", sessionId);
-                    return Mono.empty();
-                }));
+                .then();
+    }
+
+    private static String userIdOf(UserSession session) {
+        return session.getUserInfo() != null ? session.getUserInfo().getId() : null;
+    }
+
+    private Duration sessionTimeout() {
+        return Duration.ofMinutes(sessionTimeoutMinutes);
     }
 }
@@ -0,0 +1,77 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserSession;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Session Store
+ *
+ * Storage layout for user sessions in Redis:
+ * - RedisValueSessionStore: whole UserSession serialized under a single key
+ * - RedisHashSessionStore: one Redis hash per session with field-level reads and updates
+ *
+ * Selected with session.store.layout (value | hash).
+ */
+public interface SessionStore {
+
+    /**
+     * Write the complete session, replacing any existing data
+     *
+     * @param session Session to store (sessionId must be set)
+     * @param ttl Session TTL
+     * @return Mono of Void
+     */
+    Mono<Void> save(UserSession session, Duration ttl);
+
+    /**
+     * Read a session without touching its TTL
+     *
+     * @param sessionId Session ID
+     * @param fields Field groups the caller needs (layouts may return more)
+     * @return Mono of Session data, empty if not found
+     */
+    Mono<UserSession> load(String sessionId, Set<SessionField> fields);
+
+    /**
+     * Read a session and slide its TTL in the same round trip
+     *
+     * @param sessionId Session ID
+     * @param fields Field groups the caller needs (layouts may return more)
+     * @param ttl New session TTL
+     * @return Mono of Session data, empty if not found
+     */
+    Mono<UserSession> loadAndTouch(String sessionId, Set<SessionField> fields, Duration ttl);
+
+    /**
+     * Write only the given field groups of a session
+     * Null attributes in the patch are left unchanged. Does nothing if the session no longer exists.
+     *
+     * @param sessionId Session ID
+     * @param patch Session holding the new values
+     * @param fields Field groups to write
+     * @param ttl Session TTL to apply
+     * @return Mono of true if the session existed and was updated
+     */
+    Mono<Boolean> update(String sessionId, UserSession patch, Set<SessionField> fields, Duration ttl);
+
+    /**
+     * Slide a session's TTL without reading it
+     *
+     * @param sessionId Session ID
+     * @param ttl Session TTL to apply
+     * @return Mono of true if the session exists
+     */
+    Mono<Boolean> touch(String sessionId, Duration ttl);
+
+    /**
+     * Delete a session
+     *
+     * @param sessionId Session ID
+     * @return Mono of Void
+     */
+    Mono<Void> delete(String sessionId);
+}
@@ -0,0 +1,158 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserSession;
+import com.example.demo.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Token Refresh Coordinator
+ *
+ * Ensures one access token refresh per session at a time:
+ * 1. In-process: concurrent refreshes of the same session share one call (SingleFlight)
+ * 2. Across instances: the refresh runs under a short Redis lease (session:refresh-lock:{id})
+ * 3. The lease holder re-reads the tokens first - if another instance already refreshed,
+ *    its tokens are reused instead of spending the (possibly rotated) refresh token again
+ * 4. Instances that lose the lease poll the store until the winner's tokens appear
+ *
+ * Metric: session.token.refresh tagged outcome=refreshed|reused|waited
+ */
+@Slf4j
+@Service
+public class TokenRefreshCoordinator {
+
+    private static final String LOCK_KEY_PREFIX = "session:refresh-lock:";
+    private static final Set<SessionField> TOKEN_FIELDS = EnumSet.of(SessionField.TOKENS, SessionField.TOKEN_EXPIRY);
+
+    private final OAuth2Service oauth2Service;
+    private final SessionService sessionService;
+    private final RedisLockService redisLockService;
+    private final Duration leaseTime;
+    private final Duration pollInterval;
+    private final SingleFlight<String, UserSession> inFlightRefreshes = new SingleFlight<>();
+    private final Counter refreshed;
+    private final Counter reused;
+    private final Counter waited;
+
+    public TokenRefreshCoordinator(
+            OAuth2Service oauth2Service,
+            SessionService sessionService,
+            RedisLockService redisLockService,
+            MeterRegistry meterRegistry,
+            @Value("${session.refresh.lease.seconds:10}") int leaseSeconds,
+            @Value("${session.refresh.poll-interval.millis:100}") int pollIntervalMillis
+    ) {
+        this.oauth2Service = oauth2Service;
+        this.sessionService = sessionService;
+        this.redisLockService = redisLockService;
+        this.leaseTime = Duration.ofSeconds(leaseSeconds);
+        this.pollInterval = Duration.ofMillis(pollIntervalMillis);
+        this.refreshed = refreshCounter(meterRegistry, "refreshed");
+        this.reused = refreshCounter(meterRegistry, "reused");
+        this.waited = refreshCounter(meterRegistry, "waited");
+    }
+
+    /**
+     * Refresh the session's tokens, or reuse a concurrent refresh
+     * On success the given session is updated with the new tokens.
+     *
+     * @param session Session with tokens loaded (see SessionService.withTokens)
+     * @return Mono of the same session holding the current tokens
+     */
+    public Mono<UserSession> refresh(UserSession session) {
+        Long seenExpiresAt = session.getAccessTokenExpiresAt();
+        return inFlightRefreshes.execute(session.getSessionId(), () -> refreshOnce(session.getSessionId(), seenExpiresAt))
+                .map(tokens -> {
+                    session.mergeFrom(tokens, TOKEN_FIELDS);
+                    return session;
+                });
+    }
+
+    /**
+     * Refresh under the cluster-wide lease, or wait for the instance holding it
+     */
+    private Mono<UserSession> refreshOnce(String sessionId, Long seenExpiresAt) {
+        String lockKey = LOCK_KEY_PREFIX + sessionId;
+        return redisLockService.tryAcquire(lockKey, leaseTime)
+                .flatMap(token -> refreshWithLease(sessionId, seenExpiresAt)
+                        .flatMap(tokens -> redisLockService.release(lockKey, token).thenReturn(tokens))
+                        .onErrorResume(e -> redisLockService.release(lockKey, token).then(Mono.error(e))))
+                .switchIfEmpty(Mono.defer(() -> awaitRefresh(sessionId, seenExpiresAt)));
+    }
+
+    private Mono<UserSession> refreshWithLease(String sessionId, Long seenExpiresAt) {
+        return sessionService.loadTokens(sessionId)
+                .switchIfEmpty(Mono.error(new IllegalStateException("Session not found: " + sessionId)))
+                .flatMap(current -> {
+                    if (isNewer(current, seenExpiresAt)) {
+                        log.debug("Tokens already refreshed by another request for session: {}", sessionId);
+                        reused.increment();
+                        return Mono.just(current);
+                    }
+
+                    return oauth2Service.refreshAccessToken(current.getRefreshToken())
+                            .flatMap(tokenResponse -> {
+                                long expiresIn = tokenResponse.expires_in != null ? tokenResponse.expires_in : 3600;
+                                UserSession tokens = UserSession.builder()
+                                        .accessToken(tokenResponse.access_token)
+                                        .idToken(tokenResponse.id_token)
+                                        .refreshToken(tokenResponse.refresh_token)
+                                        .accessTokenExpiresAt(System.currentTimeMillis() + (expiresIn * 1000))
+                                        .build();
+
+                                return sessionService.updateTokens(
+                                                sessionId,
+                                                tokens.getAccessToken(),
+                                                tokens.getIdToken(),
+                                                tokens.getRefreshToken(),
+                                                expiresIn
+                                        )
+                                        .thenReturn(tokens);
+                            })
+                            .doOnSuccess(tokens -> {
+                                refreshed.increment();
+                                log.info("Tokens refreshed for session: {}", sessionId);
+                            });
+                });
+    }
+
+    /**
+     * Poll the store until the lease holder has written new tokens (bounded by the lease time)
+     */
+    private Mono<UserSession> awaitRefresh(String sessionId, Long seenExpiresAt) {
+        log.debug("Token refresh in progress on another instance, waiting: {}", sessionId);
+        long maxPolls = Math.max(1, leaseTime.toMillis() / Math.max(1, pollInterval.toMillis()));
+
+        return Mono.defer(() -> sessionService.loadTokens(sessionId))
+                .filter(current -> isNewer(current, seenExpiresAt))
+                .repeatWhenEmpty((int) Math.min(maxPolls, Integer.MAX_VALUE), attempts -> attempts.delayElements(pollInterval))
+                .switchIfEmpty(Mono.error(new IllegalStateException(
+                        "Concurrent token refresh did not complete for session: " + sessionId)))
+                .doOnNext(current -> waited.increment());
+    }
+
+    /**
+     * Tokens were replaced since the caller read the session
+     */
+    private boolean isNewer(UserSession current, Long seenExpiresAt) {
+        return current.getAccessTokenExpiresAt() != null
+                && !Objects.equals(current.getAccessTokenExpiresAt(), seenExpiresAt);
+    }
+
+    private static Counter refreshCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("session.token.refresh")
+                .description("Access token refreshes by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Token Refresh Schedule
+ *
+ * Redis sorted set (session:refresh-schedule) of session IDs scored by
+ * accessTokenExpiresAt, used by TokenRefreshScheduler to refresh tokens
+ * before requests need them.
+ *
+ * Entries are claimed atomically: claiming re-scores them one claim TTL into
+ * the future, so other instances skip them, and a crashed instance's claims
+ * become due again on their own. A successful refresh re-schedules the session
+ * with its new expiry. All operations are no-ops when proactive refresh is disabled.
+ */
+@Slf4j
+@Service
+public class TokenRefreshSchedule {
+
+    static final String SCHEDULE_KEY = "session:refresh-schedule";
+
+    // ARGV[1] = due score (max), ARGV[2] = batch size, ARGV[3] = score for claimed entries
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = RedisScript.of("""
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            for _, id in ipairs(due) do
+                redis.call('ZADD', KEYS[1], ARGV[3], id)
+            end
+            return due
+            """, List.class);
+
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+    private final boolean enabled;
+
+    public TokenRefreshSchedule(
+            ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate,
+            @Value("${session.refresh.proactive.enabled:true}") boolean enabled
+    ) {
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Schedule (or re-schedule) a session by its access token expiry
+     *
+     * @param sessionId Session ID
+     * @param accessTokenExpiresAt Access token expiry (epoch milliseconds)
+     * @return Mono of Void
+     */
+    public Mono<Void> schedule(String sessionId, Long accessTokenExpiresAt) {
+        if (!enabled || accessTokenExpiresAt == null) {
+            return Mono.empty();
+        }
+        return reactiveRedisBytesTemplate.opsForZSet()
+                .add(SCHEDULE_KEY, bytes(sessionId), accessTokenExpiresAt)
+                .doOnError(e -> log.warn("Failed to schedule token refresh for session {}: {}", sessionId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Remove a session from the schedule
+     *
+     * @param sessionId Session ID
+     * @return Mono of Void
+     */
+    public Mono<Void> unschedule(String sessionId) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return reactiveRedisBytesTemplate.opsForZSet()
+                .remove(SCHEDULE_KEY, (Object) bytes(sessionId))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Claim sessions whose access token expires before the given time
+     *
+     * @param dueBefore Claim entries with expiry at or before this time (epoch milliseconds)
+     * @param batchSize Maximum number of entries to claim
+     * @param claimTtl How long claimed entries are hidden from other claims
+     * @return Flux of claimed session IDs
+     */
+    public Flux<String> claimDue(long dueBefore, int batchSize, Duration claimTtl) {
+        if (!enabled) {
+            return Flux.empty();
+        }
+        // Claimed entries become due again once claimTtl has passed
+        long claimedScore = dueBefore + claimTtl.toMillis();
+        return reactiveRedisBytesTemplate.execute(CLAIM_SCRIPT, List.of(SCHEDULE_KEY), List.of(
+                        bytes(String.valueOf(dueBefore)),
+                        bytes(String.valueOf(batchSize)),
+                        bytes(String.valueOf(claimedScore))))
+                .cast(Object.class)
+                // Depending on the driver, multi-bulk replies arrive as one list or element by element
+                .flatMapIterable(result -> result instanceof List<?> list ? list : List.of(result))
+                .map(id -> id instanceof byte[] raw ? new String(raw, StandardCharsets.UTF_8) : id.toString());
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
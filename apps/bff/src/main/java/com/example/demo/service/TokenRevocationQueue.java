@@ -0,0 +1,193 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Token Revocation Queue
+ *
+ * Durable queue of token revocations, drained by TokenRevocationScheduler so logout
+ * does not wait for the IDP. Jobs live in a Redis hash (oauth2:revocation:jobs, job ID ->
+ * attempts:token_type_hint:token) and a sorted set (oauth2:revocation:queue) of job IDs
+ * scored by when they are due.
+ *
+ * Jobs are claimed atomically like the token refresh schedule: claiming re-scores them
+ * one claim TTL into the future, so other instances skip them, and a crashed instance's
+ * claims become due again on their own.
+ */
+@Slf4j
+@Service
+public class TokenRevocationQueue {
+
+    static final String QUEUE_KEY = "oauth2:revocation:queue";
+    static final String JOBS_KEY = "oauth2:revocation:jobs";
+
+    // ARGV[1] = job ID, ARGV[2] = job, ARGV[3] = due score
+    private static final RedisScript<Long> PUT_SCRIPT = RedisScript.of("""
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+            redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1])
+            return 1
+            """, Long.class);
+
+    // ARGV[1] = job ID
+    private static final RedisScript<Long> REMOVE_SCRIPT = RedisScript.of("""
+            redis.call('ZREM', KEYS[1], ARGV[1])
+            return redis.call('HDEL', KEYS[2], ARGV[1])
+            """, Long.class);
+
+    // ARGV[1] = due score (max), ARGV[2] = batch size, ARGV[3] = score for claimed entries
+    // Returns job ID, job, job ID, job, ...
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = RedisScript.of("""
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])
+            local claimed = {}
+            for _, id in ipairs(due) do
+                local job = redis.call('HGET', KEYS[2], id)
+                if job then
+                    redis.call('ZADD', KEYS[1], ARGV[3], id)
+                    table.insert(claimed, id)
+                    table.insert(claimed, job)
+                else
+                    redis.call('ZREM', KEYS[1], id)
+                end
+            end
+            return claimed
+            """, List.class);
+
+    private final ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate;
+
+    public TokenRevocationQueue(ReactiveRedisTemplate<String, byte[]> reactiveRedisBytesTemplate) {
+        this.reactiveRedisBytesTemplate = reactiveRedisBytesTemplate;
+    }
+
+    /**
+     * Queue a token for revocation, due immediately
+     *
+     * @param token Token to revoke
+     * @param tokenTypeHint Type of token (access_token or refresh_token)
+     * @return Mono of Void
+     */
+    public Mono<Void> enqueue(String token, String tokenTypeHint) {
+        RevocationJob job = new RevocationJob(UUID.randomUUID().toString(), tokenTypeHint, token, 0);
+        return put(job, System.currentTimeMillis());
+    }
+
+    /**
+     * Queue a session's access and refresh tokens for revocation
+     * Best effort: failures are logged, not propagated, so logouts never fail on the queue
+     *
+     * @param session Session with tokens loaded
+     * @return Mono of Void
+     */
+    public Mono<Void> enqueueTokens(UserSession session) {
+        return Mono.when(
+                enqueueQuietly(session.getAccessToken(), "access_token"),
+                enqueueQuietly(session.getRefreshToken(), "refresh_token"));
+    }
+
+    private Mono<Void> enqueueQuietly(String token, String tokenTypeHint) {
+        if (token == null) {
+            return Mono.empty();
+        }
+        return enqueue(token, tokenTypeHint)
+                .onErrorResume(e -> {
+                    log.warn("Failed to queue {} revocation (continuing with logout): {}", tokenTypeHint, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Put a failed job back, due at the given time, with its attempt count incremented
+     *
+     * @param job Claimed job
+     * @param dueAt When the job is due again (epoch milliseconds)
+     * @return Mono of Void
+     */
+    public Mono<Void> retry(RevocationJob job, long dueAt) {
+        return put(new RevocationJob(job.id(), job.tokenTypeHint(), job.token(), job.attempts() + 1), dueAt);
+    }
+
+    /**
+     * Remove a job (revoked, or given up)
+     *
+     * @param job Claimed job
+     * @return Mono of Void
+     */
+    public Mono<Void> remove(RevocationJob job) {
+        return reactiveRedisBytesTemplate.execute(REMOVE_SCRIPT, List.of(QUEUE_KEY, JOBS_KEY), List.of(bytes(job.id())))
+                .then();
+    }
+
+    /**
+     * Claim due jobs
+     *
+     * @param dueBefore Claim jobs due at or before this time (epoch milliseconds)
+     * @param batchSize Maximum number of jobs to claim
+     * @param claimTtl How long claimed jobs are hidden from other claims
+     * @return Flux of claimed jobs
+     */
+    public Flux<RevocationJob> claimDue(long dueBefore, int batchSize, Duration claimTtl) {
+        long claimedScore = dueBefore + claimTtl.toMillis();
+        return reactiveRedisBytesTemplate.execute(CLAIM_SCRIPT, List.of(QUEUE_KEY, JOBS_KEY), List.of(
+                        bytes(String.valueOf(dueBefore)),
+                        bytes(String.valueOf(batchSize)),
+                        bytes(String.valueOf(claimedScore))))
+                .cast(Object.class)
+                // Depending on the driver, multi-bulk replies arrive as one list or element by element
+                .flatMapIterable(result -> result instanceof List<?> list ? list : List.of(result))
+                .map(value -> value instanceof byte[] raw ? new String(raw, StandardCharsets.UTF_8) : value.toString())
+                .buffer(2)
+                .map(pair -> RevocationJob.decode(pair.get(0), pair.get(1)));
+    }
+
+    /**
+     * Number of queued jobs (due or not)
+     *
+     * @return Mono of queue depth
+     */
+    public Mono<Long> depth() {
+        return reactiveRedisBytesTemplate.opsForZSet().size(QUEUE_KEY);
+    }
+
+    private Mono<Void> put(RevocationJob job, long dueAt) {
+        return reactiveRedisBytesTemplate.execute(PUT_SCRIPT, List.of(QUEUE_KEY, JOBS_KEY), List.of(
+                        bytes(job.id()),
+                        bytes(job.encode()),
+                        bytes(String.valueOf(dueAt))))
+                .then();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Queued revocation
+     *
+     * @param id Job ID
+     * @param tokenTypeHint Type of token (access_token or refresh_token)
+     * @param token Token to revoke
+     * @param attempts Failed attempts so far
+     */
+    public record RevocationJob(String id, String tokenTypeHint, String token, int attempts) {
+
+        String encode() {
+            return attempts + ":" + tokenTypeHint + ":" + token;
+        }
+
+        static RevocationJob decode(String id, String value) {
+            String[] parts = value.split(":", 3);
+            return new RevocationJob(id, parts[1], parts[2], Integer.parseInt(parts[0]));
+        }
+    }
+}
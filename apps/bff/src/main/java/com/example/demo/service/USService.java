@@ -1,18 +1,23 @@
 package com.example.demo.service;
 
+import com.example.demo.exception.ResourceNotFoundException;
 import com.example.demo.model.BiometricInfo;
+import com.example.demo.util.MicroBatcher;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
-import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
@@ -20,7 +25,11 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Period;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * US (User Service) Service
@@ -33,46 +42,100 @@ import java.util.Map;
  * 2. Call US biometric API with member's HSID
  * 3. Parse response containing DOB, age, persona attributes
  * 4. Determine if member is under 18 or has PR persona
+ *
+ * When us.oauth2.biometric-bulk-uri is set, cache misses are micro-batched (us.batch.*):
+ * misses arriving within one window are resolved with one bulk call. Otherwise each
+ * miss is one single call.
  */
 @Slf4j
 @Service
-public class USService {
+public class USService implements DisposableBean {
 
     private static final String CACHE_KEY_PREFIX = "us:biometric:";
-    private static final Duration CACHE_TTL = Duration.ofMinutes(30);
+
+    /**
+     * US biometric API response (unknown fields ignored)
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record BiometricResponse(
+            String hsid,
+            String firstName,
+            String lastName,
+            String dateOfBirth,
+            String persona,
+            Long expiresIn
+    ) {
+    }
+
+    /**
+     * US bulk biometric API response: one BiometricResponse per known member
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    record BiometricBulkResponse(List<BiometricResponse> results) {
+    }
 
     private final WebClient webClient;
-    private final ReactiveRedisTemplate<String, Object> reactiveRedisTemplate;
-    private final String usTokenUri;
+    private final CoalescingCache<BiometricInfo> biometricCache;
+    private final ClientCredentialsTokenManager tokenManager;
+    private final ClientCredentialsTokenManager.ClientRegistration clientRegistration;
     private final String usBiometricUri;
-    private final String clientId;
-    private final String clientSecret;
-    private final String scope;
-
-    // Cache for client credentials token - using Mono for reactive caching
-    private Mono<String> cachedAccessTokenMono = Mono.empty();
+    private final String usBiometricBulkUri;
+    private final MicroBatcher<String, BiometricInfo> biometricBatcher;
 
     public USService(
-            WebClient webClient,
-            ReactiveRedisTemplate<String, Object> reactiveRedisTemplate,
+            @Qualifier("usWebClient") WebClient webClient,
+            CoalescingCacheFactory coalescingCacheFactory,
+            ClientCredentialsTokenManager tokenManager,
+            MeterRegistry meterRegistry,
             @Value("${us.oauth2.token-uri}") String usTokenUri,
             @Value("${us.oauth2.biometric-uri}") String usBiometricUri,
+            @Value("${us.oauth2.biometric-bulk-uri:}") String usBiometricBulkUri,
             @Value("${us.oauth2.client-id}") String clientId,
             @Value("${us.oauth2.client-secret}") String clientSecret,
-            @Value("${us.oauth2.scope:us.biometric.read}") String scope
+            @Value("${us.oauth2.scope:us.biometric.read}") String scope,
+            @Value("${cache.us.ttl.soft.minutes:20}") int softTtlMinutes,
+            @Value("${cache.us.ttl.minutes:30}") int hardTtlMinutes,
+            @Value("${cache.us.stale-if-error.minutes:240}") int staleIfErrorMinutes,
+            @Value("${cache.us.negative-ttl.minutes:5}") int negativeTtlMinutes,
+            @Value("${us.batch.window.millis:5}") int batchWindowMillis,
+            @Value("${us.batch.max-size:50}") int batchMaxSize,
+            @Value("${us.batch.concurrency:8}") int batchConcurrency
     ) {
         this.webClient = webClient;
-        this.reactiveRedisTemplate = reactiveRedisTemplate;
-        this.usTokenUri = usTokenUri;
+        this.biometricCache = coalescingCacheFactory.create("us", CACHE_KEY_PREFIX, BiometricInfo.class,
+                new CoalescingCache.CacheTtl(
+                        Duration.ofMinutes(softTtlMinutes),
+                        Duration.ofMinutes(hardTtlMinutes),
+                        Duration.ofMinutes(staleIfErrorMinutes),
+                        Duration.ofMinutes(negativeTtlMinutes)));
+        this.tokenManager = tokenManager;
+        this.clientRegistration = new ClientCredentialsTokenManager.ClientRegistration(
+                "us", usTokenUri, clientId, clientSecret, scope, webClient);
         this.usBiometricUri = usBiometricUri;
-        this.clientId = clientId;
-        this.clientSecret = clientSecret;
-        this.scope = scope;
+        this.usBiometricBulkUri = usBiometricBulkUri;
+
+        // Without a bulk endpoint batching only adds latency: misses go straight to single calls
+        this.biometricBatcher = usBiometricBulkUri.isBlank() ? null
+                : new MicroBatcher<>("us", this::fetchBiometricInfoBulk, batchMaxSize,
+                        Duration.ofMillis(batchWindowMillis), batchConcurrency, meterRegistry);
+    }
+
+    /**
+     * Stop the batcher's subscription on shutdown or context refresh
+     */
+    @Override
+    public void destroy() {
+        if (biometricBatcher != null) {
+            biometricBatcher.dispose();
+        }
     }
 
     /**
      * Get biometric information for a member from US
-     * Cached in Redis for 30 minutes
+     * Cached in Redis: served from cache up to the soft TTL, refreshed in the background
+     * between soft and hard TTL (stale-while-revalidate), reloaded past the hard TTL
+     * Unknown members (404) are cached as negative results and reported as ResourceNotFoundException
+     * Concurrent lookups for the same HSID are coalesced (see CoalescingCache)
      * Circuit breaker protects against US service failures
      *
      * @param hsid Member's HSID (unique identifier)
@@ -83,93 +146,117 @@ public class USService {
     public Mono<BiometricInfo> getBiometricInfo(String hsid) {
         log.debug("Fetching biometric info for HSID: {}", hsid);
 
-        String cacheKey = CACHE_KEY_PREFIX + hsid;
-
-        // Check cache first, then fetch from US if not found
-        return reactiveRedisTemplate.opsForValue().get(cacheKey)
-                .cast(BiometricInfo.class)
-                .doOnNext(cached -> log.info("Biometric info found in cache for HSID: {}", hsid))
-                .switchIfEmpty(Mono.defer(() -> {
+        // Cache first; concurrent misses for the same HSID share one US call,
+        // misses for different HSIDs within one batch window share one bulk call
+        return biometricCache.get(hsid, () -> {
                     log.info("Biometric info not in cache, fetching from US for HSID: {}", hsid);
-
-                    return getClientCredentialsToken()
-                            .flatMap(accessToken -> webClient.get()
-                                    .uri(uriBuilder -> uriBuilder
-                                            .path(usBiometricUri)
-                                            .queryParam("hsid", hsid)
-                                            .build())
-                                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
-                                    .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                                    .retrieve()
-                                    .bodyToMono(Map.class))
-                            .flatMap(usResponse -> {
-                                if (usResponse == null) {
-                                    return Mono.error(new RuntimeException("US biometric response is null"));
-                                }
-                                BiometricInfo biometricInfo = parseUSResponse(usResponse);
-
-                                // Cache the result for 30 minutes
-                                return reactiveRedisTemplate.opsForValue()
-                                        .set(cacheKey, biometricInfo, CACHE_TTL)
-                                        .thenReturn(biometricInfo);
-                            })
-                            .doOnSuccess(biometricInfo -> log.info("Successfully fetched and cached biometric info from US. Age: {}, IsMinor: {}, HasPR: {}",
+                    return (biometricBatcher != null ? biometricBatcher.load(hsid) : fetchBiometricInfo(hsid))
+                            .doOnNext(biometricInfo -> log.info("Successfully fetched biometric info from US. Age: {}, IsMinor: {}, HasPR: {}",
                                     biometricInfo.getAge(),
                                     biometricInfo.getIsMinor(),
                                     biometricInfo.getHasPersonaRepresentative()));
-                }))
-                .doOnError(e -> log.error("Failed to fetch biometric info from US", e))
-                .onErrorMap(e -> new RuntimeException("US biometric fetch failed: " + e.getMessage(), e));
+                })
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("No biometric info in US for HSID: " + hsid)))
+                .doOnError(e -> !(e instanceof ResourceNotFoundException), e -> log.error("Failed to fetch biometric info from US", e))
+                .onErrorMap(e -> !(e instanceof ResourceNotFoundException),
+                        e -> new RuntimeException("US biometric fetch failed: " + e.getMessage(), e));
+    }
+
+    /**
+     * Evict cached biometric info for a member (e.g. on a relationship or persona change)
+     * The next lookup calls US
+     *
+     * @param hsid Member's HSID
+     * @return Mono of Void
+     */
+    public Mono<Void> evict(String hsid) {
+        return biometricCache.evict(hsid);
+    }
+
+    /**
+     * Fetch biometric info for one HSID from the US biometric API
+     * Empty if US does not know the member (404)
+     */
+    private Mono<BiometricInfo> fetchBiometricInfo(String hsid) {
+        return withClientCredentialsToken(accessToken -> webClient.get()
+                        .uri(UriComponentsBuilder.fromUriString(usBiometricUri)
+                                .queryParam("hsid", "{hsid}")
+                                .encode()
+                                .buildAndExpand(hsid)
+                                .toUri())
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                        .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                        .retrieve()
+                        .bodyToMono(BiometricResponse.class)
+                        // Unknown member - cached as a negative result
+                        .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.empty()))
+                .map(this::parseUSResponse);
+    }
+
+    /**
+     * Fetch biometric info for many HSIDs with one call to the US bulk biometric API
+     * Request: {"hsids": [...]}; response: {"results": [...]} with one single-lookup
+     * response per known member. HSIDs missing from the results are unknown members.
+     */
+    private Mono<Map<String, BiometricInfo>> fetchBiometricInfoBulk(Collection<String> hsids) {
+        return withClientCredentialsToken(accessToken -> webClient.post()
+                        .uri(usBiometricBulkUri)
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .bodyValue(Map.of("hsids", hsids))
+                        .retrieve()
+                        .bodyToMono(BiometricBulkResponse.class))
+                .map(usResponse -> {
+                    if (usResponse.results() == null) {
+                        return Map.<String, BiometricInfo>of();
+                    }
+                    return usResponse.results().stream()
+                            .map(this::parseUSResponse)
+                            .filter(biometricInfo -> biometricInfo.getHsid() != null)
+                            .collect(Collectors.toMap(BiometricInfo::getHsid, Function.identity(), (first, second) -> first));
+                });
+    }
+
+    /**
+     * Call US with the client credentials token
+     * A 401 means US no longer accepts the cached token (e.g. revoked or keys rotated):
+     * the token is dropped and the call retried once with a new one
+     */
+    private <T> Mono<T> withClientCredentialsToken(Function<String, Mono<T>> call) {
+        return getClientCredentialsToken()
+                .flatMap(accessToken -> call.apply(accessToken)
+                        .onErrorResume(WebClientResponseException.Unauthorized.class, e -> {
+                            log.warn("US rejected the client credentials token, retrying with a new token");
+                            tokenManager.invalidate(clientRegistration, accessToken);
+                            return getClientCredentialsToken().flatMap(call);
+                        }));
     }
 
     /**
      * Get OAuth2 token using client credentials flow
-     * Caches token until it expires
+     * Cached and refreshed by ClientCredentialsTokenManager
      * Circuit breaker protects against token service failures
      */
     @CircuitBreaker(name = "usTokenService", fallbackMethod = "getClientCredentialsTokenFallback")
     @Retry(name = "usTokenService")
     private Mono<String> getClientCredentialsToken() {
-        log.info("Fetching US client credentials token");
-
-        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
-        formData.add("grant_type", "client_credentials");
-        formData.add("client_id", clientId);
-        formData.add("client_secret", clientSecret);
-        formData.add("scope", scope);
-
-        // Use cached Mono or create new one
-        return Mono.defer(() -> webClient.post()
-                .uri(usTokenUri)
-                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
-                .body(BodyInserters.fromFormData(formData))
-                .retrieve()
-                .bodyToMono(ClientCredentialsTokenResponse.class)
-                .flatMap(tokenResponse -> {
-                    if (tokenResponse == null || tokenResponse.access_token == null) {
-                        return Mono.error(new RuntimeException("Invalid token response from US"));
-                    }
-                    log.info("Successfully obtained US client credentials token");
-                    return Mono.just(tokenResponse.access_token);
-                })
-                .doOnError(e -> log.error("Failed to get US client credentials token", e))
-                .onErrorMap(e -> new RuntimeException("US token fetch failed: " + e.getMessage(), e))
-                .cache(Duration.ofMinutes(55))); // Cache for 55 minutes (assuming 1 hour token expiry)
+        return tokenManager.getToken(clientRegistration);
     }
 
     /**
      * Parse US API response into BiometricInfo
      */
-    private BiometricInfo parseUSResponse(Map<String, Object> usResponse) {
+    private BiometricInfo parseUSResponse(BiometricResponse usResponse) {
         BiometricInfo.BiometricInfoBuilder builder = BiometricInfo.builder();
 
         // Basic info
-        builder.hsid((String) usResponse.get("hsid"));
-        builder.firstName((String) usResponse.get("firstName"));
-        builder.lastName((String) usResponse.get("lastName"));
+        builder.hsid(usResponse.hsid());
+        builder.firstName(usResponse.firstName());
+        builder.lastName(usResponse.lastName());
 
         // Date of birth and age calculation
-        String dob = (String) usResponse.get("dateOfBirth");
+        String dob = usResponse.dateOfBirth();
         builder.dateOfBirth(dob);
 
         if (dob != null && !dob.isEmpty()) {
@@ -188,34 +275,26 @@ public class USService {
         }
 
         // Persona attribute
-        String persona = (String) usResponse.get("persona");
+        String persona = usResponse.persona();
         builder.persona(persona);
         builder.hasPersonaRepresentative(persona != null && persona.equalsIgnoreCase("PR"));
 
         // Metadata
         builder.retrievedAt(Instant.now().toString());
 
-        Object expiresIn = usResponse.get("expiresIn");
-        if (expiresIn instanceof Number) {
-            builder.expiresIn(((Number) expiresIn).longValue());
-        } else {
-            builder.expiresIn(3600L); // Default 1 hour
-        }
+        builder.expiresIn(usResponse.expiresIn() != null ? usResponse.expiresIn() : 3600L); // Default 1 hour
 
         return builder.build();
     }
 
     /**
-     * Fallback method for getBiometricInfo
-     * Returns cached data if available, otherwise throws exception
+     * Fallback method for getBiometricInfo while the circuit breaker is open
+     * Serves the cached value even past its hard TTL (within the stale-if-error period)
      */
-    private Mono<BiometricInfo> getBiometricInfoFallback(String hsid, Exception e) {
-        log.warn("Circuit breaker activated for US service. Attempting to serve stale cache for HSID: {}", hsid, e);
+    private Mono<BiometricInfo> getBiometricInfoFallback(String hsid, CallNotPermittedException e) {
+        log.warn("Circuit breaker open for US service. Attempting to serve stale cache for HSID: {}", hsid);
 
-        // Try to return stale cached data
-        String cacheKey = CACHE_KEY_PREFIX + hsid;
-        return reactiveRedisTemplate.opsForValue().get(cacheKey)
-                .cast(BiometricInfo.class)
+        return biometricCache.readStale(hsid)
                 .doOnNext(cached -> log.info("Serving stale cached biometric info for HSID: {}", hsid))
                 .switchIfEmpty(Mono.defer(() -> {
                     log.error("No cached data available for HSID: {}. Circuit breaker fallback failed.", hsid);
@@ -223,6 +302,14 @@ public class USService {
                 }));
     }
 
+    /**
+     * Fallback method for getBiometricInfo on other failures
+     * Values past their hard TTL are only served while the circuit breaker is open
+     */
+    private Mono<BiometricInfo> getBiometricInfoFallback(String hsid, Exception e) {
+        return Mono.error(e);
+    }
+
     /**
      * Fallback method for getClientCredentialsToken
      * Fails immediately as token is required
@@ -231,14 +318,4 @@ public class USService {
         log.error("Circuit breaker activated for US token service. No fallback available.", e);
         return Mono.error(new RuntimeException("US token service unavailable", e));
     }
-
-    /**
-     * Client Credentials Token Response DTO
-     */
-    private static class ClientCredentialsTokenResponse {
-        public String access_token;
-        public String token_type;
-        public Long expires_in;
-        public String scope;
-    }
 }
@@ -0,0 +1,55 @@
+package com.example.demo.util;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Bulk lookup contract used by MicroBatcher
+ *
+ * Implementations resolve many keys in one call. Keys missing from the
+ * result map are treated as "not found"; an error of the bulk call fails
+ * every key of the batch.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+@FunctionalInterface
+public interface BulkLookup<K, V> {
+
+    /**
+     * Outcome of one key of a batch
+     *
+     * @param key Key
+     * @param value Value, null if not found or failed
+     * @param error Error of the lookup, null if it succeeded
+     */
+    record Outcome<K, V>(K key, V value, Throwable error) {
+    }
+
+    /**
+     * Look up all keys
+     *
+     * @param keys Distinct keys of one batch
+     * @return Mono of the values found, by key
+     */
+    Mono<Map<K, V>> lookupAll(Collection<K> keys);
+
+    /**
+     * Look up all keys, with one outcome per key
+     * By default every key gets its value from lookupAll, or the error of the whole call
+     *
+     * @param keys Distinct keys of one batch
+     * @return Flux of one outcome per key
+     */
+    default Flux<Outcome<K, V>> lookupEach(Collection<K> keys) {
+        return Mono.defer(() -> lookupAll(keys))
+                .defaultIfEmpty(Map.of())
+                .flatMapMany(values -> Flux.fromIterable(keys)
+                        .map(key -> new Outcome<>(key, values.get(key), null)))
+                .onErrorResume(e -> Flux.fromIterable(keys)
+                        .map(key -> new Outcome<K, V>(key, null, e)));
+    }
+}
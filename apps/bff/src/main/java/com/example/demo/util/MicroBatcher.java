@@ -0,0 +1,136 @@
+package com.example.demo.util;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Micro-batcher for single-key lookups
+ *
+ * Collects concurrent load(key) calls for up to one batch window or until the
+ * batch holds maxBatchSize keys, whichever comes first, and resolves them with
+ * one BulkLookup call. Duplicate keys within a batch are looked up once, and each
+ * caller gets the outcome of its own key (see BulkLookup.lookupEach).
+ *
+ * Adds at most one window of latency to a lookup; keep the window short (a few ms)
+ * when the batcher sits on an interactive path.
+ *
+ * Metric: downstream.batch.size tagged batcher (keys per bulk call)
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+@Slf4j
+public class MicroBatcher<K, V> implements Disposable {
+
+    private record Request<K, V>(K key, Sinks.One<V> result) {
+    }
+
+    private final String name;
+    private final BulkLookup<K, V> bulkLookup;
+    private final Sinks.Many<Request<K, V>> requests = Sinks.many().unicast().onBackpressureBuffer();
+    private final DistributionSummary batchSize;
+    private final Disposable subscription;
+
+    /**
+     * @param name Batcher name (metric tag and log label)
+     * @param bulkLookup Bulk lookup for a batch of keys
+     * @param maxBatchSize Maximum number of keys per bulk call
+     * @param window Maximum time a lookup waits for its batch to fill
+     * @param concurrency Maximum number of bulk calls in flight
+     * @param meterRegistry Meter registry
+     */
+    public MicroBatcher(
+            String name,
+            BulkLookup<K, V> bulkLookup,
+            int maxBatchSize,
+            Duration window,
+            int concurrency,
+            MeterRegistry meterRegistry
+    ) {
+        this.name = name;
+        this.bulkLookup = bulkLookup;
+        this.batchSize = DistributionSummary.builder("downstream.batch.size")
+                .description("Keys per bulk lookup")
+                .tag("batcher", name)
+                .register(meterRegistry);
+        this.subscription = requests.asFlux()
+                .bufferTimeout(maxBatchSize, window, true)
+                .flatMap(this::dispatch, concurrency)
+                .subscribe();
+    }
+
+    /**
+     * Look up a key as part of the next batch
+     *
+     * @param key Key
+     * @return Mono of the value, empty if the bulk lookup did not return it;
+     *         fails once the batcher is disposed
+     */
+    public Mono<V> load(K key) {
+        return Mono.defer(() -> {
+            if (subscription.isDisposed()) {
+                return Mono.error(new IllegalStateException(name + " batcher is disposed"));
+            }
+            Sinks.One<V> result = Sinks.one();
+            // Concurrent callers contend for the sink; retry briefly instead of failing
+            requests.emitNext(new Request<>(key, result), Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+            return result.asMono();
+        });
+    }
+
+    private Mono<Void> dispatch(List<Request<K, V>> batch) {
+        // Callers waiting per key; removed as their key's outcome arrives
+        Map<K, List<Sinks.One<V>>> waiting = new LinkedHashMap<>();
+        batch.forEach(request -> waiting.computeIfAbsent(request.key(), key -> new ArrayList<>()).add(request.result()));
+        List<K> keys = List.copyOf(waiting.keySet());
+        batchSize.record(keys.size());
+        log.debug("{} bulk lookup of {} keys ({} requests)", name, keys.size(), batch.size());
+
+        return Flux.defer(() -> bulkLookup.lookupEach(keys))
+                .doOnNext(outcome -> {
+                    List<Sinks.One<V>> results = waiting.remove(outcome.key());
+                    if (results != null) {
+                        results.forEach(result -> complete(result, outcome));
+                    }
+                })
+                // Keys without an outcome were not found
+                .then(Mono.fromRunnable(() -> waiting.values().forEach(results -> results.forEach(Sinks.One::tryEmitEmpty))))
+                .onErrorResume(e -> {
+                    log.warn("{} bulk lookup of {} keys failed: {}", name, keys.size(), e.getMessage());
+                    waiting.values().forEach(results -> results.forEach(result -> result.tryEmitError(e)));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private void complete(Sinks.One<V> result, BulkLookup.Outcome<K, V> outcome) {
+        if (outcome.error() != null) {
+            result.tryEmitError(outcome.error());
+        } else if (outcome.value() != null) {
+            result.tryEmitValue(outcome.value());
+        } else {
+            result.tryEmitEmpty();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        subscription.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return subscription.isDisposed();
+    }
+}
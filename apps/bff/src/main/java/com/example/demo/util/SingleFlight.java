@@ -0,0 +1,73 @@
+package com.example.demo.util;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * In-process call coalescing
+ *
+ * Concurrent callers asking for the same key share one in-flight Mono; the call
+ * is started by the first subscriber and forgotten as it terminates, before its
+ * result reaches the callers, so a caller reacting to the result (e.g. rejecting
+ * it and asking again) starts a new one. Errors are shared with every waiting caller.
+ *
+ * @param <K> Key type
+ * @param <V> Result type
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Run the call for the key, or join the one already in flight
+     *
+     * @param key Coalescing key
+     * @param call Supplier of the call to run if none is in flight
+     * @return Mono of the shared result
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return execute(key, call, () -> { });
+    }
+
+    /**
+     * Run the call for the key, or join the one already in flight
+     *
+     * @param key Coalescing key
+     * @param call Supplier of the call to run if none is in flight
+     * @param onJoin Invoked when the caller joins a call already in flight
+     * @return Mono of the shared result
+     */
+    public Mono<V> execute(K key, Supplier<Mono<V>> call, Runnable onJoin) {
+        return Mono.defer(() -> {
+            boolean[] started = new boolean[1];
+            Mono<V> shared = inFlight.computeIfAbsent(key, k -> {
+                started[0] = true;
+                AtomicReference<Mono<V>> self = new AtomicReference<>();
+                Runnable forget = () -> inFlight.remove(k, self.get());
+                Mono<V> created = Mono.defer(call)
+                        // Not doFinally: it runs after the result has reached the callers
+                        .doOnSuccess(value -> forget.run())
+                        .doOnError(e -> forget.run())
+                        .doOnCancel(forget)
+                        .cache();
+                self.set(created);
+                return created;
+            });
+            if (!started[0]) {
+                onJoin.run();
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * Check whether a call for the key is currently in flight
+     */
+    public boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+}
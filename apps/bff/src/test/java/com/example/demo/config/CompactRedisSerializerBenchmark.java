@@ -0,0 +1,179 @@
+package com.example.demo.config;
+
+import com.example.demo.model.AccessDecision;
+import com.example.demo.model.AccessLevelResponse;
+import com.example.demo.model.BiometricInfo;
+import com.example.demo.model.SupportedMember;
+import com.example.demo.model.UserInfo;
+import com.example.demo.model.UserSession;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode time and payload size of session values: JSON vs. compact
+ *
+ * Payload: a complete session (tokens, user info, web-cl access decision with US
+ * and PSN data) for a caregiver with the given number of supported members.
+ * - json: GenericJackson2JsonRedisSerializer as configured in RedisConfig
+ * - compact-raw: CompactRedisSerializer without compression
+ * - compact: CompactRedisSerializer with the default 1 KiB LZ4 threshold
+ *
+ * Payload sizes are printed once per trial ("payload bytes").
+ * Run with the main method after mvn test-compile.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactRedisSerializerBenchmark {
+
+	@Param({"json", "compact-raw", "compact"})
+	public String format;
+
+	@Param({"1", "25", "250"})
+	public int supportedMembers;
+
+	private RedisSerializer<Object> serializer;
+	private UserSession session;
+	private byte[] encoded;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		GenericJackson2JsonRedisSerializer jsonSerializer = jsonSerializer();
+		serializer = switch (format) {
+			case "json" -> jsonSerializer;
+			case "compact-raw" -> new CompactRedisSerializer(jsonSerializer, -1);
+			case "compact" -> new CompactRedisSerializer(jsonSerializer, 1024);
+			default -> throw new IllegalArgumentException("Unknown format: " + format);
+		};
+		session = session(supportedMembers);
+		encoded = serializer.serialize(session);
+		System.out.printf("%n%s, %d supported members: %d payload bytes%n", format, supportedMembers, encoded.length);
+	}
+
+	@Benchmark
+	public byte[] encode() {
+		return serializer.serialize(session);
+	}
+
+	@Benchmark
+	public Object decode() {
+		return serializer.deserialize(encoded);
+	}
+
+	private static UserSession session(int supportedMembers) {
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+		List<SupportedMember> members = new ArrayList<>(supportedMembers);
+		for (int i = 0; i < supportedMembers; i++) {
+			members.add(SupportedMember.builder()
+					.eid("EID-" + (100000 + i))
+					.firstName("First" + i)
+					.lastName("Last" + i)
+					.dateOfBirth("1950-01-" + String.format("%02d", i % 28 + 1))
+					.relationship(i % 2 == 0 ? "parent" : "dependent")
+					.accessLevel("full")
+					.personas(List.of("RRP", "DAA", "ROI"))
+					.hasDigitalAccountAccess(true)
+					.hasSensitiveDataAccess(i % 3 == 0)
+					.build());
+		}
+
+		AccessDecision accessDecision = AccessDecision.builder()
+				.applicationType(AccessDecision.ApplicationType.WEB_CL)
+				.accessMode(AccessDecision.AccessMode.SUPPORTING_OTHERS)
+				.biometricInfo(BiometricInfo.builder()
+						.hsid("HSID-1")
+						.dateOfBirth("1980-05-01")
+						.age(45)
+						.isMinor(false)
+						.firstName("Pat")
+						.lastName("Doe")
+						.persona("PR")
+						.hasPersonaRepresentative(true)
+						.retrievedAt(now.toString())
+						.expiresIn(1800L)
+						.build())
+				.accessLevel(AccessLevelResponse.builder()
+						.memberEid("EID-1")
+						.memberIdType("HSID")
+						.memberIdValue("HSID-1")
+						.canViewOwnData(false)
+						.supportedMembers(members)
+						.retrievedAt(now.toString())
+						.expiresIn(1800L)
+						.build())
+				.canViewOwnData(false)
+				.canViewOthersData(true)
+				.viewableMembers(members)
+				.decisionReason("Adult PR member supporting " + supportedMembers + " members")
+				.decidedAt(now.toString())
+				.inputVersion("0123456789abcdef")
+				.build();
+
+		return UserSession.builder()
+				.sessionId("4f1d2c3b-5a6e-4f70-8a9b-0c1d2e3f4a5b")
+				.userInfo(UserInfo.builder()
+						.id("user-1")
+						.email("pat.doe@example.com")
+						.name("Pat Doe")
+						.idType("HSID")
+						.idValue("HSID-1")
+						.preferredUsername("pat")
+						.firstName("Pat")
+						.lastName("Doe")
+						.roles(List.of("MEMBER"))
+						.build())
+				.accessToken("eyJhbGciOiJSUzI1NiJ9." + "a".repeat(600))
+				.idToken("eyJhbGciOiJSUzI1NiJ9." + "b".repeat(800))
+				.refreshToken("r".repeat(64))
+				.tokenType("Bearer")
+				.accessTokenExpiresAt(now.plusSeconds(3600).toEpochMilli())
+				.createdAt(now)
+				.lastAccessedAt(now)
+				.expiresAt(now.plusSeconds(1800))
+				.accessDecision(accessDecision)
+				.build();
+	}
+
+	private static GenericJackson2JsonRedisSerializer jsonSerializer() {
+		// Configured like RedisConfig's value serializer
+		GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+		jsonSerializer.configure(objectMapper -> objectMapper
+				.registerModule(new JavaTimeModule())
+				.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+		return jsonSerializer;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(CompactRedisSerializerBenchmark.class.getSimpleName())
+				.build())
+				.run();
+	}
+}
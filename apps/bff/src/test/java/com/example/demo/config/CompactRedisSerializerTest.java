@@ -0,0 +1,214 @@
+package com.example.demo.config;
+
+import com.example.demo.model.BiometricInfo;
+import com.example.demo.model.CacheEntry;
+import com.example.demo.model.UserInfo;
+import com.example.demo.model.UserSession;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactRedisSerializerTest {
+
+	private final GenericJackson2JsonRedisSerializer jsonSerializer = jsonSerializer();
+
+	private final CompactRedisSerializer serializer = new CompactRedisSerializer(jsonSerializer, 512);
+
+	@Test
+	void roundTripsRegisteredTypeWithHeader() {
+		UserSession session = session("short");
+
+		byte[] bytes = serializer.serialize(session);
+
+		assertThat(bytes[0]).isEqualTo(CompactRedisSerializer.MAGIC);
+		assertThat(bytes[1]).isEqualTo(CompactRedisSerializer.VERSION);
+		assertThat(bytes[2]).isZero();
+		assertThat(bytes[3]).isEqualTo((byte) 1);
+		assertThat(serializer.deserialize(bytes)).isEqualTo(session);
+	}
+
+	@Test
+	void compressesBodiesOverThreshold() {
+		UserSession session = session("token-".repeat(500));
+
+		byte[] compressed = serializer.serialize(session);
+		byte[] uncompressed = new CompactRedisSerializer(jsonSerializer, -1).serialize(session);
+
+		assertThat(compressed[2] & 0x01).isEqualTo(1);
+		assertThat(uncompressed[2] & 0x01).isZero();
+		assertThat(compressed.length).isLessThan(uncompressed.length);
+		assertThat(serializer.deserialize(compressed)).isEqualTo(session);
+		assertThat(serializer.deserialize(uncompressed)).isEqualTo(session);
+	}
+
+	@Test
+	void roundTripsCacheEntryWithModelValue() {
+		BiometricInfo biometricInfo = new BiometricInfo();
+		biometricInfo.setHsid("HSID-1");
+		biometricInfo.setIsMinor(false);
+		CacheEntry<BiometricInfo> entry = new CacheEntry<>(biometricInfo, 1_700_000_000_000L);
+
+		Object read = serializer.deserialize(serializer.serialize(entry));
+
+		assertThat(read).isEqualTo(entry);
+	}
+
+	@Test
+	void readsLegacyJsonValues() {
+		UserSession session = session("legacy");
+
+		byte[] json = jsonSerializer.serialize(session);
+
+		assertThat(serializer.deserialize(json)).isEqualTo(session);
+	}
+
+	@Test
+	void writesUnregisteredTypesAsLegacyJson() {
+		Map<String, Object> value = new HashMap<>(Map.of("hsid", "HSID-1"));
+
+		byte[] bytes = serializer.serialize(value);
+
+		assertThat(bytes[0]).isNotEqualTo(CompactRedisSerializer.MAGIC);
+		assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+	}
+
+	@Test
+	void rejectsReservedAndUnknownTags() {
+		byte[] bytes = serializer.serialize("value");
+
+		bytes[3] = 0;
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("type tag: 0");
+
+		bytes[3] = (byte) 200;
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("type tag: 200");
+	}
+
+	@Test
+	void rejectsClassNameAfterReservedTag() {
+		// Layout older builds wrote for unregistered types: tag 0 followed by a class name
+		byte[] className = "java.util.concurrent.atomic.AtomicLong".getBytes(StandardCharsets.UTF_8);
+		byte[] bytes = new byte[4 + 2 + className.length];
+		bytes[0] = CompactRedisSerializer.MAGIC;
+		bytes[1] = CompactRedisSerializer.VERSION;
+		bytes[5] = (byte) className.length;
+		System.arraycopy(className, 0, bytes, 6, className.length);
+
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class);
+	}
+
+	@Test
+	void rejectsCacheEntryValuesOutsideModel() {
+		CacheEntry<Object> entry = new CacheEntry<>(new AtomicLong(42), 1L);
+
+		byte[] bytes = serializer.serialize(entry);
+
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("PolymorphicTypeValidator");
+	}
+
+	@Test
+	void rejectsNewerVersionsAndTruncatedValues() {
+		byte[] bytes = serializer.serialize("value");
+		bytes[1] = CompactRedisSerializer.VERSION + 1;
+
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("version");
+		assertThatThrownBy(() -> serializer.deserialize(Arrays.copyOf(bytes, 2)))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("Truncated");
+	}
+
+	@Test
+	void rejectsInvalidRawLengthsBeforeAllocating() {
+		byte[] bytes = serializer.serialize(session("token-".repeat(500)));
+		assertThat(bytes[2] & 0x01).isEqualTo(1);
+
+		ByteBuffer.wrap(bytes, 4, 4).putInt(-1);
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("raw length: -1");
+
+		ByteBuffer.wrap(bytes, 4, 4).putInt(Integer.MAX_VALUE);
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("raw length: " + Integer.MAX_VALUE);
+	}
+
+	@Test
+	void rejectsRawLengthThatDoesNotMatchBody() {
+		byte[] bytes = serializer.serialize(session("token-".repeat(500)));
+		int rawLength = ByteBuffer.wrap(bytes, 4, 4).getInt();
+
+		ByteBuffer.wrap(bytes, 4, 4).putInt(rawLength + 16);
+
+		assertThatThrownBy(() -> serializer.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("raw length mismatch");
+	}
+
+	@Test
+	void rejectsRawLengthAboveConfiguredMaximum() {
+		byte[] bytes = serializer.serialize(session("token-".repeat(500)));
+		CompactRedisSerializer bounded = new CompactRedisSerializer(jsonSerializer, 512, 1024);
+
+		assertThatThrownBy(() -> bounded.deserialize(bytes))
+				.isInstanceOf(SerializationException.class)
+				.hasMessageContaining("raw length");
+	}
+
+	@Test
+	void nullAndEmpty() {
+		assertThat(serializer.serialize(null)).isEmpty();
+		assertThat(serializer.deserialize(null)).isNull();
+		assertThat(serializer.deserialize(new byte[0])).isNull();
+	}
+
+	private static UserSession session(String accessToken) {
+		Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+		return UserSession.builder()
+				.sessionId("session-1")
+				.userInfo(UserInfo.builder()
+						.id("user-1")
+						.idType("HSID")
+						.idValue("HSID-1")
+						.preferredUsername("pat")
+						.build())
+				.accessToken(accessToken)
+				.refreshToken("refresh")
+				.accessTokenExpiresAt(now.plusSeconds(300).toEpochMilli())
+				.createdAt(now)
+				.lastAccessedAt(now)
+				.expiresAt(now.plusSeconds(1800))
+				.build();
+	}
+
+	private static GenericJackson2JsonRedisSerializer jsonSerializer() {
+		// Configured like RedisConfig's value serializer
+		GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+		jsonSerializer.configure(objectMapper -> objectMapper
+				.registerModule(new JavaTimeModule())
+				.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+		return jsonSerializer;
+	}
+}
@@ -0,0 +1,218 @@
+package com.example.demo.controller;
+
+import com.example.demo.config.AccessPolicyProperties;
+import com.example.demo.model.TokenExchangeRequest;
+import com.example.demo.model.TokenExchangeResponse;
+import com.example.demo.model.UserSession;
+import com.example.demo.service.AccessDecisionService;
+import com.example.demo.service.AccessPolicyEngine;
+import com.example.demo.service.ClientCredentialsTokenManager;
+import com.example.demo.service.CoalescingCache;
+import com.example.demo.service.CoalescingCacheFactory;
+import com.example.demo.service.IdTokenVerifier;
+import com.example.demo.service.OAuth2Service;
+import com.example.demo.service.PSNService;
+import com.example.demo.service.SessionService;
+import com.example.demo.service.TokenRefreshCoordinator;
+import com.example.demo.service.TokenRevocationQueue;
+import com.example.demo.service.USService;
+import com.example.demo.support.StubUpstream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveSetOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseCookie;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Timed login (POST /api/auth/token) against local IDP, US and PSN stubs with injected delays
+ *
+ * Asserts that the stages overlap: the access decision (US, speculative PSN) runs while user
+ * info is fetched from the IDP, so the login takes about one stage less than the sum of its stages.
+ * All caches are pass-through, so every login calls every downstream.
+ */
+class LoginPipelineTimingTest {
+
+	private static final Duration TOKEN_DELAY = Duration.ofMillis(150);
+	private static final Duration USER_INFO_DELAY = Duration.ofMillis(300);
+	private static final Duration US_DELAY = Duration.ofMillis(300);
+	private static final Duration PSN_DELAY = Duration.ofMillis(300);
+	private static final Duration SESSION_WRITE_DELAY = Duration.ofMillis(100);
+
+	private StubUpstream idp;
+	private StubUpstream us;
+	private StubUpstream psn;
+	private SimpleMeterRegistry meterRegistry;
+	private AuthController controller;
+
+	@BeforeEach
+	void setUp() {
+		idp = new StubUpstream()
+				.post("/oauth2/token", request -> StubUpstream.Response.ok("{\"access_token\":\"access\",\"token_type\":\"Bearer\","
+						+ "\"expires_in\":3600,\"refresh_token\":\"refresh\",\"id_token\":\"" + idToken() + "\"}"))
+				.get("/userinfo", request -> StubUpstream.Response.ok("{\"sub\":\"user-1\",\"hsid\":\"HSID-1\","
+						+ "\"given_name\":\"Pat\",\"family_name\":\"Doe\",\"email\":\"pat.doe@example.com\"}"))
+				.delay("/oauth2/token", TOKEN_DELAY)
+				.delay("/userinfo", USER_INFO_DELAY)
+				.start();
+		us = new StubUpstream()
+				.post("/oauth2/token", request -> StubUpstream.Response.ok(clientCredentialsToken()))
+				.get("/biometric", request -> StubUpstream.Response.ok("{\"hsid\":\"HSID-1\",\"firstName\":\"Pat\","
+						+ "\"lastName\":\"Doe\",\"dateOfBirth\":\"1980-04-12\",\"persona\":\"PR\"}"))
+				.delay("/biometric", US_DELAY)
+				.start();
+		psn = new StubUpstream()
+				.post("/oauth2/token", request -> StubUpstream.Response.ok(clientCredentialsToken()))
+				.get("/access-level", request -> StubUpstream.Response.ok("{\"memberEid\":\"EID-1\",\"memberIdType\":\"HSID\","
+						+ "\"memberIdValue\":\"HSID-1\",\"canViewOwnData\":false,\"supportedMembers\":[{\"eid\":\"EID-2\","
+						+ "\"firstName\":\"Sam\",\"lastName\":\"Doe\",\"dateOfBirth\":\"2012-06-01\",\"relationship\":\"CHILD\"}]}"))
+				.delay("/access-level", PSN_DELAY)
+				.start();
+
+		meterRegistry = new SimpleMeterRegistry();
+		controller = controller();
+	}
+
+	@AfterEach
+	void tearDown() {
+		idp.close();
+		us.close();
+		psn.close();
+	}
+
+	@Test
+	void accessDecisionOverlapsUserInfoAndShortensTheCriticalPath() {
+		// Cold start (class loading, connections, client credentials tokens) is not what is measured
+		assertThat(login().getStatusCode()).isEqualTo(HttpStatus.OK);
+		idp.reset();
+		us.reset();
+		psn.reset();
+		meterRegistry.clear();
+
+		long startNanos = System.nanoTime();
+		ResponseEntity<TokenExchangeResponse> response = login();
+		Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody().getUser().getGivenName()).isEqualTo("Pat");
+
+		// US and PSN were called while the IDP was still answering the userinfo request
+		StubUpstream.Exchange userInfo = idp.last("/userinfo").orElseThrow();
+		assertThat(us.last("/biometric").orElseThrow().overlaps(userInfo)).isTrue();
+		assertThat(psn.last("/access-level").orElseThrow().overlaps(userInfo)).isTrue();
+
+		// Sequential: token + user info + US + PSN + session write; pipelined: token + user info + session write
+		Duration sequential = TOKEN_DELAY.plus(USER_INFO_DELAY).plus(US_DELAY).plus(PSN_DELAY).plus(SESSION_WRITE_DELAY);
+		Duration criticalPath = TOKEN_DELAY.plus(USER_INFO_DELAY).plus(SESSION_WRITE_DELAY);
+		assertThat(elapsed).isGreaterThanOrEqualTo(criticalPath).isLessThan(sequential.minus(US_DELAY));
+
+		// The controller's own stage timers add up to more than the login took
+		double stages = meterRegistry.find("auth.login.stage").timers().stream()
+				.mapToDouble(timer -> timer.totalTime(TimeUnit.MILLISECONDS))
+				.sum();
+		double total = meterRegistry.get("auth.login").tag("outcome", "success").timer().totalTime(TimeUnit.MILLISECONDS);
+		assertThat(stages).isGreaterThan(total);
+	}
+
+	private ResponseEntity<TokenExchangeResponse> login() {
+		TokenExchangeRequest request = new TokenExchangeRequest();
+		request.setCode("code");
+		request.setCodeVerifier("verifier");
+		return controller.exchangeToken(request, new MockServerHttpResponse()).block(Duration.ofSeconds(10));
+	}
+
+	@SuppressWarnings("unchecked")
+	private AuthController controller() {
+		ClientRegistrationRepository clientRegistrations = mock(ClientRegistrationRepository.class);
+		when(clientRegistrations.findByRegistrationId("idp")).thenReturn(ClientRegistration.withRegistrationId("idp")
+				.clientId("bff")
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.redirectUri("http://localhost:4202/auth/callback")
+				.authorizationUri(idp.url("/oauth2/authorize"))
+				.tokenUri(idp.url("/oauth2/token"))
+				.build());
+
+		WebClient webClient = WebClient.create();
+		OAuth2Service oauth2Service = new OAuth2Service(webClient, clientRegistrations,
+				idp.url("/oauth2/token"), idp.url("/userinfo"), "bff", "secret");
+		// Local validation off: user info comes from the IDP userinfo endpoint
+		IdTokenVerifier idTokenVerifier = new IdTokenVerifier(webClient, clientRegistrations, meterRegistry,
+				idp.url(""), false, List.of("hsid"), "RS256", 15, 30);
+
+		CoalescingCacheFactory cacheFactory = mock(CoalescingCacheFactory.class);
+		when(cacheFactory.create(anyString(), anyString(), any(), any())).thenAnswer(invocation -> passThroughCache());
+		ClientCredentialsTokenManager tokenManager = new ClientCredentialsTokenManager(meterRegistry, 30, 0.8, 300);
+		USService usService = new USService(webClient, cacheFactory, tokenManager, meterRegistry,
+				us.url("/oauth2/token"), us.url("/biometric"), "", "bff", "secret", "us.biometric.read",
+				20, 30, 240, 5, 5, 50, 8);
+		PSNService psnService = new PSNService(webClient, cacheFactory, tokenManager, meterRegistry,
+				psn.url("/oauth2/token"), psn.url("/access-level"), "", "bff", "secret", "psn.access_level.read",
+				20, 30, 240, 5, 5, 50, 8);
+
+		ReactiveRedisTemplate<String, byte[]> redis = mock(ReactiveRedisTemplate.class);
+		ReactiveSetOperations<String, byte[]> sets = mock(ReactiveSetOperations.class, invocation -> Mono.just(1L));
+		when(redis.opsForSet()).thenReturn(sets);
+		when(redis.expire(anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+		// Speculative PSN always: PSN starts together with US
+		AccessDecisionService accessDecisionService = new AccessDecisionService(usService, psnService,
+				new AccessPolicyEngine(new AccessPolicyProperties()), meterRegistry, cacheFactory, redis,
+				30, 30, "always", 1000, 24);
+
+		SessionService sessionService = mock(SessionService.class);
+		when(sessionService.createSession(any())).thenAnswer(invocation -> {
+			UserSession session = invocation.getArgument(0);
+			session.setSessionId("session-1");
+			session.setExpiresAt(Instant.now().plus(Duration.ofMinutes(30)));
+			return Mono.delay(SESSION_WRITE_DELAY).thenReturn("session-1");
+		});
+		when(sessionService.sessionCookieValue(any())).thenReturn("session-1");
+		when(sessionService.sessionCookie("session-1")).thenReturn(ResponseCookie.from("SESSION_ID", "session-1").build());
+
+		return new AuthController(oauth2Service, idTokenVerifier, accessDecisionService, sessionService,
+				mock(TokenRefreshCoordinator.class), mock(TokenRevocationQueue.class), meterRegistry,
+				300, "http://localhost:4202/auth/callback");
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <V> CoalescingCache<V> passThroughCache() {
+		CoalescingCache<V> cache = mock(CoalescingCache.class);
+		when(cache.get(anyString(), any())).thenAnswer(invocation -> invocation.<Supplier<Mono<V>>>getArgument(1).get());
+		return cache;
+	}
+
+	/**
+	 * Unsigned ID token carrying the HSID hint
+	 */
+	private static String idToken() {
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8)) + "."
+				+ encoder.encodeToString("{\"sub\":\"user-1\",\"hsid\":\"HSID-1\"}".getBytes(StandardCharsets.UTF_8)) + ".";
+	}
+
+	private static String clientCredentialsToken() {
+		return "{\"access_token\":\"client-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}";
+	}
+}
@@ -0,0 +1,153 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.AccessDecisionService;
+import com.example.demo.service.PSNService;
+import com.example.demo.service.SessionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MemberChangeEventControllerTest {
+
+	private static final String SECRET = "webhook-secret";
+	private static final String BODY = """
+			{"events": [{"memberIdType": "HSID", "memberIdValue": "abc123"}, {"memberIdType": "EID", "memberIdValue": "987"},
+			 {"memberIdType": "OHID", "memberIdValue": "555"}]}
+			""";
+
+	private AccessDecisionService accessDecisionService;
+	private PSNService psnService;
+	private SessionService sessionService;
+	private MemberChangeEventController controller;
+
+	@BeforeEach
+	void setUp() {
+		accessDecisionService = mock(AccessDecisionService.class);
+		psnService = mock(PSNService.class);
+		sessionService = mock(SessionService.class);
+		when(accessDecisionService.invalidate(anyString())).thenReturn(Mono.empty());
+		// Caregivers whose decisions list EID 987
+		when(accessDecisionService.invalidateCaregivers("987")).thenReturn(Flux.just("caregiver-1", "caregiver-2"));
+		when(psnService.evict(anyString(), anyString())).thenReturn(Mono.empty());
+		when(sessionService.refreshAccessDecisionCopies(anyString())).thenReturn(Mono.just(0L));
+		controller = controller(SECRET);
+	}
+
+	@Test
+	void signedEventsAreProcessed() {
+		String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+		StepVerifier.create(controller.handleMemberChanges(timestamp, sign(timestamp, BODY), BODY))
+				.assertNext(response -> {
+					assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+					assertThat(response.getBody()).isEqualTo(Map.of("processed", 3L));
+				})
+				.verifyComplete();
+
+		verify(accessDecisionService).invalidate("abc123");
+		verify(accessDecisionService).invalidateCaregivers("987");
+		verify(psnService).evict("OHID", "555");
+		// Sessions holding decision copies are rebuilt for every affected HSID
+		verify(sessionService).refreshAccessDecisionCopies("abc123");
+		verify(sessionService).refreshAccessDecisionCopies("caregiver-1");
+		verify(sessionService).refreshAccessDecisionCopies("caregiver-2");
+	}
+
+	@Test
+	void upperCaseSignatureIsAccepted() {
+		String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+		assertStatus(controller.handleMemberChanges(timestamp, sign(timestamp, BODY).toUpperCase(), BODY), HttpStatus.OK);
+	}
+
+	@Test
+	void tamperedBodyIsRejected() {
+		String timestamp = String.valueOf(Instant.now().getEpochSecond());
+		String tampered = BODY.replace("abc123", "other");
+
+		assertStatus(controller.handleMemberChanges(timestamp, sign(timestamp, BODY), tampered), HttpStatus.UNAUTHORIZED);
+		verify(accessDecisionService, never()).invalidate(anyString());
+	}
+
+	@Test
+	void signatureWithOtherSecretIsRejected() {
+		String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+		assertStatus(controller(SECRET + "-old").handleMemberChanges(timestamp, sign(timestamp, BODY), BODY),
+				HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	void timestampOutsideMaxSkewIsRejected() {
+		String stale = String.valueOf(Instant.now().minusSeconds(301).getEpochSecond());
+		String future = String.valueOf(Instant.now().plusSeconds(301).getEpochSecond());
+
+		assertStatus(controller.handleMemberChanges(stale, sign(stale, BODY), BODY), HttpStatus.UNAUTHORIZED);
+		assertStatus(controller.handleMemberChanges(future, sign(future, BODY), BODY), HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	void missingOrMalformedHeadersAreRejected() {
+		String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+		assertStatus(controller.handleMemberChanges(null, sign(timestamp, BODY), BODY), HttpStatus.UNAUTHORIZED);
+		assertStatus(controller.handleMemberChanges(timestamp, null, BODY), HttpStatus.UNAUTHORIZED);
+		assertStatus(controller.handleMemberChanges("yesterday", sign(timestamp, BODY), BODY), HttpStatus.UNAUTHORIZED);
+		assertStatus(controller.handleMemberChanges(timestamp, "not-hex", BODY), HttpStatus.UNAUTHORIZED);
+	}
+
+	@Test
+	void signedInvalidBodyIsBadRequest() {
+		String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+		assertStatus(controller.handleMemberChanges(timestamp, sign(timestamp, "{"), "{"), HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void webhookIsDisabledWithoutSecret() {
+		String timestamp = String.valueOf(Instant.now().getEpochSecond());
+
+		assertStatus(controller("").handleMemberChanges(timestamp, sign(timestamp, BODY), BODY), HttpStatus.NOT_FOUND);
+	}
+
+	private MemberChangeEventController controller(String secret) {
+		return new MemberChangeEventController(accessDecisionService, psnService, sessionService, new ObjectMapper(),
+				new SimpleMeterRegistry(), secret, 300, 4);
+	}
+
+	private static void assertStatus(Mono<? extends ResponseEntity<?>> response, HttpStatus status) {
+		StepVerifier.create(response)
+				.assertNext(entity -> assertThat(entity.getStatusCode()).isEqualTo(status))
+				.verifyComplete();
+	}
+
+	private static String sign(String timestamp, String body) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+			return HexFormat.of().formatHex(mac.doFinal((timestamp + "." + body).getBytes(StandardCharsets.UTF_8)));
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.example.demo.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.EnumSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserSessionTest {
+
+	@Test
+	void storingDecisionCopyClearsReference() {
+		UserSession session = UserSession.builder()
+				.accessDecisionRef("decision:abc")
+				.build();
+		AccessDecision copy = AccessDecision.builder().decisionReason("degraded").build();
+
+		session.mergeFrom(UserSession.builder().accessDecision(copy).build(), EnumSet.of(SessionField.ACCESS_DECISION));
+
+		assertThat(session.getAccessDecision()).isEqualTo(copy);
+		assertThat(session.getAccessDecisionRef()).isNull();
+	}
+
+	@Test
+	void storingDecisionReferenceClearsCopy() {
+		UserSession session = UserSession.builder()
+				.accessDecision(AccessDecision.builder().decisionReason("degraded").build())
+				.build();
+
+		session.mergeFrom(UserSession.builder().accessDecisionRef("decision:abc").build(),
+				EnumSet.of(SessionField.ACCESS_DECISION));
+
+		assertThat(session.getAccessDecision()).isNull();
+		assertThat(session.getAccessDecisionRef()).isEqualTo("decision:abc");
+	}
+
+	@Test
+	void nullAttributesOfOtherGroupsAreLeftUnchanged() {
+		UserSession session = UserSession.builder()
+				.accessToken("access")
+				.refreshToken("refresh")
+				.build();
+
+		session.mergeFrom(UserSession.builder().accessToken("rotated").build(), EnumSet.of(SessionField.TOKENS));
+
+		assertThat(session.getAccessToken()).isEqualTo("rotated");
+		assertThat(session.getRefreshToken()).isEqualTo("refresh");
+	}
+
+	@Test
+	void onlyGivenGroupsAreCopied() {
+		Instant expiresAt = Instant.now();
+		UserSession session = UserSession.builder().accessDecisionRef("decision:abc").build();
+
+		session.mergeFrom(UserSession.builder().expiresAt(expiresAt).build(), EnumSet.of(SessionField.TIMESTAMPS));
+
+		assertThat(session.getExpiresAt()).isEqualTo(expiresAt);
+		assertThat(session.getAccessDecisionRef()).isEqualTo("decision:abc");
+	}
+}
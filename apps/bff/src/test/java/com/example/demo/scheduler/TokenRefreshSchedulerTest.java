@@ -0,0 +1,97 @@
+package com.example.demo.scheduler;
+
+import com.example.demo.model.UserSession;
+import com.example.demo.service.SessionService;
+import com.example.demo.service.TokenRefreshCoordinator;
+import com.example.demo.service.TokenRefreshSchedule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRefreshSchedulerTest {
+
+	private TokenRefreshSchedule schedule;
+	private TokenRefreshCoordinator coordinator;
+	private SessionService sessionService;
+	private SimpleMeterRegistry meterRegistry;
+	private TokenRefreshScheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		schedule = mock(TokenRefreshSchedule.class);
+		coordinator = mock(TokenRefreshCoordinator.class);
+		sessionService = mock(SessionService.class);
+		meterRegistry = new SimpleMeterRegistry();
+		when(schedule.isEnabled()).thenReturn(true);
+		when(schedule.claimDue(anyLong(), anyInt(), any(Duration.class))).thenReturn(Flux.just("s1"));
+		when(schedule.unschedule("s1")).thenReturn(Mono.empty());
+		when(sessionService.withTokens(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		// 300s threshold + 60s lead
+		scheduler = new TokenRefreshScheduler(schedule, coordinator, sessionService, meterRegistry, 300, 60, 10, 30, 100, 8);
+	}
+
+	@Test
+	void dueTokensAreRefreshed() {
+		UserSession session = session(Duration.ofSeconds(120));
+		when(sessionService.peekSession("s1")).thenReturn(Mono.just(session));
+		when(coordinator.refresh(session)).thenReturn(Mono.just(session));
+
+		scheduler.refreshExpiringTokens();
+
+		verify(coordinator).refresh(session);
+		assertThat(outcome("refreshed")).isEqualTo(1);
+	}
+
+	@Test
+	void tokensRefreshedSinceClaimAreSkippedAndStayScheduled() {
+		// Request path refreshed the session after it was claimed
+		when(sessionService.peekSession("s1")).thenReturn(Mono.just(session(Duration.ofMinutes(60))));
+
+		scheduler.refreshExpiringTokens();
+
+		verify(coordinator, never()).refresh(any());
+		verify(schedule, never()).unschedule("s1");
+		assertThat(outcome("current")).isEqualTo(1);
+	}
+
+	@Test
+	void idleSessionsAreUnscheduled() {
+		UserSession session = session(Duration.ofSeconds(120));
+		session.setLastAccessedAt(Instant.now().minus(Duration.ofMinutes(30)));
+		when(sessionService.peekSession("s1")).thenReturn(Mono.just(session));
+
+		scheduler.refreshExpiringTokens();
+
+		verify(coordinator, never()).refresh(any());
+		verify(schedule).unschedule("s1");
+		assertThat(outcome("idle")).isEqualTo(1);
+	}
+
+	private double outcome(String outcome) {
+		return meterRegistry.counter("session.token.proactive-refresh", "outcome", outcome).count();
+	}
+
+	private static UserSession session(Duration expiresIn) {
+		return UserSession.builder()
+				.sessionId("s1")
+				.accessToken("access")
+				.refreshToken("refresh")
+				.accessTokenExpiresAt(Instant.now().plus(expiresIn).toEpochMilli())
+				.lastAccessedAt(Instant.now())
+				.build();
+	}
+}
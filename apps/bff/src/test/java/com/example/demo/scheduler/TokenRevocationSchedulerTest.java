@@ -0,0 +1,120 @@
+package com.example.demo.scheduler;
+
+import com.example.demo.service.OAuth2Service;
+import com.example.demo.service.TokenRevocationQueue;
+import com.example.demo.service.TokenRevocationQueue.RevocationJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationSchedulerTest {
+
+	private TokenRevocationQueue queue;
+	private OAuth2Service oauth2Service;
+	private TokenRevocationScheduler scheduler;
+
+	@BeforeEach
+	void setUp() {
+		queue = mock(TokenRevocationQueue.class);
+		oauth2Service = mock(OAuth2Service.class);
+		when(queue.retry(any(), anyLong())).thenReturn(Mono.empty());
+		when(queue.remove(any())).thenReturn(Mono.empty());
+		when(queue.depth()).thenReturn(Mono.just(0L));
+		// 5s initial backoff, 60s max, 5 attempts
+		scheduler = new TokenRevocationScheduler(queue, oauth2Service, new SimpleMeterRegistry(), 30, 5, 60, 5, 100, 8);
+	}
+
+	@Test
+	void revokedJobIsRemoved() {
+		RevocationJob job = claim(0);
+		when(oauth2Service.revokeToken("token", "access_token")).thenReturn(Mono.empty());
+
+		scheduler.revokeQueuedTokens();
+
+		verify(queue).remove(job);
+		verify(queue, never()).retry(any(), anyLong());
+	}
+
+	@Test
+	void failedJobIsRetriedWithExponentialBackoff() {
+		assertThat(retryDelayAfterFailure(0)).isCloseTo(Duration.ofSeconds(5), Duration.ofSeconds(1));
+		assertThat(retryDelayAfterFailure(2)).isCloseTo(Duration.ofSeconds(20), Duration.ofSeconds(1));
+	}
+
+	@Test
+	void backoffIsCappedAtMaximum() {
+		scheduler = new TokenRevocationScheduler(queue, oauth2Service, new SimpleMeterRegistry(), 30, 5, 60, 50, 100, 8);
+		assertThat(retryDelayAfterFailure(20)).isCloseTo(Duration.ofSeconds(60), Duration.ofSeconds(1));
+	}
+
+	@Test
+	void tooManyRequestsIsRetried() {
+		RevocationJob job = claim(0);
+		when(oauth2Service.revokeToken(anyString(), anyString()))
+				.thenReturn(Mono.error(WebClientResponseException.create(HttpStatus.TOO_MANY_REQUESTS.value(), "Too Many Requests", null, null, null)));
+
+		scheduler.revokeQueuedTokens();
+
+		verify(queue).retry(eq(job), anyLong());
+		verify(queue, never()).remove(any());
+	}
+
+	@Test
+	void rejectedJobIsDropped() {
+		RevocationJob job = claim(0);
+		when(oauth2Service.revokeToken(anyString(), anyString()))
+				.thenReturn(Mono.error(WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null)));
+
+		scheduler.revokeQueuedTokens();
+
+		verify(queue).remove(job);
+		verify(queue, never()).retry(any(), anyLong());
+	}
+
+	@Test
+	void jobIsDroppedAfterMaxAttempts() {
+		RevocationJob job = claim(4);
+		when(oauth2Service.revokeToken(anyString(), anyString())).thenReturn(Mono.error(new IllegalStateException("IDP down")));
+
+		scheduler.revokeQueuedTokens();
+
+		verify(queue).remove(job);
+		verify(queue, never()).retry(any(), anyLong());
+	}
+
+	private Duration retryDelayAfterFailure(int attempts) {
+		RevocationJob job = claim(attempts);
+		when(oauth2Service.revokeToken(anyString(), anyString())).thenReturn(Mono.error(new IllegalStateException("IDP down")));
+
+		long before = System.currentTimeMillis();
+		scheduler.revokeQueuedTokens();
+
+		ArgumentCaptor<Long> dueAt = ArgumentCaptor.forClass(Long.class);
+		verify(queue).retry(eq(job), dueAt.capture());
+		return Duration.ofMillis(dueAt.getValue() - before);
+	}
+
+	private RevocationJob claim(int attempts) {
+		RevocationJob job = new RevocationJob("id-" + attempts, "access_token", "token", attempts);
+		when(queue.claimDue(anyLong(), anyInt(), any())).thenReturn(Flux.just(job));
+		return job;
+	}
+}
@@ -0,0 +1,182 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AccessPolicyProperties;
+import com.example.demo.model.AccessDecision;
+import com.example.demo.model.AccessLevelResponse;
+import com.example.demo.model.BiometricInfo;
+import com.example.demo.model.SupportedMember;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveSetOperations;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Access decisions of a caregiver (HSID-1, adult PR) supporting EID-2, with the decision cache,
+ * version and caregiver sets and the PSN cache held in memory
+ */
+class AccessDecisionServiceTest {
+
+	private static final String CAREGIVER = "HSID-1";
+
+	private final Map<String, Object> redis = new ConcurrentHashMap<>();
+	private final Map<String, Set<String>> redisSets = new ConcurrentHashMap<>();
+	// What PSN currently answers, and what the PSN cache holds (until evicted)
+	private final AtomicReference<AccessLevelResponse> psnUpstream = new AtomicReference<>();
+	private final Map<String, AccessLevelResponse> psnCache = new ConcurrentHashMap<>();
+
+	private PSNService psnService;
+	private AccessDecisionService accessDecisionService;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		ReactiveRedisTemplate<String, Object> template = mock(ReactiveRedisTemplate.class);
+		ReactiveValueOperations<String, Object> values = mock(ReactiveValueOperations.class);
+		when(template.opsForValue()).thenReturn(values);
+		when(values.get(anyString())).thenAnswer(invocation -> Mono.justOrEmpty(redis.get(invocation.<String>getArgument(0))));
+		when(values.set(anyString(), any(), any(Duration.class))).thenAnswer(invocation -> {
+			redis.put(invocation.getArgument(0), invocation.getArgument(1));
+			return Mono.just(true);
+		});
+		when(template.delete(anyString())).thenAnswer(invocation ->
+				Mono.just(redis.remove(invocation.<String>getArgument(0)) != null ? 1L : 0L));
+		CoalescingCacheFactory cacheFactory = mock(CoalescingCacheFactory.class);
+		when(cacheFactory.create(anyString(), anyString(), any(), any())).thenAnswer(invocation ->
+				new CoalescingCache<>(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2),
+						invocation.getArgument(3), template, null, new SimpleMeterRegistry(),
+						0, Duration.ZERO, false, Duration.ZERO, Duration.ZERO, key -> Mono.empty()));
+
+		ReactiveRedisTemplate<String, byte[]> bytesTemplate = mock(ReactiveRedisTemplate.class);
+		ReactiveSetOperations<String, byte[]> sets = mock(ReactiveSetOperations.class);
+		when(bytesTemplate.opsForSet()).thenReturn(sets);
+		when(sets.add(anyString(), any(byte[].class))).thenAnswer(invocation -> {
+			redisSets.computeIfAbsent(invocation.getArgument(0), key -> ConcurrentHashMap.newKeySet())
+					.add(new String(invocation.<byte[]>getArgument(1), StandardCharsets.UTF_8));
+			return Mono.just(1L);
+		});
+		when(sets.members(anyString())).thenAnswer(invocation -> Flux.fromIterable(
+						redisSets.getOrDefault(invocation.<String>getArgument(0), Set.of()))
+				.map(member -> member.getBytes(StandardCharsets.UTF_8)));
+		when(bytesTemplate.expire(anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+		when(bytesTemplate.delete(anyString())).thenAnswer(invocation ->
+				Mono.just(redisSets.remove(invocation.<String>getArgument(0)) != null ? 1L : 0L));
+
+		USService usService = mock(USService.class);
+		BiometricInfo biometricInfo = BiometricInfo.builder()
+				.hsid(CAREGIVER)
+				.firstName("Pat")
+				.lastName("Doe")
+				.dateOfBirth("1980-04-12")
+				.isMinor(false)
+				.hasPersonaRepresentative(true)
+				.build();
+		when(usService.getBiometricInfo(CAREGIVER)).thenReturn(Mono.just(biometricInfo));
+		when(usService.evict(anyString())).thenReturn(Mono.empty());
+
+		psnService = mock(PSNService.class);
+		when(psnService.getAccessLevel("HSID", CAREGIVER)).thenAnswer(invocation ->
+				Mono.fromSupplier(() -> psnCache.computeIfAbsent(CAREGIVER, hsid -> psnUpstream.get())));
+		when(psnService.evict(anyString(), anyString())).thenAnswer(invocation -> {
+			if ("HSID".equals(invocation.getArgument(0))) {
+				psnCache.remove(invocation.<String>getArgument(1));
+			}
+			return Mono.empty();
+		});
+		psnUpstream.set(accessLevel(member("EID-2", "RRP", "DAA")));
+
+		accessDecisionService = new AccessDecisionService(usService, psnService,
+				new AccessPolicyEngine(new AccessPolicyProperties()), new SimpleMeterRegistry(), cacheFactory,
+				bytesTemplate, 30, 30, "off", 1000, 24);
+	}
+
+	@Test
+	void supportedMemberChangeReachesTheCaregiversNextDecision() {
+		assertThat(viewableEids()).containsExactly("EID-2");
+
+		// PSN withdraws digital account access; the caregiver's cached PSN response still lists it
+		psnUpstream.set(accessLevel(member("EID-2", "RRP")));
+		assertThat(viewableEids()).containsExactly("EID-2");
+
+		StepVerifier.create(accessDecisionService.invalidateCaregivers("EID-2"))
+				.expectNext(CAREGIVER)
+				.verifyComplete();
+
+		verify(psnService).evict("EID", "EID-2");
+		// No supported member left: the caregiver falls back to their own data
+		assertThat(viewableEids()).doesNotContain("EID-2");
+		assertThat(accessDecisionService.determineAccess(CAREGIVER, AccessDecision.ApplicationType.WEB_CL).block()
+				.getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_ONLY_ADULT);
+	}
+
+	@Test
+	void unknownSupportedMemberHasNoCaregivers() {
+		assertThat(viewableEids()).containsExactly("EID-2");
+
+		StepVerifier.create(accessDecisionService.invalidateCaregivers("EID-9"))
+				.verifyComplete();
+
+		verify(psnService).evict("EID", "EID-9");
+	}
+
+	@Test
+	void uncachedFallbackGoesStaleAfterTheDecisionTtl() {
+		when(psnService.getAccessLevel("HSID", CAREGIVER)).thenReturn(Mono.error(new IllegalStateException("PSN down")));
+
+		AccessDecision fallback = accessDecisionService.determineAccess(CAREGIVER, AccessDecision.ApplicationType.WEB_CL).block();
+
+		assertThat(fallback.getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_ONLY_ADULT);
+		assertThat(accessDecisionService.referenceOf(fallback)).isNull();
+		assertThat(accessDecisionService.staleAt(fallback))
+				.isEqualTo(Instant.parse(fallback.getDecidedAt()).plus(Duration.ofMinutes(30)));
+		// Without an HSID there is nothing to rebuild from
+		assertThat(accessDecisionService.staleAt(new AccessPolicyEngine(new AccessPolicyProperties()).noAccess("US down")))
+				.isNull();
+	}
+
+	private List<String> viewableEids() {
+		return accessDecisionService.determineAccess(CAREGIVER, AccessDecision.ApplicationType.WEB_CL).block()
+				.getViewableMembers().stream()
+				.map(SupportedMember::getEid)
+				.toList();
+	}
+
+	private static AccessLevelResponse accessLevel(SupportedMember... members) {
+		return AccessLevelResponse.builder()
+				.memberEid("EID-1")
+				.memberIdType("HSID")
+				.memberIdValue(CAREGIVER)
+				.canViewOwnData(false)
+				.supportedMembers(new ArrayList<>(List.of(members)))
+				.build();
+	}
+
+	private static SupportedMember member(String eid, String... personas) {
+		return SupportedMember.builder()
+				.eid(eid)
+				.relationship("child")
+				.personas(new ArrayList<>(List.of(personas)))
+				.build();
+	}
+}
@@ -0,0 +1,117 @@
+package com.example.demo.service;
+
+import ch.qos.logback.classic.Logger;
+import com.example.demo.config.AccessPolicyProperties;
+import com.example.demo.model.AccessDecisionSet;
+import com.example.demo.model.AccessLevelResponse;
+import com.example.demo.model.BiometricInfo;
+import com.example.demo.model.SupportedMember;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decision time and allocation of AccessPolicyEngine.decide for a PR member with many relationships
+ *
+ * - none: no relationship has all eligible personas (SELF_ONLY_ADULT)
+ * - mixed: every third relationship is eligible, half of those with sensitive data access
+ * - all: every relationship is eligible
+ *
+ * Relationships carry three personas in mixed case plus one the policy doesn't know.
+ * Run with the main method after mvn test-compile; add -prof gc for allocation per decision.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessPolicyEngineBenchmark {
+
+	@Param({"100", "500"})
+	public int relationships;
+
+	@Param({"none", "mixed", "all"})
+	public String eligible;
+
+	private final AccessPolicyEngine engine = new AccessPolicyEngine(new AccessPolicyProperties());
+	private BiometricInfo biometricInfo;
+	private AccessLevelResponse accessLevel;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		// Without a logback config every decision logs at INFO; that would dominate the measurement
+		((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+		biometricInfo = BiometricInfo.builder()
+				.hsid("HSID-1")
+				.firstName("Pat")
+				.lastName("Doe")
+				.dateOfBirth("1980-04-12")
+				.age(46)
+				.isMinor(false)
+				.persona("PR")
+				.hasPersonaRepresentative(true)
+				.build();
+
+		List<SupportedMember> supportedMembers = new ArrayList<>(relationships);
+		for (int i = 0; i < relationships; i++) {
+			supportedMembers.add(SupportedMember.builder()
+					.eid("EID-" + i)
+					.firstName("Member" + i)
+					.lastName("Doe")
+					.dateOfBirth("2010-03-14")
+					.relationship("CHILD")
+					.accessLevel("FULL")
+					.personas(personas(i))
+					.build());
+		}
+		accessLevel = AccessLevelResponse.builder()
+				.memberEid("EID-PR")
+				.memberIdType("HSID")
+				.memberIdValue("HSID-1")
+				.canViewOwnData(false)
+				.supportedMembers(supportedMembers)
+				.build();
+	}
+
+	@Benchmark
+	public AccessDecisionSet decide() {
+		return engine.decide(biometricInfo, accessLevel);
+	}
+
+	private List<String> personas(int i) {
+		boolean isEligible = switch (eligible) {
+			case "none" -> false;
+			case "all" -> true;
+			default -> i % 3 == 0;
+		};
+		if (!isEligible) {
+			return List.of("Rrp", "roi", "XYZ");
+		}
+		return i % 2 == 0 ? List.of("rrp", "Daa", "ROI", "XYZ") : List.of("RRP", "daa", "xyz");
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(AccessPolicyEngineBenchmark.class.getSimpleName())
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,325 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AccessPolicyProperties;
+import com.example.demo.model.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Golden tests: decisions of the default policy as the access decision has always built them
+ */
+class AccessPolicyEngineTest {
+
+	private final AccessPolicyEngine engine = new AccessPolicyEngine(new AccessPolicyProperties());
+
+	@Test
+	void minorViewsOnlySelfInBothApplications() {
+		BiometricInfo biometricInfo = biometricInfo(true);
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo, null);
+
+		for (AccessDecision decision : List.of(decisions.getWebCl(), decisions.getWebHs())) {
+			assertThat(decision.getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_ONLY_MINOR);
+			assertSelfOnly(decision, biometricInfo, "Member is under 18 years old");
+		}
+		assertThat(decisions.getWebCl().getApplicationType()).isEqualTo(AccessDecision.ApplicationType.WEB_CL);
+		assertThat(decisions.getWebHs().getApplicationType()).isEqualTo(AccessDecision.ApplicationType.WEB_HS);
+	}
+
+	@Test
+	void adultWithoutPrViewsOnlySelf() {
+		BiometricInfo biometricInfo = biometricInfo(false);
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo, null);
+
+		for (AccessDecision decision : List.of(decisions.getWebCl(), decisions.getWebHs())) {
+			assertThat(decision.getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_ONLY_ADULT);
+			assertSelfOnly(decision, biometricInfo, "Member is 18+ but has no PR persona");
+		}
+	}
+
+	@Test
+	void prWithoutEligibleMembersViewsOnlySelf() {
+		BiometricInfo biometricInfo = biometricInfo(false);
+		AccessLevelResponse accessLevel = accessLevel(
+				member("1", List.of("RRP")),
+				member("2", List.of("DAA", "ROI")),
+				member("3", null),
+				member("4", List.of()));
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo, accessLevel);
+
+		for (AccessDecision decision : List.of(decisions.getWebCl(), decisions.getWebHs())) {
+			assertThat(decision.getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_ONLY_ADULT);
+			assertSelfOnly(decision, biometricInfo, "No supported members with RRP+DAA");
+		}
+		assertUnflagged(accessLevel);
+	}
+
+	@Test
+	void prWithNoSupportedMembersViewsOnlySelf() {
+		BiometricInfo biometricInfo = biometricInfo(false);
+		AccessLevelResponse accessLevel = new AccessLevelResponse();
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo, accessLevel);
+
+		assertSelfOnly(decisions.getWebCl(), biometricInfo, "No supported members with RRP+DAA");
+		assertSelfOnly(decisions.getWebHs(), biometricInfo, "No supported members with RRP+DAA");
+	}
+
+	@Test
+	void prWithEligibleMembersSupportsOthersInWebClAndSeesBothInWebHs() {
+		BiometricInfo biometricInfo = biometricInfo(false);
+		SupportedMember eligible = member("1", List.of("rrp", "Daa"));
+		SupportedMember ineligible = member("2", List.of("RRP", "ROI"));
+		SupportedMember sensitive = member("3", Arrays.asList("ROI", null, "RRP", "DAA", "OTHER"));
+		AccessLevelResponse accessLevel = accessLevel(eligible, ineligible, sensitive);
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo, accessLevel);
+
+		SupportedMember eligibleFlagged = flagged(eligible, true, false);
+		SupportedMember sensitiveFlagged = flagged(sensitive, true, true);
+		AccessLevelResponse flaggedAccessLevel = accessLevel(eligibleFlagged, flagged(ineligible, false, false), sensitiveFlagged);
+		assertUnflagged(accessLevel);
+
+		AccessDecision webCl = decisions.getWebCl();
+		assertThat(webCl.getApplicationType()).isEqualTo(AccessDecision.ApplicationType.WEB_CL);
+		assertThat(webCl.getAccessMode()).isEqualTo(AccessDecision.AccessMode.SUPPORTING_OTHERS);
+		assertThat(webCl.getCanViewOwnData()).isFalse();
+		assertThat(webCl.getCanViewOthersData()).isTrue();
+		assertThat(webCl.getAccessLevel()).isEqualTo(flaggedAccessLevel);
+		assertThat(webCl.getViewableMembers()).containsExactly(eligibleFlagged, sensitiveFlagged);
+		assertThat(webCl.getDecisionReason()).isEqualTo("web-cl: Member has PR persona and 2 supported members with RRP+DAA");
+
+		AccessDecision webHs = decisions.getWebHs();
+		assertThat(webHs.getApplicationType()).isEqualTo(AccessDecision.ApplicationType.WEB_HS);
+		assertThat(webHs.getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_AND_OTHERS);
+		assertThat(webHs.getCanViewOwnData()).isTrue();
+		assertThat(webHs.getCanViewOthersData()).isTrue();
+		assertThat(webHs.getAccessLevel()).isEqualTo(flaggedAccessLevel);
+		assertThat(webHs.getViewableMembers()).hasSize(3);
+		assertSelfMember(webHs.getViewableMembers().get(0), biometricInfo);
+		assertThat(webHs.getViewableMembers().subList(1, 3)).containsExactly(eligibleFlagged, sensitiveFlagged);
+		assertThat(webHs.getDecisionReason()).isEqualTo("web-hs: Member has PR persona and 2 supported members with RRP+DAA");
+	}
+
+	@Test
+	void capabilitiesAreIndexedWhenDecidedByIdTypeAndIdValue() {
+		BiometricInfo biometricInfo = biometricInfo(false);
+		// PSN EID equal to the member's own HSID: must not merge with the self entry
+		SupportedMember sameValue = member("1", List.of("RRP", "DAA", "ROI"));
+		sameValue.setEid("HSID-1");
+		AccessLevelResponse accessLevel = accessLevel(sameValue, member("2", List.of("RRP", "DAA")));
+
+		AccessDecision webHs = engine.decide(biometricInfo, accessLevel).getWebHs();
+		MemberCapabilities capabilities = webHs.capabilities();
+
+		assertThat(capabilities.get(MemberCapabilities.HSID, "HSID-1")).isEqualTo(MemberCapabilities.VIEW);
+		assertThat(capabilities.get(MemberCapabilities.EID, "HSID-1"))
+				.isEqualTo(MemberCapabilities.VIEW | MemberCapabilities.DAA | MemberCapabilities.ROI);
+		assertThat(capabilities.get(MemberCapabilities.EID, "2")).isEqualTo(MemberCapabilities.VIEW | MemberCapabilities.DAA);
+		assertThat(capabilities.get(MemberCapabilities.HSID, "2")).isZero();
+		// ID types in any case; dependents stored under another ID type are matched by value
+		assertThat(capabilities.get("hsid", "HSID-1")).isEqualTo(MemberCapabilities.VIEW);
+		assertThat(capabilities.get("eid", "2")).isEqualTo(MemberCapabilities.VIEW | MemberCapabilities.DAA);
+		assertThat(capabilities.get("OHID", "2")).isEqualTo(MemberCapabilities.VIEW | MemberCapabilities.DAA);
+		assertThat(capabilities.get("MSID", "3")).isZero();
+		assertThat(capabilities.get(null, "2")).isZero();
+		// Built once with the decision, shared by its copies
+		assertThat(webHs.capabilities()).isSameAs(capabilities);
+		assertThat(webHs.copy().capabilities()).isSameAs(capabilities);
+		assertThat(engine.noAccess("timeout").capabilities().get(MemberCapabilities.EID, "2")).isZero();
+	}
+
+	@Test
+	void noAccessDecision() {
+		AccessDecision decision = engine.noAccess("US biometric fetch failed: timeout");
+
+		assertThat(decision.getApplicationType()).isNull();
+		assertThat(decision.getAccessMode()).isEqualTo(AccessDecision.AccessMode.NO_ACCESS);
+		assertThat(decision.getBiometricInfo()).isNull();
+		assertThat(decision.getCanViewOwnData()).isFalse();
+		assertThat(decision.getCanViewOthersData()).isFalse();
+		assertThat(decision.getViewableMembers()).isEmpty();
+		assertThat(decision.getDecisionReason()).isEqualTo("US biometric fetch failed: timeout");
+	}
+
+	@Test
+	void configuredRulesReplaceDefaults() {
+		AccessPolicyProperties properties = new AccessPolicyProperties();
+		properties.setEligiblePersonas(List.of("DAA"));
+		properties.getWebCl().setOwnDataWithOthers(true);
+		AccessPolicyEngine configured = new AccessPolicyEngine(properties);
+		SupportedMember member = member("1", List.of("DAA"));
+
+		AccessDecisionSet decisions = configured.decide(biometricInfo(false), accessLevel(member));
+
+		assertThat(decisions.getWebCl().getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_AND_OTHERS);
+		assertThat(decisions.getWebCl().getViewableMembers()).hasSize(2);
+		assertThat(decisions.getWebCl().getViewableMembers().get(1)).isEqualTo(flagged(member, true, false));
+		assertThat(decisions.getWebCl().getDecisionReason()).isEqualTo("web-cl: Member has PR persona and 1 supported members with DAA");
+	}
+
+	@Test
+	void policyFingerprintChangesWithTheRules() {
+		AccessPolicyProperties reordered = new AccessPolicyProperties();
+		reordered.setSensitivePersonas(List.of("roi", "DAA", "rrp"));
+		AccessPolicyProperties fewerEligible = new AccessPolicyProperties();
+		fewerEligible.setEligiblePersonas(List.of("DAA"));
+		AccessPolicyProperties ownData = new AccessPolicyProperties();
+		ownData.getWebCl().setOwnDataWithOthers(true);
+
+		assertThat(new AccessPolicyEngine(new AccessPolicyProperties()).policyFingerprint()).isEqualTo(engine.policyFingerprint());
+		assertThat(new AccessPolicyEngine(reordered).policyFingerprint()).isEqualTo(engine.policyFingerprint());
+		assertThat(new AccessPolicyEngine(fewerEligible).policyFingerprint()).isNotEqualTo(engine.policyFingerprint());
+		assertThat(new AccessPolicyEngine(ownData).policyFingerprint()).isNotEqualTo(engine.policyFingerprint());
+	}
+
+	@Test
+	void personasMatchCaseInsensitivelyAndUnknownPersonasAreIgnored() {
+		SupportedMember lowerCase = member("1", List.of("rrp", "daa", "roi"));
+		SupportedMember unknownOnly = member("2", List.of("XYZ", "RRP-DAA"));
+		SupportedMember withUnknown = member("3", List.of("Unknown", "RRP", "dAa"));
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo(false), accessLevel(lowerCase, unknownOnly, withUnknown));
+
+		assertThat(decisions.getWebCl().getViewableMembers())
+				.containsExactly(flagged(lowerCase, true, true), flagged(withUnknown, true, false));
+		assertThat(decisions.getWebCl().getAccessLevel().getSupportedMembers().get(1))
+				.isEqualTo(flagged(unknownOnly, false, false));
+	}
+
+	@Test
+	void membersWithoutPersonasAreCopiedUnflagged() {
+		SupportedMember nullPersonas = member("1", null);
+		SupportedMember eligible = member("2", List.of("RRP", "DAA"));
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo(false), accessLevel(nullPersonas, eligible));
+
+		List<SupportedMember> supportedMembers = decisions.getWebCl().getAccessLevel().getSupportedMembers();
+		assertThat(supportedMembers.get(0)).isEqualTo(nullPersonas).isNotSameAs(nullPersonas);
+		assertThat(decisions.getWebCl().getViewableMembers()).containsExactly(flagged(eligible, true, false));
+	}
+
+	@Test
+	void nullSupportedMembersViewOnlySelf() {
+		AccessLevelResponse accessLevel = accessLevel();
+		accessLevel.setSupportedMembers(null);
+
+		AccessDecisionSet decisions = engine.decide(biometricInfo(false), accessLevel);
+
+		assertThat(decisions.getWebCl().getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_ONLY_ADULT);
+		assertThat(decisions.getWebHs().getAccessMode()).isEqualTo(AccessDecision.AccessMode.SELF_ONLY_ADULT);
+	}
+
+	@ParameterizedTest
+	@CsvSource({"false, false", "false, true", "true, false", "true, true"})
+	void ownDataWithOthersIsConfiguredPerApplication(boolean webClOwnData, boolean webHsOwnData) {
+		AccessPolicyProperties properties = new AccessPolicyProperties();
+		properties.getWebCl().setOwnDataWithOthers(webClOwnData);
+		properties.getWebHs().setOwnDataWithOthers(webHsOwnData);
+		BiometricInfo biometricInfo = biometricInfo(false);
+		SupportedMember member = member("1", List.of("RRP", "DAA"));
+
+		AccessDecisionSet decisions = new AccessPolicyEngine(properties).decide(biometricInfo, accessLevel(member));
+
+		assertWithOthers(decisions.getWebCl(), AccessDecision.ApplicationType.WEB_CL, webClOwnData, biometricInfo, member);
+		assertWithOthers(decisions.getWebHs(), AccessDecision.ApplicationType.WEB_HS, webHsOwnData, biometricInfo, member);
+	}
+
+	private static void assertWithOthers(AccessDecision decision, AccessDecision.ApplicationType applicationType,
+			boolean ownData, BiometricInfo biometricInfo, SupportedMember member) {
+		assertThat(decision.getApplicationType()).isEqualTo(applicationType);
+		assertThat(decision.getAccessMode()).isEqualTo(ownData
+				? AccessDecision.AccessMode.SELF_AND_OTHERS
+				: AccessDecision.AccessMode.SUPPORTING_OTHERS);
+		assertThat(decision.getCanViewOwnData()).isEqualTo(ownData);
+		assertThat(decision.getCanViewOthersData()).isTrue();
+		List<SupportedMember> viewableMembers = decision.getViewableMembers();
+		assertThat(viewableMembers).hasSize(ownData ? 2 : 1);
+		if (ownData) {
+			assertSelfMember(viewableMembers.get(0), biometricInfo);
+		}
+		assertThat(viewableMembers.get(viewableMembers.size() - 1)).isEqualTo(flagged(member, true, false));
+	}
+
+	/**
+	 * Inputs may be shared through the PSN cache and must not be modified
+	 */
+	private static void assertUnflagged(AccessLevelResponse accessLevel) {
+		for (SupportedMember member : accessLevel.getSupportedMembers()) {
+			assertThat(member.getHasDigitalAccountAccess()).isNull();
+			assertThat(member.getHasSensitiveDataAccess()).isNull();
+		}
+	}
+
+	private static SupportedMember flagged(SupportedMember member, boolean digitalAccountAccess, boolean sensitiveDataAccess) {
+		return member.toBuilder()
+				.hasDigitalAccountAccess(digitalAccountAccess)
+				.hasSensitiveDataAccess(sensitiveDataAccess)
+				.build();
+	}
+
+	private static void assertSelfOnly(AccessDecision decision, BiometricInfo biometricInfo, String reason) {
+		assertThat(decision.getBiometricInfo()).isSameAs(biometricInfo);
+		assertThat(decision.getAccessLevel()).isNull();
+		assertThat(decision.getCanViewOwnData()).isTrue();
+		assertThat(decision.getCanViewOthersData()).isFalse();
+		assertThat(decision.getViewableMembers()).hasSize(1);
+		assertSelfMember(decision.getViewableMembers().get(0), biometricInfo);
+		assertThat(decision.getDecisionReason()).isEqualTo(reason);
+		assertThat(decision.getDecidedAt()).isNotNull();
+		assertThat(decision.getInputVersion()).isNull();
+	}
+
+	private static void assertSelfMember(SupportedMember self, BiometricInfo biometricInfo) {
+		assertThat(self).isEqualTo(SupportedMember.builder()
+				.eid(biometricInfo.getHsid())
+				.firstName(biometricInfo.getFirstName())
+				.lastName(biometricInfo.getLastName())
+				.dateOfBirth(biometricInfo.getDateOfBirth())
+				.relationship("self")
+				.accessLevel("full")
+				.personas(new ArrayList<>())
+				.hasDigitalAccountAccess(false)
+				.hasSensitiveDataAccess(false)
+				.build());
+	}
+
+	private static BiometricInfo biometricInfo(boolean minor) {
+		BiometricInfo biometricInfo = new BiometricInfo();
+		biometricInfo.setHsid("HSID-1");
+		biometricInfo.setFirstName("Pat");
+		biometricInfo.setLastName("Doe");
+		biometricInfo.setDateOfBirth(minor ? "2012-05-01" : "1980-05-01");
+		biometricInfo.setIsMinor(minor);
+		biometricInfo.setHasPersonaRepresentative(!minor);
+		return biometricInfo;
+	}
+
+	private static AccessLevelResponse accessLevel(SupportedMember... members) {
+		AccessLevelResponse accessLevel = new AccessLevelResponse();
+		accessLevel.setMemberEid("EID-1");
+		accessLevel.setSupportedMembers(new ArrayList<>(List.of(members)));
+		return accessLevel;
+	}
+
+	private static SupportedMember member(String eid, List<String> personas) {
+		return SupportedMember.builder()
+				.eid(eid)
+				.firstName("First " + eid)
+				.lastName("Last " + eid)
+				.dateOfBirth("2010-01-0" + eid)
+				.relationship("child")
+				.accessLevel("full")
+				.personas(personas)
+				.build();
+	}
+}
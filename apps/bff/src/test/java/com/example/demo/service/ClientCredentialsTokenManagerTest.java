@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import com.example.demo.support.StubUpstream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Client credentials tokens against a local token endpoint that issues token-1, token-2, ...
+ */
+class ClientCredentialsTokenManagerTest {
+
+	private static final String TOKEN_PATH = "/oauth2/token";
+
+	private final AtomicInteger issued = new AtomicInteger();
+	private StubUpstream idp;
+
+	@AfterEach
+	void tearDown() {
+		if (idp != null) {
+			idp.close();
+		}
+	}
+
+	@Test
+	void tokenIsCachedUntilExpiry() {
+		// 3s lifetime - 1s skew: usable for 2s, refresh-ahead disabled (ratio 1)
+		ClientCredentialsTokenManager manager = manager(3, 1, 1.0);
+		ClientCredentialsTokenManager.ClientRegistration registration = registration();
+
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-1");
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-1");
+		assertThat(idp.calls(TOKEN_PATH)).isEqualTo(1);
+
+		await().pollDelay(Duration.ofMillis(2100)).atMost(Duration.ofSeconds(3)).until(() -> true);
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-2");
+		assertThat(idp.calls(TOKEN_PATH)).isEqualTo(2);
+	}
+
+	@Test
+	void concurrentFetchesShareOneTokenRequest() {
+		ClientCredentialsTokenManager manager = manager(300, 30, 0.8);
+		idp.delay(TOKEN_PATH, Duration.ofMillis(200));
+		ClientCredentialsTokenManager.ClientRegistration registration = registration();
+
+		assertThat(Flux.range(0, 10).flatMap(i -> manager.getToken(registration)).collectList().block())
+				.hasSize(10)
+				.containsOnly("token-1");
+		assertThat(idp.calls(TOKEN_PATH)).isEqualTo(1);
+	}
+
+	@Test
+	void shortLivedTokenIsRefreshedAheadOfExpiry() {
+		// Refresh point within the usable lifetime: 0.5 x (6s - 3s skew) = 1.5s, not 0.5 x 6s = 3s
+		// (the moment the token expires, so refresh-ahead would never fire)
+		ClientCredentialsTokenManager manager = manager(6, 3, 0.5);
+		ClientCredentialsTokenManager.ClientRegistration registration = registration();
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-1");
+
+		await().pollDelay(Duration.ofMillis(1600)).atMost(Duration.ofSeconds(2)).until(() -> true);
+		// Past the refresh point but not expired: served from cache while a new token is fetched
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-1");
+
+		await().atMost(Duration.ofSeconds(2)).until(() -> idp.calls(TOKEN_PATH) == 2);
+		await().atMost(Duration.ofSeconds(1)).untilAsserted(() ->
+				assertThat(manager.getToken(registration).block()).isEqualTo("token-2"));
+		assertThat(idp.calls(TOKEN_PATH)).isEqualTo(2);
+	}
+
+	@Test
+	void invalidateOnlyDropsTheRejectedToken() {
+		ClientCredentialsTokenManager manager = manager(300, 30, 0.8);
+		ClientCredentialsTokenManager.ClientRegistration registration = registration();
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-1");
+
+		// A late rejection of an older token leaves the current one in place
+		manager.invalidate(registration, "token-0");
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-1");
+		assertThat(idp.calls(TOKEN_PATH)).isEqualTo(1);
+
+		manager.invalidate(registration, "token-1");
+		assertThat(manager.getToken(registration).block()).isEqualTo("token-2");
+		assertThat(idp.calls(TOKEN_PATH)).isEqualTo(2);
+	}
+
+	private ClientCredentialsTokenManager manager(long expiresInSeconds, int expirySkewSeconds, double refreshRatio) {
+		idp = new StubUpstream()
+				.post(TOKEN_PATH, request -> StubUpstream.Response.ok(
+						"{\"access_token\":\"token-" + issued.incrementAndGet()
+								+ "\",\"token_type\":\"Bearer\",\"expires_in\":" + expiresInSeconds + "}"))
+				.start();
+		return new ClientCredentialsTokenManager(new SimpleMeterRegistry(), expirySkewSeconds, refreshRatio, 300);
+	}
+
+	private ClientCredentialsTokenManager.ClientRegistration registration() {
+		return new ClientCredentialsTokenManager.ClientRegistration(
+				"us", idp.url(TOKEN_PATH), "client", "secret", "read", WebClient.create());
+	}
+}
@@ -0,0 +1,221 @@
+package com.example.demo.service;
+
+import com.example.demo.model.CacheEntry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CoalescingCacheTest {
+
+	private static final CoalescingCache.CacheTtl TTL = new CoalescingCache.CacheTtl(
+			Duration.ofMinutes(5), Duration.ofMinutes(30), Duration.ofHours(1), Duration.ofMinutes(2));
+
+	private final Map<String, Object> redis = new ConcurrentHashMap<>();
+	private final Map<String, Duration> redisTtls = new ConcurrentHashMap<>();
+	private final AtomicInteger originCalls = new AtomicInteger();
+
+	private ReactiveRedisTemplate<String, Object> template;
+	private CoalescingCache<String> cache;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		ReactiveRedisTemplate<String, Object> template = mock(ReactiveRedisTemplate.class);
+		ReactiveValueOperations<String, Object> values = mock(ReactiveValueOperations.class);
+		when(template.opsForValue()).thenReturn(values);
+		when(values.get(anyString())).thenAnswer(invocation -> Mono.justOrEmpty(redis.get(invocation.<String>getArgument(0))));
+		when(values.set(anyString(), any(), any(Duration.class))).thenAnswer(invocation -> {
+			redis.put(invocation.getArgument(0), invocation.getArgument(1));
+			redisTtls.put(invocation.getArgument(0), invocation.getArgument(2));
+			return Mono.just(true);
+		});
+
+		this.template = template;
+		cache = cache(TTL);
+	}
+
+	@Test
+	void missLoadsFromOriginAndKeepsValueForHardTtlPlusStaleIfError() {
+		StepVerifier.create(cache.get("key", origin("fresh")))
+				.expectNext("fresh")
+				.verifyComplete();
+
+		assertThat(originCalls).hasValue(1);
+		assertThat(entry("key").getValue()).isEqualTo("fresh");
+		assertThat(redisTtls.get("test:key")).isEqualTo(Duration.ofMinutes(90));
+	}
+
+	@Test
+	void valueYoungerThanSoftTtlIsServedWithoutOriginCall() {
+		store("key", "cached", Duration.ofMinutes(4));
+
+		StepVerifier.create(cache.get("key", origin("fresh")))
+				.expectNext("cached")
+				.verifyComplete();
+
+		assertThat(originCalls).hasValue(0);
+	}
+
+	@Test
+	void valueBetweenSoftAndHardTtlIsServedAndRefreshedInBackground() {
+		store("key", "cached", Duration.ofMinutes(10));
+
+		StepVerifier.create(cache.get("key", origin("fresh")))
+				.expectNext("cached")
+				.verifyComplete();
+
+		assertThat(originCalls).hasValue(1);
+		assertThat(entry("key").getValue()).isEqualTo("fresh");
+	}
+
+	@Test
+	void valuePastHardTtlIsLoadedFromOrigin() {
+		store("key", "cached", Duration.ofMinutes(31));
+
+		StepVerifier.create(cache.get("key", origin("fresh")))
+				.expectNext("fresh")
+				.verifyComplete();
+
+		assertThat(originCalls).hasValue(1);
+	}
+
+	@Test
+	void valuePastHardTtlIsStillAvailableToReadStale() {
+		store("key", "cached", Duration.ofMinutes(31));
+
+		StepVerifier.create(cache.readStale("key"))
+				.expectNext("cached")
+				.verifyComplete();
+	}
+
+	@Test
+	void notFoundIsCachedForNegativeTtl() {
+		StepVerifier.create(cache.get("key", () -> {
+					originCalls.incrementAndGet();
+					return Mono.empty();
+				}))
+				.verifyComplete();
+
+		assertThat(entry("key").getValue()).isNull();
+		assertThat(redisTtls.get("test:key")).isEqualTo(Duration.ofMinutes(2));
+
+		StepVerifier.create(cache.get("key", origin("fresh")))
+				.verifyComplete();
+		assertThat(originCalls).hasValue(1);
+	}
+
+	@Test
+	void negativeEntryPastNegativeTtlIsLoadedFromOrigin() {
+		store("key", null, Duration.ofMinutes(3));
+
+		StepVerifier.create(cache.get("key", origin("fresh")))
+				.expectNext("fresh")
+				.verifyComplete();
+
+		assertThat(originCalls).hasValue(1);
+	}
+
+	@Test
+	void zeroNegativeTtlDoesNotCacheNotFound() {
+		CoalescingCache<String> uncachedNegatives = cache(new CoalescingCache.CacheTtl(
+				Duration.ofMinutes(5), Duration.ofMinutes(30), Duration.ofHours(1), Duration.ZERO));
+		store("key", "cached", Duration.ofMinutes(31));
+		Supplier<Mono<String>> notFound = () -> {
+			originCalls.incrementAndGet();
+			return Mono.empty();
+		};
+
+		StepVerifier.create(uncachedNegatives.get("key", notFound))
+				.verifyComplete();
+		StepVerifier.create(uncachedNegatives.get("key", notFound))
+				.verifyComplete();
+
+		assertThat(originCalls).hasValue(2);
+		assertThat(redisTtls).doesNotContainKey("test:key");
+		// The stale copy is not overwritten
+		StepVerifier.create(uncachedNegatives.readStale("key"))
+				.expectNext("cached")
+				.verifyComplete();
+	}
+
+	@Test
+	void evictionDuringOriginCallIsNotUndone() {
+		when(template.delete(anyString())).thenAnswer(invocation ->
+				Mono.just(redis.remove(invocation.<String>getArgument(0)) != null ? 1L : 0L));
+		CoalescingCache<String> withLocal = new CoalescingCache<>("test", "test:", String.class, TTL, template, null,
+				new SimpleMeterRegistry(), 100, Duration.ofMinutes(1), false, Duration.ZERO, Duration.ZERO, key -> Mono.empty());
+		Sinks.One<String> slowOrigin = Sinks.one();
+
+		StepVerifier.create(withLocal.get("key", () -> {
+					originCalls.incrementAndGet();
+					return slowOrigin.asMono();
+				}))
+				// A change event lands while the origin still answers with the old data
+				.then(() -> withLocal.evict("key").block())
+				.then(() -> slowOrigin.tryEmitValue("before-change"))
+				.expectNext("before-change")
+				.verifyComplete();
+
+		// Neither Redis nor L1 hold the value loaded before the eviction
+		assertThat(redis).doesNotContainKey("test:key");
+		StepVerifier.create(withLocal.get("key", origin("after-change")))
+				.expectNext("after-change")
+				.verifyComplete();
+		assertThat(originCalls).hasValue(2);
+	}
+
+	@Test
+	void negativeTtlsAreRejected() {
+		assertThatThrownBy(() -> new CoalescingCache.CacheTtl(
+				Duration.ofMinutes(5), Duration.ofMinutes(30), Duration.ZERO, Duration.ofMinutes(-1)))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void softTtlIsCappedAtHardTtl() {
+		CoalescingCache.CacheTtl ttl = new CoalescingCache.CacheTtl(
+				Duration.ofHours(1), Duration.ofMinutes(30), Duration.ZERO, Duration.ZERO);
+
+		assertThat(ttl.soft()).isEqualTo(Duration.ofMinutes(30));
+	}
+
+	private CoalescingCache<String> cache(CoalescingCache.CacheTtl ttl) {
+		// L1 disabled, so every lookup goes through the Redis entry's age
+		return new CoalescingCache<>("test", "test:", String.class, ttl, template, null, new SimpleMeterRegistry(),
+				0, Duration.ZERO, false, Duration.ZERO, Duration.ZERO, key -> Mono.empty());
+	}
+
+	private Supplier<Mono<String>> origin(String value) {
+		return () -> {
+			originCalls.incrementAndGet();
+			return Mono.just(value);
+		};
+	}
+
+	private void store(String key, String value, Duration age) {
+		redis.put("test:" + key, new CacheEntry<>(value, System.currentTimeMillis() - age.toMillis()));
+	}
+
+	@SuppressWarnings("unchecked")
+	private CacheEntry<String> entry(String key) {
+		return (CacheEntry<String>) redis.get("test:" + key);
+	}
+}
@@ -0,0 +1,136 @@
+package com.example.demo.service;
+
+import com.example.demo.config.AccessPolicyProperties;
+import com.example.demo.model.*;
+import com.example.demo.repository.DocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentServiceTest {
+
+	private DocumentRepository documentRepository;
+	private SessionService sessionService;
+	private DocumentService documentService;
+	private UserSession session;
+
+	@BeforeEach
+	void setUp() {
+		documentRepository = mock(DocumentRepository.class);
+		sessionService = mock(SessionService.class);
+		when(sessionService.withAccessDecision(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+		documentService = new DocumentService(documentRepository, mock(S3Service.class),
+				mock(AccessDecisionService.class), sessionService);
+
+		BiometricInfo biometricInfo = new BiometricInfo();
+		biometricInfo.setHsid("HSID-1");
+		biometricInfo.setIsMinor(false);
+		AccessLevelResponse accessLevel = new AccessLevelResponse();
+		accessLevel.setSupportedMembers(new ArrayList<>(List.of(
+				member("EID-2", "RRP", "DAA"),
+				member("EID-3", "RRP", "DAA", "ROI"))));
+		session = UserSession.builder()
+				.sessionId("s1")
+				.userInfo(UserInfo.builder().idType("HSID").idValue("HSID-1").build())
+				.accessDecision(new AccessPolicyEngine(new AccessPolicyProperties())
+						.decide(biometricInfo, accessLevel).getWebCl())
+				.build();
+	}
+
+	@Test
+	void ownDocumentsAreKeptWithoutLoadingTheAccessDecision() {
+		List<UserDocument> documents = List.of(document("d1", "HSID", "HSID-1", true));
+
+		assertThat(documentService.checkAccess(documents, session).block()).isSameAs(documents);
+		verify(sessionService, never()).withAccessDecision(any());
+	}
+
+	@Test
+	void otherMembersDocumentsAreFilteredInOnePass() {
+		UserDocument own = document("d1", "HSID", "HSID-1", true);
+		UserDocument plain = document("d2", "EID", "EID-2", false);
+		UserDocument sensitiveWithoutRoi = document("d3", "EID", "EID-2", true);
+		UserDocument sensitiveWithRoi = document("d4", "EID", "EID-3", true);
+		UserDocument notViewable = document("d5", "EID", "EID-4", false);
+		// Dependents stored under another ID type are matched by value, ID types in any case
+		UserDocument otherIdType = document("d6", "OHID", "EID-2", false);
+		UserDocument lowerCaseIdType = document("d7", "eid", "EID-3", false);
+		// The member's own HSID as a supported member's ID value is not a supported member
+		UserDocument ownValueAsEid = document("d8", "EID", "HSID-1", false);
+
+		List<UserDocument> viewable = documentService.checkAccess(List.of(own, plain, sensitiveWithoutRoi,
+				sensitiveWithRoi, notViewable, otherIdType, lowerCaseIdType, ownValueAsEid), session).block();
+
+		assertThat(viewable).containsExactly(own, plain, sensitiveWithRoi, otherIdType, lowerCaseIdType);
+	}
+
+	@Test
+	void searchWithoutRoiLeavesOutSensitiveDocumentsInTheQuery() {
+		UserDocument plain = document("d1", "EID", "EID-2", false);
+		when(documentRepository.findByOwnerIdTypeAndOwnerIdValueAndStatusAndIsSensitiveNot(
+				eq("EID"), eq("EID-2"), eq(UserDocument.DocumentStatus.ACTIVE), eq(true), any()))
+				.thenReturn(Flux.just(plain));
+		when(documentRepository.countByOwnerIdTypeAndOwnerIdValueAndStatusAndIsSensitiveNot(
+				"EID", "EID-2", UserDocument.DocumentStatus.ACTIVE, true))
+				.thenReturn(Mono.just(1L));
+
+		Page<UserDocument> page = documentService.searchDocuments(DocumentSearchRequest.builder()
+				.ownerIdType("EID")
+				.ownerIdValue("EID-2")
+				.build(), session).block();
+
+		// Full pages and a total that stays the same from page to page
+		assertThat(page.getContent()).containsExactly(plain);
+		assertThat(page.getTotalElements()).isEqualTo(1);
+		verify(documentRepository, never()).findByOwnerIdTypeAndOwnerIdValueAndStatus(any(), any(), any(), any());
+	}
+
+	@Test
+	void searchWithRoiIncludesSensitiveDocuments() {
+		UserDocument plain = document("d1", "EID", "EID-3", false);
+		UserDocument sensitive = document("d2", "EID", "EID-3", true);
+		when(documentRepository.findByOwnerIdTypeAndOwnerIdValueAndStatus(
+				eq("EID"), eq("EID-3"), eq(UserDocument.DocumentStatus.ACTIVE), any()))
+				.thenReturn(Flux.just(plain, sensitive));
+		when(documentRepository.countByOwnerIdTypeAndOwnerIdValueAndStatus("EID", "EID-3", UserDocument.DocumentStatus.ACTIVE))
+				.thenReturn(Mono.just(2L));
+
+		Page<UserDocument> page = documentService.searchDocuments(DocumentSearchRequest.builder()
+				.ownerIdType("EID")
+				.ownerIdValue("EID-3")
+				.build(), session).block();
+
+		assertThat(page.getContent()).containsExactly(plain, sensitive);
+		assertThat(page.getTotalElements()).isEqualTo(2);
+	}
+
+	private static SupportedMember member(String eid, String... personas) {
+		return SupportedMember.builder()
+				.eid(eid)
+				.relationship("child")
+				.personas(new ArrayList<>(List.of(personas)))
+				.build();
+	}
+
+	private static UserDocument document(String documentId, String ownerIdType, String ownerIdValue, boolean sensitive) {
+		return UserDocument.builder()
+				.documentId(documentId)
+				.ownerIdType(ownerIdType)
+				.ownerIdValue(ownerIdValue)
+				.isSensitive(sensitive)
+				.build();
+	}
+}
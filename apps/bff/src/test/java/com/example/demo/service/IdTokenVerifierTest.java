@@ -0,0 +1,197 @@
+package com.example.demo.service;
+
+import com.example.demo.model.UserInfo;
+import com.example.demo.support.StubUpstream;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Local id_token verification against a JWKS served by a local stub, with generated RSA keys
+ */
+class IdTokenVerifierTest {
+
+	private static final String JWKS_PATH = "/oauth2/jwks";
+	private static final String ISSUER = "https://idp.example.com";
+	private static final String CLIENT_ID = "bff";
+
+	private static RSAKey key;
+	private static RSAKey rotatedKey;
+
+	private final AtomicReference<JWKSet> published = new AtomicReference<>();
+	private SimpleMeterRegistry meterRegistry;
+	private StubUpstream idp;
+
+	@BeforeAll
+	static void generateKeys() throws JOSEException {
+		key = new RSAKeyGenerator(2048).keyID("key-1").generate();
+		rotatedKey = new RSAKeyGenerator(2048).keyID("key-2").generate();
+	}
+
+	@BeforeEach
+	void setUp() {
+		published.set(new JWKSet(key.toPublicJWK()));
+		meterRegistry = new SimpleMeterRegistry();
+		idp = new StubUpstream()
+				.get(JWKS_PATH, request -> StubUpstream.Response.ok(published.get().toString()))
+				.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		idp.close();
+	}
+
+	@Test
+	void validTokenIsMappedToUserInfo() throws JOSEException {
+		IdTokenVerifier verifier = verifier(30);
+
+		StepVerifier.create(verifier.userInfoFrom(token(key, claims -> { })))
+				.assertNext(userInfo -> {
+					assertThat(userInfo.getId()).isEqualTo("sub-1");
+					assertThat(userInfo.getGivenName()).isEqualTo("Pat");
+					assertThat(userInfo.getFamilyName()).isEqualTo("Doe");
+					assertThat(userInfo.getEmail()).isEqualTo("pat@example.com");
+					assertThat(userInfo.getCustomClaims())
+							.containsEntry("hsid", "HSID-1")
+							.doesNotContainKeys("iss", "aud", "exp", "iat");
+				})
+				.verifyComplete();
+		assertThat(outcome("verified")).isEqualTo(1);
+	}
+
+	@Test
+	void tokenForAnotherAudienceIsRejected() throws JOSEException {
+		assertFallsBack(token(key, claims -> claims.audience("another-client")), "invalid");
+	}
+
+	@Test
+	void tokenFromAnotherIssuerIsRejected() throws JOSEException {
+		assertFallsBack(token(key, claims -> claims.issuer("https://evil.example.com")), "invalid");
+	}
+
+	@Test
+	void expiredTokenIsRejected() throws JOSEException {
+		// Beyond the validator's 60s clock skew
+		Instant issuedAt = Instant.now().minus(Duration.ofMinutes(10));
+		assertFallsBack(token(key, claims -> claims
+				.issueTime(Date.from(issuedAt))
+				.expirationTime(Date.from(issuedAt.plus(Duration.ofMinutes(5))))), "invalid");
+	}
+
+	@Test
+	void tokenMissingARequiredClaimFallsBackToUserinfo() throws JOSEException {
+		assertFallsBack(token(key, claims -> claims.claim("family_name", null)), "missing-claims");
+	}
+
+	@Test
+	void unknownKidRefetchesTheKeySetOnce() throws JOSEException {
+		IdTokenVerifier verifier = verifier(0);
+		StepVerifier.create(verifier.userInfoFrom(token(key, claims -> { })))
+				.expectNextCount(1)
+				.verifyComplete();
+		assertThat(idp.calls(JWKS_PATH)).isEqualTo(1);
+
+		// The IDP rotates its signing key
+		published.set(new JWKSet(List.of(key.toPublicJWK(), rotatedKey.toPublicJWK())));
+
+		StepVerifier.create(verifier.userInfoFrom(token(rotatedKey, claims -> { })))
+				.expectNextCount(1)
+				.verifyComplete();
+		assertThat(idp.calls(JWKS_PATH)).isEqualTo(2);
+
+		// Known keys are served from the cached set
+		StepVerifier.create(verifier.userInfoFrom(token(key, claims -> { })))
+				.expectNextCount(1)
+				.verifyComplete();
+		assertThat(idp.calls(JWKS_PATH)).isEqualTo(2);
+	}
+
+	@Test
+	void unknownKidDoesNotRefetchWithinMinRefetchInterval() throws JOSEException {
+		IdTokenVerifier verifier = verifier(30);
+		StepVerifier.create(verifier.userInfoFrom(token(key, claims -> { })))
+				.expectNextCount(1)
+				.verifyComplete();
+		published.set(new JWKSet(List.of(key.toPublicJWK(), rotatedKey.toPublicJWK())));
+
+		StepVerifier.create(verifier.userInfoFrom(token(rotatedKey, claims -> { })))
+				.verifyComplete();
+		StepVerifier.create(verifier.userInfoFrom(token(rotatedKey, claims -> { })))
+				.verifyComplete();
+
+		assertThat(idp.calls(JWKS_PATH)).isEqualTo(1);
+		assertThat(outcome("invalid")).isEqualTo(2);
+	}
+
+	private void assertFallsBack(String idToken, String expectedOutcome) {
+		StepVerifier.create(verifier(30).userInfoFrom(idToken))
+				.verifyComplete();
+		assertThat(outcome(expectedOutcome)).isEqualTo(1);
+		assertThat(outcome("verified")).isZero();
+	}
+
+	private IdTokenVerifier verifier(long minRefetchSeconds) {
+		ClientRegistration registration = ClientRegistration.withRegistrationId("idp")
+				.clientId(CLIENT_ID)
+				.authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+				.redirectUri("http://localhost/callback")
+				.authorizationUri(ISSUER + "/oauth2/authorize")
+				.tokenUri(ISSUER + "/oauth2/token")
+				.jwkSetUri(idp.url(JWKS_PATH))
+				.build();
+		// The periodic JWKS refresh (afterPropertiesSet) is not started: keys are fetched on demand
+		return new IdTokenVerifier(WebClient.create(), new InMemoryClientRegistrationRepository(registration),
+				meterRegistry, ISSUER, true, List.of("hsid", "given_name", "family_name"), "RS256",
+				15, minRefetchSeconds);
+	}
+
+	private static String token(RSAKey signingKey, Consumer<JWTClaimsSet.Builder> customizer) throws JOSEException {
+		Instant now = Instant.now();
+		JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+				.issuer(ISSUER)
+				.audience(CLIENT_ID)
+				.subject("sub-1")
+				.issueTime(Date.from(now))
+				.expirationTime(Date.from(now.plus(Duration.ofMinutes(5))))
+				.claim("hsid", "HSID-1")
+				.claim("given_name", "Pat")
+				.claim("family_name", "Doe")
+				.claim("email", "pat@example.com");
+		customizer.accept(claims);
+
+		SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+				claims.build());
+		jwt.sign(new RSASSASigner(signingKey));
+		return jwt.serialize();
+	}
+
+	private double outcome(String outcome) {
+		return meterRegistry.counter("auth.id-token.local-validation", "outcome", outcome).count();
+	}
+}
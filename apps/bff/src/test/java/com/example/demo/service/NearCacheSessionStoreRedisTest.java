@@ -0,0 +1,178 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserSession;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Two near-cache instances (separate connections, as on two BFF instances) against a
+ * local Redis (spring.data.redis.host/port system properties, default localhost:6379).
+ * Skipped when no Redis is reachable.
+ */
+class NearCacheSessionStoreRedisTest {
+
+	private static final Duration TTL = Duration.ofMinutes(5);
+
+	private final List<LettuceConnectionFactory> connectionFactories = new ArrayList<>();
+	private final List<NearCacheSessionStore> stores = new ArrayList<>();
+
+	private SessionStore redisStore;
+	private NearCacheSessionStore instanceA;
+	private NearCacheSessionStore instanceB;
+	private MeterRegistry registryA;
+	private MeterRegistry registryB;
+	private String sessionId;
+
+	@BeforeEach
+	void setUp() {
+		ReactiveRedisTemplate<String, byte[]> templateA = template();
+		assumeTrue(isReachable(templateA), "No Redis on " + host() + ":" + port());
+
+		registryA = new SimpleMeterRegistry();
+		registryB = new SimpleMeterRegistry();
+		instanceA = nearCache(templateA, registryA);
+		instanceB = nearCache(template(), registryB);
+		redisStore = valueStore(template());
+		sessionId = "near-cache-test-" + UUID.randomUUID();
+
+		awaitSubscribed(instanceA, registryB);
+		awaitSubscribed(instanceB, registryA);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (redisStore != null) {
+			redisStore.delete(sessionId).block();
+		}
+		stores.forEach(NearCacheSessionStore::stop);
+		connectionFactories.forEach(LettuceConnectionFactory::destroy);
+	}
+
+	@Test
+	void tokenUpdateOnOneInstanceInvalidatesTheOther() {
+		saveOnA();
+		assertThat(instanceB.load(sessionId, SessionField.ALL).block().getAccessToken()).isEqualTo("access");
+
+		// Written behind the caches' backs: B keeps serving its cached entry
+		UserSession bypass = UserSession.builder().accessToken("bypassed").build();
+		redisStore.update(sessionId, bypass, EnumSet.of(SessionField.TOKENS), TTL).block();
+		assertThat(instanceB.load(sessionId, SessionField.ALL).block().getAccessToken()).isEqualTo("access");
+
+		UserSession patch = UserSession.builder().accessToken("rotated").build();
+		assertThat(instanceA.update(sessionId, patch, EnumSet.of(SessionField.TOKENS), TTL).block()).isTrue();
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(instanceB.load(sessionId, SessionField.ALL).block().getAccessToken()).isEqualTo("rotated"));
+	}
+
+	@Test
+	void logoutOnOneInstanceEvictsTheOther() {
+		saveOnA();
+		assertThat(instanceB.loadAndTouch(sessionId, SessionField.HOT, TTL).blockOptional()).isPresent();
+
+		instanceA.delete(sessionId).block();
+
+		await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+				assertThat(instanceB.loadAndTouch(sessionId, SessionField.HOT, TTL).blockOptional()).isEmpty());
+	}
+
+	/**
+	 * Save the session through instance A and wait for B to receive the save's invalidation,
+	 * so it can't arrive after B has cached the session
+	 */
+	private void saveOnA() {
+		double received = pubsubInvalidations(registryB);
+		instanceA.save(NearCacheSessionStoreTest.session("access").toBuilder().sessionId(sessionId).build(), TTL).block();
+		await().atMost(Duration.ofSeconds(5)).until(() -> pubsubInvalidations(registryB) > received);
+	}
+
+	/**
+	 * Publish from one instance until the other has received an invalidation,
+	 * i.e. its pub/sub subscription is live
+	 */
+	private void awaitSubscribed(NearCacheSessionStore publisher, MeterRegistry subscriberRegistry) {
+		await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> {
+			publisher.delete(sessionId + ":warm-up").block();
+			assertThat(pubsubInvalidations(subscriberRegistry)).isPositive();
+		});
+	}
+
+	private static double pubsubInvalidations(MeterRegistry registry) {
+		return registry.counter("session.near-cache.invalidations", "source", "pubsub").count();
+	}
+
+	private NearCacheSessionStore nearCache(ReactiveRedisTemplate<String, byte[]> template, MeterRegistry registry) {
+		NearCacheSessionStore store = new NearCacheSessionStore(valueStore(template), template, registry,
+				100, Duration.ofSeconds(30), Duration.ofSeconds(60));
+		store.start();
+		stores.add(store);
+		return store;
+	}
+
+	private static SessionStore valueStore(ReactiveRedisTemplate<String, byte[]> template) {
+		// Configured like RedisConfig's value serializer
+		GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+		jsonSerializer.configure(objectMapper -> objectMapper
+				.registerModule(new JavaTimeModule())
+				.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+		return new RedisValueSessionStore(template,
+				RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer),
+				new SimpleMeterRegistry());
+	}
+
+	private ReactiveRedisTemplate<String, byte[]> template() {
+		LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+				new RedisStandaloneConfiguration(host(), port()));
+		connectionFactory.afterPropertiesSet();
+		connectionFactories.add(connectionFactory);
+
+		StringRedisSerializer keySerializer = new StringRedisSerializer();
+		return new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext
+				.<String, byte[]>newSerializationContext(keySerializer)
+				.key(keySerializer)
+				.value(RedisSerializer.byteArray())
+				.hashKey(keySerializer)
+				.hashValue(RedisSerializer.byteArray())
+				.build());
+	}
+
+	private static boolean isReachable(ReactiveRedisTemplate<String, byte[]> template) {
+		try {
+			template.hasKey("near-cache-test:ping").block(Duration.ofSeconds(2));
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	private static String host() {
+		return System.getProperty("spring.data.redis.host", "localhost");
+	}
+
+	private static int port() {
+		return Integer.getInteger("spring.data.redis.port", 6379);
+	}
+}
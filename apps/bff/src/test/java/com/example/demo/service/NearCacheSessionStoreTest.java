@@ -0,0 +1,149 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AccessDecision;
+import com.example.demo.model.AccessLevelResponse;
+import com.example.demo.model.SessionField;
+import com.example.demo.model.SupportedMember;
+import com.example.demo.model.UserInfo;
+import com.example.demo.model.UserSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class NearCacheSessionStoreTest {
+
+	private static final Duration TTL = Duration.ofMinutes(30);
+
+	private SessionStore delegate;
+	private ReactiveRedisTemplate<String, byte[]> template;
+	private NearCacheSessionStore store;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		delegate = mock(SessionStore.class);
+		template = mock(ReactiveRedisTemplate.class);
+		when(template.convertAndSend(anyString(), any(byte[].class))).thenReturn(Mono.just(1L));
+		store = new NearCacheSessionStore(delegate, template, new SimpleMeterRegistry(),
+				100, Duration.ofSeconds(30), Duration.ofSeconds(60));
+	}
+
+	@Test
+	void callerMutationsDoNotLeakIntoCache() {
+		when(delegate.load("s1", SessionField.ALL)).thenReturn(Mono.fromSupplier(() -> session("access")));
+
+		UserSession first = store.load("s1", SessionField.ALL).block();
+		first.getUserInfo().setFirstName("Changed");
+		first.getUserInfo().getRoles().add("ADMIN");
+		first.getAccessDecision().setDecisionReason("changed");
+		first.getAccessDecision().getViewableMembers().get(0).setHasSensitiveDataAccess(true);
+		first.getAccessDecision().getAccessLevel().getSupportedMembers().clear();
+
+		UserSession second = store.load("s1", SessionField.ALL).block();
+
+		verify(delegate, times(1)).load("s1", SessionField.ALL);
+		assertThat(second.getUserInfo().getFirstName()).isEqualTo("Pat");
+		assertThat(second.getUserInfo().getRoles()).containsExactly("MEMBER");
+		assertThat(second.getAccessDecision().getDecisionReason()).isEqualTo("supporting others");
+		assertThat(second.getAccessDecision().getViewableMembers().get(0).getHasSensitiveDataAccess()).isFalse();
+		assertThat(second.getAccessDecision().getAccessLevel().getSupportedMembers()).hasSize(1);
+	}
+
+	@Test
+	void tokenUpdateInvalidatesEverywhere() {
+		when(delegate.load("s1", SessionField.ALL)).thenReturn(Mono.fromSupplier(() -> session("access")));
+		when(delegate.update(eq("s1"), any(), any(), any())).thenReturn(Mono.just(true));
+		store.load("s1", SessionField.ALL).block();
+
+		UserSession patch = UserSession.builder().accessToken("rotated").build();
+		assertThat(store.update("s1", patch, EnumSet.of(SessionField.TOKENS), TTL).block()).isTrue();
+		store.load("s1", SessionField.ALL).block();
+
+		verify(template).convertAndSend(NearCacheSessionStore.INVALIDATION_CHANNEL, "s1".getBytes(StandardCharsets.UTF_8));
+		verify(delegate, times(2)).load("s1", SessionField.ALL);
+	}
+
+	@Test
+	void timestampWriteBackOnlyPatchesLocalEntry() {
+		when(delegate.load("s1", SessionField.ALL)).thenReturn(Mono.fromSupplier(() -> session("access")));
+		when(delegate.update(eq("s1"), any(), any(), any())).thenReturn(Mono.just(true));
+		store.load("s1", SessionField.ALL).block();
+
+		Instant lastAccessedAt = Instant.now().plusSeconds(5);
+		UserSession patch = UserSession.builder().lastAccessedAt(lastAccessedAt).build();
+		store.update("s1", patch, EnumSet.of(SessionField.TIMESTAMPS), TTL).block();
+
+		UserSession cached = store.load("s1", SessionField.ALL).block();
+		assertThat(cached.getLastAccessedAt()).isEqualTo(lastAccessedAt);
+		verify(delegate, times(1)).load("s1", SessionField.ALL);
+		verify(template, never()).convertAndSend(anyString(), any(byte[].class));
+	}
+
+	@Test
+	void deleteInvalidatesEverywhere() {
+		when(delegate.load("s1", SessionField.ALL))
+				.thenReturn(Mono.fromSupplier(() -> session("access")))
+				.thenReturn(Mono.empty());
+		when(delegate.delete("s1")).thenReturn(Mono.empty());
+		store.load("s1", SessionField.ALL).block();
+
+		store.delete("s1").block();
+
+		assertThat(store.load("s1", SessionField.ALL).blockOptional()).isEmpty();
+		verify(template).convertAndSend(NearCacheSessionStore.INVALIDATION_CHANNEL, "s1".getBytes(StandardCharsets.UTF_8));
+	}
+
+	static UserSession session(String accessToken) {
+		Instant now = Instant.now();
+		SupportedMember member = SupportedMember.builder()
+				.eid("EID-2")
+				.firstName("Sam")
+				.personas(new ArrayList<>(List.of("RRP", "DAA")))
+				.hasDigitalAccountAccess(true)
+				.hasSensitiveDataAccess(false)
+				.build();
+		return UserSession.builder()
+				.sessionId("s1")
+				.userInfo(UserInfo.builder()
+						.id("user-1")
+						.idType("HSID")
+						.idValue("HSID-1")
+						.firstName("Pat")
+						.roles(new ArrayList<>(List.of("MEMBER")))
+						.build())
+				.accessToken(accessToken)
+				.accessTokenExpiresAt(now.plusSeconds(3600).toEpochMilli())
+				.createdAt(now)
+				.lastAccessedAt(now)
+				.expiresAt(now.plus(TTL))
+				.accessDecision(AccessDecision.builder()
+						.applicationType(AccessDecision.ApplicationType.WEB_CL)
+						.accessMode(AccessDecision.AccessMode.SUPPORTING_OTHERS)
+						.accessLevel(AccessLevelResponse.builder()
+								.supportedMembers(new ArrayList<>(List.of(member)))
+								.build())
+						.viewableMembers(new ArrayList<>(List.of(member.copy())))
+						.decisionReason("supporting others")
+						.build())
+				.build();
+	}
+}
@@ -0,0 +1,137 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AccessLevelResponse;
+import com.example.demo.model.SupportedMember;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a PSN access level response: typed DTOs vs. a generic Map graph
+ *
+ * Both go through Jackson2JsonDecoder as WebClient's bodyToMono does, from one buffer
+ * holding the whole body, and end with the AccessLevelResponse the cache stores.
+ * - typed: AccessLevelApiResponse, then PSNService.parsePSNResponse
+ * - map: Map, then the hand parsing PSNService did before the typed DTOs
+ *
+ * Payload: a caregiver with the given number of supported members, plus fields PSN sends
+ * that the BFF ignores. Run with the main method after mvn test-compile; add -prof gc for
+ * allocation per decode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PSNResponseDecodingBenchmark {
+
+	private static final ResolvableType TYPED = ResolvableType.forClass(PSNService.AccessLevelApiResponse.class);
+	private static final ResolvableType MAP = ResolvableType.forClass(Map.class);
+
+	@Param({"25", "500"})
+	public int supportedMembers;
+
+	private final Jackson2JsonDecoder decoder = new Jackson2JsonDecoder(Jackson2ObjectMapperBuilder.json().build());
+	private byte[] body;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		StringBuilder json = new StringBuilder()
+				.append("{\"memberEid\":\"EID-1\",\"memberIdType\":\"HSID\",\"memberIdValue\":\"HSID-1\",")
+				.append("\"canViewOwnData\":false,\"expiresIn\":3600,\"source\":\"psn-v2\",\"supportedMembers\":[");
+		for (int i = 0; i < supportedMembers; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"eid\":\"EID-").append(i + 2).append("\",\"firstName\":\"Member").append(i)
+					.append("\",\"lastName\":\"Doe\",\"dateOfBirth\":\"2010-03-").append(10 + i % 18)
+					.append("\",\"relationship\":\"CHILD\",\"accessLevel\":\"FULL\",")
+					.append("\"personas\":[\"RRP\",\"DAA\",\"ROI\"],\"effectiveDate\":\"2024-01-01\",")
+					.append("\"address\":{\"line1\":\"1 Main St\",\"city\":\"Springfield\",\"zip\":\"12345\"}}");
+		}
+		body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+		System.out.println("payload bytes: " + body.length);
+	}
+
+	@Benchmark
+	public AccessLevelResponse typed() {
+		PSNService.AccessLevelApiResponse response = (PSNService.AccessLevelApiResponse) decode(TYPED);
+		return PSNService.parsePSNResponse(response);
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public AccessLevelResponse map() {
+		return parseMap((Map<String, Object>) decode(MAP));
+	}
+
+	private Object decode(ResolvableType type) {
+		return decoder.decodeToMono(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body)), type, null, null)
+				.block();
+	}
+
+	/**
+	 * PSNService.parsePSNResponse as it was for Map responses
+	 */
+	@SuppressWarnings("unchecked")
+	private static AccessLevelResponse parseMap(Map<String, Object> psnResponse) {
+		AccessLevelResponse.AccessLevelResponseBuilder builder = AccessLevelResponse.builder();
+		builder.memberEid((String) psnResponse.get("memberEid"));
+		builder.memberIdType((String) psnResponse.get("memberIdType"));
+		builder.memberIdValue((String) psnResponse.get("memberIdValue"));
+
+		Object canViewOwn = psnResponse.get("canViewOwnData");
+		builder.canViewOwnData(canViewOwn instanceof Boolean ? (Boolean) canViewOwn : true);
+
+		List<SupportedMember> supportedMembers = new ArrayList<>();
+		if (psnResponse.get("supportedMembers") instanceof List<?> membersList) {
+			for (Map<String, Object> memberMap : (List<Map<String, Object>>) membersList) {
+				supportedMembers.add(SupportedMember.builder()
+						.eid((String) memberMap.get("eid"))
+						.firstName((String) memberMap.get("firstName"))
+						.lastName((String) memberMap.get("lastName"))
+						.dateOfBirth((String) memberMap.get("dateOfBirth"))
+						.relationship((String) memberMap.get("relationship"))
+						.accessLevel((String) memberMap.get("accessLevel"))
+						.build());
+			}
+		}
+		builder.supportedMembers(supportedMembers);
+
+		builder.retrievedAt(Instant.now().toString());
+		builder.expiresIn(psnResponse.get("expiresIn") instanceof Number expiresIn ? expiresIn.longValue() : 3600L);
+		return builder.build();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(PSNResponseDecodingBenchmark.class.getSimpleName())
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.demo.service;
+
+import com.example.demo.model.AccessDecision;
+import com.example.demo.model.SessionField;
+import com.example.demo.model.UserSession;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedisHashSessionStoreTest {
+
+	private ReactiveRedisTemplate<String, byte[]> template;
+	private RedisHashSessionStore store;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		template = mock(ReactiveRedisTemplate.class);
+		when(template.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
+		store = new RedisHashSessionStore(template,
+				RedisSerializationContext.SerializationPair.fromSerializer(new GenericJackson2JsonRedisSerializer()),
+				new SimpleMeterRegistry());
+	}
+
+	@Test
+	void storingDecisionCopyDeletesReference() {
+		UserSession patch = UserSession.builder()
+				.accessDecision(AccessDecision.builder().decisionReason("degraded").build())
+				.build();
+
+		StepVerifier.create(store.update("s1", patch, EnumSet.of(SessionField.ACCESS_DECISION), Duration.ofMinutes(30)))
+				.expectNext(true)
+				.verifyComplete();
+
+		List<String> args = updateArgs();
+		assertThat(args.subList(0, 3)).containsExactly("1800000", "1", "accessDecisionRef");
+		assertThat(args.get(3)).isEqualTo("accessDecision");
+		assertThat(args).hasSize(5);
+	}
+
+	@Test
+	void storingDecisionReferenceDeletesCopy() {
+		UserSession patch = UserSession.builder().accessDecisionRef("decision:abc").build();
+
+		StepVerifier.create(store.update("s1", patch, EnumSet.of(SessionField.ACCESS_DECISION), Duration.ofMinutes(30)))
+				.expectNext(true)
+				.verifyComplete();
+
+		List<String> args = updateArgs();
+		assertThat(args.subList(0, 4)).containsExactly("1800000", "1", "accessDecision", "accessDecisionRef");
+		assertThat(args).hasSize(5);
+	}
+
+	@Test
+	void nullTokensAreLeftUnchanged() {
+		UserSession patch = UserSession.builder().accessToken("rotated").build();
+
+		StepVerifier.create(store.update("s1", patch, EnumSet.of(SessionField.TOKENS), Duration.ofMinutes(30)))
+				.expectNext(true)
+				.verifyComplete();
+
+		List<String> args = updateArgs();
+		assertThat(args.subList(0, 3)).containsExactly("1800000", "0", "accessToken");
+		assertThat(args).hasSize(4);
+	}
+
+	@Test
+	void emptyPatchIsNotWritten() {
+		StepVerifier.create(store.update("s1", new UserSession(), EnumSet.of(SessionField.TOKENS), Duration.ofMinutes(30)))
+				.expectNext(false)
+				.verifyComplete();
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> updateArgs() {
+		ArgumentCaptor<List<byte[]>> args = ArgumentCaptor.forClass(List.class);
+		verify(template).execute(any(RedisScript.class), eq(List.of("session:h:s1")), args.capture());
+		return args.getValue().stream()
+				.map(arg -> new String(arg, StandardCharsets.UTF_8))
+				.toList();
+	}
+}
@@ -0,0 +1,105 @@
+package com.example.demo.service;
+
+import com.example.demo.model.SessionEnvelope;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SessionEnvelopeCodecTest {
+
+	private static final String KEY = key(1);
+	private static final String OTHER_KEY = key(2);
+
+	private final SessionEnvelopeCodec codec = new SessionEnvelopeCodec(KEY, "");
+
+	@Test
+	void roundTripsEnvelope() {
+		SessionEnvelope envelope = envelope();
+
+		SessionEnvelope decoded = codec.decode(codec.encode(envelope));
+
+		assertThat(decoded).isEqualTo(envelope);
+	}
+
+	@Test
+	void envelopeIsEncrypted() {
+		String encoded = codec.encode(envelope());
+
+		assertThat(encoded.split("\\.")).hasSize(5);
+		assertThat(encoded).doesNotContain("HSID-1");
+		assertThat(new String(Base64.getUrlDecoder().decode(encoded.split("\\.")[3]))).doesNotContain("HSID-1");
+	}
+
+	@Test
+	void rejectsTamperedEnvelope() {
+		String encoded = codec.encode(envelope());
+		String[] parts = encoded.split("\\.");
+		char[] ciphertext = parts[3].toCharArray();
+		ciphertext[0] = ciphertext[0] == 'A' ? 'B' : 'A';
+		parts[3] = new String(ciphertext);
+
+		assertThat(codec.decode(String.join(".", parts))).isNull();
+	}
+
+	@Test
+	void rejectsMalformedValues() {
+		assertThat(codec.decode("not-an-envelope")).isNull();
+		assertThat(codec.decode("3f2a9c1e-session-id")).isNull();
+	}
+
+	@Test
+	void rejectsEnvelopeFromUnknownKey() {
+		String encoded = new SessionEnvelopeCodec(OTHER_KEY, "").encode(envelope());
+
+		assertThat(codec.decode(encoded)).isNull();
+	}
+
+	@Test
+	void previousKeyStillDecryptsAfterRotation() {
+		String issuedBeforeRotation = new SessionEnvelopeCodec(OTHER_KEY, "").encode(envelope());
+		SessionEnvelopeCodec rotated = new SessionEnvelopeCodec(KEY, OTHER_KEY);
+
+		assertThat(rotated.decode(issuedBeforeRotation)).isEqualTo(envelope());
+		// New envelopes use the current key only
+		assertThat(new SessionEnvelopeCodec(OTHER_KEY, "").decode(rotated.encode(envelope()))).isNull();
+	}
+
+	@Test
+	void requiresConfiguredKeyOf256Bits() {
+		SessionEnvelopeCodec unconfigured = new SessionEnvelopeCodec("", "");
+
+		assertThat(unconfigured.isConfigured()).isFalse();
+		assertThatThrownBy(() -> unconfigured.encode(envelope()))
+				.isInstanceOf(IllegalStateException.class);
+		assertThatThrownBy(() -> new SessionEnvelopeCodec(Base64.getEncoder().encodeToString(new byte[16]), ""))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static SessionEnvelope envelope() {
+		Instant issuedAt = Instant.parse("2026-01-01T10:00:00Z");
+		return SessionEnvelope.builder()
+				.sessionId("session-1")
+				.userId("user-1")
+				.idType("HSID")
+				.idValue("HSID-1")
+				.preferredUsername("pat")
+				.firstName("Pat")
+				.lastName("Doe")
+				.accessTokenExpiresAt(issuedAt.plusSeconds(300).toEpochMilli())
+				.issuedAt(issuedAt)
+				.expiresAt(issuedAt.plus(30, ChronoUnit.MINUTES))
+				.build();
+	}
+
+	private static String key(int fill) {
+		byte[] key = new byte[32];
+		Arrays.fill(key, (byte) fill);
+		return Base64.getEncoder().encodeToString(key);
+	}
+}
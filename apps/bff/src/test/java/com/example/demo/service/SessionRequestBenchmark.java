@@ -0,0 +1,231 @@
+package com.example.demo.service;
+
+import com.example.demo.filter.SessionValidationFilter;
+import com.example.demo.model.UserInfo;
+import com.example.demo.model.UserSession;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.ReactiveZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.http.HttpCookie;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Redis commands per authenticated request (value session layout)
+ *
+ * Runs an authenticated document request - SessionValidationFilter followed by a
+ * controller reading the session - against RedisValueSessionStore on an in-memory
+ * Redis stand-in that counts the commands it receives:
+ * - requestScoped: the filter resolves the session once and publishes it on the exchange
+ * - perCallResolution: the filter resolves the session, extends it, and the controller
+ *   resolves it again from the cookie (the flow before request-scoped resolution,
+ *   counted once even though the filter used to run twice)
+ *
+ * Redis commands per request = redisCommands / requests (aux counters, totals per iteration).
+ * Run with the main method after mvn test-compile.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionRequestBenchmark {
+
+	private static final String SESSION_ID = "session-1";
+
+	@Param({"true", "false"})
+	public boolean touch;
+
+	private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+	private final LongAdder commands = new LongAdder();
+
+	private SessionService sessionService;
+	private SessionValidationFilter filter;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class RequestCounters {
+
+		public long redisCommands;
+		public long requests;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			redisCommands = 0;
+			requests = 0;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ReactiveRedisTemplate<String, byte[]> template = countingTemplate();
+		SessionStore sessionStore = new RedisValueSessionStore(template,
+				RedisSerializationContext.SerializationPair.fromSerializer(jsonSerializer()),
+				new SimpleMeterRegistry());
+
+		sessionService = new SessionService(
+				sessionStore,
+				new TokenRefreshSchedule(template, true),
+				new SessionIndex(template, true, 0, 60),
+				new SessionEnvelopeCodec("", ""),
+				new SessionRevocationService(template),
+				mock(AccessDecisionService.class),
+				"redis", 30, 300, touch, 60);
+		filter = new SessionValidationFilter(sessionService, 300);
+
+		Instant now = Instant.now();
+		UserSession session = UserSession.builder()
+				.sessionId(SESSION_ID)
+				.userInfo(UserInfo.builder()
+						.id("user-1")
+						.idType("HSID")
+						.idValue("HSID-1")
+						.preferredUsername("pat")
+						.firstName("Pat")
+						.lastName("Doe")
+						.build())
+				.accessToken("access-token")
+				.idToken("id-token")
+				.refreshToken("refresh-token")
+				.tokenType("Bearer")
+				.accessTokenExpiresAt(now.plus(Duration.ofHours(1)).toEpochMilli())
+				.createdAt(now)
+				.lastAccessedAt(now)
+				.expiresAt(now.plus(Duration.ofMinutes(30)))
+				.build();
+		sessionStore.save(session, Duration.ofMinutes(30)).block();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		values.clear();
+	}
+
+	@Benchmark
+	public UserSession requestScoped(RequestCounters counters) {
+		long before = commands.sum();
+		ServerWebExchange exchange = documentRequest();
+
+		filter.filter(exchange, chained -> sessionService.getSessionFromExchange(chained).then()).block();
+		UserSession session = exchange.getAttribute(SessionService.SESSION_ATTRIBUTE);
+
+		counters.redisCommands += commands.sum() - before;
+		counters.requests++;
+		return session;
+	}
+
+	@Benchmark
+	public UserSession perCallResolution(RequestCounters counters) {
+		long before = commands.sum();
+		ServerWebExchange exchange = documentRequest();
+
+		UserSession session = sessionService.getSessionFromCookie(SESSION_ID)
+				.flatMap(resolved -> sessionService.extendSession(resolved.getSessionId()))
+				.then(sessionService.getSessionFromRequest(exchange.getRequest()))
+				.block();
+
+		counters.redisCommands += commands.sum() - before;
+		counters.requests++;
+		return session;
+	}
+
+	private static ServerWebExchange documentRequest() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/api/documents")
+				.cookie(new HttpCookie("SESSION_ID", SESSION_ID)));
+	}
+
+	/**
+	 * Byte template over an in-memory map; every Redis command the session path issues counts once
+	 */
+	@SuppressWarnings("unchecked")
+	private ReactiveRedisTemplate<String, byte[]> countingTemplate() {
+		ReactiveRedisTemplate<String, byte[]> template = mock(ReactiveRedisTemplate.class);
+		ReactiveValueOperations<String, byte[]> valueOps = mock(ReactiveValueOperations.class);
+		ReactiveZSetOperations<String, byte[]> zSetOps = mock(ReactiveZSetOperations.class);
+		when(template.opsForValue()).thenReturn(valueOps);
+		when(template.opsForZSet()).thenReturn(zSetOps);
+
+		when(valueOps.get(any())).thenAnswer(invocation -> {
+			commands.increment();
+			return Mono.justOrEmpty(values.get(invocation.<String>getArgument(0)));
+		});
+		when(valueOps.getAndExpire(any(), any())).thenAnswer(invocation -> {
+			commands.increment();
+			return Mono.justOrEmpty(values.get(invocation.<String>getArgument(0)));
+		});
+		when(valueOps.set(any(), any(), any(Duration.class))).thenAnswer(invocation -> {
+			commands.increment();
+			values.put(invocation.getArgument(0), invocation.getArgument(1));
+			return Mono.just(true);
+		});
+		when(template.expire(any(), any())).thenAnswer(invocation -> {
+			commands.increment();
+			return Mono.just(values.containsKey(invocation.<String>getArgument(0)));
+		});
+		when(template.execute(any(RedisScript.class), anyList(), anyList())).thenAnswer(invocation -> {
+			commands.increment();
+			return Flux.just(1L);
+		});
+		when(zSetOps.add(any(), any(), anyDouble())).thenAnswer(invocation -> {
+			commands.increment();
+			return Mono.just(true);
+		});
+		return template;
+	}
+
+	private static GenericJackson2JsonRedisSerializer jsonSerializer() {
+		// Configured like RedisConfig's value serializer
+		GenericJackson2JsonRedisSerializer jsonSerializer = new GenericJackson2JsonRedisSerializer();
+		jsonSerializer.configure(objectMapper -> objectMapper
+				.registerModule(new JavaTimeModule())
+				.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+		return jsonSerializer;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(SessionRequestBenchmark.class.getSimpleName())
+				.build())
+				.run();
+	}
+}
@@ -0,0 +1,110 @@
+package com.example.demo.service;
+
+import com.example.demo.service.TokenRevocationQueue.RevocationJob;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenRevocationQueueTest {
+
+	private ReactiveRedisTemplate<String, byte[]> template;
+	private TokenRevocationQueue queue;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		template = mock(ReactiveRedisTemplate.class);
+		queue = new TokenRevocationQueue(template);
+	}
+
+	@Test
+	void jobRoundTripsThroughItsEncoding() {
+		RevocationJob job = new RevocationJob("id-1", "refresh_token", "token", 3);
+
+		assertThat(job.encode()).isEqualTo("3:refresh_token:token");
+		assertThat(RevocationJob.decode("id-1", job.encode())).isEqualTo(job);
+	}
+
+	@Test
+	void tokenMayContainSeparator() {
+		RevocationJob job = new RevocationJob("id-1", "access_token", "header:payload:signature", 0);
+
+		assertThat(RevocationJob.decode("id-1", job.encode())).isEqualTo(job);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void claimedJobsAreDecodedFromPairs() {
+		when(template.execute(any(RedisScript.class), anyList(), anyList()))
+				.thenReturn(Flux.just(List.of(bytes("id-1"), bytes("0:access_token:a"), bytes("id-2"), bytes("2:refresh_token:r"))));
+
+		StepVerifier.create(queue.claimDue(1000, 10, Duration.ofSeconds(30)))
+				.expectNext(new RevocationJob("id-1", "access_token", "a", 0))
+				.expectNext(new RevocationJob("id-2", "refresh_token", "r", 2))
+				.verifyComplete();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void claimedJobsArriveElementByElement() {
+		when(template.execute(any(RedisScript.class), anyList(), anyList()))
+				.thenReturn(Flux.just(bytes("id-1"), bytes("1:access_token:a")));
+
+		StepVerifier.create(queue.claimDue(1000, 10, Duration.ofSeconds(30)))
+				.expectNext(new RevocationJob("id-1", "access_token", "a", 1))
+				.verifyComplete();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void claimHidesJobsForClaimTtl() {
+		when(template.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.empty());
+
+		StepVerifier.create(queue.claimDue(1000, 10, Duration.ofSeconds(30)))
+				.verifyComplete();
+
+		assertThat(scriptArgs()).containsExactly("1000", "10", "31000");
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void retryIncrementsAttemptsAndReschedules() {
+		when(template.execute(any(RedisScript.class), anyList(), anyList())).thenReturn(Flux.just(1L));
+
+		StepVerifier.create(queue.retry(new RevocationJob("id-1", "access_token", "a", 1), 5000))
+				.verifyComplete();
+
+		assertThat(scriptArgs()).containsExactly("id-1", "2:access_token:a", "5000");
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<String> scriptArgs() {
+		ArgumentCaptor<List<byte[]>> args = ArgumentCaptor.forClass(List.class);
+		verify(template).execute(any(RedisScript.class),
+				eq(List.of(TokenRevocationQueue.QUEUE_KEY, TokenRevocationQueue.JOBS_KEY)),
+				args.capture());
+		return args.getValue().stream()
+				.map(arg -> new String(arg, StandardCharsets.UTF_8))
+				.toList();
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,175 @@
+package com.example.demo.service;
+
+import com.example.demo.exception.ResourceNotFoundException;
+import com.example.demo.model.BiometricInfo;
+import com.example.demo.support.StubUpstream;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * USService cache misses against a local US stub, with and without the bulk endpoint
+ */
+class USServiceBatchingTest {
+
+	static final String TOKEN_PATH = "/oauth2/token";
+	static final String BIOMETRIC_PATH = "/api/biometric";
+	static final String BIOMETRIC_BULK_PATH = "/api/biometric/bulk";
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private StubUpstream us;
+
+	@BeforeEach
+	void setUp() {
+		us = usStub().delay(Duration.ofMillis(20)).start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		us.close();
+	}
+
+	@Test
+	void concurrentMissesShareOneBulkCall() {
+		USService service = warmUsService(true);
+
+		StepVerifier.create(lookUp(service, 20))
+				.assertNext(found -> assertThat(found).hasSize(20).allSatisfy((hsid, biometricInfo) ->
+						assertThat(biometricInfo.getHsid()).isEqualTo(hsid)))
+				.verifyComplete();
+
+		assertThat(us.calls(BIOMETRIC_BULK_PATH)).isEqualTo(1);
+		assertThat(us.calls(BIOMETRIC_PATH)).isZero();
+	}
+
+	@Test
+	void unknownMemberInBulkCallOnlyFailsItsOwnLookup() {
+		USService service = warmUsService(true);
+
+		Mono<BiometricInfo> unknown = service.getBiometricInfo("UNKNOWN");
+		Mono<BiometricInfo> known = service.getBiometricInfo("HSID-1");
+
+		StepVerifier.create(Mono.zipDelayError(known, unknown.onErrorResume(ResourceNotFoundException.class,
+						e -> Mono.just(BiometricInfo.builder().hsid("not found").build()))))
+				.assertNext(results -> {
+					assertThat(results.getT1().getHsid()).isEqualTo("HSID-1");
+					assertThat(results.getT2().getHsid()).isEqualTo("not found");
+				})
+				.verifyComplete();
+		assertThat(us.calls(BIOMETRIC_BULK_PATH)).isEqualTo(1);
+	}
+
+	@Test
+	void withoutBulkUriEachMissIsOneSingleCall() {
+		USService service = warmUsService(false);
+
+		StepVerifier.create(lookUp(service, 20))
+				.assertNext(found -> assertThat(found).hasSize(20))
+				.verifyComplete();
+
+		assertThat(us.calls(BIOMETRIC_PATH)).isEqualTo(20);
+		assertThat(us.calls(BIOMETRIC_BULK_PATH)).isZero();
+	}
+
+	@Test
+	void destroyStopsTheBatcher() {
+		USService service = warmUsService(true);
+
+		service.destroy();
+
+		// No live batch subscription left: lookups fail fast instead of waiting for a batch
+		StepVerifier.create(service.getBiometricInfo("HSID-1"))
+				.expectError()
+				.verify(Duration.ofSeconds(5));
+		assertThat(us.calls(BIOMETRIC_BULK_PATH)).isZero();
+	}
+
+	/**
+	 * USService against the stub, warmed up (client credentials token, connections)
+	 * Batch window far above the time to issue a burst, so a burst is one batch even on a cold JVM
+	 */
+	private USService warmUsService(boolean bulk) {
+		USService service = usService(us, bulk, Duration.ofMillis(500));
+		service.getBiometricInfo("HSID-warm-up").block();
+		us.reset();
+		return service;
+	}
+
+	static Mono<Map<String, BiometricInfo>> lookUp(USService service, int members) {
+		return Flux.range(0, members)
+				.flatMap(i -> service.getBiometricInfo("HSID-" + i), members)
+				.collectMap(BiometricInfo::getHsid);
+	}
+
+	/**
+	 * US stub: token, single and bulk biometric endpoints; HSID "UNKNOWN" is not a member
+	 */
+	static StubUpstream usStub() {
+		return new StubUpstream()
+				.post(TOKEN_PATH, request -> StubUpstream.Response.ok(
+						"{\"access_token\":\"us-token\",\"token_type\":\"Bearer\",\"expires_in\":3600}"))
+				.get(BIOMETRIC_PATH, request -> "UNKNOWN".equals(request.query().get("hsid"))
+						? StubUpstream.Response.notFound()
+						: StubUpstream.Response.ok(biometric(request.query().get("hsid"))))
+				.post(BIOMETRIC_BULK_PATH, request -> StubUpstream.Response.ok(hsids(request.body()).stream()
+						.filter(hsid -> !"UNKNOWN".equals(hsid))
+						.map(USServiceBatchingTest::biometric)
+						.collect(Collectors.joining(",", "{\"results\":[", "]}"))));
+	}
+
+	/**
+	 * USService against the stub, with a pass-through cache so every lookup is a miss
+	 */
+	@SuppressWarnings("unchecked")
+	static USService usService(StubUpstream us, boolean bulk, Duration batchWindow) {
+		CoalescingCache<BiometricInfo> cache = mock(CoalescingCache.class);
+		when(cache.get(anyString(), any())).thenAnswer(invocation ->
+				invocation.<Supplier<Mono<BiometricInfo>>>getArgument(1).get());
+		CoalescingCacheFactory cacheFactory = mock(CoalescingCacheFactory.class);
+		when(cacheFactory.create(eq("us"), anyString(), eq(BiometricInfo.class), any())).thenReturn(cache);
+
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		return new USService(WebClient.create(), cacheFactory,
+				new ClientCredentialsTokenManager(meterRegistry, 30, 0.8, 300), meterRegistry,
+				us.url(TOKEN_PATH), us.url(BIOMETRIC_PATH), bulk ? us.url(BIOMETRIC_BULK_PATH) : "",
+				"bff", "secret", "us.biometric.read",
+				20, 30, 240, 5,
+				(int) batchWindow.toMillis(), 50, 8);
+	}
+
+	private static String biometric(String hsid) {
+		return "{\"hsid\":\"" + hsid + "\",\"firstName\":\"Sam\",\"lastName\":\"Doe\","
+				+ "\"dateOfBirth\":\"1980-04-12\",\"persona\":\"SELF\",\"expiresIn\":3600}";
+	}
+
+	private static List<String> hsids(String body) {
+		try {
+			JsonNode hsids = OBJECT_MAPPER.readTree(body).path("hsids");
+			return StreamSupport.stream(hsids.spliterator(), false).map(JsonNode::asText).toList();
+		} catch (java.io.IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
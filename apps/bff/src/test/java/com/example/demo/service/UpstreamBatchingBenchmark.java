@@ -0,0 +1,107 @@
+package com.example.demo.service;
+
+import ch.qos.logback.classic.Logger;
+import com.example.demo.support.StubUpstream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of US cache misses against a local US stub: micro-batched bulk calls
+ * vs. one single call per miss
+ *
+ * Each operation is a burst of concurrent misses for distinct HSIDs (e.g. a caregiver's
+ * members resolved on login). The stub answers every call after the given delay.
+ * upstreamCalls is the number of US calls (token excluded) per operation.
+ * Run with the main method after mvn test-compile.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpstreamBatchingBenchmark {
+
+	@Param({"true", "false"})
+	public boolean bulk;
+
+	@Param({"10", "50"})
+	public int misses;
+
+	@Param({"20"})
+	public int upstreamDelayMillis;
+
+	private StubUpstream us;
+	private USService usService;
+
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Calls {
+
+		public long upstreamCalls;
+		public long operations;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			upstreamCalls = 0;
+			operations = 0;
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetStub() {
+		us.reset();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		// Without a logback config everything logs at DEBUG; per-request log lines would dominate the measurement
+		((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(ch.qos.logback.classic.Level.WARN);
+		us = USServiceBatchingTest.usStub().delay(Duration.ofMillis(upstreamDelayMillis)).start();
+		usService = USServiceBatchingTest.usService(us, bulk, Duration.ofMillis(5));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		us.close();
+	}
+
+	@Benchmark
+	public Object burstOfMisses(Calls calls) {
+		int before = upstreamCalls();
+		Object found = USServiceBatchingTest.lookUp(usService, misses).block();
+		calls.upstreamCalls += upstreamCalls() - before;
+		calls.operations++;
+		return found;
+	}
+
+	private int upstreamCalls() {
+		return us.calls(USServiceBatchingTest.BIOMETRIC_PATH) + us.calls(USServiceBatchingTest.BIOMETRIC_BULK_PATH);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+				.include(UpstreamBatchingBenchmark.class.getSimpleName())
+				.build())
+				.run();
+	}
+}
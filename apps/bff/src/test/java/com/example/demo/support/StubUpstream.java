@@ -0,0 +1,171 @@
+package com.example.demo.support;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.springframework.http.HttpMethod;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Local HTTP stub of a downstream (IDP, US, PSN) for tests and benchmarks
+ *
+ * Serves JSON from per-route handlers on an ephemeral port, after an injected delay,
+ * and records every exchange (path and start/end time) so callers can count calls
+ * and check which calls overlapped.
+ */
+public class StubUpstream implements AutoCloseable {
+
+	/**
+	 * Request as seen by a route handler
+	 *
+	 * @param path Request path
+	 * @param query First value of each query parameter
+	 * @param body Request body (empty for GET)
+	 */
+	public record Request(String path, Map<String, String> query, String body) {
+	}
+
+	/**
+	 * Response of a route handler
+	 *
+	 * @param status HTTP status
+	 * @param json JSON body
+	 */
+	public record Response(int status, String json) {
+
+		public static Response ok(String json) {
+			return new Response(200, json);
+		}
+
+		public static Response notFound() {
+			return new Response(404, "{}");
+		}
+	}
+
+	/**
+	 * One served request
+	 *
+	 * @param path Request path
+	 * @param startNanos System.nanoTime() when the request arrived
+	 * @param endNanos System.nanoTime() when the response was ready to send
+	 */
+	public record Exchange(String path, long startNanos, long endNanos) {
+
+		public boolean overlaps(Exchange other) {
+			return startNanos < other.endNanos && other.startNanos < endNanos;
+		}
+	}
+
+	private final Map<String, Function<Request, Response>> routes = new ConcurrentHashMap<>();
+	private final Map<String, Duration> delays = new ConcurrentHashMap<>();
+	private final Queue<Exchange> exchanges = new ConcurrentLinkedQueue<>();
+	private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+	private volatile Duration delay = Duration.ZERO;
+	private DisposableServer server;
+
+	/**
+	 * Serve GET requests to a path
+	 */
+	public StubUpstream get(String path, Function<Request, Response> handler) {
+		routes.put(HttpMethod.GET.name() + " " + path, handler);
+		return this;
+	}
+
+	/**
+	 * Serve POST requests to a path
+	 */
+	public StubUpstream post(String path, Function<Request, Response> handler) {
+		routes.put(HttpMethod.POST.name() + " " + path, handler);
+		return this;
+	}
+
+	/**
+	 * Delay every response by the given time
+	 */
+	public StubUpstream delay(Duration delay) {
+		this.delay = delay;
+		return this;
+	}
+
+	/**
+	 * Delay responses to one path by the given time (instead of the default delay)
+	 */
+	public StubUpstream delay(String path, Duration delay) {
+		delays.put(path, delay);
+		return this;
+	}
+
+	public StubUpstream start() {
+		server = HttpServer.create()
+				.host("localhost")
+				.port(0)
+				.handle((request, response) -> {
+					long startNanos = System.nanoTime();
+					QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+					String path = uri.path();
+					Map<String, String> query = uri.parameters().entrySet().stream()
+							.collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().get(0)));
+					Function<Request, Response> handler = routes.get(request.method().name() + " " + path);
+
+					return request.receive().aggregate().asString(StandardCharsets.UTF_8).defaultIfEmpty("")
+							.map(body -> handler != null ? handler.apply(new Request(path, query, body)) : Response.notFound())
+							.delayElement(delays.getOrDefault(path, delay))
+							// Recorded before the response is written, so a caller that has the response sees the exchange
+							.doOnNext(stubResponse -> {
+								exchanges.add(new Exchange(path, startNanos, System.nanoTime()));
+								calls.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+							})
+							.flatMap(stubResponse -> response.status(stubResponse.status())
+									.header("Content-Type", "application/json")
+									.sendString(Mono.just(stubResponse.json()))
+									.then());
+				})
+				.bindNow();
+		return this;
+	}
+
+	/**
+	 * Absolute URL of a path on this stub
+	 */
+	public String url(String path) {
+		return "http://localhost:" + server.port() + path;
+	}
+
+	/**
+	 * Number of requests served for a path
+	 */
+	public int calls(String path) {
+		AtomicInteger count = calls.get(path);
+		return count != null ? count.get() : 0;
+	}
+
+	/**
+	 * Last request served for a path
+	 */
+	public Optional<Exchange> last(String path) {
+		return exchanges.stream().filter(exchange -> exchange.path().equals(path)).reduce((first, second) -> second);
+	}
+
+	public void reset() {
+		exchanges.clear();
+		calls.clear();
+	}
+
+	@Override
+	public void close() {
+		if (server != null) {
+			server.disposeNow();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.demo.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MicroBatcherTest {
+
+	private MicroBatcher<String, String> batcher;
+
+	@AfterEach
+	void tearDown() {
+		if (batcher != null) {
+			batcher.dispose();
+		}
+	}
+
+	@Test
+	void failingKeyOnlyFailsItsOwnCallers() {
+		batcher = batcher(new PerKeyLookup());
+
+		CompletableFuture<String> a = batcher.load("a").toFuture();
+		CompletableFuture<String> missing = batcher.load("missing").toFuture();
+		CompletableFuture<String> broken = batcher.load("broken").toFuture();
+
+		StepVerifier.create(Mono.fromFuture(a)).expectNext("value-a").verifyComplete();
+		StepVerifier.create(Mono.fromFuture(missing)).verifyComplete();
+		StepVerifier.create(Mono.fromFuture(broken)).verifyErrorMessage("broken");
+	}
+
+	@Test
+	void failingBulkCallFailsEveryCallerOfTheBatch() {
+		batcher = batcher(keys -> Mono.error(new IllegalStateException("bulk down")));
+
+		CompletableFuture<String> a = batcher.load("a").toFuture();
+		CompletableFuture<String> b = batcher.load("b").toFuture();
+
+		StepVerifier.create(Mono.fromFuture(a)).verifyErrorMessage("bulk down");
+		StepVerifier.create(Mono.fromFuture(b)).verifyErrorMessage("bulk down");
+	}
+
+	@Test
+	void duplicateKeysAreLookedUpOnceAndShareTheValue() {
+		List<Collection<String>> calls = new ArrayList<>();
+		batcher = batcher(keys -> {
+			calls.add(List.copyOf(keys));
+			return Mono.just(Map.of("a", "value-a"));
+		});
+
+		CompletableFuture<String> first = batcher.load("a").toFuture();
+		CompletableFuture<String> second = batcher.load("a").toFuture();
+		CompletableFuture<String> unknown = batcher.load("b").toFuture();
+
+		StepVerifier.create(Mono.fromFuture(first)).expectNext("value-a").verifyComplete();
+		StepVerifier.create(Mono.fromFuture(second)).expectNext("value-a").verifyComplete();
+		StepVerifier.create(Mono.fromFuture(unknown)).verifyComplete();
+		assertThat(calls).containsExactly(List.of("a", "b"));
+	}
+
+	private static MicroBatcher<String, String> batcher(BulkLookup<String, String> lookup) {
+		return new MicroBatcher<>("test", lookup, 10, Duration.ofMillis(50), 2, new SimpleMeterRegistry());
+	}
+
+	/**
+	 * Bulk lookup reporting its own outcome per key, like a bulk API with per-item errors
+	 */
+	private static class PerKeyLookup implements BulkLookup<String, String> {
+
+		@Override
+		public Mono<Map<String, String>> lookupAll(Collection<String> keys) {
+			return Mono.error(new UnsupportedOperationException());
+		}
+
+		@Override
+		public Flux<Outcome<String, String>> lookupEach(Collection<String> keys) {
+			return Flux.fromIterable(keys).map(key -> switch (key) {
+				case "missing" -> new Outcome<>(key, null, null);
+				case "broken" -> new Outcome<>(key, null, new IllegalStateException("broken"));
+				default -> new Outcome<>(key, "value-" + key, null);
+			});
+		}
+	}
+}
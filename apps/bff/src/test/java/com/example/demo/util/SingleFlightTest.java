@@ -0,0 +1,114 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+	private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+	@Test
+	void concurrentCallersShareOneCall() {
+		Sinks.One<String> result = Sinks.one();
+		AtomicInteger calls = new AtomicInteger();
+		AtomicInteger joins = new AtomicInteger();
+
+		Mono<String> first = singleFlight.execute("key", () -> {
+			calls.incrementAndGet();
+			return result.asMono();
+		}, joins::incrementAndGet);
+		Mono<String> second = singleFlight.execute("key", () -> {
+			calls.incrementAndGet();
+			return Mono.just("second");
+		}, joins::incrementAndGet);
+
+		StepVerifier.create(Mono.zip(first, second))
+				.then(() -> {
+					assertThat(singleFlight.isInFlight("key")).isTrue();
+					result.tryEmitValue("shared");
+				})
+				.assertNext(pair -> {
+					assertThat(pair.getT1()).isEqualTo("shared");
+					assertThat(pair.getT2()).isEqualTo("shared");
+				})
+				.verifyComplete();
+
+		assertThat(calls).hasValue(1);
+		assertThat(joins).hasValue(1);
+		assertThat(singleFlight.isInFlight("key")).isFalse();
+	}
+
+	@Test
+	void completedCallIsForgotten() {
+		AtomicInteger calls = new AtomicInteger();
+
+		StepVerifier.create(singleFlight.execute("key", () -> Mono.just("v" + calls.incrementAndGet())))
+				.expectNext("v1")
+				.verifyComplete();
+		StepVerifier.create(singleFlight.execute("key", () -> Mono.just("v" + calls.incrementAndGet())))
+				.expectNext("v2")
+				.verifyComplete();
+	}
+
+	@Test
+	void callIsForgottenBeforeCallersSeeItsResult() {
+		AtomicInteger calls = new AtomicInteger();
+
+		// A caller rejecting the result and asking again must not rejoin the finished call
+		Mono<String> retry = singleFlight.execute("key", () -> Mono.just("v" + calls.incrementAndGet()))
+				.flatMap(rejected -> singleFlight.execute("key", () -> Mono.just("v" + calls.incrementAndGet())));
+
+		StepVerifier.create(retry)
+				.expectNext("v2")
+				.verifyComplete();
+		assertThat(singleFlight.isInFlight("key")).isFalse();
+	}
+
+	@Test
+	void differentKeysDoNotCoalesce() {
+		Sinks.One<String> pending = Sinks.one();
+
+		Mono<String> first = singleFlight.execute("a", pending::asMono);
+		StepVerifier.create(first)
+				.then(() -> StepVerifier.create(singleFlight.execute("b", () -> Mono.just("b")))
+						.expectNext("b")
+						.verifyComplete())
+				.then(() -> pending.tryEmitValue("a"))
+				.expectNext("a")
+				.verifyComplete();
+	}
+
+	@Test
+	void errorsAreSharedThenForgotten() {
+		Sinks.One<String> result = Sinks.one();
+		AtomicInteger calls = new AtomicInteger();
+
+		Mono<String> first = singleFlight.execute("key", () -> {
+			calls.incrementAndGet();
+			return result.asMono();
+		});
+		Mono<String> second = singleFlight.execute("key", () -> {
+			calls.incrementAndGet();
+			return Mono.just("unused");
+		});
+
+		StepVerifier.create(Mono.zipDelayError(first.materialize(), second.materialize()))
+				.then(() -> result.tryEmitError(new IllegalStateException("boom")))
+				.assertNext(pair -> {
+					assertThat(pair.getT1().getThrowable()).hasMessage("boom");
+					assertThat(pair.getT2().getThrowable()).hasMessage("boom");
+				})
+				.verifyComplete();
+
+		StepVerifier.create(singleFlight.execute("key", () -> Mono.just("retried")))
+				.expectNext("retried")
+				.verifyComplete();
+		assertThat(calls).hasValue(1);
+	}
+}